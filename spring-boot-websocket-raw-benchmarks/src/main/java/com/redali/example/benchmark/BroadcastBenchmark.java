@@ -0,0 +1,60 @@
+package com.redali.example.benchmark;
+
+import com.redali.example.codec.MessageCodec;
+import com.redali.example.service.BroadcastStats;
+import com.redali.example.service.SessionServiceImpl;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of pushing one server side message out to every registered session (a quarter of them using CBOR).
+ *
+ * <p>Measures the time for the broadcast call to encode the message and queue it for every session, the sender
+ * threads drain the queues into the stub sessions in the background.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BroadcastBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int sessions;
+
+    private SessionServiceImpl sessionService;
+    private JSONObject health;
+
+    @Setup
+    public void setup() {
+        sessionService = new SessionServiceImpl();
+        for (int i = 0; i < sessions; i++) {
+            sessionService.registerSession(new StubWebSocketSession(i % 4 == 3 ? MessageCodec.CBOR_PROTOCOL : null));
+        }
+        health = new JSONObject().put("sessionCount", sessions).put("status", "UP");
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionService.close();
+    }
+
+    @Benchmark
+    public BroadcastStats broadcast() {
+        return sessionService.broadcast(200, health);
+    }
+}
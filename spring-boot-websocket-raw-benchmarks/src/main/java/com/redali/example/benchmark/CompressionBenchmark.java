@@ -0,0 +1,159 @@
+package com.redali.example.benchmark;
+
+import com.redali.example.codec.CborCodec;
+import com.redali.example.codec.CodecType;
+import com.redali.example.codec.MessageCodec;
+import com.redali.example.message.DiceRoll;
+import com.redali.example.message.DiceStats;
+import com.redali.example.message.JsonContent;
+import com.redali.example.message.ServerMessage;
+import com.redali.example.message.SessionInfo;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * CPU time against bandwidth for permessage-deflate on the server's message mix.
+ *
+ * <p>Each operation sends the next message of a mix of responses and pushes the way the container compresses it (raw
+ * deflate, sync flushed, the trailing empty block dropped). Messages under the minimum size go out as they are, and
+ * without context takeover the compressor starts over for every message. The bytes counters give the payload sizes
+ * before and after, so {@code bytesOut / bytesIn} is the compression ratio for the settings.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+    private static final int MIX_SIZE = 64;
+    // Sync flush ends with an empty stored block, permessage-deflate leaves it off
+    private static final int FLUSH_TRAILER = 4;
+
+    @Param({"STREAMING", "CBOR"})
+    private String codecName;
+
+    @Param({"true", "false"})
+    private boolean contextTakeover;
+
+    @Param({"0", "64", "256"})
+    private int minSize;
+
+    private byte[][] mix;
+
+    @Setup
+    public void setup() {
+        MessageCodec codec = "CBOR".equals(codecName) ? new CborCodec() : CodecType.valueOf(codecName).create();
+        var random = new Random(42);
+        var messages = new ArrayList<byte[]>();
+        for (int i = 0; i < MIX_SIZE; i++) {
+            for (var message : createMessages(random)) {
+                var buffer = codec.encode(message).getPayload();
+                messages.add(buffer instanceof ByteBuffer bytes ? toArray(bytes)
+                        : buffer.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        mix = messages.toArray(new byte[0][]);
+    }
+
+    /**
+     * Payload bytes before and after compression.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytesIn;
+        public long bytesOut;
+    }
+
+    /**
+     * One connection's compressor.
+     */
+    @State(Scope.Thread)
+    public static class Connection {
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final byte[] output = new byte[64 * 1024];
+        private int next;
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            deflater.end();
+        }
+    }
+
+    @Benchmark
+    public int send(Connection connection, Bytes bytes) {
+        var payload = mix[connection.next];
+        connection.next = (connection.next + 1) % mix.length;
+        bytes.bytesIn += payload.length;
+        int sent = payload.length < minSize ? payload.length : deflate(connection, payload);
+        bytes.bytesOut += sent;
+        return sent;
+    }
+
+    private int deflate(Connection connection, byte[] payload) {
+        var deflater = connection.deflater;
+        if (!contextTakeover) {
+            deflater.reset();
+        }
+        deflater.setInput(payload);
+        int length = 0;
+        int written;
+        do {
+            written = deflater.deflate(connection.output, length, connection.output.length - length,
+                    Deflater.SYNC_FLUSH);
+            length += written;
+        } while (written > 0 && length < connection.output.length);
+        return length - FLUSH_TRAILER;
+    }
+
+    // What clients get: requested sessions info and dice, statistics and the pushed health report
+    private static List<ServerMessage> createMessages(Random random) {
+        var rolls = new int[5];
+        for (int i = 0; i < rolls.length; i++) {
+            rolls[i] = random.nextInt(6) + 1;
+        }
+        var histogram = new long[20];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = 50_000 + random.nextInt(1000);
+        }
+        var health = new JSONObject().put("sessionCount", 10_000 + random.nextInt(100))
+                .put("nodeSessionCount", 5_000 + random.nextInt(100)).put("status", "UP");
+        return List.of(
+                new ServerMessage(0, new SessionInfo(1693847859462L + random.nextInt(1000),
+                        new SessionInfo.AddressInfo("127.0.0.1", "localhost", true, true, 8080),
+                        new SessionInfo.AddressInfo("10.0.0." + random.nextInt(256), "client.example.com", true, true,
+                                30000 + random.nextInt(30000)))),
+                new ServerMessage(1, new DiceRoll(rolls.length, 6, rolls)),
+                new ServerMessage(2, new DiceStats(1_000_000, 20, null, histogram, 10_500_000 + random.nextInt(1000),
+                        10.5, 33.25)),
+                new ServerMessage(200, new JsonContent(health)));
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        var bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
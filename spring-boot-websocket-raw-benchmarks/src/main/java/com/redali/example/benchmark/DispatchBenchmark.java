@@ -0,0 +1,69 @@
+package com.redali.example.benchmark;
+
+import com.redali.example.codec.MessageCodec;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.ServerMessage;
+import com.redali.example.service.SessionServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of handing a decoded request to its handler and of the full path a frame from a client takes through the
+ * session service (decode, dispatch, encode and queue the response).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+    private SessionServiceImpl sessionService;
+    private StubWebSocketSession session;
+    private ClientRequest sessionInfoRequest;
+    private ClientRequest diceRequest;
+    private TextMessage diceFrame;
+
+    @Setup
+    public void setup() {
+        sessionService = new SessionServiceImpl();
+        session = new StubWebSocketSession(MessageCodec.JSON_PROTOCOL);
+        sessionService.registerSession(session);
+        sessionInfoRequest = new ClientRequest(0);
+        diceRequest = new ClientRequest(1);
+        diceRequest.setDice(5);
+        diceFrame = new TextMessage("{ \"request\": 1, \"dice\": 5 }");
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionService.close();
+    }
+
+    @Benchmark
+    public ServerMessage processSessionInfo() {
+        return sessionService.processRequest(session, sessionInfoRequest);
+    }
+
+    @Benchmark
+    public ServerMessage processDiceRoll() {
+        return sessionService.processRequest(session, diceRequest);
+    }
+
+    @Benchmark
+    public void handleMessage() {
+        sessionService.handleMessage(session, diceFrame);
+    }
+}
@@ -0,0 +1,104 @@
+package com.redali.example.benchmark;
+
+import com.redali.example.codec.CborCodec;
+import com.redali.example.codec.ClientCodec;
+import com.redali.example.codec.CodecType;
+import com.redali.example.codec.MessageCodec;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.DiceRoll;
+import com.redali.example.message.JsonContent;
+import com.redali.example.message.RequestFrame;
+import com.redali.example.message.ServerMessage;
+import com.redali.example.message.SessionInfo;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning frames from clients into requests and responses into frames for each codec.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageCodecBenchmark {
+    private static final int BATCH_SIZE = 16;
+
+    @Param({"STREAMING", "TREE", "CBOR"})
+    private String codecName;
+
+    private MessageCodec codec;
+    private WebSocketMessage<?> requestFrame;
+    private WebSocketMessage<?> batchFrame;
+    private ServerMessage sessionInfo;
+    private ServerMessage diceRoll;
+    private JSONObject health;
+
+    @Setup
+    public void setup() {
+        var binary = "CBOR".equals(codecName);
+        codec = binary ? new CborCodec() : CodecType.valueOf(codecName).create();
+        var client = binary ? ClientCodec.cbor() : ClientCodec.json();
+        var request = Map.of("request", 1, "dice", 5, "sides", 6);
+        var batch = new ArrayList<Map<String, Integer>>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(Map.of("request", 1, "dice", 5, "cid", i));
+        }
+        requestFrame = toFrame(binary, client.encodeRequest(request));
+        batchFrame = toFrame(binary, client.encodeBatch(batch));
+
+        sessionInfo = new ServerMessage(0, new SessionInfo(1693847859462L,
+                new SessionInfo.AddressInfo("127.0.0.1", "localhost", true, true, 8080),
+                new SessionInfo.AddressInfo("10.0.0.1", "client.example.com", true, true, 52032)));
+        diceRoll = new ServerMessage(1, new DiceRoll(5, 6, new int[]{4, 1, 6, 2, 2}));
+        health = new JSONObject().put("sessionCount", 10000).put("status", "UP");
+    }
+
+    @Benchmark
+    public ClientRequest parseRequest() {
+        return codec.decode(requestFrame);
+    }
+
+    @Benchmark
+    public RequestFrame parseBatch() {
+        return codec.decodeFrame(batchFrame, BATCH_SIZE);
+    }
+
+    @Benchmark
+    public WebSocketMessage<?> serializeSessionInfo() {
+        return codec.encode(sessionInfo);
+    }
+
+    @Benchmark
+    public WebSocketMessage<?> serializeDiceRoll() {
+        return codec.encode(diceRoll);
+    }
+
+    // What a server push costs: wrapping a task's org.json object as message content and encoding it
+    @Benchmark
+    public WebSocketMessage<?> wrapAndSerialize() {
+        return codec.encode(new ServerMessage(200, new JsonContent(health)));
+    }
+
+    private static WebSocketMessage<?> toFrame(boolean binary, byte[] payload) {
+        return binary ? new BinaryMessage(payload) : new TextMessage(payload);
+    }
+}
@@ -0,0 +1,145 @@
+package com.redali.example.benchmark;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session that is always open and throws away everything sent to it, so benchmarks measure our code and not the
+ * network.
+ */
+public class StubWebSocketSession implements WebSocketSession {
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    private final String id = Long.toString(NEXT_ID.incrementAndGet());
+    private final String protocol;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final InetSocketAddress localAddress;
+    private final InetSocketAddress remoteAddress;
+    private final AtomicLong sent = new AtomicLong();
+    private volatile boolean open = true;
+
+    /**
+     * Construct session.
+     *
+     * @param protocol Sub-protocol the session negotiated (null for the default JSON messages).
+     */
+    public StubWebSocketSession(String protocol) {
+        this.protocol = protocol;
+        // Give addresses a host name up front so nothing ever waits on a reverse DNS lookup
+        try {
+            var loopback = InetAddress.getByAddress("localhost", new byte[]{127, 0, 0, 1});
+            localAddress = new InetSocketAddress(loopback, 8080);
+            remoteAddress = new InetSocketAddress(loopback, 40000 + (int) (NEXT_ID.get() % 20000));
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the number of messages sent to the session.
+     *
+     * @return Messages sent so far.
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+    @Override
+    public @NotNull String getId() {
+        return id;
+    }
+
+    @Override
+    public URI getUri() {
+        return URI.create("ws://localhost:8080/websocket/json/messages");
+    }
+
+    @Override
+    public @NotNull HttpHeaders getHandshakeHeaders() {
+        return HttpHeaders.EMPTY;
+    }
+
+    @Override
+    public @NotNull Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Principal getPrincipal() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+        // Nothing is ever received
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        // Nothing is ever received
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public @NotNull List<WebSocketExtension> getExtensions() {
+        return List.of();
+    }
+
+    @Override
+    public void sendMessage(@NotNull WebSocketMessage<?> message) {
+        sent.incrementAndGet();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    @Override
+    public void close(@NotNull CloseStatus status) {
+        open = false;
+    }
+}
@@ -0,0 +1,75 @@
+package com.redali.example.benchmark;
+
+import com.redali.example.handler.SubscribeHandler;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.service.BroadcastStats;
+import com.redali.example.service.SessionServiceImpl;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of publishing one message to a topic when many sessions are subscribed to many topics.
+ *
+ * <p>Every session subscribes to a few random topics, so with more topics each publish reaches fewer sessions. The
+ * time should follow the number of subscribers of the topic, not the number of sessions or topics.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TopicPublishBenchmark {
+    private static final int TOPICS_PER_SESSION = 3;
+
+    @Param({"20000"})
+    private int sessions;
+
+    @Param({"1", "100", "500"})
+    private int topics;
+
+    private SessionServiceImpl sessionService;
+    private JSONObject update;
+    private int next;
+
+    @Setup
+    public void setup() {
+        sessionService = new SessionServiceImpl();
+        var random = new SplittableRandom(42);
+        for (int i = 0; i < sessions; i++) {
+            var session = new StubWebSocketSession(null);
+            sessionService.registerSession(session);
+            for (int t = 0; t < TOPICS_PER_SESSION; t++) {
+                var subscribe = new ClientRequest(SubscribeHandler.REQUEST_ID);
+                subscribe.setTopic("topic-" + random.nextInt(topics));
+                sessionService.processRequest(session, subscribe);
+            }
+        }
+        update = new JSONObject().put("price", 101.25).put("symbol", "ACME");
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionService.close();
+    }
+
+    @Benchmark
+    public BroadcastStats publish() {
+        next = (next + 1) % topics;
+        return sessionService.publish("topic-" + next, 300, update);
+    }
+}
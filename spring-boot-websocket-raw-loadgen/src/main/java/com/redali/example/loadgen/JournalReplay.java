@@ -0,0 +1,255 @@
+package com.redali.example.loadgen;
+
+import com.redali.example.codec.MessageCodec;
+import com.redali.example.journal.JournalReader;
+import com.redali.example.journal.JournalRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends the frames of a request journal (written by the server with app.journal.enabled) back to a server, at the
+ * pace they were recorded or faster, to load it with real traffic.
+ *
+ * <p>Each session in the journal gets its own connection, opened when its first frame is due and asking for the
+ * sub-protocol its frames were sent with. Frames go out exactly as recorded (correlation IDs and all), so instead of
+ * round trip times the report shows how far behind schedule the frames were sent, which is where a server that can't
+ * keep up shows.</p>
+ */
+@Slf4j
+public class JournalReplay {
+    // Longest latency the histogram can record (microseconds), anything above is clamped
+    private static final long MAX_LAG_MICROS = TimeUnit.MINUTES.toMicros(5);
+    // How long to wait for the server to go quiet after the last frame
+    private static final long QUIET_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_WAIT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final ReplaySettings settings;
+    private final PrintStream out;
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Results of a replay.
+     *
+     * @param url             Endpoint the journal was replayed against.
+     * @param sessions        Number of sessions (connections) replayed.
+     * @param frames          Frames sent.
+     * @param received        Messages received from the server (responses and pushes).
+     * @param errors          Connections that failed or were closed by the server.
+     * @param recordedSeconds Time between the first and last frame in the journal.
+     * @param seconds         Time the replay took to send them.
+     * @param lag             How far behind schedule the frames were sent.
+     */
+    public record Result(String url, int sessions, long frames, long received, long errors, double recordedSeconds,
+                         double seconds, LoadReport.Latency lag) {
+
+        /**
+         * Format results for people.
+         *
+         * @return Multi-line summary.
+         */
+        public String toText() {
+            return String.format("""
+                    Endpoint:   %s
+                    Sessions:   %d
+                    Frames:     %d sent, %d messages received, %d errors
+                    Duration:   %.1f s (recorded over %.1f s)
+                    Send lag:   %s
+                    """, url, sessions, frames, received, errors, seconds, recordedSeconds, lag);
+        }
+    }
+
+    /**
+     * Construct replay.
+     *
+     * @param settings What to replay and how fast.
+     * @param out      Where to print progress and results.
+     */
+    public JournalReplay(@NotNull ReplaySettings settings, @NotNull PrintStream out) {
+        this.settings = settings;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ReplaySettings settings;
+        try {
+            settings = ReplaySettings.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(ReplaySettings.USAGE);
+            System.exit(2);
+            return;
+        }
+        System.out.print(new JournalReplay(settings, System.out).run().toText());
+        System.exit(0);
+    }
+
+    /**
+     * Replay the journal (blocks until every frame was sent and the server went quiet).
+     *
+     * @return Results of the replay.
+     * @throws IOException          If the journal could not be read.
+     * @throws InterruptedException If interrupted while running.
+     */
+    public Result run() throws IOException, InterruptedException {
+        var reader = new JournalReader(settings.journal());
+        ConfigurableApplicationContext server = null;
+        var url = settings.url();
+        if (url == null) {
+            server = LoadGenerator.startServer(out, settings.execution());
+            int port = ((WebServerApplicationContext) server).getWebServer().getPort();
+            url = URI.create("ws://localhost:" + port + LoadGenerator.ENDPOINT);
+        }
+        var httpClient = HttpClient.newHttpClient();
+        var clients = new HashMap<String, ReplayClient>();
+        try {
+            out.printf("Replaying %s to %s at %s%n", settings.journal(), url,
+                    settings.speed() == 0 ? "full speed" : settings.speed() + "x");
+            var lag = new Histogram(MAX_LAG_MICROS, 3);
+            long frames = 0;
+            long first = 0;
+            long last = 0;
+            long start = System.nanoTime();
+            for (var record = reader.next(); record != null; record = reader.next()) {
+                if (frames++ == 0) {
+                    first = record.timestampMicros();
+                }
+                last = record.timestampMicros();
+                long due = settings.speed() == 0 ? System.nanoTime()
+                        : start + (long) (TimeUnit.MICROSECONDS.toNanos(last - first) / settings.speed());
+                for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                var client = clients.get(record.sessionId());
+                if (client == null) {
+                    client = connect(httpClient, url, record);
+                    clients.put(record.sessionId(), client);
+                }
+                client.send(record);
+                lag.recordValue(Math.min(MAX_LAG_MICROS, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due)));
+            }
+            long elapsed = System.nanoTime() - start;
+            awaitQuiet();
+            return new Result(url.toString(), clients.size(), frames, received.get(), errors.get(),
+                    (last - first) / 1e6, elapsed / 1e9, LoadReport.Latency.of(lag));
+        } finally {
+            clients.values().forEach(ReplayClient::close);
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private ReplayClient connect(HttpClient httpClient, URI url, JournalRecord record) {
+        var client = new ReplayClient();
+        try {
+            client.connect(httpClient, url, record.binary() ? MessageCodec.CBOR_PROTOCOL : MessageCodec.JSON_PROTOCOL)
+                    .join();
+        } catch (RuntimeException e) {
+            errors.incrementAndGet();
+            log.debug("Failed to connect client for session {}: {}", record.sessionId(), e.toString());
+        }
+        return client;
+    }
+
+    // Wait for the responses to the last frames (until nothing arrived for a moment)
+    private void awaitQuiet() throws InterruptedException {
+        long deadline = System.nanoTime() + MAX_WAIT_NANOS;
+        long count = -1;
+        long lastChange = System.nanoTime();
+        while (System.nanoTime() - lastChange < QUIET_NANOS && System.nanoTime() < deadline) {
+            if (received.get() != count) {
+                count = received.get();
+                lastChange = System.nanoTime();
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    // Connection replaying one journaled session, only counts what comes back
+    private final class ReplayClient implements WebSocket.Listener {
+        // Guarded by this, the JDK client only allows one outstanding send per connection so sends are chained
+        private CompletableFuture<WebSocket> sending = CompletableFuture.failedFuture(
+                new IllegalStateException("Not connected"));
+
+        CompletableFuture<WebSocket> connect(HttpClient client, URI url, String subProtocol) {
+            var connecting = client.newWebSocketBuilder()
+                    .subprotocols(subProtocol)
+                    .buildAsync(url, this);
+            synchronized (this) {
+                sending = connecting;
+            }
+            return connecting;
+        }
+
+        synchronized void send(JournalRecord record) {
+            var payload = record.payload();
+            sending = sending.thenCompose(ws -> record.binary() ? ws.sendBinary(ByteBuffer.wrap(payload), true)
+                    : ws.sendText(new String(payload, StandardCharsets.UTF_8), true));
+        }
+
+        void close() {
+            CompletableFuture<WebSocket> last;
+            synchronized (this) {
+                last = sending;
+            }
+            try {
+                last.thenCompose(ws -> ws.sendClose(WebSocket.NORMAL_CLOSURE, "done")).get(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.debug("Client did not close cleanly: {}", e.toString());
+            }
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            if (last) {
+                received.incrementAndGet();
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            if (last) {
+                received.incrementAndGet();
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            errors.incrementAndGet();
+            log.debug("Client error: {}", error.toString());
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            if (statusCode != WebSocket.NORMAL_CLOSURE) {
+                errors.incrementAndGet();
+                log.debug("Server closed connection: {} {}", statusCode, reason);
+            }
+            return null;
+        }
+    }
+}
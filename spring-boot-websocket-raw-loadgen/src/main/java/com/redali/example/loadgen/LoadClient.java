@@ -0,0 +1,189 @@
+package com.redali.example.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.redali.example.codec.ClientCodec;
+import com.redali.example.message.ServerMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Recorder;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One simulated client connection.
+ *
+ * <p>Uses the JDK's asynchronous WebSocket client, no thread is tied up waiting on a connection so thousands of
+ * clients only need a handful of threads. Every request carries a correlation ID ("cid") so its round trip time can
+ * be recorded when the response with the same ID comes back.</p>
+ */
+@Slf4j
+class LoadClient implements WebSocket.Listener {
+
+    /**
+     * Counts shared by all clients.
+     */
+    static final class Counters {
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong received = new AtomicLong();
+        final AtomicLong pushed = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        void reset() {
+            sent.set(0);
+            received.set(0);
+            pushed.set(0);
+            errors.set(0);
+        }
+    }
+
+    private final ClientCodec codec;
+    private final Recorder latencies;
+    private final Counters counters;
+    // Correlation ID to the time (System.nanoTime()) the request was due to be sent
+    private final Map<Long, Long> inFlight = new ConcurrentHashMap<>();
+    private final StringBuilder text = new StringBuilder();
+    private final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+    private long nextCid;
+    // Guarded by this, the JDK client only allows one outstanding send per connection so sends are chained
+    private CompletableFuture<WebSocket> sending;
+
+    LoadClient(@NotNull ClientCodec codec, @NotNull Recorder latencies, @NotNull Counters counters) {
+        this.codec = codec;
+        this.latencies = latencies;
+        this.counters = counters;
+    }
+
+    /**
+     * Open the connection.
+     *
+     * @param client HTTP client to connect with.
+     * @param url    WebSocket endpoint.
+     * @return Completes when the connection is open.
+     */
+    CompletableFuture<WebSocket> connect(@NotNull HttpClient client, @NotNull URI url) {
+        var connecting = client.newWebSocketBuilder()
+                .subprotocols(codec.getSubProtocol())
+                .buildAsync(url, this);
+        synchronized (this) {
+            sending = connecting;
+        }
+        return connecting;
+    }
+
+    /**
+     * Send a request (returns right away, the request goes out once any earlier ones have been sent).
+     *
+     * @param request     Request attributes (a "cid" is added).
+     * @param dueNanos    Time (System.nanoTime()) the request was due to be sent, latency is measured from here.
+     */
+    synchronized void send(@NotNull Map<String, Object> request, long dueNanos) {
+        long cid = nextCid++;
+        var withCid = new HashMap<>(request);
+        withCid.put(ServerMessage.CID_KEY, cid);
+        var bytes = codec.encodeRequest(withCid);
+        inFlight.put(cid, dueNanos);
+        counters.sent.incrementAndGet();
+        sending = sending.thenCompose(ws -> codec.isBinary()
+                ? ws.sendBinary(ByteBuffer.wrap(bytes), true)
+                : ws.sendText(new String(bytes, StandardCharsets.UTF_8), true));
+        sending.exceptionally(e -> {
+            inFlight.remove(cid);
+            return null;
+        });
+    }
+
+    /**
+     * Number of requests sent that have not been answered yet.
+     *
+     * @return Requests in flight.
+     */
+    int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Close the connection (waits briefly for the close handshake).
+     */
+    void close() {
+        CompletableFuture<WebSocket> last;
+        synchronized (this) {
+            last = sending;
+        }
+        try {
+            last.thenCompose(ws -> ws.sendClose(WebSocket.NORMAL_CLOSURE, "done")).get(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.debug("Client did not close cleanly: {}", e.toString());
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        text.append(data);
+        if (last) {
+            onMessage(codec.decodeMessage(text.toString()));
+            text.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+        var bytes = new byte[data.remaining()];
+        data.get(bytes);
+        binary.writeBytes(bytes);
+        if (last) {
+            onMessage(codec.decodeMessage(binary.toByteArray()));
+            binary.reset();
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        counters.errors.incrementAndGet();
+        log.debug("Client error: {}", error.toString());
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        if (statusCode != WebSocket.NORMAL_CLOSURE) {
+            counters.errors.incrementAndGet();
+            log.debug("Server closed connection: {} {}", statusCode, reason);
+        }
+        return null;
+    }
+
+    private void onMessage(JsonNode message) {
+        long now = System.nanoTime();
+        if (message.isArray()) {
+            message.forEach(this::onMessage);
+            return;
+        }
+        var cid = message.get(ServerMessage.CID_KEY);
+        Long due = cid != null ? inFlight.remove(cid.longValue()) : null;
+        if (due == null) {
+            counters.pushed.incrementAndGet();
+            return;
+        }
+        counters.received.incrementAndGet();
+        // The histogram throws on values it can't hold, a stalled server mustn't break the listener
+        long micros = TimeUnit.NANOSECONDS.toMicros(now - due);
+        latencies.recordValue(Math.min(LoadGenerator.MAX_LATENCY_MICROS, Math.max(0, micros)));
+    }
+}
@@ -0,0 +1,245 @@
+package com.redali.example.loadgen;
+
+import com.redali.example.Main;
+import com.redali.example.codec.ClientCodec;
+import com.redali.example.codec.MessageCodec;
+import com.redali.example.service.ExecutionMode;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens many WebSocket clients against the JSON message endpoint, sends a mix of requests at a target rate and
+ * reports throughput and round trip latency percentiles.
+ *
+ * <p>When no --url is given the spring-boot-websocket-raw application is started in this process on a random port
+ * so the load generator can run without anything else set up.</p>
+ */
+public class LoadGenerator {
+    static final String ENDPOINT = "/websocket/json/messages";
+    // Limit on connections being opened at once so a burst of handshakes doesn't look like a failure
+    private static final int MAX_CONNECTING = 100;
+    // Longest latency the histograms can record (microseconds), anything above is clamped
+    static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final LoadSettings settings;
+    private final PrintStream out;
+    private final Recorder latencies = new Recorder(MAX_LATENCY_MICROS, 3);
+    private final LoadClient.Counters counters = new LoadClient.Counters();
+    private final int[] requestTypes;
+
+    /**
+     * Construct load generator.
+     *
+     * @param settings What load to generate.
+     * @param out      Where to print progress and results.
+     */
+    public LoadGenerator(@NotNull LoadSettings settings, @NotNull PrintStream out) {
+        this.settings = settings;
+        this.out = out;
+        // Expand weights into a table that can be picked from at random
+        var types = new ArrayList<Integer>();
+        settings.mix().forEach((type, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                types.add(type);
+            }
+        });
+        this.requestTypes = types.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadSettings settings;
+        try {
+            settings = LoadSettings.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadSettings.USAGE);
+            System.exit(2);
+            return;
+        }
+        var report = new LoadGenerator(settings, System.out).run();
+        System.out.print(report.toText());
+        if (settings.jsonReport() != null) {
+            report.writeJson(settings.jsonReport());
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Run the load (blocks until finished).
+     *
+     * @return Results of the measurement period.
+     * @throws IOException          If the server could not be started.
+     * @throws InterruptedException If interrupted while running.
+     */
+    public LoadReport run() throws IOException, InterruptedException {
+        ConfigurableApplicationContext server = null;
+        var url = settings.url();
+        if (url == null) {
+            server = startServer(out, settings.execution());
+            int port = ((WebServerApplicationContext) server).getWebServer().getPort();
+            url = URI.create("ws://localhost:" + port + ENDPOINT);
+        }
+        var scheduler = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+        var httpClient = HttpClient.newHttpClient();
+        try {
+            var clients = connect(httpClient, url);
+            out.printf("Connected %d of %d clients to %s%n", clients.size(), settings.clients(), url);
+            startRequests(scheduler, clients);
+            return measure(url, clients, scheduler);
+        } finally {
+            scheduler.shutdownNow();
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Start the spring-boot-websocket-raw application in this process on a random port.
+     *
+     * @param out       Where to print progress.
+     * @param execution Where the server processes requests (null for its configured default).
+     * @return The running application.
+     */
+    static ConfigurableApplicationContext startServer(@NotNull PrintStream out, ExecutionMode execution) {
+        out.println("No --url given, starting server in process");
+        var properties = new HashMap<String, Object>(Map.of("server.port", "0",
+                "app.endpoint.json.messages", ENDPOINT,
+                "spring.main.banner-mode", "off",
+                "logging.level.ROOT", "WARN",
+                "logging.level.com.redali", "WARN"));
+        // Every client connects from the same address, which must not hold them all to one address's rate limit
+        var overrides = new ArrayList<String>(List.of("--app.rate-limit.address-rate=0"));
+        if (execution != null) {
+            // Passed as arguments, default properties would lose to the server's application.yml
+            overrides.add("--app.execution.mode=" + execution.name());
+        }
+        return new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.SERVLET)
+                .properties(properties)
+                .run(overrides.toArray(new String[0]));
+    }
+
+    private List<LoadClient> connect(HttpClient httpClient, URI url) throws InterruptedException {
+        var codec = MessageCodec.CBOR_PROTOCOL.equals(settings.protocol()) ? ClientCodec.cbor() : ClientCodec.json();
+        var connecting = new Semaphore(MAX_CONNECTING);
+        var clients = new ArrayList<LoadClient>(settings.clients());
+        var connections = new ArrayList<CompletableFuture<?>>(settings.clients());
+        for (int i = 0; i < settings.clients(); i++) {
+            var client = new LoadClient(codec, latencies, counters);
+            connecting.acquire();
+            connections.add(client.connect(httpClient, url)
+                    .whenComplete((ws, e) -> connecting.release())
+                    .thenRun(() -> {
+                        synchronized (clients) {
+                            clients.add(client);
+                        }
+                    })
+                    .exceptionally(e -> {
+                        counters.errors.incrementAndGet();
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(connections.toArray(new CompletableFuture<?>[0])).join();
+        return clients;
+    }
+
+    // Each client sends at an equal share of the target rate, starting at a random point in its first period so the
+    // requests are spread out instead of arriving in bursts
+    private void startRequests(ScheduledExecutorService scheduler, List<LoadClient> clients) {
+        if (clients.isEmpty()) {
+            return;
+        }
+        long periodNanos = Math.max(1, (long) (clients.size() * 1e9 / settings.rate()));
+        long start = System.nanoTime();
+        for (var client : clients) {
+            long offset = ThreadLocalRandom.current().nextLong(periodNanos);
+            scheduler.scheduleAtFixedRate(new Runnable() {
+                private long due = start + offset;
+
+                @Override
+                public void run() {
+                    client.send(nextRequest(), due);
+                    due += periodNanos;
+                }
+            }, offset, periodNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Map<String, Object> nextRequest() {
+        int type = requestTypes[ThreadLocalRandom.current().nextInt(requestTypes.length)];
+        return switch (type) {
+            case 1 -> Map.of("request", 1, "dice", 5);
+            case 2 -> Map.of("request", 2, "dice", 10_000);
+            default -> Map.of("request", type);
+        };
+    }
+
+    private LoadReport measure(URI url, List<LoadClient> clients, ScheduledExecutorService scheduler)
+            throws InterruptedException {
+        if (!settings.warmup().isZero()) {
+            out.printf("Warming up for %.1f s%n", settings.warmup().toMillis() / 1000.0);
+            Thread.sleep(settings.warmup().toMillis());
+        }
+        counters.reset();
+        latencies.reset();
+
+        var total = new Histogram(MAX_LATENCY_MICROS, 3);
+        Histogram interval = null;
+        long start = System.nanoTime();
+        long end = start + settings.duration().toNanos();
+        long lastReport = start;
+        long lastReceived = 0;
+        out.printf("Measuring for %.1f s%n", settings.duration().toMillis() / 1000.0);
+        while (System.nanoTime() < end) {
+            long wait = Math.min(settings.reportInterval().toNanos(), end - System.nanoTime());
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, wait));
+            long now = System.nanoTime();
+            interval = latencies.getIntervalHistogram(interval);
+            total.add(interval);
+            long received = counters.received.get();
+            out.printf("%6.1f s  %10.1f responses/s  %s%n", (now - start) / 1e9,
+                    (received - lastReceived) * 1e9 / (now - lastReport), LoadReport.Latency.of(interval));
+            lastReport = now;
+            lastReceived = received;
+        }
+        long elapsed = System.nanoTime() - start;
+        scheduler.shutdownNow();
+
+        // Give requests still in flight a moment to complete (they count towards the latencies, not the throughput)
+        long received = counters.received.get();
+        long sent = counters.sent.get();
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (clients.stream().anyMatch(c -> c.getInFlight() > 0) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        total.add(latencies.getIntervalHistogram(interval));
+        clients.forEach(LoadClient::close);
+
+        double seconds = elapsed / 1e9;
+        return new LoadReport(url.toString(), settings.protocol(), settings.execution(), clients.size(), seconds,
+                settings.rate(), sent, counters.received.get(), counters.pushed.get(), counters.errors.get(),
+                received / seconds, LoadReport.Latency.of(total));
+    }
+}
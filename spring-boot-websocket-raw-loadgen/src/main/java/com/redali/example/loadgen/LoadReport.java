@@ -0,0 +1,94 @@
+package com.redali.example.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.redali.example.service.ExecutionMode;
+import org.HdrHistogram.Histogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Results of a load run.
+ *
+ * @param url        Endpoint that was loaded.
+ * @param protocol   Sub-protocol the clients used.
+ * @param execution  Where the in process server processed requests (null if not chosen).
+ * @param clients    Number of clients that connected.
+ * @param seconds    Length of the measurement (seconds).
+ * @param targetRate Requests per second that were asked for.
+ * @param sent       Requests sent during the measurement.
+ * @param received   Responses received during the measurement.
+ * @param pushed     Server pushed messages (not responses) received during the measurement.
+ * @param errors     Connections or sends that failed.
+ * @param throughput Responses received per second.
+ * @param latency    Round trip times of the responses received.
+ */
+public record LoadReport(String url, String protocol, ExecutionMode execution, int clients, double seconds,
+                         double targetRate, long sent, long received, long pushed, long errors, double throughput,
+                         Latency latency) {
+
+    /**
+     * Round trip time percentiles (milliseconds). Measured from when each request was due to be sent, so a stalled
+     * client or server shows up in the results instead of just lowering the rate.
+     *
+     * @param p50  Median.
+     * @param p90  90th percentile.
+     * @param p99  99th percentile.
+     * @param p999 99.9th percentile.
+     * @param max  Slowest response.
+     * @param mean Average.
+     */
+    public record Latency(double p50, double p90, double p99, double p999, double max, double mean) {
+
+        /**
+         * Summarize a histogram of latencies recorded in microseconds.
+         *
+         * @param histogram Latencies (microseconds).
+         * @return Percentiles in milliseconds.
+         */
+        static Latency of(@NotNull Histogram histogram) {
+            return new Latency(millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()), histogram.getMean() / 1000.0);
+        }
+
+        private static double millis(long micros) {
+            return micros / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms", p50, p90, p99,
+                    p999, max);
+        }
+    }
+
+    /**
+     * Format results for people.
+     *
+     * @return Multi-line summary.
+     */
+    public String toText() {
+        return String.format("""
+                Endpoint:   %s (%s%s)
+                Clients:    %d
+                Duration:   %.1f s
+                Requests:   %d sent, %d responses, %d lost, %d server pushes, %d errors
+                Throughput: %.1f responses/s (target %.1f requests/s)
+                Latency:    %s
+                """, url, protocol, execution != null ? ", " + execution + " execution" : "", clients, seconds,
+                sent, received, Math.max(0, sent - received), pushed, errors, throughput, targetRate, latency);
+    }
+
+    /**
+     * Write results as JSON.
+     *
+     * @param path File to write.
+     * @throws IOException If the file could not be written.
+     */
+    public void writeJson(@NotNull Path path) throws IOException {
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(path.toFile(), this);
+    }
+}
@@ -0,0 +1,133 @@
+package com.redali.example.loadgen;
+
+import com.redali.example.codec.MessageCodec;
+import com.redali.example.service.ExecutionMode;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What load to generate, parsed from the command line.
+ *
+ * @param url            WebSocket endpoint to load (null to start the server in process and load that).
+ * @param clients        Number of concurrent client connections.
+ * @param rate           Target number of requests per second across all clients.
+ * @param duration       How long to measure for (after the warm up).
+ * @param warmup         How long to send requests before starting to measure.
+ * @param mix            Relative weight of each request type to send (request type ID to weight).
+ * @param protocol       Sub-protocol the clients ask for ("json" or "cbor").
+ * @param reportInterval How often to print progress while running.
+ * @param jsonReport     File to also write the final results to as JSON (null for none).
+ * @param execution      Where the in process server processes requests (null for its configured default, can not
+ *                       be used with a url).
+ */
+public record LoadSettings(URI url, int clients, double rate, Duration duration, Duration warmup,
+                           Map<Integer, Integer> mix, String protocol, Duration reportInterval, Path jsonReport,
+                           ExecutionMode execution) {
+
+    /**
+     * Settings used for anything not given on the command line.
+     */
+    public static final LoadSettings DEFAULTS = new LoadSettings(null, 1000, 5000, Duration.ofSeconds(30),
+            Duration.ofSeconds(5), Map.of(0, 1, 1, 8, 2, 1), MessageCodec.JSON_PROTOCOL, Duration.ofSeconds(5), null, null);
+
+    static final String USAGE = """
+            Usage: java -jar spring-boot-websocket-raw-loadgen.jar [--option=value ...]
+              --url=ws://host:port/path  Endpoint to load (default: start the server in process)
+              --clients=N                Concurrent client connections (default: 1000)
+              --rate=N                   Requests per second across all clients (default: 5000)
+              --duration=SECONDS         Time to measure for (default: 30)
+              --warmup=SECONDS           Time to send requests before measuring (default: 5)
+              --mix=TYPE:WEIGHT,...      Request types to send and their weights (default: 0:1,1:8,2:1)
+              --protocol=json|cbor       WebSocket sub-protocol (default: json)
+              --interval=SECONDS         Progress report interval (default: 5)
+              --json=FILE                Also write the final results as JSON to FILE
+              --execution=MODE           Where the in process server processes requests: INLINE, POOL or VIRTUAL
+                                         (default: as configured in its application.yml)
+            """;
+
+    public LoadSettings {
+        if (clients < 1 || rate <= 0 || duration.isNegative() || duration.isZero() || warmup.isNegative()
+                || reportInterval.isNegative() || reportInterval.isZero()) {
+            throw new IllegalArgumentException("Clients, rate, duration and interval must be positive");
+        }
+        if (mix.isEmpty() || mix.values().stream().anyMatch(weight -> weight < 0)
+                || mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("Request mix needs at least one request type with a positive weight");
+        }
+        if (!MessageCodec.JSON_PROTOCOL.equals(protocol) && !MessageCodec.CBOR_PROTOCOL.equals(protocol)) {
+            throw new IllegalArgumentException("Protocol must be " + MessageCodec.JSON_PROTOCOL + " or "
+                    + MessageCodec.CBOR_PROTOCOL);
+        }
+        if (url != null && execution != null) {
+            throw new IllegalArgumentException("Execution mode can only be chosen for the in process server");
+        }
+        mix = Map.copyOf(mix);
+    }
+
+    /**
+     * Parse settings from command line arguments in the form --name=value.
+     *
+     * @param args Command line arguments.
+     * @return Settings (defaults for anything not given).
+     * @throws IllegalArgumentException If an argument is not recognized or has a bad value.
+     */
+    public static LoadSettings parse(@NotNull String... args) {
+        var s = DEFAULTS;
+        URI url = s.url();
+        int clients = s.clients();
+        double rate = s.rate();
+        Duration duration = s.duration();
+        Duration warmup = s.warmup();
+        Map<Integer, Integer> mix = s.mix();
+        String protocol = s.protocol();
+        Duration interval = s.reportInterval();
+        Path json = s.jsonReport();
+        ExecutionMode execution = s.execution();
+        for (var arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            var value = arg.substring(equals + 1);
+            try {
+                switch (arg.substring(2, equals)) {
+                    case "url" -> url = URI.create(value);
+                    case "clients" -> clients = Integer.parseInt(value);
+                    case "rate" -> rate = Double.parseDouble(value);
+                    case "duration" -> duration = seconds(value);
+                    case "warmup" -> warmup = seconds(value);
+                    case "mix" -> mix = parseMix(value);
+                    case "protocol" -> protocol = value;
+                    case "interval" -> interval = seconds(value);
+                    case "json" -> json = Path.of(value);
+                    case "execution" -> execution = ExecutionMode.valueOf(value.toUpperCase());
+                    default -> throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad number in: " + arg, e);
+            }
+        }
+        return new LoadSettings(url, clients, rate, duration, warmup, mix, protocol, interval, json, execution);
+    }
+
+    private static Duration seconds(String value) {
+        return Duration.ofMillis(Math.round(Double.parseDouble(value) * 1000));
+    }
+
+    private static Map<Integer, Integer> parseMix(String value) {
+        var mix = new LinkedHashMap<Integer, Integer>();
+        for (var entry : value.split(",")) {
+            var parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected TYPE:WEIGHT in mix but got: " + entry);
+            }
+            mix.put(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,75 @@
+package com.redali.example.loadgen;
+
+import com.redali.example.service.ExecutionMode;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * What journal to replay and how fast, parsed from the command line.
+ *
+ * @param journal   Directory of the request journal to replay.
+ * @param url       WebSocket endpoint to replay against (null to start the server in process and replay to that).
+ * @param speed     How much faster than recorded to send the frames (1 for the original pace, 0 for as fast as
+ *                  possible).
+ * @param execution Where the in process server processes requests (null for its configured default, can not be used
+ *                  with a url).
+ */
+public record ReplaySettings(@NotNull Path journal, URI url, double speed, ExecutionMode execution) {
+
+    static final String USAGE = """
+            Usage: java -cp spring-boot-websocket-raw-loadgen.jar -Dloader.main=com.redali.example.loadgen.JournalReplay \\
+                     org.springframework.boot.loader.launch.PropertiesLauncher --journal=DIR [--option=value ...]
+              --journal=DIR              Directory of the request journal to replay (required)
+              --url=ws://host:port/path  Endpoint to replay against (default: start the server in process)
+              --speed=FACTOR             How much faster than recorded to send, 0 for as fast as possible (default: 1)
+              --execution=MODE           Where the in process server processes requests: INLINE, POOL or VIRTUAL
+                                         (default: as configured in its application.yml)
+            """;
+
+    public ReplaySettings {
+        if (speed < 0 || Double.isNaN(speed)) {
+            throw new IllegalArgumentException("Speed must not be negative");
+        }
+        if (url != null && execution != null) {
+            throw new IllegalArgumentException("Execution mode can only be chosen for the in process server");
+        }
+    }
+
+    /**
+     * Parse settings from command line arguments in the form --name=value.
+     *
+     * @param args Command line arguments.
+     * @return Settings (defaults for anything not given).
+     * @throws IllegalArgumentException If an argument is not recognized, has a bad value or the journal is missing.
+     */
+    public static ReplaySettings parse(@NotNull String... args) {
+        Path journal = null;
+        URI url = null;
+        double speed = 1;
+        ExecutionMode execution = null;
+        for (var arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            var value = arg.substring(equals + 1);
+            try {
+                switch (arg.substring(2, equals)) {
+                    case "journal" -> journal = Path.of(value);
+                    case "url" -> url = URI.create(value);
+                    case "speed" -> speed = Double.parseDouble(value);
+                    case "execution" -> execution = ExecutionMode.valueOf(value.toUpperCase());
+                    default -> throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad number in: " + arg, e);
+            }
+        }
+        if (journal == null) {
+            throw new IllegalArgumentException("The journal to replay must be given with --journal=DIR");
+        }
+        return new ReplaySettings(journal, url, speed, execution);
+    }
+}
@@ -0,0 +1,69 @@
+package com.redali.example.loadgen;
+
+import com.redali.example.codec.ClientCodec;
+import com.redali.example.journal.JournalSettings;
+import com.redali.example.journal.RequestJournal;
+import com.redali.example.metrics.WebSocketMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JournalReplayTest {
+
+    @Test
+    void testParseSettings() {
+        var settings = ReplaySettings.parse("--journal=recorded", "--speed=10", "--execution=virtual");
+        assertThat(settings.journal()).isEqualTo(Path.of("recorded"));
+        assertThat(settings.url()).isNull();
+        assertThat(settings.speed()).isEqualTo(10);
+
+        for (var bad : new String[]{"--speed=2", "--journal=x --speed=-1", "--journal", "--nope=1"}) {
+            assertThatThrownBy(() -> ReplaySettings.parse(bad.split(" "))).as(bad)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void testEmbeddedReplay(@TempDir Path dir) throws Exception {
+        var json = session("json-client");
+        var cbor = session("cbor-client");
+        try (var journal = new RequestJournal(new JournalSettings(true, dir, 65536, 100),
+                WebSocketMetrics.disabled())) {
+            for (int cid = 0; cid < 5; cid++) {
+                journal.append(json, 1, new TextMessage(new String(ClientCodec.json()
+                        .encodeRequest(Map.of("request", 1, "dice", 3, "cid", cid)), StandardCharsets.UTF_8)));
+                journal.append(cbor, 0, new BinaryMessage(ClientCodec.cbor()
+                        .encodeRequest(Map.of("request", 0, "cid", cid))));
+            }
+        }
+
+        var output = new ByteArrayOutputStream();
+        var result = new JournalReplay(ReplaySettings.parse("--journal=" + dir, "--speed=0"),
+                new PrintStream(output, true, StandardCharsets.UTF_8)).run();
+        assertThat(result.sessions()).isEqualTo(2);
+        assertThat(result.frames()).isEqualTo(10);
+        assertThat(result.received()).isGreaterThanOrEqualTo(10);
+        assertThat(result.errors()).isZero();
+        assertThat(output.toString(StandardCharsets.UTF_8)).contains("Replaying " + dir);
+        assertThat(result.toText()).contains("Send lag:");
+    }
+
+    private static WebSocketSession session(String id) {
+        var session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        return session;
+    }
+}
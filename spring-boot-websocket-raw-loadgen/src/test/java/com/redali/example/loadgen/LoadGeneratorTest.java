@@ -0,0 +1,66 @@
+package com.redali.example.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.redali.example.service.ExecutionMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoadGeneratorTest {
+
+    @Test
+    void testParseSettings() {
+        var settings = LoadSettings.parse("--clients=20", "--rate=150.5", "--duration=2.5", "--warmup=0",
+                "--mix=1:3, 2:1", "--protocol=cbor", "--json=out.json", "--execution=pool");
+        assertThat(settings.url()).isNull();
+        assertThat(settings.clients()).isEqualTo(20);
+        assertThat(settings.rate()).isEqualTo(150.5);
+        assertThat(settings.duration()).isEqualTo(Duration.ofMillis(2500));
+        assertThat(settings.warmup()).isZero();
+        assertThat(settings.mix()).isEqualTo(Map.of(1, 3, 2, 1));
+        assertThat(settings.protocol()).isEqualTo("cbor");
+        assertThat(settings.jsonReport()).isEqualTo(Path.of("out.json"));
+        assertThat(settings.execution()).isEqualTo(ExecutionMode.POOL);
+        assertThat(LoadSettings.parse()).isEqualTo(LoadSettings.DEFAULTS);
+
+        for (var bad : new String[]{"--clients", "--clients=0", "--mix=1", "--mix=1:0", "--protocol=xml", "--nope=1",
+                "--rate=fast", "--execution=green"}) {
+            assertThatThrownBy(() -> LoadSettings.parse(bad)).as(bad).isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThatThrownBy(() -> LoadSettings.parse("--url=ws://localhost:8080/", "--execution=INLINE"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testEmbeddedRun(@TempDir Path dir) throws Exception {
+        var settings = LoadSettings.parse("--clients=20", "--rate=400", "--duration=2", "--warmup=0.5",
+                "--interval=1", "--mix=0:1,1:4,2:1", "--execution=POOL");
+        var output = new ByteArrayOutputStream();
+        var report = new LoadGenerator(settings, new PrintStream(output, true, StandardCharsets.UTF_8)).run();
+
+        assertThat(report.clients()).isEqualTo(20);
+        assertThat(report.errors()).isZero();
+        assertThat(report.sent()).isPositive();
+        assertThat(report.received()).isPositive();
+        assertThat(report.throughput()).isPositive();
+        assertThat(report.latency().p50()).isLessThanOrEqualTo(report.latency().p99());
+        assertThat(report.latency().p99()).isLessThanOrEqualTo(report.latency().max());
+        assertThat(output.toString(StandardCharsets.UTF_8)).contains("Connected 20 of 20 clients");
+        assertThat(report.toText()).contains("Latency:", "p99.9");
+
+        var json = dir.resolve("report.json");
+        report.writeJson(json);
+        var tree = new ObjectMapper().readTree(json.toFile());
+        assertThat(tree.get("received").longValue()).isEqualTo(report.received());
+        assertThat(tree.get("latency").has("p999")).isTrue();
+    }
+}
@@ -60,7 +60,17 @@ class ExampleClient {
         if (content) {
             const id = parts["id"];
             if (id === 200) {
+                // Whole health report
+                this.health = content;
                 this.status.value = content["sessionCount"] + " client(s)";
+            } else if (id === 201) {
+                // Changes to the health report, only if we have the one they are based on (otherwise wait for the
+                // next whole report)
+                if (this.health && this.health["version"] === content["base"]) {
+                    this.health = Object.assign(this.health, content);
+                    delete this.health["base"];
+                    this.status.value = this.health["sessionCount"] + " client(s)";
+                }
             } else if (id === 1) {
                 this.die.value = content["rolls"][0];
             }
@@ -0,0 +1,61 @@
+package com.redali.example.cluster;
+
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Relays server pushed messages between the nodes of a cluster and keeps track of how many sessions each node has.
+ *
+ * <p>Each node only knows the WebSocket sessions connected to it. A broker passes broadcasts and topic publishes on
+ * to the other nodes so they reach every client, no matter which node it is connected to. Messages received from
+ * other nodes are only handed to the local {@link ClusterListener}, never relayed again.</p>
+ */
+public interface ClusterBroker extends AutoCloseable {
+
+    /**
+     * Start relaying messages.
+     *
+     * @param listener          Receives messages relayed by other nodes.
+     * @param localSessionCount Number of sessions connected to this node (advertised to the other nodes).
+     */
+    void start(@NotNull ClusterListener listener, @NotNull IntSupplier localSessionCount);
+
+    /**
+     * Relay a broadcast to the other nodes (does not block).
+     *
+     * @param id      ID to indicate type of message.
+     * @param content Content of the message (null if none).
+     */
+    void relayBroadcast(int id, JSONObject content);
+
+    /**
+     * Relay a topic publish to the other nodes (does not block).
+     *
+     * @param topic   Name of the topic.
+     * @param id      ID to indicate type of message.
+     * @param content Content of the message (null if none).
+     */
+    void relayPublish(@NotNull String topic, int id, JSONObject content);
+
+    /**
+     * Get the number of sessions connected to the other nodes (as last advertised by each node that is still up).
+     *
+     * @return Sessions on other nodes.
+     */
+    int getPeerSessionCount();
+
+    /**
+     * Get the ID this node is known by in the cluster.
+     *
+     * @return Node ID.
+     */
+    String getNodeId();
+
+    /**
+     * Stop relaying messages and release any connections.
+     */
+    @Override
+    void close();
+}
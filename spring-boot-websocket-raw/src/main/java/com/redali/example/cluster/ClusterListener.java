@@ -0,0 +1,28 @@
+package com.redali.example.cluster;
+
+import org.json.JSONObject;
+
+/**
+ * Receives the messages other nodes relay through a {@link ClusterBroker}, to be sent to the clients of this node.
+ *
+ * <p>Called on the broker's threads, implementations must not block.</p>
+ */
+public interface ClusterListener {
+
+    /**
+     * A message was broadcast on another node.
+     *
+     * @param id      ID to indicate type of message.
+     * @param content Content of the message (null if none).
+     */
+    void onBroadcast(int id, JSONObject content);
+
+    /**
+     * A message was published to a topic on another node.
+     *
+     * @param topic   Name of the topic.
+     * @param id      ID to indicate type of message.
+     * @param content Content of the message (null if none).
+     */
+    void onPublish(String topic, int id, JSONObject content);
+}
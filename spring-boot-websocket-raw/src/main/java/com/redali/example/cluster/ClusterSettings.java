@@ -0,0 +1,62 @@
+package com.redali.example.cluster;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * How this node joins a cluster.
+ *
+ * @param transport           How nodes talk to each other.
+ * @param nodeId              ID of this node (must be unique in the cluster).
+ * @param bindAddress         Address to listen for other nodes on.
+ * @param port                Port to listen for other nodes on (0 to pick any free port).
+ * @param peers               The other nodes to relay to ("host:port").
+ * @param countIntervalMillis How often (milliseconds) the session count is sent to the other nodes. A node that has
+ *                            not been heard from for three intervals no longer counts.
+ * @param queueSize           Maximum number of messages waiting to be relayed to a node (more are dropped).
+ */
+public record ClusterSettings(ClusterTransport transport, String nodeId, String bindAddress, int port,
+                              List<String> peers, int countIntervalMillis, int queueSize) {
+
+    /**
+     * Settings used when nothing is configured (a single node, with a random ID picked once per run).
+     */
+    public static final ClusterSettings DEFAULTS = new ClusterSettings(ClusterTransport.NONE,
+            UUID.randomUUID().toString(), "localhost", 9100, List.of(), 1000, 10_000);
+
+    public ClusterSettings {
+        if (transport == null || nodeId == null || nodeId.isEmpty() || bindAddress == null || peers == null) {
+            throw new IllegalArgumentException("Cluster transport, node ID, bind address and peers are required");
+        }
+        if (port < 0 || port > 0xffff) {
+            throw new IllegalArgumentException("Cluster port must be in the range [0, 65535]");
+        }
+        if (countIntervalMillis < 1 || queueSize < 1) {
+            throw new IllegalArgumentException("Cluster count interval and queue size must be positive");
+        }
+        peers = List.copyOf(peers);
+    }
+
+    /**
+     * Create the broker for these settings.
+     *
+     * @return Broker (not started yet).
+     */
+    public ClusterBroker createBroker() {
+        return switch (transport) {
+            case NONE -> new SingleNodeBroker(nodeId);
+            case TCP -> new TcpClusterBroker(this);
+        };
+    }
+
+    /**
+     * Parse the other nodes from a string like "host:port,host:port".
+     *
+     * @param peers Nodes separated by commas (may be empty).
+     * @return Nodes ("host:port").
+     */
+    public static List<String> parsePeers(String peers) {
+        return Arrays.stream(peers.split(",")).map(String::trim).filter(peer -> !peer.isEmpty()).toList();
+    }
+}
@@ -0,0 +1,16 @@
+package com.redali.example.cluster;
+
+/**
+ * How nodes of a cluster talk to each other.
+ */
+public enum ClusterTransport {
+    /**
+     * Not clustered, broadcasts and publishes stay on this node.
+     */
+    NONE,
+
+    /**
+     * TCP connections between every pair of nodes (all nodes can run on one machine using different ports).
+     */
+    TCP
+}
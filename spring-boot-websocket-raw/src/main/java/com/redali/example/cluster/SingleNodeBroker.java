@@ -0,0 +1,47 @@
+package com.redali.example.cluster;
+
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Broker for a node running on its own, there is no one to relay to.
+ */
+public class SingleNodeBroker implements ClusterBroker {
+    private final String nodeId;
+
+    public SingleNodeBroker() {
+        this("standalone");
+    }
+
+    public SingleNodeBroker(@NotNull String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public void start(@NotNull ClusterListener listener, @NotNull IntSupplier localSessionCount) {
+    }
+
+    @Override
+    public void relayBroadcast(int id, JSONObject content) {
+    }
+
+    @Override
+    public void relayPublish(@NotNull String topic, int id, JSONObject content) {
+    }
+
+    @Override
+    public int getPeerSessionCount() {
+        return 0;
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,386 @@
+package com.redali.example.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Broker that relays messages to the other nodes over TCP.
+ *
+ * <p>Every node listens for the other nodes on its own port and opens one connection to each of its peers, which is
+ * only ever written to (messages from a peer arrive on the connection it opened). All the nodes can run on a single
+ * machine by giving each one a different port, which is handy for trying out or testing a cluster.</p>
+ *
+ * <p>A message is encoded once into a compact binary event and queued for every peer. Each peer has a writer thread
+ * that sends everything waiting in its queue as a single frame, so under load many events share one write. A frame is
+ * its length followed by the events:</p>
+ *
+ * <pre>
+ * frame:     int length, event...
+ * count:     byte 1, UTF node ID, int sessions
+ * broadcast: byte 2, int id, content
+ * publish:   byte 3, UTF topic, int id, content
+ * content:   int length (-1 for none), UTF-8 JSON
+ * </pre>
+ *
+ * <p>Connections that fail are retried every second. Messages relayed while a peer is down wait in its bounded queue,
+ * once the queue is full they are dropped.</p>
+ */
+@Slf4j
+public class TcpClusterBroker implements ClusterBroker {
+    private static final byte COUNT = 1;
+    private static final byte BROADCAST = 2;
+    private static final byte PUBLISH = 3;
+    private static final int MAX_BATCH = 256;
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    private record PeerCount(int sessions, long seenNanos) {
+    }
+
+    private final ClusterSettings settings;
+    private final ConcurrentHashMap<InetSocketAddress, Peer> peers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PeerCount> peerCounts = new ConcurrentHashMap<>();
+    private final ExecutorService threads;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentHashMap.KeySetView<Socket, Boolean> sockets = ConcurrentHashMap.newKeySet();
+    private final long staleNanos;
+    private volatile ServerSocket server;
+    private volatile ClusterListener listener;
+    private volatile boolean closed;
+
+    /**
+     * Construct broker.
+     *
+     * @param settings Address to listen on, peers to connect to and limits.
+     */
+    public TcpClusterBroker(@NotNull ClusterSettings settings) {
+        this.settings = settings;
+        this.staleNanos = TimeUnit.MILLISECONDS.toNanos(3L * settings.countIntervalMillis());
+        var threadFactory = new CustomizableThreadFactory("cluster-");
+        threadFactory.setDaemon(true);
+        this.threads = Executors.newCachedThreadPool(threadFactory);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    @Override
+    public void start(@NotNull ClusterListener listener, @NotNull IntSupplier localSessionCount) {
+        this.listener = listener;
+        try {
+            server = new ServerSocket();
+            server.bind(new InetSocketAddress(settings.bindAddress(), settings.port()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to listen for cluster nodes on " + settings.bindAddress() + ":"
+                    + settings.port(), e);
+        }
+        log.info("Cluster node {} listening on {}", settings.nodeId(), server.getLocalSocketAddress());
+        threads.execute(this::accept);
+        for (var peer : settings.peers()) {
+            int colon = peer.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Expected host:port for cluster peer but got: " + peer);
+            }
+            addPeer(InetSocketAddress.createUnresolved(peer.substring(0, colon).trim(),
+                    Integer.parseInt(peer.substring(colon + 1).trim())));
+        }
+        scheduler.scheduleAtFixedRate(() -> sendToAll(encodeCount(localSessionCount.getAsInt())), 0,
+                settings.countIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start relaying to another node (in addition to the configured peers).
+     *
+     * @param address Address the other node listens on.
+     */
+    public void addPeer(@NotNull InetSocketAddress address) {
+        peers.computeIfAbsent(address, key -> {
+            var peer = new Peer(key);
+            threads.execute(peer::run);
+            return peer;
+        });
+    }
+
+    /**
+     * Get the port this node listens for other nodes on (useful when configured to pick any free port).
+     *
+     * @return Port number or -1 if not started.
+     */
+    public int getPort() {
+        var socket = server;
+        return socket != null ? socket.getLocalPort() : -1;
+    }
+
+    @Override
+    public void relayBroadcast(int id, JSONObject content) {
+        sendToAll(encode(BROADCAST, null, id, content));
+    }
+
+    @Override
+    public void relayPublish(@NotNull String topic, int id, JSONObject content) {
+        sendToAll(encode(PUBLISH, topic, id, content));
+    }
+
+    @Override
+    public int getPeerSessionCount() {
+        long now = System.nanoTime();
+        int sessions = 0;
+        for (var count : peerCounts.values()) {
+            if (now - count.seenNanos() < staleNanos) {
+                sessions += count.sessions();
+            }
+        }
+        return sessions;
+    }
+
+    @Override
+    public String getNodeId() {
+        return settings.nodeId();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        threads.shutdownNow();
+        closeQuietly(server);
+        for (var socket : sockets) {
+            closeQuietly(socket);
+        }
+    }
+
+    private void sendToAll(byte[] event) {
+        // The other nodes drop the connection on a frame this big, rather lose the one message
+        if (event.length > MAX_FRAME_BYTES) {
+            log.error("Dropping {} byte message, too big to relay to the cluster (limit {} bytes)", event.length,
+                    MAX_FRAME_BYTES);
+            return;
+        }
+        for (var peer : peers.values()) {
+            peer.offer(event);
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                var socket = server.accept();
+                sockets.add(socket);
+                threads.execute(() -> read(socket));
+            } catch (IOException e) {
+                if (!closed) {
+                    log.error("Failed to accept connection from cluster node: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void read(Socket socket) {
+        try (socket; var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (!closed) {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_FRAME_BYTES) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                var frame = new byte[length];
+                in.readFully(frame);
+                dispatch(frame);
+            }
+        } catch (EOFException e) {
+            log.debug("Cluster node {} disconnected", socket.getRemoteSocketAddress());
+        } catch (IOException e) {
+            if (!closed) {
+                log.error("Dropping connection from cluster node {}: {}", socket.getRemoteSocketAddress(),
+                        e.getMessage());
+            }
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    private void dispatch(byte[] frame) throws IOException {
+        var in = new DataInputStream(new ByteArrayInputStream(frame));
+        while (in.available() > 0) {
+            byte type = in.readByte();
+            switch (type) {
+                case COUNT -> {
+                    var nodeId = in.readUTF();
+                    int sessions = in.readInt();
+                    if (!nodeId.equals(settings.nodeId())) {
+                        peerCounts.put(nodeId, new PeerCount(sessions, System.nanoTime()));
+                    }
+                }
+                case BROADCAST -> {
+                    int id = in.readInt();
+                    var content = readContent(in);
+                    deliver(() -> listener.onBroadcast(id, content));
+                }
+                case PUBLISH -> {
+                    var topic = in.readUTF();
+                    int id = in.readInt();
+                    var content = readContent(in);
+                    deliver(() -> listener.onPublish(topic, id, content));
+                }
+                default -> throw new IOException("Unknown cluster event type " + type);
+            }
+        }
+    }
+
+    // A listener failure must not drop the connection (and every message after it)
+    private static void deliver(Runnable delivery) {
+        try {
+            delivery.run();
+        } catch (RuntimeException e) {
+            log.error("Failed to deliver message relayed from cluster node", e);
+        }
+    }
+
+    private byte[] encodeCount(int sessions) {
+        var bytes = new ByteArrayOutputStream(32);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(COUNT);
+            out.writeUTF(settings.nodeId());
+            out.writeInt(sessions);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode cluster event", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encode(byte type, String topic, int id, JSONObject content) {
+        var json = content != null ? content.toString().getBytes(StandardCharsets.UTF_8) : null;
+        var bytes = new ByteArrayOutputStream(16 + (json != null ? json.length : 0));
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            if (topic != null) {
+                out.writeUTF(topic);
+            }
+            out.writeInt(id);
+            out.writeInt(json != null ? json.length : -1);
+            if (json != null) {
+                out.write(json);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode cluster event", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static JSONObject readContent(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        var json = new byte[length];
+        in.readFully(json);
+        return new JSONObject(new String(json, StandardCharsets.UTF_8));
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.debug("Failed to close cluster connection: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Connection to another node and the events waiting to be written to it
+    private class Peer {
+        private final InetSocketAddress address;
+        private final ArrayBlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(settings.queueSize());
+
+        Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        void offer(byte[] event) {
+            if (!queue.offer(event)) {
+                log.debug("Relay queue for cluster node {} is full, dropping message", address);
+            }
+        }
+
+        void run() {
+            var batch = new ArrayList<byte[]>(MAX_BATCH);
+            while (!closed) {
+                var socket = new Socket();
+                sockets.add(socket);
+                try (socket) {
+                    socket.connect(new InetSocketAddress(address.getHostString(), address.getPort()),
+                            CONNECT_TIMEOUT_MILLIS);
+                    socket.setTcpNoDelay(true);
+                    log.info("Connected to cluster node {}", address);
+                    var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+                    while (!closed) {
+                        // Whatever piled up while the last frame was written goes out together, as long as it fits
+                        var first = queue.take();
+                        batch.add(first);
+                        int length = first.length;
+                        for (var next = queue.peek(); next != null && batch.size() < MAX_BATCH
+                                && length + next.length <= MAX_FRAME_BYTES; next = queue.peek()) {
+                            batch.add(queue.poll());
+                            length += next.length;
+                        }
+                        out.writeInt(length);
+                        for (var event : batch) {
+                            out.write(event);
+                        }
+                        out.flush();
+                        batch.clear();
+                    }
+                } catch (IOException e) {
+                    if (!closed) {
+                        log.debug("Connection to cluster node {} failed: {}", address, e.getMessage());
+                    }
+                    if (!batch.isEmpty()) {
+                        // The node may have got some of it, sending it again could deliver messages twice
+                        log.warn("Dropped {} messages being relayed to cluster node {} when the connection failed",
+                                batch.size(), address);
+                        batch.clear();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    sockets.remove(socket);
+                }
+                if (!closed && !sleep(RECONNECT_DELAY_MILLIS)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.redali.example.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.RequestFrame;
+import com.redali.example.message.ServerMessage;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Codec for the compact binary (CBOR) form of our messages.
+ *
+ * <p>The messages have exactly the same structure as the JSON ones ({ "request": 1, "dice": 5 } in and
+ * { "id": 1, "content": { } } out), they are just encoded as CBOR maps in binary WebSocket frames. Requests are read
+ * and responses written with the same streaming code as the JSON codec, responses go through a reusable per thread
+ * {@link CborMessageWriter}.</p>
+ */
+public class CborCodec implements MessageCodec {
+    // Don't hang on to buffers that grew large because of an unusually big message
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final CBORFactory factory = new CBORFactory();
+    private final ThreadLocal<CborMessageWriter> writers = ThreadLocal.withInitial(CborMessageWriter::new);
+
+    @Override
+    public ClientRequest decode(@NotNull WebSocketMessage<?> message) throws JSONException {
+        try (var parser = createParser(message)) {
+            return StreamingMessages.readRequest(parser);
+        } catch (IOException e) {
+            throw new JSONException("Unable to parse request: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public RequestFrame decodeFrame(@NotNull WebSocketMessage<?> message, int maxRequests) throws JSONException {
+        try (var parser = createParser(message)) {
+            return StreamingMessages.readFrame(parser, maxRequests);
+        } catch (IOException e) {
+            throw new JSONException("Unable to parse request: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public BinaryMessage encode(@NotNull ServerMessage message) {
+        var writer = writer();
+        StreamingMessages.writeMessage(writer, message);
+        return finish(writer);
+    }
+
+    @Override
+    public BinaryMessage encodeBatch(@NotNull List<ServerMessage> messages) {
+        var writer = writer();
+        StreamingMessages.writeBatch(writer, messages);
+        return finish(writer);
+    }
+
+    @Override
+    public String getSubProtocol() {
+        return CBOR_PROTOCOL;
+    }
+
+    private JsonParser createParser(WebSocketMessage<?> message) throws IOException {
+        if (!(message instanceof BinaryMessage binary)) {
+            throw new JSONException("Expected a binary message");
+        }
+        var payload = binary.getPayload();
+        return payload.hasArray()
+                ? factory.createParser(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining())
+                : factory.createParser(toArray(payload));
+    }
+
+    private CborMessageWriter writer() {
+        var writer = writers.get();
+        writer.reset();
+        return writer;
+    }
+
+    private BinaryMessage finish(CborMessageWriter writer) {
+        var bytes = writer.toBytes();
+        if (writer.capacity() > MAX_RETAINED_BUFFER) {
+            writers.remove();
+        }
+        return new BinaryMessage(bytes);
+    }
+
+    private static byte[] toArray(ByteBuffer payload) {
+        var bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,261 @@
+package com.redali.example.codec;
+
+import com.redali.example.message.MessageWriter;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Writes messages as CBOR into a reusable buffer.
+ *
+ * <p>Encodes the same way a Jackson CBOR generator with its default settings does: objects and arrays of unknown size
+ * are indefinite length, integers take the fewest bytes and floating point numbers are written as doubles. Not thread
+ * safe, each thread uses its own writer.</p>
+ */
+final class CborMessageWriter implements MessageWriter {
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_TAG = 6;
+    private static final int START_MAP = 0xBF;
+    private static final int START_ARRAY = 0x9F;
+    private static final int BREAK = 0xFF;
+    private static final int FALSE = 0xF4;
+    private static final int TRUE = 0xF5;
+    private static final int NULL = 0xF6;
+    private static final int FLOAT64 = 0xFB;
+    private static final int TAG_POSITIVE_BIGNUM = 2;
+    private static final int TAG_NEGATIVE_BIGNUM = 3;
+    private static final int TAG_DECIMAL_FRACTION = 4;
+
+    private byte[] out = new byte[256];
+    private int length;
+
+    /**
+     * Start a new message, anything written before is discarded.
+     */
+    void reset() {
+        length = 0;
+    }
+
+    /**
+     * Get the size of the buffer.
+     *
+     * @return Number of bytes the buffer can hold without growing.
+     */
+    int capacity() {
+        return out.length;
+    }
+
+    /**
+     * Get what was written since the last reset.
+     *
+     * @return Copy of the CBOR bytes.
+     */
+    byte[] toBytes() {
+        return Arrays.copyOf(out, length);
+    }
+
+    @Override
+    public MessageWriter startObject() {
+        writeByte(START_MAP);
+        return this;
+    }
+
+    @Override
+    public MessageWriter endObject() {
+        writeByte(BREAK);
+        return this;
+    }
+
+    @Override
+    public MessageWriter startArray() {
+        writeByte(START_ARRAY);
+        return this;
+    }
+
+    @Override
+    public MessageWriter endArray() {
+        writeByte(BREAK);
+        return this;
+    }
+
+    @Override
+    public MessageWriter name(@NotNull String name) {
+        writeString(name);
+        return this;
+    }
+
+    @Override
+    public MessageWriter value(int value) {
+        return value((long) value);
+    }
+
+    @Override
+    public MessageWriter value(long value) {
+        if (value >= 0) {
+            writeHeader(MAJOR_UNSIGNED, value);
+        } else {
+            writeHeader(MAJOR_NEGATIVE, -1 - value);
+        }
+        return this;
+    }
+
+    @Override
+    public MessageWriter value(double value) {
+        ensure(9);
+        out[length++] = (byte) FLOAT64;
+        writeLong(Double.doubleToLongBits(value));
+        return this;
+    }
+
+    @Override
+    public MessageWriter value(boolean value) {
+        writeByte(value ? TRUE : FALSE);
+        return this;
+    }
+
+    @Override
+    public MessageWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        writeString(value);
+        return this;
+    }
+
+    @Override
+    public MessageWriter value(@NotNull BigDecimal value) {
+        // Tagged [ exponent, mantissa ]
+        writeHeader(MAJOR_TAG, TAG_DECIMAL_FRACTION);
+        writeHeader(MAJOR_ARRAY, 2);
+        value(-value.scale());
+        var mantissa = value.unscaledValue();
+        if (mantissa.bitLength() < Long.SIZE) {
+            return value(mantissa.longValue());
+        }
+        // Too big for an integer, a bignum holds the magnitude (less one when negative) as bytes
+        var negative = mantissa.signum() < 0;
+        writeHeader(MAJOR_TAG, negative ? TAG_NEGATIVE_BIGNUM : TAG_POSITIVE_BIGNUM);
+        var magnitude = (negative ? mantissa.negate().subtract(BigInteger.ONE) : mantissa).toByteArray();
+        // toByteArray() is two's complement, a leading zero byte may only be there for the sign
+        int skip = magnitude[0] == 0 ? 1 : 0;
+        writeHeader(MAJOR_BYTES, magnitude.length - skip);
+        ensure(magnitude.length);
+        System.arraycopy(magnitude, skip, out, length, magnitude.length - skip);
+        length += magnitude.length - skip;
+        return this;
+    }
+
+    @Override
+    public MessageWriter nullValue() {
+        writeByte(NULL);
+        return this;
+    }
+
+    @Override
+    public MessageWriter value(@NotNull int[] values) {
+        // Definite length, the size is known up front
+        writeHeader(MAJOR_ARRAY, values.length);
+        for (int value : values) {
+            value(value);
+        }
+        return this;
+    }
+
+    @Override
+    public MessageWriter value(@NotNull long[] values) {
+        writeHeader(MAJOR_ARRAY, values.length);
+        for (long value : values) {
+            value(value);
+        }
+        return this;
+    }
+
+    // Major type in the top 3 bits, the argument in the rest or in the 1, 2, 4 or 8 bytes that follow
+    private void writeHeader(int major, long argument) {
+        ensure(9);
+        int type = major << 5;
+        if (argument < 24) {
+            out[length++] = (byte) (type | argument);
+        } else if (argument <= 0xFF) {
+            out[length++] = (byte) (type | 24);
+            out[length++] = (byte) argument;
+        } else if (argument <= 0xFFFF) {
+            out[length++] = (byte) (type | 25);
+            out[length++] = (byte) (argument >> 8);
+            out[length++] = (byte) argument;
+        } else if (argument <= 0xFFFFFFFFL) {
+            out[length++] = (byte) (type | 26);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                out[length++] = (byte) (argument >> shift);
+            }
+        } else {
+            out[length++] = (byte) (type | 27);
+            writeLong(argument);
+        }
+    }
+
+    private void writeLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out[length++] = (byte) (value >> shift);
+        }
+    }
+
+    private void writeByte(int value) {
+        ensure(1);
+        out[length++] = (byte) value;
+    }
+
+    // UTF-8 encoded straight into the buffer (unpaired surrogates become '?' like String.getBytes() does)
+    private void writeString(String value) {
+        int chars = value.length();
+        int bytes = 0;
+        for (int i = 0; i < chars; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < chars && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        writeHeader(MAJOR_TEXT, bytes);
+        ensure(bytes);
+        for (int i = 0; i < chars; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out[length++] = (byte) c;
+            } else if (c < 0x800) {
+                out[length++] = (byte) (0xC0 | c >> 6);
+                out[length++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < chars && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out[length++] = (byte) (0xF0 | codePoint >> 18);
+                out[length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                out[length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                out[length++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                out[length++] = '?';
+            } else {
+                out[length++] = (byte) (0xE0 | c >> 12);
+                out[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                out[length++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    private void ensure(int bytes) {
+        if (length + bytes > out.length) {
+            out = Arrays.copyOf(out, Math.max(out.length * 2, length + bytes));
+        }
+    }
+}
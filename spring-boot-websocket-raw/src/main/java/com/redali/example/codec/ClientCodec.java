@@ -0,0 +1,118 @@
+package com.redali.example.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client side of our message encodings, for Java clients (tests, load generators) talking to the server.
+ *
+ * <p>Requests are built as simple maps and messages from the server are returned as Jackson trees, so the same
+ * client code can run over either sub-protocol and compare the results.</p>
+ */
+public final class ClientCodec {
+    private final String subProtocol;
+    private final ObjectMapper mapper;
+    private final boolean binary;
+
+    private ClientCodec(String subProtocol, ObjectMapper mapper, boolean binary) {
+        this.subProtocol = subProtocol;
+        this.mapper = mapper;
+        this.binary = binary;
+    }
+
+    /**
+     * Create client codec for JSON text messages.
+     *
+     * @return New client codec.
+     */
+    public static ClientCodec json() {
+        return new ClientCodec(MessageCodec.JSON_PROTOCOL, new ObjectMapper(), false);
+    }
+
+    /**
+     * Create client codec for CBOR binary messages.
+     *
+     * @return New client codec.
+     */
+    public static ClientCodec cbor() {
+        return new ClientCodec(MessageCodec.CBOR_PROTOCOL, new ObjectMapper(new CBORFactory()), true);
+    }
+
+    /**
+     * Get the WebSocket sub-protocol to ask the server for.
+     *
+     * @return Sub-protocol name.
+     */
+    public String getSubProtocol() {
+        return subProtocol;
+    }
+
+    /**
+     * Check whether messages are sent in binary frames.
+     *
+     * @return true for binary frames, false for text frames.
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Encode a request like { "request": 1, "dice": 5 }.
+     *
+     * @param request Request attributes (must include "request").
+     * @return Encoded request (UTF-8 text for JSON).
+     */
+    public byte[] encodeRequest(@NotNull Map<String, ?> request) {
+        try {
+            return mapper.writeValueAsBytes(request);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encode a batch of requests to send in a single frame.
+     *
+     * @param requests Requests (each like the ones passed to {@link #encodeRequest(Map)}).
+     * @return Encoded batch (UTF-8 text for JSON).
+     */
+    public byte[] encodeBatch(@NotNull List<? extends Map<String, ?>> requests) {
+        try {
+            return mapper.writeValueAsBytes(requests);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decode a message received from the server.
+     *
+     * @param payload Bytes of the frame received (UTF-8 text for JSON).
+     * @return Message in the form { "id": 0, "content": { } }.
+     */
+    public JsonNode decodeMessage(@NotNull byte[] payload) {
+        try {
+            return mapper.readTree(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decode a JSON message received from the server as text.
+     *
+     * @param payload Text of the frame received.
+     * @return Message in the form { "id": 0, "content": { } }.
+     */
+    public JsonNode decodeMessage(@NotNull String payload) {
+        return decodeMessage(payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
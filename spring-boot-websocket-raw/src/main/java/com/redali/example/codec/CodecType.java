@@ -0,0 +1,33 @@
+package com.redali.example.codec;
+
+/**
+ * Available JSON message codecs (selected by "app.codec" in application.yml).
+ */
+public enum CodecType {
+    /**
+     * Jackson streaming parser/generator, no intermediate object tree is built.
+     */
+    STREAMING,
+
+    /**
+     * Builds a full org.json tree for every message (the original implementation, kept for comparison).
+     */
+    TREE;
+
+    /**
+     * Codec used when nothing is configured.
+     */
+    public static final CodecType DEFAULT = STREAMING;
+
+    /**
+     * Create a codec of this type.
+     *
+     * @return New codec instance.
+     */
+    public MessageCodec create() {
+        return switch (this) {
+            case STREAMING -> new JsonStreamingCodec();
+            case TREE -> new JsonTreeCodec();
+        };
+    }
+}
@@ -0,0 +1,190 @@
+package com.redali.example.codec;
+
+import com.redali.example.message.MessageWriter;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Writes messages as JSON text into a reusable buffer.
+ *
+ * <p>The output matches what a Jackson generator with its default settings writes (same number formats and string
+ * escapes), without creating a generator and its context for every message. Not thread safe, each thread uses its own
+ * writer.</p>
+ */
+final class JsonMessageWriter implements MessageWriter {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final StringBuilder out = new StringBuilder(256);
+    // Whether anything was written yet in the object or array at each depth (the next item needs a comma)
+    private boolean[] started = new boolean[16];
+    private int depth;
+    // A field name was just written, its value follows without a comma
+    private boolean afterName;
+
+    /**
+     * Start a new message, anything written before is discarded.
+     */
+    void reset() {
+        out.setLength(0);
+        depth = 0;
+        started[0] = false;
+        afterName = false;
+    }
+
+    /**
+     * Get the size of the buffer.
+     *
+     * @return Number of characters the buffer can hold without growing.
+     */
+    int capacity() {
+        return out.capacity();
+    }
+
+    /**
+     * Get what was written since the last reset.
+     *
+     * @return JSON text.
+     */
+    String toText() {
+        return out.toString();
+    }
+
+    @Override
+    public MessageWriter startObject() {
+        beforeValue();
+        out.append('{');
+        push();
+        return this;
+    }
+
+    @Override
+    public MessageWriter endObject() {
+        depth--;
+        out.append('}');
+        return this;
+    }
+
+    @Override
+    public MessageWriter startArray() {
+        beforeValue();
+        out.append('[');
+        push();
+        return this;
+    }
+
+    @Override
+    public MessageWriter endArray() {
+        depth--;
+        out.append(']');
+        return this;
+    }
+
+    @Override
+    public MessageWriter name(@NotNull String name) {
+        beforeValue();
+        writeString(name);
+        out.append(':');
+        afterName = true;
+        return this;
+    }
+
+    @Override
+    public MessageWriter value(int value) {
+        beforeValue();
+        out.append(value);
+        return this;
+    }
+
+    @Override
+    public MessageWriter value(long value) {
+        beforeValue();
+        out.append(value);
+        return this;
+    }
+
+    @Override
+    public MessageWriter value(double value) {
+        beforeValue();
+        if (Double.isFinite(value)) {
+            out.append(value);
+        } else {
+            // Not a JSON number, Jackson quotes them too
+            out.append('"').append(value).append('"');
+        }
+        return this;
+    }
+
+    @Override
+    public MessageWriter value(boolean value) {
+        beforeValue();
+        out.append(value);
+        return this;
+    }
+
+    @Override
+    public MessageWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    @Override
+    public MessageWriter value(@NotNull BigDecimal value) {
+        beforeValue();
+        out.append(value);
+        return this;
+    }
+
+    @Override
+    public MessageWriter nullValue() {
+        beforeValue();
+        out.append("null");
+        return this;
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+        } else if (started[depth]) {
+            out.append(',');
+        } else {
+            started[depth] = true;
+        }
+    }
+
+    private void push() {
+        if (++depth == started.length) {
+            started = Arrays.copyOf(started, depth * 2);
+        }
+        started[depth] = false;
+    }
+
+    // Quoted, with the characters JSON doesn't allow in strings escaped (runs of plain characters are copied at once)
+    private void writeString(String value) {
+        out.append('"');
+        int plain = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.append(value, plain, i).append('\\');
+            switch (c) {
+                case '"', '\\' -> out.append(c);
+                case '\b' -> out.append('b');
+                case '\f' -> out.append('f');
+                case '\n' -> out.append('n');
+                case '\r' -> out.append('r');
+                case '\t' -> out.append('t');
+                default -> out.append("u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+            plain = i + 1;
+        }
+        out.append(value, plain, value.length()).append('"');
+    }
+}
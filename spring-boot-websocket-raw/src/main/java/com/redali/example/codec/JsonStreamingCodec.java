@@ -0,0 +1,83 @@
+package com.redali.example.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.RequestFrame;
+import com.redali.example.message.ServerMessage;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Codec that reads requests field by field with a streaming parser and writes responses directly into a reusable
+ * per thread buffer (no intermediate object trees are built in either direction). Apart from the frame itself,
+ * writing a response allocates nothing.
+ */
+public class JsonStreamingCodec implements MessageCodec {
+    // Don't hang on to buffers that grew large because of an unusually big message
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final JsonFactory factory = new JsonFactory();
+    private final ThreadLocal<JsonMessageWriter> writers = ThreadLocal.withInitial(JsonMessageWriter::new);
+
+    @Override
+    public ClientRequest decode(@NotNull WebSocketMessage<?> message) throws JSONException {
+        if (!(message instanceof TextMessage text)) {
+            throw new JSONException("Expected a text message");
+        }
+        try (var parser = factory.createParser(text.getPayload())) {
+            return StreamingMessages.readRequest(parser);
+        } catch (IOException e) {
+            throw new JSONException("Unable to parse request: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public RequestFrame decodeFrame(@NotNull WebSocketMessage<?> message, int maxRequests) throws JSONException {
+        if (!(message instanceof TextMessage text)) {
+            throw new JSONException("Expected a text message");
+        }
+        try (var parser = factory.createParser(text.getPayload())) {
+            return StreamingMessages.readFrame(parser, maxRequests);
+        } catch (IOException e) {
+            throw new JSONException("Unable to parse request: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public TextMessage encode(@NotNull ServerMessage message) {
+        var writer = writer();
+        StreamingMessages.writeMessage(writer, message);
+        return finish(writer);
+    }
+
+    @Override
+    public TextMessage encodeBatch(@NotNull List<ServerMessage> messages) {
+        var writer = writer();
+        StreamingMessages.writeBatch(writer, messages);
+        return finish(writer);
+    }
+
+    @Override
+    public String getSubProtocol() {
+        return JSON_PROTOCOL;
+    }
+
+    private JsonMessageWriter writer() {
+        var writer = writers.get();
+        writer.reset();
+        return writer;
+    }
+
+    private TextMessage finish(JsonMessageWriter writer) {
+        var text = writer.toText();
+        if (writer.capacity() > MAX_RETAINED_BUFFER) {
+            writers.remove();
+        }
+        return new TextMessage(text);
+    }
+}
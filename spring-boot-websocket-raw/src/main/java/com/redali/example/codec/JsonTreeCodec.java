@@ -0,0 +1,115 @@
+package com.redali.example.codec;
+
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.RequestFrame;
+import com.redali.example.message.ServerMessage;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codec that parses every message into an org.json tree and builds a tree for every response.
+ */
+public class JsonTreeCodec implements MessageCodec {
+
+    @Override
+    public ClientRequest decode(@NotNull WebSocketMessage<?> message) throws JSONException {
+        if (!(message instanceof TextMessage text)) {
+            throw new JSONException("Expected a text message");
+        }
+        return toRequest(new JSONObject(text.getPayload()));
+    }
+
+    @Override
+    public RequestFrame decodeFrame(@NotNull WebSocketMessage<?> message, int maxRequests) throws JSONException {
+        if (!(message instanceof TextMessage text)) {
+            throw new JSONException("Expected a text message");
+        }
+        var tokener = new JSONTokener(text.getPayload());
+        var value = tokener.nextValue();
+        if (tokener.nextClean() != 0) {
+            throw new JSONException("Malformed request");
+        }
+        if (value instanceof JSONObject json) {
+            return new RequestFrame(List.of(toRequest(json)), false);
+        }
+        if (!(value instanceof JSONArray array)) {
+            throw new JSONException("Request must be an object or an array of objects");
+        }
+        if (array.length() > maxRequests) {
+            throw new JSONException("Batch holds more than " + maxRequests + " requests");
+        }
+        var requests = new ArrayList<ClientRequest>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            requests.add(toRequest(array.getJSONObject(i)));
+        }
+        return new RequestFrame(requests, true);
+    }
+
+    @Override
+    public TextMessage encode(@NotNull ServerMessage message) {
+        return new TextMessage(toJson(message).toString());
+    }
+
+    @Override
+    public TextMessage encodeBatch(@NotNull List<ServerMessage> messages) {
+        var array = new JSONArray();
+        for (var message : messages) {
+            array.put(toJson(message));
+        }
+        return new TextMessage(array.toString());
+    }
+
+    @Override
+    public String getSubProtocol() {
+        return JSON_PROTOCOL;
+    }
+
+    private static ClientRequest toRequest(JSONObject json) throws JSONException {
+        var request = new ClientRequest(json.getInt(ClientRequest.REQUEST_KEY));
+        if (json.has(ClientRequest.DICE_KEY)) {
+            request.setDice(json.getInt(ClientRequest.DICE_KEY));
+        }
+        if (json.has(ClientRequest.SIDES_KEY)) {
+            request.setSides(json.getInt(ClientRequest.SIDES_KEY));
+        }
+        if (json.has(ClientRequest.SEED_KEY)) {
+            request.setSeed(json.getLong(ClientRequest.SEED_KEY));
+        }
+        if (json.has(ClientRequest.TOPIC_KEY)) {
+            request.setTopic(json.getString(ClientRequest.TOPIC_KEY));
+        }
+        if (json.has(ClientRequest.CID_KEY)) {
+            request.setCid(json.getLong(ClientRequest.CID_KEY));
+        }
+        if (json.has(ClientRequest.TOKEN_KEY)) {
+            request.setToken(json.getString(ClientRequest.TOKEN_KEY));
+        }
+        if (json.has(ClientRequest.SEQ_KEY)) {
+            request.setSeq(json.getLong(ClientRequest.SEQ_KEY));
+        }
+        return request;
+    }
+
+    private static JSONObject toJson(ServerMessage message) {
+        var json = new JSONObject();
+        json.put(ServerMessage.ID_KEY, message.id());
+        if (message.cid() != null) {
+            json.put(ServerMessage.CID_KEY, message.cid().longValue());
+        }
+        if (message.seq() != null) {
+            json.put(ServerMessage.SEQ_KEY, message.seq().longValue());
+        }
+        if (message.content() != null) {
+            json.put(ServerMessage.CONTENT_KEY, message.content().toJson());
+        }
+        return json;
+    }
+}
@@ -0,0 +1,71 @@
+package com.redali.example.codec;
+
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.RequestFrame;
+import com.redali.example.message.ServerMessage;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.List;
+
+/**
+ * Converts between the frames sent over the WebSocket and our request/response messages.
+ *
+ * <p>Implementations must be safe to use from multiple threads at once.</p>
+ */
+public interface MessageCodec {
+    /**
+     * WebSocket sub-protocol for JSON text messages (also used when a client does not ask for a sub-protocol).
+     */
+    String JSON_PROTOCOL = "json";
+
+    /**
+     * WebSocket sub-protocol for CBOR binary messages.
+     */
+    String CBOR_PROTOCOL = "cbor";
+
+    /**
+     * Decode a request received from a client.
+     *
+     * @param message Message received from the client.
+     * @return Decoded request (never null).
+     * @throws JSONException If the message is the wrong type (text vs binary), not an object or is missing the
+     *                       "request" type.
+     */
+    ClientRequest decode(@NotNull WebSocketMessage<?> message) throws JSONException;
+
+    /**
+     * Decode a frame received from a client that holds either a single request or a batch (array) of requests.
+     *
+     * @param message     Message received from the client.
+     * @param maxRequests Maximum number of requests allowed in a batch.
+     * @return Decoded requests (never null).
+     * @throws JSONException If the message is the wrong type, any request in it is invalid or the batch holds more
+     *                       than the maximum number of requests.
+     */
+    RequestFrame decodeFrame(@NotNull WebSocketMessage<?> message, int maxRequests) throws JSONException;
+
+    /**
+     * Encode a message to send to a client.
+     *
+     * @param message Message to encode.
+     * @return Frame to send to the client (may be shared by many sessions).
+     */
+    WebSocketMessage<?> encode(@NotNull ServerMessage message);
+
+    /**
+     * Encode the responses to a batch of requests into a single frame (an array of messages).
+     *
+     * @param messages Messages to encode (in order).
+     * @return Frame to send to the client.
+     */
+    WebSocketMessage<?> encodeBatch(@NotNull List<ServerMessage> messages);
+
+    /**
+     * Get the WebSocket sub-protocol a client negotiates to use this codec.
+     *
+     * @return Sub-protocol name.
+     */
+    String getSubProtocol();
+}
@@ -0,0 +1,200 @@
+package com.redali.example.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.MessageWriter;
+import com.redali.example.message.RequestFrame;
+import com.redali.example.message.ServerMessage;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads requests from Jackson streaming parsers and writes messages to {@link MessageWriter}s.
+ *
+ * <p>Shared by the text JSON and binary CBOR codecs, the only difference between the two is the factory used to
+ * create the parser and the writer used.</p>
+ */
+final class StreamingMessages {
+
+    private StreamingMessages() {
+    }
+
+    /**
+     * Read a request object field by field (no intermediate tree is built).
+     *
+     * @param parser Parser positioned before the start of the request.
+     * @return Decoded request.
+     * @throws JSONException If the request is not an object or is missing the "request" type.
+     * @throws IOException   If the parser could not read the input.
+     */
+    static ClientRequest readRequest(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JSONException("Request must be an object");
+        }
+        var request = readRequestFields(parser);
+        expectEnd(parser);
+        return request;
+    }
+
+    /**
+     * Read a single request object or an array of request objects.
+     *
+     * @param parser      Parser positioned before the start of the frame.
+     * @param maxRequests Maximum number of requests allowed in an array.
+     * @return Decoded requests.
+     * @throws JSONException If the frame is not an object or array of objects, a request is missing the "request"
+     *                       type or there are too many requests.
+     * @throws IOException   If the parser could not read the input.
+     */
+    static RequestFrame readFrame(JsonParser parser, int maxRequests) throws IOException {
+        var token = parser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            var request = readRequestFields(parser);
+            expectEnd(parser);
+            return new RequestFrame(List.of(request), false);
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw new JSONException("Request must be an object or an array of objects");
+        }
+        var requests = new ArrayList<ClientRequest>();
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            if (requests.size() == maxRequests) {
+                throw new JSONException("Batch holds more than " + maxRequests + " requests");
+            }
+            requests.add(readRequestFields(parser));
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new JSONException("Batch must only hold request objects");
+        }
+        expectEnd(parser);
+        return new RequestFrame(requests, true);
+    }
+
+    // Reads the fields of a request, the parser must be on the START_OBJECT and is left on the END_OBJECT
+    private static ClientRequest readRequestFields(JsonParser parser) throws IOException {
+        Integer type = null;
+        Integer dice = null;
+        Integer sides = null;
+        Long seed = null;
+        String topic = null;
+        Long cid = null;
+        String token = null;
+        Long seq = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case ClientRequest.REQUEST_KEY -> type = readInt(parser);
+                case ClientRequest.DICE_KEY -> dice = readInt(parser);
+                case ClientRequest.SIDES_KEY -> sides = readInt(parser);
+                case ClientRequest.SEED_KEY -> seed = readLong(parser);
+                case ClientRequest.TOPIC_KEY -> topic = readString(parser);
+                case ClientRequest.CID_KEY -> cid = readLong(parser);
+                case ClientRequest.TOKEN_KEY -> token = readString(parser);
+                case ClientRequest.SEQ_KEY -> seq = readLong(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw new JSONException("Malformed request");
+        }
+        if (type == null) {
+            throw new JSONException("Request is missing the \"" + ClientRequest.REQUEST_KEY + "\" type");
+        }
+        var request = new ClientRequest(type);
+        request.setDice(dice);
+        request.setSides(sides);
+        request.setSeed(seed);
+        request.setTopic(topic);
+        request.setCid(cid);
+        request.setToken(token);
+        request.setSeq(seq);
+        return request;
+    }
+
+    // Nothing may follow the request(s)
+    private static void expectEnd(JsonParser parser) throws IOException {
+        if (parser.nextToken() != null) {
+            throw new JSONException("Malformed request");
+        }
+    }
+
+    /**
+     * Write a message envelope and its content.
+     *
+     * @param writer  Writer to write to.
+     * @param message Message to write.
+     */
+    static void writeMessage(MessageWriter writer, ServerMessage message) {
+        writer.startObject();
+        writer.field(ServerMessage.ID_KEY, message.id());
+        if (message.cid() != null) {
+            writer.field(ServerMessage.CID_KEY, message.cid().longValue());
+        }
+        if (message.seq() != null) {
+            writer.field(ServerMessage.SEQ_KEY, message.seq().longValue());
+        }
+        if (message.content() != null) {
+            writer.name(ServerMessage.CONTENT_KEY);
+            message.content().write(writer);
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Write the messages of a batch response as an array.
+     *
+     * @param writer   Writer to write to.
+     * @param messages Messages to write.
+     */
+    static void writeBatch(MessageWriter writer, List<ServerMessage> messages) {
+        writer.startArray();
+        for (var message : messages) {
+            writeMessage(writer, message);
+        }
+        writer.endArray();
+    }
+
+    // Same leniency as JSONObject.getInt(): numbers (truncated) or strings holding a number
+    private static int readInt(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getValueAsInt();
+            case VALUE_STRING -> {
+                try {
+                    yield (int) Double.parseDouble(parser.getText().trim());
+                } catch (NumberFormatException e) {
+                    throw new JSONException("Expected a number for \"" + parser.currentName() + "\"");
+                }
+            }
+            default -> throw new JSONException("Expected a number for \"" + parser.currentName() + "\"");
+        };
+    }
+
+    // Same as JSONObject.getString(): only strings
+    private static String readString(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            throw new JSONException("Expected a string for \"" + parser.currentName() + "\"");
+        }
+        return parser.getText();
+    }
+
+    // Same leniency as JSONObject.getLong()
+    private static long readLong(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getValueAsLong();
+            case VALUE_STRING -> {
+                try {
+                    yield new BigDecimal(parser.getText().trim()).longValue();
+                } catch (NumberFormatException e) {
+                    throw new JSONException("Expected a number for \"" + parser.currentName() + "\"");
+                }
+            }
+            default -> throw new JSONException("Expected a number for \"" + parser.currentName() + "\"");
+        };
+    }
+}
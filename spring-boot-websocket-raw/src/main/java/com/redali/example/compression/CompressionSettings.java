@@ -0,0 +1,24 @@
+package com.redali.example.compression;
+
+/**
+ * How messages are compressed (with the permessage-deflate WebSocket extension, for clients that offer it).
+ *
+ * @param enabled         Whether to accept permessage-deflate when a client offers it.
+ * @param minSize         Messages with fewer payload bytes than this are sent uncompressed (0 to compress everything).
+ * @param contextTakeover Whether each side keeps its compression history between messages. Repetitive messages
+ *                        compress much better with it, but it costs each connection a compressor and decompressor
+ *                        that are kept (with their windows) for as long as the connection is open.
+ */
+public record CompressionSettings(boolean enabled, int minSize, boolean contextTakeover) {
+
+    /**
+     * Settings used when nothing is configured.
+     */
+    public static final CompressionSettings DEFAULTS = new CompressionSettings(true, 64, true);
+
+    public CompressionSettings {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("Compression minimum size must not be negative");
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.redali.example.compression;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Sends small messages uncompressed on Tomcat connections that negotiated permessage-deflate.
+ *
+ * <p>Tomcat deflates every message once the extension is negotiated and has no setting for a minimum size. For a
+ * message of a few dozen bytes the deflate block overhead can make the frame bigger and still costs the CPU time. The
+ * extension allows any message to be sent uncompressed (the RSV1 bit of its first frame is just left clear), so the
+ * transformation Tomcat sends messages through is wrapped with one that passes small, unfragmented messages straight
+ * by. Tomcat's classes for this aren't public, so they are reached by reflection. If they don't look like expected
+ * (another container or version) every message is compressed as before.</p>
+ *
+ * <p>Only messages sent are affected, the compression context (with context takeover) only ever holds the messages
+ * that were compressed, which is what the client's decompressor sees too.</p>
+ */
+@Slf4j
+public final class CompressionThreshold {
+    private static final String TOMCAT_PACKAGE = "org.apache.tomcat.websocket.";
+    private static final byte OPCODE_TEXT = 1;
+    private static final byte OPCODE_BINARY = 2;
+
+    private static final Tomcat TOMCAT = Tomcat.lookup();
+
+    private CompressionThreshold() {
+    }
+
+    /**
+     * Send messages smaller than the minimum size uncompressed on a session.
+     *
+     * @param session Session just established (the first message must not have been sent yet).
+     * @param minSize Messages with fewer payload bytes than this are sent uncompressed.
+     * @return True if installed, false if the session isn't compressed (or isn't a Tomcat session).
+     */
+    public static boolean install(@NotNull WebSocketSession session, int minSize) {
+        if (TOMCAT == null || minSize < 1 || !(session instanceof NativeWebSocketSession nativeSession)) {
+            return false;
+        }
+        var wsSession = nativeSession.getNativeSession();
+        if (wsSession == null || !TOMCAT.wsSession.isInstance(wsSession)) {
+            return false;
+        }
+        try {
+            var endpoint = TOMCAT.remoteEndpoint.get(wsSession);
+            var deflate = TOMCAT.transformation.get(endpoint);
+            if (deflate == null || !TOMCAT.perMessageDeflate.isInstance(deflate)) {
+                return false;
+            }
+            var bypass = Proxy.newProxyInstance(CompressionThreshold.class.getClassLoader(),
+                    new Class<?>[]{TOMCAT.transformationType, Bypass.class},
+                    new BypassHandler(deflate, TOMCAT.next.get(deflate), minSize));
+            TOMCAT.transformation.set(endpoint, bypass);
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Failed to set compression threshold for client {}, compressing everything: {}",
+                    session.getRemoteAddress(), e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Check whether small messages are sent uncompressed on a session.
+     *
+     * @param session Client session.
+     * @return True if {@link #install} was successful on the session.
+     */
+    public static boolean isInstalled(@NotNull WebSocketSession session) {
+        if (TOMCAT == null || !(session instanceof NativeWebSocketSession nativeSession)) {
+            return false;
+        }
+        try {
+            var endpoint = TOMCAT.remoteEndpoint.get(nativeSession.getNativeSession());
+            return TOMCAT.transformation.get(endpoint) instanceof Bypass;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    // Marks the wrapper
+    private interface Bypass {
+    }
+
+    private static final class BypassHandler implements InvocationHandler {
+        private final Object deflate;
+        private final Object next;
+        private final int minSize;
+
+        BypassHandler(Object deflate, Object next, int minSize) {
+            this.deflate = deflate;
+            this.next = next;
+            this.minSize = minSize;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            try {
+                if (args != null && args.length == 1 && "sendMessagePart".equals(method.getName())
+                        && args[0] instanceof List<?> parts && isSmallMessage(parts)) {
+                    // What the deflate transformation would do with a part it leaves alone
+                    return next != null ? method.invoke(next, parts) : parts;
+                }
+                return method.invoke(deflate, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private boolean isSmallMessage(List<?> parts) throws ReflectiveOperationException {
+            if (parts.size() != 1) {
+                return false;
+            }
+            var part = parts.get(0);
+            byte opCode = (byte) TOMCAT.getOpCode.invoke(part);
+            return (opCode == OPCODE_TEXT || opCode == OPCODE_BINARY) && (boolean) TOMCAT.isFin.invoke(part)
+                    && ((ByteBuffer) TOMCAT.getPayload.invoke(part)).remaining() < minSize;
+        }
+    }
+
+    // Tomcat internals, looked up once
+    private record Tomcat(Class<?> wsSession, Field remoteEndpoint, Field transformation, Class<?> transformationType,
+                          Class<?> perMessageDeflate, Field next, Method getOpCode, Method isFin,
+                          Method getPayload) {
+
+        static Tomcat lookup() {
+            try {
+                var wsSession = Class.forName(TOMCAT_PACKAGE + "WsSession");
+                var perMessageDeflate = Class.forName(TOMCAT_PACKAGE + "PerMessageDeflate");
+                var messagePart = Class.forName(TOMCAT_PACKAGE + "MessagePart");
+                return new Tomcat(wsSession, accessible(wsSession.getDeclaredField("wsRemoteEndpoint")),
+                        accessible(Class.forName(TOMCAT_PACKAGE + "WsRemoteEndpointImplBase")
+                                .getDeclaredField("transformation")),
+                        Class.forName(TOMCAT_PACKAGE + "Transformation"), perMessageDeflate,
+                        accessible(perMessageDeflate.getDeclaredField("next")),
+                        accessible(messagePart.getMethod("getOpCode")), accessible(messagePart.getMethod("isFin")),
+                        accessible(messagePart.getMethod("getPayload")));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.info("Not running on a known Tomcat version, compression threshold is not available: {}",
+                        e.toString());
+                return null;
+            }
+        }
+
+        private static <T extends AccessibleObject> T accessible(T member) {
+            member.setAccessible(true);
+            return member;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.redali.example.compression;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+/**
+ * Sets up the {@link CompressionThreshold} on each new session before handing it to the wrapped handler (so before
+ * anything is sent to it).
+ */
+@Slf4j
+public class CompressionThresholdHandler extends WebSocketHandlerDecorator {
+    private final int minSize;
+
+    /**
+     * Construct handler.
+     *
+     * @param delegate Handler for the sessions.
+     * @param minSize  Messages with fewer payload bytes than this are sent uncompressed.
+     */
+    public CompressionThresholdHandler(@NotNull WebSocketHandler delegate, int minSize) {
+        super(delegate);
+        this.minSize = minSize;
+    }
+
+    @Override
+    public void afterConnectionEstablished(@NotNull WebSocketSession session) throws Exception {
+        if (CompressionThreshold.install(session, minSize)) {
+            log.debug("Messages under {} bytes to client {} are sent uncompressed", minSize, session.getRemoteAddress());
+        }
+        super.afterConnectionEstablished(session);
+    }
+}
@@ -0,0 +1,177 @@
+package com.redali.example.compression;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.websocket.Decoder;
+import jakarta.websocket.Encoder;
+import jakarta.websocket.Extension;
+import jakarta.websocket.HandshakeResponse;
+import jakarta.websocket.server.HandshakeRequest;
+import jakarta.websocket.server.ServerEndpointConfig;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.socket.server.standard.StandardWebSocketUpgradeStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Upgrade strategy that decides how permessage-deflate is negotiated.
+ *
+ * <p>The container accepts permessage-deflate whenever a client offers it, with whatever parameters the client asked
+ * for. This steps into the negotiation to turn compression off altogether, or to turn off context takeover by adding
+ * "server_no_context_takeover" and "client_no_context_takeover" to the accepted offer (RFC 7692 lets a server add
+ * both even when the client didn't ask).</p>
+ */
+public class CompressionUpgradeStrategy extends StandardWebSocketUpgradeStrategy {
+    /**
+     * Name of the compression extension.
+     */
+    public static final String PER_MESSAGE_DEFLATE = "permessage-deflate";
+
+    static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+
+    private final CompressionSettings settings;
+
+    public CompressionUpgradeStrategy(@NotNull CompressionSettings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    protected void upgradeHttpToWebSocket(HttpServletRequest request, HttpServletResponse response,
+                                          ServerEndpointConfig endpointConfig, Map<String, String> pathParams)
+            throws Exception {
+        super.upgradeHttpToWebSocket(request, response, new NegotiatingConfig(endpointConfig), pathParams);
+    }
+
+    /**
+     * Adjust the extensions the container negotiated.
+     *
+     * @param negotiated Extensions the container would accept (with the client's parameters).
+     * @return Extensions to accept.
+     */
+    List<Extension> adjust(List<Extension> negotiated) {
+        var adjusted = new ArrayList<Extension>(negotiated.size());
+        for (var extension : negotiated) {
+            if (!PER_MESSAGE_DEFLATE.equals(extension.getName())) {
+                adjusted.add(extension);
+            } else if (settings.enabled()) {
+                adjusted.add(settings.contextTakeover() ? extension : withoutContextTakeover(extension));
+            }
+        }
+        return adjusted;
+    }
+
+    private static Extension withoutContextTakeover(Extension extension) {
+        var parameters = new ArrayList<Extension.Parameter>(extension.getParameters());
+        for (var name : List.of(SERVER_NO_CONTEXT_TAKEOVER, CLIENT_NO_CONTEXT_TAKEOVER)) {
+            if (parameters.stream().noneMatch(parameter -> name.equals(parameter.getName()))) {
+                parameters.add(new ExtensionParameter(name, null));
+            }
+        }
+        return new DeflateExtension(extension.getName(), parameters);
+    }
+
+    private record DeflateExtension(String name, List<Extension.Parameter> parameters) implements Extension {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<Extension.Parameter> getParameters() {
+            return parameters;
+        }
+    }
+
+    private record ExtensionParameter(String name, String value) implements Extension.Parameter {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getValue() {
+            return value;
+        }
+    }
+
+    // Same endpoint configuration, with a configurator that adjusts the negotiated extensions
+    private class NegotiatingConfig implements ServerEndpointConfig {
+        private final ServerEndpointConfig config;
+        private final Configurator configurator;
+
+        NegotiatingConfig(ServerEndpointConfig config) {
+            this.config = config;
+            var original = config.getConfigurator();
+            this.configurator = new Configurator() {
+                @Override
+                public String getNegotiatedSubprotocol(List<String> supported, List<String> requested) {
+                    return original.getNegotiatedSubprotocol(supported, requested);
+                }
+
+                @Override
+                public List<Extension> getNegotiatedExtensions(List<Extension> installed, List<Extension> requested) {
+                    return adjust(original.getNegotiatedExtensions(installed, requested));
+                }
+
+                @Override
+                public boolean checkOrigin(String originHeaderValue) {
+                    return original.checkOrigin(originHeaderValue);
+                }
+
+                @Override
+                public void modifyHandshake(ServerEndpointConfig sec, HandshakeRequest request,
+                                            HandshakeResponse response) {
+                    original.modifyHandshake(sec, request, response);
+                }
+
+                @Override
+                public <T> T getEndpointInstance(Class<T> endpointClass) throws InstantiationException {
+                    return original.getEndpointInstance(endpointClass);
+                }
+            };
+        }
+
+        @Override
+        public Class<?> getEndpointClass() {
+            return config.getEndpointClass();
+        }
+
+        @Override
+        public String getPath() {
+            return config.getPath();
+        }
+
+        @Override
+        public List<String> getSubprotocols() {
+            return config.getSubprotocols();
+        }
+
+        @Override
+        public List<Extension> getExtensions() {
+            return config.getExtensions();
+        }
+
+        @Override
+        public Configurator getConfigurator() {
+            return configurator;
+        }
+
+        @Override
+        public List<Class<? extends Encoder>> getEncoders() {
+            return config.getEncoders();
+        }
+
+        @Override
+        public List<Class<? extends Decoder>> getDecoders() {
+            return config.getDecoders();
+        }
+
+        @Override
+        public Map<String, Object> getUserProperties() {
+            return config.getUserProperties();
+        }
+    }
+}
@@ -1,28 +1,61 @@
 package com.redali.example.config;
 
+import com.redali.example.codec.MessageCodec;
+import com.redali.example.compression.CompressionSettings;
+import com.redali.example.compression.CompressionThresholdHandler;
+import com.redali.example.compression.CompressionUpgradeStrategy;
+import com.redali.example.controller.BinaryMessageWebSocketController;
+import com.redali.example.controller.DrainingHandshakeInterceptor;
 import com.redali.example.controller.JsonMessageWebSocketController;
+import com.redali.example.controller.SubProtocolSelectingHandler;
+import com.redali.example.service.BatchSettings;
+import com.redali.example.service.SessionService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 
 /**
  * Tells spring that we want to register a WebSocket controller at a specific endpoint.
+ *
+ * <p>Clients pick the message encoding by the WebSocket sub-protocol they ask for: "json" (or nothing) for JSON text
+ * messages, "cbor" for CBOR binary messages.</p>
+ *
+ * <p>Clients that offer the permessage-deflate extension get compressed messages, as set by the
+ * {@link CompressionSettings}.</p>
+ *
+ * <p>New connections are refused once the session service starts draining for shutdown.</p>
  */
 @Configuration
 @EnableWebSocket
 @Slf4j
 public class JsonMessageWebSocketConfig implements WebSocketConfigurer {
 
-    private final JsonMessageWebSocketController controller;
+    private final WebSocketHandler handler;
+    private final CompressionSettings compressionSettings;
+    private final SessionService sessionService;
     private final String endPoint;
 
     // Leave the end point configurable in application.yaml (spring will inject it for us)
     public JsonMessageWebSocketConfig(JsonMessageWebSocketController sessionController,
+                                      BinaryMessageWebSocketController binarySessionController,
+                                      CompressionSettings compressionSettings, SessionService sessionService,
                                       @Value(value="${app.endpoint.json.messages}") String endPoint) {
-        this.controller = sessionController;
+        WebSocketHandler handler = new SubProtocolSelectingHandler(sessionController)
+                .addHandler(MessageCodec.JSON_PROTOCOL, sessionController)
+                .addHandler(MessageCodec.CBOR_PROTOCOL, binarySessionController);
+        if (compressionSettings.enabled() && compressionSettings.minSize() > 0) {
+            handler = new CompressionThresholdHandler(handler, compressionSettings.minSize());
+        }
+        this.handler = handler;
+        this.compressionSettings = compressionSettings;
+        this.sessionService = sessionService;
         this.endPoint = endPoint;
     }
 
@@ -31,8 +64,20 @@ public class JsonMessageWebSocketConfig implements WebSocketConfigurer {
         // NOTE: You may want to change or remove the allowed origins, when scripting clients with Python
         // I found it easier to set it to "*", but this is probably not a good practice if your intention
         // is for WebSocket client connections
-        registry.addHandler(controller, endPoint)
+        registry.addHandler(handler, endPoint)
+                .setHandshakeHandler(new DefaultHandshakeHandler(new CompressionUpgradeStrategy(compressionSettings)))
+                .addInterceptors(new DrainingHandshakeInterceptor(sessionService))
                 .setAllowedOriginPatterns("*");
-        log.info("Registered JSON message handler WebSocket endpoint at: {}", endPoint);
+        log.info("Registered JSON message handler WebSocket endpoint at: {} (compression: {})", endPoint,
+                compressionSettings);
+    }
+
+    // The container rejects frames larger than its message buffers (8K by default), size them so a full batch fits
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer(BatchSettings batchSettings) {
+        var container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(batchSettings.maxBytes());
+        container.setMaxBinaryMessageBufferSize(batchSettings.maxBytes());
+        return container;
     }
 }
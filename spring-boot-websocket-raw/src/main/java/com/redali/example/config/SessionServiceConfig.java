@@ -1,23 +1,247 @@
 package com.redali.example.config;
 
+import com.redali.example.cluster.ClusterBroker;
+import com.redali.example.cluster.ClusterSettings;
+import com.redali.example.cluster.ClusterTransport;
+import com.redali.example.codec.CodecType;
+import com.redali.example.compression.CompressionSettings;
+import com.redali.example.codec.MessageCodec;
+import com.redali.example.controller.BinaryMessageWebSocketController;
 import com.redali.example.controller.JsonMessageWebSocketController;
+import com.redali.example.dns.DnsSettings;
+import com.redali.example.dns.ReverseDnsCache;
+import com.redali.example.handler.RequestHandler;
+import com.redali.example.journal.JournalSettings;
+import com.redali.example.journal.RequestJournal;
+import com.redali.example.metrics.WebSocketMetrics;
+import com.redali.example.ratelimit.RateLimit;
+import com.redali.example.ratelimit.RateLimitPolicy;
+import com.redali.example.ratelimit.RateLimitSettings;
+import com.redali.example.service.BatchSettings;
+import com.redali.example.service.ExecutionMode;
+import com.redali.example.service.ExecutionSettings;
+import com.redali.example.service.HeartbeatSettings;
+import com.redali.example.service.OutboundSettings;
+import com.redali.example.service.OverflowPolicy;
+import com.redali.example.service.ResumeRegistry;
+import com.redali.example.service.ResumeSettings;
+import com.redali.example.service.SessionDrainer;
 import com.redali.example.service.SessionService;
 import com.redali.example.service.SessionServiceImpl;
+import com.redali.example.service.ShutdownSettings;
+import com.redali.example.service.TopicRegistry;
+import com.redali.example.task.HealthMode;
+import com.redali.example.task.HealthSettings;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * Give spring a clue about the session service and our WebSocket controller that we'd like injected.
  */
 @Configuration
 public class SessionServiceConfig {
+    // Limits on what can be waiting to go out to each client are configurable in application.yml
+    @Bean
+    public OutboundSettings outboundSettings(Environment env) {
+        var defaults = OutboundSettings.DEFAULTS;
+        return new OutboundSettings(
+                env.getProperty("app.outbound.queue-size", Integer.class, defaults.queueSize()),
+                env.getProperty("app.outbound.send-time-limit", Integer.class, defaults.sendTimeLimit()),
+                env.getProperty("app.outbound.buffer-size-limit", Integer.class, defaults.bufferSizeLimit()),
+                env.getProperty("app.outbound.overflow-policy", OverflowPolicy.class, defaults.overflowPolicy()),
+                env.getProperty("app.outbound.sender-threads", Integer.class, defaults.senderThreads()));
+    }
+
+    // Limits on batches of requests sent in a single frame are configurable in application.yml
+    @Bean
+    public BatchSettings batchSettings(Environment env) {
+        var defaults = BatchSettings.DEFAULTS;
+        return new BatchSettings(env.getProperty("app.batch.max-requests", Integer.class, defaults.maxRequests()),
+                env.getProperty("app.batch.max-bytes", Integer.class, defaults.maxBytes()));
+    }
+
+    // Host names are looked up in the background and cached, configurable in application.yml
+    @Bean
+    public ReverseDnsCache reverseDnsCache(Environment env) {
+        var defaults = DnsSettings.DEFAULTS;
+        return new ReverseDnsCache(new DnsSettings(
+                env.getProperty("app.dns.ttl", Integer.class, defaults.ttlSeconds()),
+                env.getProperty("app.dns.max-entries", Integer.class, defaults.maxEntries()),
+                env.getProperty("app.dns.resolver-threads", Integer.class, defaults.resolverThreads())));
+    }
+
+    // Where requests are processed (container thread, thread pool or virtual threads) is configurable in application.yml
+    @Bean
+    public ExecutionSettings executionSettings(Environment env) {
+        var defaults = ExecutionSettings.DEFAULTS;
+        return new ExecutionSettings(env.getProperty("app.execution.mode", ExecutionMode.class, defaults.mode()),
+                env.getProperty("app.execution.pool-size", Integer.class, defaults.poolSize()),
+                env.getProperty("app.execution.max-pending", Integer.class, defaults.maxPending()),
+                env.getProperty("app.execution.max-in-flight", Integer.class, defaults.maxInFlight()));
+    }
+
+    // How often quiet clients are pinged and when unresponsive ones are disconnected is configurable in application.yml
+    @Bean
+    public HeartbeatSettings heartbeatSettings(Environment env) {
+        var defaults = HeartbeatSettings.DEFAULTS;
+        return new HeartbeatSettings(
+                env.getProperty("app.heartbeat.ping-interval", Integer.class, defaults.pingIntervalMillis()),
+                env.getProperty("app.heartbeat.idle-timeout", Integer.class, defaults.idleTimeoutMillis()),
+                env.getProperty("app.heartbeat.tick", Integer.class, defaults.tickMillis()),
+                env.getProperty("app.heartbeat.wheel-size", Integer.class, defaults.wheelSize()));
+    }
+
+    // What the periodic health report pushes to clients is configurable in application.yml (how often is read by the
+    // task's schedule)
+    @Bean
+    public HealthSettings healthSettings(Environment env) {
+        var defaults = HealthSettings.DEFAULTS;
+        return new HealthSettings(env.getProperty("app.health.mode", HealthMode.class, defaults.mode()),
+                env.getProperty("app.health.keyframe-interval", Integer.class, defaults.keyframeIntervalMillis()));
+    }
+
+    // How fast clients may send requests, and what happens when they go faster, is configurable in application.yml
+    @Bean
+    public RateLimitSettings rateLimitSettings(Environment env) {
+        var defaults = RateLimitSettings.DEFAULTS;
+        var requests = env.getProperty("app.rate-limit.requests");
+        return new RateLimitSettings(
+                new RateLimit(env.getProperty("app.rate-limit.session-rate", Integer.class, defaults.session().rate()),
+                        env.getProperty("app.rate-limit.session-burst", Integer.class, defaults.session().burst())),
+                new RateLimit(env.getProperty("app.rate-limit.address-rate", Integer.class, defaults.address().rate()),
+                        env.getProperty("app.rate-limit.address-burst", Integer.class, defaults.address().burst())),
+                requests != null ? RateLimitSettings.parseRequests(requests) : defaults.requests(),
+                env.getProperty("app.rate-limit.policy", RateLimitPolicy.class, defaults.policy()),
+                env.getProperty("app.rate-limit.max-delay", Integer.class, defaults.maxDelayMillis()));
+    }
+
+    // Whether (and how) messages are compressed for clients offering permessage-deflate is configurable in
+    // application.yml
+    @Bean
+    public CompressionSettings compressionSettings(Environment env) {
+        var defaults = CompressionSettings.DEFAULTS;
+        return new CompressionSettings(env.getProperty("app.compression.enabled", Boolean.class, defaults.enabled()),
+                env.getProperty("app.compression.min-size", Integer.class, defaults.minSize()),
+                env.getProperty("app.compression.context-takeover", Boolean.class, defaults.contextTakeover()));
+    }
+
+    // Pick between the streaming (default) and org.json tree codecs, useful for comparing the two under load
+    @Bean
+    public MessageCodec messageCodec(Environment env) {
+        return env.getProperty("app.codec", CodecType.class, CodecType.DEFAULT).create();
+    }
+
+    // Published through the actuator metrics and prometheus endpoints
     @Bean
-    public SessionService sessionService() {
-        return new SessionServiceImpl();
+    public WebSocketMetrics webSocketMetrics(MeterRegistry meterRegistry) {
+        return new WebSocketMetrics(meterRegistry);
+    }
+
+    // Shared by the subscribe/unsubscribe request handlers and the session service that publishes to topics
+    @Bean
+    public TopicRegistry topicRegistry() {
+        return new TopicRegistry();
+    }
+
+    // Shared by the resume request handler and the session service that stamps and keeps the frames, how much is kept
+    // (and for how long) is configurable in application.yml
+    @Bean
+    public ResumeRegistry resumeRegistry(Environment env, TopicRegistry topicRegistry) {
+        var defaults = ResumeSettings.DEFAULTS;
+        return new ResumeRegistry(new ResumeSettings(
+                env.getProperty("app.resume.buffer-size", Integer.class, defaults.bufferSize()),
+                env.getProperty("app.resume.max-frames", Integer.class, defaults.maxFrames()),
+                env.getProperty("app.resume.retention", Integer.class, defaults.retentionMillis())), topicRegistry);
+    }
+
+    // Journaling the frames received from clients (off by default) is configurable in application.yml, the journal is
+    // closed (everything queued written out) when the application shuts down
+    @Bean
+    public RequestJournal requestJournal(Environment env, WebSocketMetrics webSocketMetrics) {
+        var defaults = JournalSettings.DEFAULTS;
+        return new RequestJournal(new JournalSettings(
+                env.getProperty("app.journal.enabled", Boolean.class, defaults.enabled()),
+                Path.of(env.getProperty("app.journal.directory", defaults.directory().toString())),
+                env.getProperty("app.journal.segment-size", Integer.class, defaults.segmentSize()),
+                env.getProperty("app.journal.queue-size", Integer.class, defaults.queueSize())), webSocketMetrics);
+    }
+
+    // Joining a cluster of nodes (so broadcasts, publishes and session counts span all of them) is configured in
+    // application.yml
+    @Bean
+    public ClusterSettings clusterSettings(Environment env) {
+        var defaults = ClusterSettings.DEFAULTS;
+        var nodeId = env.getProperty("app.cluster.node-id", "");
+        var peers = env.getProperty("app.cluster.peers");
+        return new ClusterSettings(
+                env.getProperty("app.cluster.transport", ClusterTransport.class, defaults.transport()),
+                // A new random ID for each application, not the one in the defaults (shared by everything in the JVM)
+                nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId,
+                env.getProperty("app.cluster.bind-address", defaults.bindAddress()),
+                env.getProperty("app.cluster.port", Integer.class, defaults.port()),
+                peers != null ? ClusterSettings.parsePeers(peers) : defaults.peers(),
+                env.getProperty("app.cluster.count-interval", Integer.class, defaults.countIntervalMillis()),
+                env.getProperty("app.cluster.queue-size", Integer.class, defaults.queueSize()));
+    }
+
+    @Bean
+    public ClusterBroker clusterBroker(ClusterSettings clusterSettings) {
+        return clusterSettings.createBroker();
+    }
+
+    // Every RequestHandler bean (found by component scanning) is a request type clients can send
+    @Bean
+    public SessionService sessionService(OutboundSettings outboundSettings, BatchSettings batchSettings,
+                                         ExecutionSettings executionSettings, MessageCodec messageCodec,
+                                         List<RequestHandler> requestHandlers, WebSocketMetrics webSocketMetrics,
+                                         TopicRegistry topicRegistry, ClusterBroker clusterBroker,
+                                         HeartbeatSettings heartbeatSettings, RateLimitSettings rateLimitSettings,
+                                         ResumeRegistry resumeRegistry, RequestJournal requestJournal) {
+        return SessionServiceImpl.builder()
+                .outboundSettings(outboundSettings)
+                .batchSettings(batchSettings)
+                .executionSettings(executionSettings)
+                .heartbeatSettings(heartbeatSettings)
+                .rateLimitSettings(rateLimitSettings)
+                .codec(messageCodec)
+                .handlers(requestHandlers)
+                .metrics(webSocketMetrics)
+                .topics(topicRegistry)
+                .broker(clusterBroker)
+                .resumes(resumeRegistry)
+                .journal(requestJournal)
+                .build();
+    }
+
+    // How clients are let go when shutting down is configurable in application.yml
+    @Bean
+    public ShutdownSettings shutdownSettings(Environment env) {
+        var defaults = ShutdownSettings.DEFAULTS;
+        return new ShutdownSettings(
+                env.getProperty("app.shutdown.flush-timeout", Integer.class, defaults.flushTimeoutMillis()),
+                env.getProperty("app.shutdown.waves", Integer.class, defaults.waves()),
+                env.getProperty("app.shutdown.wave-interval", Integer.class, defaults.waveIntervalMillis()),
+                env.getProperty("app.shutdown.reconnect-after", Integer.class, defaults.reconnectAfterMillis()));
+    }
+
+    @Bean
+    public SessionDrainer sessionDrainer(SessionService sessionService, ShutdownSettings shutdownSettings) {
+        return new SessionDrainer(sessionService, shutdownSettings);
     }
 
     @Bean
     public JsonMessageWebSocketController sessionController(SessionService sessionService) {
         return new JsonMessageWebSocketController(sessionService);
     }
+
+    @Bean
+    public BinaryMessageWebSocketController binarySessionController(SessionService sessionService) {
+        return new BinaryMessageWebSocketController(sessionService);
+    }
 }
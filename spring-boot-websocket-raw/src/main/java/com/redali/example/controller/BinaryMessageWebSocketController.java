@@ -0,0 +1,84 @@
+package com.redali.example.controller;
+
+import com.redali.example.service.SessionService;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+/**
+ * WebSocket controller (no STOMP) for clients that negotiated the binary "cbor" sub-protocol.
+ *
+ * <p>Carries exactly the same requests and responses as {@link JsonMessageWebSocketController}, just CBOR encoded in
+ * binary frames. Requests are handed to the same session service.</p>
+ */
+@Slf4j
+public class BinaryMessageWebSocketController extends BinaryWebSocketHandler {
+
+    private final SessionService sessionService;
+
+    public BinaryMessageWebSocketController(SessionService sessionService) {
+        this.sessionService = sessionService;
+    }
+
+    /**
+     * Handle binary messages posted by the client.
+     *
+     * <p>If a client sends something that can't be decoded into a request, we'll shutdown the connection.</p>
+     *
+     * @param session WebSocket client session that posted the message.
+     * @param message Message posted by the client.
+     * @throws Exception If there is a problem handling the message.
+     */
+    @Override
+    protected void handleBinaryMessage(@NotNull WebSocketSession session, @NotNull BinaryMessage message) throws Exception {
+        try {
+            sessionService.handleMessage(session, message);
+        } catch (JSONException err) {
+            log.error("Received garbage from {}, closing connection, {} byte message", session.getRemoteAddress(),
+                    message.getPayloadLength());
+            session.close();
+        }
+    }
+
+    /**
+     * Pongs answer the heartbeat pings, they tell the session service the client is still there.
+     *
+     * @param session WebSocket client session that sent the pong.
+     * @param message Pong sent by the client.
+     */
+    @Override
+    protected void handlePongMessage(@NotNull WebSocketSession session, @NotNull PongMessage message) {
+        sessionService.handlePong(session, message);
+    }
+
+    /**
+     * When a client opens a connection, we register the session with the associated service.
+     *
+     * @param session Client session that was just established on the WebSocket.
+     * @throws Exception If there is a problem handling the client (should not be - part of interface).
+     */
+    @Override
+    public void afterConnectionEstablished(@NotNull WebSocketSession session) throws Exception {
+        super.afterConnectionEstablished(session);
+        log.info("Binary connection established from {}", session.getRemoteAddress());
+        sessionService.registerSession(session);
+    }
+
+    /**
+     * When a client connection is closed, we "unregister" it from the associated session service.
+     *
+     * @param session Client session that was just closed.
+     * @throws Exception If there is a problem closing out the client (should not be - part of interface).
+     */
+    @Override
+    public void afterConnectionClosed(@NotNull WebSocketSession session, @NotNull CloseStatus closeStatus) throws Exception {
+        log.info("Binary session {} closed", session.getRemoteAddress());
+        sessionService.unregisterSession(session);
+        super.afterConnectionClosed(session, closeStatus);
+    }
+}
@@ -0,0 +1,44 @@
+package com.redali.example.controller;
+
+import com.redali.example.service.SessionService;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * Refuses new WebSocket connections (with "503 Service Unavailable") once the session service is draining ahead of
+ * shutting down, so clients go straight to another node.
+ */
+public class DrainingHandshakeInterceptor implements HandshakeInterceptor {
+
+    private final SessionService sessionService;
+
+    /**
+     * Construct interceptor.
+     *
+     * @param sessionService Service new connections would be registered with.
+     */
+    public DrainingHandshakeInterceptor(@NotNull SessionService sessionService) {
+        this.sessionService = sessionService;
+    }
+
+    @Override
+    public boolean beforeHandshake(@NotNull ServerHttpRequest request, @NotNull ServerHttpResponse response,
+                                   @NotNull WebSocketHandler wsHandler, @NotNull Map<String, Object> attributes) {
+        if (sessionService.isDraining()) {
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(@NotNull ServerHttpRequest request, @NotNull ServerHttpResponse response,
+                               @NotNull WebSocketHandler wsHandler, Exception exception) {
+    }
+}
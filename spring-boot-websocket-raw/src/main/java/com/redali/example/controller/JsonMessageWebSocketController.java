@@ -4,8 +4,8 @@ import com.redali.example.service.SessionService;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
@@ -25,10 +25,10 @@ public class JsonMessageWebSocketController extends TextWebSocketHandler {
     /**
      * Handle text messages posted by the client.
      *
-     * <p>This handler requires that each message sent by the client is a valid JSON object. If a client
-     * sends something we don't like, we'll shutdown the connection. The only validation done here is that
-     * the text message can be converted to a JSON object, then that object is forwarded to the associated
-     * service handler for processing.</p>
+     * <p>This handler requires that each message sent by the client is a valid JSON object (or an array of them to send
+     * a batch of requests). If a client sends something we don't like, we'll shutdown the connection. The only
+     * validation done here is that the text message can be decoded into a request (by the service's codec), then that
+     * request is forwarded to the associated service handler for processing.</p>
      *
      * @param session WebSocket client session that posted the message.
      * @param message Message posted by the client.
@@ -38,18 +38,25 @@ public class JsonMessageWebSocketController extends TextWebSocketHandler {
     public void handleTextMessage(@NotNull WebSocketSession session, @NotNull TextMessage message) throws Exception {
         String content = message.getPayload();
         try {
-            // Parse JSON message client, process and send out response if required
-            var jsonReceived = new JSONObject(content);
-            var jsonResponse = sessionService.processRequest(session, jsonReceived);
-            if (jsonResponse != null) {
-                session.sendMessage(new TextMessage(jsonResponse.toString()));
-            }
+            // Parse JSON message (or batch of messages) from client, process and send out response(s) if required
+            sessionService.handleMessage(session, message);
         } catch (JSONException err) {
             log.error("Received garbage from {}, closing connection, garbage: {}", session.getRemoteAddress(), content);
             session.close();
         }
     }
 
+    /**
+     * Pongs answer the heartbeat pings, they tell the session service the client is still there.
+     *
+     * @param session WebSocket client session that sent the pong.
+     * @param message Pong sent by the client.
+     */
+    @Override
+    protected void handlePongMessage(@NotNull WebSocketSession session, @NotNull PongMessage message) {
+        sessionService.handlePong(session, message);
+    }
+
     /**
      * When a client opens a connection, we register the session with the associated service.
      *
@@ -0,0 +1,81 @@
+package com.redali.example.controller;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lets several handlers share one endpoint, picking the handler by the WebSocket sub-protocol negotiated with the
+ * client during the handshake.
+ *
+ * <p>Clients that don't ask for a sub-protocol (or ask for ones we don't know) get the default handler.</p>
+ */
+public class SubProtocolSelectingHandler implements WebSocketHandler, SubProtocolCapable {
+
+    private final WebSocketHandler defaultHandler;
+    private final Map<String, WebSocketHandler> handlers = new LinkedHashMap<>();
+
+    /**
+     * Construct selecting handler.
+     *
+     * @param defaultHandler Handler used when no known sub-protocol was negotiated.
+     */
+    public SubProtocolSelectingHandler(@NotNull WebSocketHandler defaultHandler) {
+        this.defaultHandler = defaultHandler;
+    }
+
+    /**
+     * Add a handler for a sub-protocol (protocols added first are preferred if a client offers several).
+     *
+     * @param subProtocol Sub-protocol name.
+     * @param handler     Handler for sessions that negotiate the sub-protocol.
+     * @return This object so calls can be chained.
+     */
+    public SubProtocolSelectingHandler addHandler(@NotNull String subProtocol, @NotNull WebSocketHandler handler) {
+        handlers.put(subProtocol, handler);
+        return this;
+    }
+
+    @Override
+    public @NotNull List<String> getSubProtocols() {
+        return new ArrayList<>(handlers.keySet());
+    }
+
+    @Override
+    public void afterConnectionEstablished(@NotNull WebSocketSession session) throws Exception {
+        select(session).afterConnectionEstablished(session);
+    }
+
+    @Override
+    public void handleMessage(@NotNull WebSocketSession session, @NotNull WebSocketMessage<?> message) throws Exception {
+        select(session).handleMessage(session, message);
+    }
+
+    @Override
+    public void handleTransportError(@NotNull WebSocketSession session, @NotNull Throwable exception) throws Exception {
+        select(session).handleTransportError(session, exception);
+    }
+
+    @Override
+    public void afterConnectionClosed(@NotNull WebSocketSession session, @NotNull CloseStatus closeStatus) throws Exception {
+        select(session).afterConnectionClosed(session, closeStatus);
+    }
+
+    @Override
+    public boolean supportsPartialMessages() {
+        return false;
+    }
+
+    private WebSocketHandler select(WebSocketSession session) {
+        var protocol = session.getAcceptedProtocol();
+        return protocol == null ? defaultHandler : handlers.getOrDefault(protocol, defaultHandler);
+    }
+}
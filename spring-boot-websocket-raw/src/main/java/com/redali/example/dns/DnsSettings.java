@@ -0,0 +1,25 @@
+package com.redali.example.dns;
+
+/**
+ * Limits on the reverse DNS cache.
+ *
+ * @param ttlSeconds      How long (seconds) a looked up host name is kept before it is looked up again.
+ * @param maxEntries      Maximum number of addresses kept in the cache.
+ * @param resolverThreads Number of threads doing lookups (a slow DNS server ties one up per lookup).
+ */
+public record DnsSettings(int ttlSeconds, int maxEntries, int resolverThreads) {
+
+    /**
+     * Settings used when nothing is configured.
+     */
+    public static final DnsSettings DEFAULTS = new DnsSettings(300, 10_000, 4);
+
+    public DnsSettings {
+        if (ttlSeconds < 0) {
+            throw new IllegalArgumentException("DNS cache time to live can not be negative");
+        }
+        if (maxEntries < 1 || resolverThreads < 1) {
+            throw new IllegalArgumentException("DNS cache size and resolver threads must be positive");
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.redali.example.dns;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Looks up host names of IP addresses in the background and remembers them for a while.
+ *
+ * <p>A reverse DNS lookup can take seconds when a DNS server is slow or unreachable, far too long to wait for while
+ * answering a request. Lookups are done on a small pool of resolver threads instead and the result is shared by every
+ * caller asking about the same address until it expires. Callers never wait, they get the host name if it is known
+ * or null while the lookup is still running.</p>
+ */
+@Slf4j
+public class ReverseDnsCache implements AutoCloseable {
+    private record Entry(CompletableFuture<String> hostName, long expiresNanos) {
+    }
+
+    private final ConcurrentHashMap<InetAddress, Entry> entries = new ConcurrentHashMap<>();
+    private final Function<InetAddress, String> lookup;
+    private final ExecutorService resolver;
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    /**
+     * Construct cache that does real reverse DNS lookups.
+     *
+     * @param settings Time to live, size and thread limits.
+     */
+    public ReverseDnsCache(@NotNull DnsSettings settings) {
+        this(settings, ReverseDnsCache::reverseLookup);
+    }
+
+    /**
+     * Construct cache.
+     *
+     * @param settings Time to live, size and thread limits.
+     * @param lookup   Looks up the host name of an address (blocking), returns the IP address if there is no name.
+     */
+    public ReverseDnsCache(@NotNull DnsSettings settings, @NotNull Function<InetAddress, String> lookup) {
+        this.lookup = lookup;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(settings.ttlSeconds());
+        this.maxEntries = settings.maxEntries();
+        var threadFactory = new CustomizableThreadFactory("dns-resolver-");
+        threadFactory.setDaemon(true);
+        this.resolver = Executors.newFixedThreadPool(settings.resolverThreads(), threadFactory);
+    }
+
+    /**
+     * Start looking up the host name of an address unless it is already known or being looked up.
+     *
+     * @param address IP address.
+     * @return Completes with the host name (or the IP address if it has no name).
+     */
+    public CompletableFuture<String> resolve(@NotNull InetAddress address) {
+        long now = System.nanoTime();
+        var entry = entries.get(address);
+        if (entry == null || now - entry.expiresNanos() > 0) {
+            entry = entries.compute(address, (key, current) ->
+                    current != null && now - current.expiresNanos() <= 0 ? current : startLookup(key, now));
+            if (entries.size() > maxEntries) {
+                evict(now);
+            }
+        }
+        return entry.hostName();
+    }
+
+    /**
+     * Get the host name of an address without waiting, starting a lookup if it is not known yet.
+     *
+     * @param address IP address.
+     * @return Host name (or the IP address if it has no name), null if it is still being looked up.
+     */
+    public String getHostName(@NotNull InetAddress address) {
+        return resolve(address).getNow(null);
+    }
+
+    /**
+     * Number of addresses in the cache (including lookups still running and expired entries not yet evicted).
+     *
+     * @return Cache size.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Stops the resolver threads, lookups still running never complete. Addresses not already looked up get their IP
+     * address as the host name from then on.
+     */
+    @Override
+    public void close() {
+        resolver.shutdownNow();
+    }
+
+    private Entry startLookup(InetAddress address, long now) {
+        CompletableFuture<String> hostName;
+        try {
+            hostName = CompletableFuture.supplyAsync(() -> lookup.apply(address), resolver)
+                    .exceptionally(e -> {
+                        log.debug("Reverse DNS lookup of {} failed: {}", address.getHostAddress(), e.getMessage());
+                        return address.getHostAddress();
+                    });
+        } catch (RejectedExecutionException e) {
+            // Closed (the application is shutting down), don't fail the request asking for it
+            hostName = CompletableFuture.completedFuture(address.getHostAddress());
+        }
+        return new Entry(hostName, now + ttlNanos);
+    }
+
+    // Drop expired entries first, then whatever comes first until back under the limit
+    private void evict(long now) {
+        entries.values().removeIf(entry -> now - entry.expiresNanos() > 0);
+        var addresses = entries.keySet().iterator();
+        while (entries.size() > maxEntries && addresses.hasNext()) {
+            addresses.next();
+            addresses.remove();
+        }
+    }
+
+    // InetAddress remembers the name it was created with, a copy made from the raw bytes forces a fresh lookup
+    private static String reverseLookup(InetAddress address) {
+        try {
+            return InetAddress.getByAddress(address.getAddress()).getHostName();
+        } catch (UnknownHostException e) {
+            return address.getHostAddress();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.redali.example.handler;
+
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.DiceRoll;
+import com.redali.example.message.ServerMessage;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Example of processing a request that requires additional attributes (type 1).
+ *
+ * <pre><code>{ "request": 1, "dice": 5, "sides": 6 }</code></pre>
+ */
+@Component
+public class DiceRollHandler implements RequestHandler {
+    public static final int REQUEST_ID = 1;
+
+    @Override
+    public int getRequestId() {
+        return REQUEST_ID;
+    }
+
+    @Override
+    public ServerMessage handle(@NotNull WebSocketSession session, @NotNull ClientRequest request) {
+        int dice = Math.min(100, request.getDice(2));
+        int sides = Math.max(2, request.getSides(6));
+        // Each thread has its own generator, sessions rolling at the same time never contend on a shared seed
+        var diceRoller = ThreadLocalRandom.current();
+        int[] roll = new int[dice];
+        for (int i = 0; i < dice; i++) {
+            roll[i] = diceRoller.nextInt(sides) + 1;
+        }
+        return new ServerMessage(REQUEST_ID, new DiceRoll(dice, sides, roll));
+    }
+}
@@ -0,0 +1,109 @@
+package com.redali.example.handler;
+
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.DiceStats;
+import com.redali.example.message.ServerMessage;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Rolls a large number of dice and responds with statistics about the rolls instead of the rolls themselves (type 2).
+ *
+ * <pre><code>{ "request": 2, "dice": 1000000, "sides": 6, "seed": 42 }</code></pre>
+ *
+ * <p>The rolls are split into fixed size chunks that are rolled in parallel on the common fork/join pool. Each chunk
+ * gets its own generator split off from a root generator in the same order every time, so when a "seed" is provided
+ * the results are the same no matter how many threads did the work.</p>
+ */
+@Component
+public class DiceStatsHandler implements RequestHandler {
+    public static final int REQUEST_ID = 2;
+    public static final int MAX_DICE = 100_000_000;
+    public static final int MAX_SIDES = 1000;
+
+    // Dice rolled by a single fork/join task, part of what makes seeded results reproducible (do not change lightly)
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    @Override
+    public int getRequestId() {
+        return REQUEST_ID;
+    }
+
+    @Override
+    public Execution getExecution() {
+        return Execution.CPU_BOUND;
+    }
+
+    @Override
+    public ServerMessage handle(@NotNull WebSocketSession session, @NotNull ClientRequest request) {
+        return new ServerMessage(REQUEST_ID, roll(request.getDice(1_000_000), request.getSides(6), request.getSeed()));
+    }
+
+    /**
+     * Roll dice and gather statistics about the values rolled.
+     *
+     * @param dice  Number of dice to roll (limited to [1, {@link #MAX_DICE}]).
+     * @param sides Number of sides on each die (limited to [2, {@link #MAX_SIDES}]).
+     * @param seed  Seed for reproducible results or null for random results.
+     * @return Statistics about the rolls.
+     */
+    public static DiceStats roll(int dice, int sides, Long seed) {
+        dice = Math.max(1, Math.min(MAX_DICE, dice));
+        sides = Math.max(2, Math.min(MAX_SIDES, sides));
+        var root = seed != null ? new SplittableRandom(seed) : new SplittableRandom();
+        var histogram = new RollTask(root, sides, 0, dice).invoke();
+
+        long sum = 0;
+        long sumOfSquares = 0;
+        for (int face = 1; face <= sides; face++) {
+            long count = histogram[face - 1];
+            sum += count * face;
+            sumOfSquares += count * face * face;
+        }
+        double mean = (double) sum / dice;
+        double variance = Math.max(0.0, (double) sumOfSquares / dice - mean * mean);
+        return new DiceStats(dice, sides, seed, histogram, sum, mean, variance);
+    }
+
+    // Rolls the dice in [from, to) and returns a histogram of the faces rolled. Ranges are halved on chunk boundaries
+    // and the right half always gets the next generator split from this task's generator, so the generator used for
+    // each chunk only depends on the seed and the number of dice.
+    private static final class RollTask extends RecursiveTask<long[]> {
+        private final SplittableRandom random;
+        private final int sides;
+        private final int from;
+        private final int to;
+
+        RollTask(SplittableRandom random, int sides, int from, int to) {
+            this.random = random;
+            this.sides = sides;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            int chunks = (to - from + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            if (chunks <= 1) {
+                var histogram = new long[sides];
+                for (int i = from; i < to; i++) {
+                    histogram[random.nextInt(sides)]++;
+                }
+                return histogram;
+            }
+            int middle = from + (chunks / 2) * CHUNK_SIZE;
+            var right = new RollTask(random.split(), sides, middle, to);
+            right.fork();
+            var histogram = new RollTask(random, sides, from, middle).compute();
+            var other = right.join();
+            for (int i = 0; i < sides; i++) {
+                histogram[i] += other[i];
+            }
+            return histogram;
+        }
+    }
+}
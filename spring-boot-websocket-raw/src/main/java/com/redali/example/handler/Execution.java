@@ -0,0 +1,21 @@
+package com.redali.example.handler;
+
+/**
+ * How a request handler behaves when it runs, used to pick the thread it runs on.
+ */
+public enum Execution {
+    /**
+     * Very quick and never blocks, run directly on the thread that received the request.
+     */
+    TRIVIAL,
+
+    /**
+     * Keeps a CPU busy for a noticeable amount of time, run on a pool sized to the number of CPUs.
+     */
+    CPU_BOUND,
+
+    /**
+     * May wait on I/O (network, disk, DNS, ...), run on a larger pool so the waiting doesn't hold up other work.
+     */
+    BLOCKING
+}
@@ -0,0 +1,62 @@
+package com.redali.example.handler;
+
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.Pipeline;
+import com.redali.example.message.ServerMessage;
+import com.redali.example.service.ExecutionSettings;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lets the client pipeline its requests (type 6).
+ *
+ * <pre><code>{ "request": 6 }</code></pre>
+ *
+ * <p>From then on frames where every request has a "cid" are processed side by side, up to a limit, and each response
+ * is sent as soon as it is ready, so it may overtake the responses to requests sent before it. Frames without a "cid"
+ * are still processed in the order they arrived. This works in every {@link ExecutionSettings execution mode}, in
+ * INLINE mode pipelined requests (other than trivial ones) are handed to a pool instead of being processed on the
+ * thread that received them.</p>
+ */
+@Component
+public class PipelineHandler implements RequestHandler {
+    public static final int REQUEST_ID = 6;
+
+    private final ExecutionSettings executionSettings;
+    // IDs of the sessions that asked for pipelining
+    private final Set<String> pipelined = ConcurrentHashMap.newKeySet();
+
+    public PipelineHandler(@NotNull ExecutionSettings executionSettings) {
+        this.executionSettings = executionSettings;
+    }
+
+    @Override
+    public int getRequestId() {
+        return REQUEST_ID;
+    }
+
+    /**
+     * Check whether a client asked for its requests to be pipelined.
+     *
+     * @param session The client session.
+     * @return True if requests with a "cid" from the client may be processed side by side.
+     */
+    public boolean isPipelined(@NotNull WebSocketSession session) {
+        return pipelined.contains(session.getId());
+    }
+
+    @Override
+    public void sessionClosed(@NotNull WebSocketSession session) {
+        pipelined.remove(session.getId());
+    }
+
+    @Override
+    public ServerMessage handle(@NotNull WebSocketSession session, @NotNull ClientRequest request) {
+        pipelined.add(session.getId());
+        return new ServerMessage(REQUEST_ID, new Pipeline(true, executionSettings.maxInFlight()));
+    }
+}
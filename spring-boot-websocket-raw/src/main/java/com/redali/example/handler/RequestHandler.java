@@ -0,0 +1,62 @@
+package com.redali.example.handler;
+
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.ServerMessage;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * Handles one type of client request.
+ *
+ * <p>Implement this interface and make the implementation a Spring bean (for example with {@code @Component}) to add
+ * a new request type, the session service picks up all handlers when the application starts.</p>
+ */
+public interface RequestHandler {
+
+    /**
+     * Get the "request" type ID this handler responds to.
+     *
+     * @return Request type ID (0 or greater, must be unique across handlers).
+     */
+    int getRequestId();
+
+    /**
+     * Get how the handler behaves when it runs so it can be run on an appropriate thread.
+     *
+     * @return How the handler behaves (defaults to TRIVIAL).
+     */
+    default Execution getExecution() {
+        return Execution.TRIVIAL;
+    }
+
+    /**
+     * Called when a client connects, before any of its requests are processed.
+     *
+     * <p>Lets a handler start work ahead of time (like looking up host names) so its requests can be answered without
+     * waiting. Called on the container thread, so it must not block. Does nothing by default.</p>
+     *
+     * @param session Session that was opened.
+     */
+    default void sessionOpened(@NotNull WebSocketSession session) {
+    }
+
+    /**
+     * Called when a client disconnects so a handler can let go of anything it kept for the session. Does nothing by
+     * default.
+     *
+     * @param session Session that was closed.
+     */
+    default void sessionClosed(@NotNull WebSocketSession session) {
+    }
+
+    /**
+     * Process a request.
+     *
+     * @param session Session the request was received from.
+     * @param request Decoded request.
+     * @return Message to send back to the session or null if nothing to send back.
+     * @throws JSONException If there was a problem with the request (the client will be disconnected).
+     */
+    ServerMessage handle(@NotNull WebSocketSession session, @NotNull ClientRequest request) throws JSONException;
+}
@@ -0,0 +1,67 @@
+package com.redali.example.handler;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lookup table from request type ID to the handler for it.
+ *
+ * <p>Built once when the application starts. Request IDs are small integers so the handlers are placed in an array
+ * indexed by ID, finding the handler for a request is a bounds check and an array read.</p>
+ */
+public class RequestHandlerRegistry {
+    // Keeps a typo in a handler's ID from allocating a huge table
+    private static final int MAX_REQUEST_ID = 0xffff;
+
+    private final RequestHandler[] table;
+    private final List<RequestHandler> handlers;
+
+    /**
+     * Construct registry.
+     *
+     * @param handlers Handlers to register.
+     * @throws IllegalArgumentException If a handler ID is out of range or more than one handler uses the same ID.
+     */
+    public RequestHandlerRegistry(@NotNull Collection<? extends RequestHandler> handlers) {
+        this.handlers = List.copyOf(handlers);
+        int maxId = -1;
+        for (var handler : handlers) {
+            int id = handler.getRequestId();
+            if (id < 0 || id > MAX_REQUEST_ID) {
+                throw new IllegalArgumentException(String.format("Request ID %d of %s is not in range [0, %d]", id,
+                        handler.getClass().getName(), MAX_REQUEST_ID));
+            }
+            maxId = Math.max(maxId, id);
+        }
+        table = new RequestHandler[maxId + 1];
+        for (var handler : handlers) {
+            int id = handler.getRequestId();
+            if (table[id] != null) {
+                throw new IllegalArgumentException(String.format("Request ID %d is claimed by both %s and %s", id,
+                        table[id].getClass().getName(), handler.getClass().getName()));
+            }
+            table[id] = handler;
+        }
+    }
+
+    /**
+     * Find the handler for a request type.
+     *
+     * @param requestId Request type ID from the client.
+     * @return Handler for the request or null if there is no handler for the ID.
+     */
+    public RequestHandler lookup(int requestId) {
+        return requestId >= 0 && requestId < table.length ? table[requestId] : null;
+    }
+
+    /**
+     * Get all the registered handlers.
+     *
+     * @return Handlers in the order they were registered.
+     */
+    public List<RequestHandler> getHandlers() {
+        return handlers;
+    }
+}
@@ -0,0 +1,50 @@
+package com.redali.example.handler;
+
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.ServerMessage;
+import com.redali.example.service.ResumeRegistry;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * Makes the client's session resumable, or resumes an earlier session after reconnecting (type 5).
+ *
+ * <p>Without a token the session is made resumable: the response carries the token and every message sent from then
+ * on carries the sequence number ("seq") of its frame.</p>
+ *
+ * <pre><code>{ "request": 5 }</code></pre>
+ *
+ * <p>With the token and the sequence number of the last frame received, the frames missed since are sent again ahead
+ * of the response.</p>
+ *
+ * <pre><code>{ "request": 5, "token": "q3Lk...", "seq": 42 }</code></pre>
+ */
+@Component
+public class ResumeHandler implements RequestHandler {
+    public static final int REQUEST_ID = 5;
+
+    private final ResumeRegistry resumes;
+
+    public ResumeHandler(@NotNull ResumeRegistry resumes) {
+        this.resumes = resumes;
+    }
+
+    @Override
+    public int getRequestId() {
+        return REQUEST_ID;
+    }
+
+    @Override
+    public ServerMessage handle(@NotNull WebSocketSession session, @NotNull ClientRequest request) throws JSONException {
+        if (request.getToken() == null) {
+            return new ServerMessage(REQUEST_ID, resumes.start(session));
+        }
+        if (request.getSeq() == null) {
+            throw new JSONException(String.format("Resume request from client %s is missing the \"%s\"",
+                    session.getRemoteAddress(), ClientRequest.SEQ_KEY));
+        }
+        return new ServerMessage(REQUEST_ID, resumes.resume(session, request.getToken(), request.getSeq()));
+    }
+}
@@ -0,0 +1,78 @@
+package com.redali.example.handler;
+
+import com.redali.example.dns.ReverseDnsCache;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.ServerMessage;
+import com.redali.example.message.SessionInfo;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Responds to a session information request (type 0) with the server time and both ends of the connection.
+ *
+ * <pre><code>{ "request": 0 }</code></pre>
+ *
+ * <p>Host names are looked up in the background as soon as a client connects (and shared with other clients from
+ * the same address). The response never waits for a lookup, until it completes the host is the IP address and
+ * "lookupComplete" is false.</p>
+ */
+@Component
+public class SessionInfoHandler implements RequestHandler {
+    public static final int REQUEST_ID = 0;
+
+    private final ReverseDnsCache dnsCache;
+
+    /**
+     * Construct handler.
+     *
+     * @param dnsCache Where host names are looked up (closed by whoever made it, not the handler).
+     */
+    @Autowired
+    public SessionInfoHandler(@NotNull ReverseDnsCache dnsCache) {
+        this.dnsCache = dnsCache;
+    }
+
+    @Override
+    public int getRequestId() {
+        return REQUEST_ID;
+    }
+
+    // Start the lookups now so the names are (usually) known by the time the client asks
+    @Override
+    public void sessionOpened(@NotNull WebSocketSession session) {
+        resolve(session.getLocalAddress());
+        resolve(session.getRemoteAddress());
+    }
+
+    @Override
+    public ServerMessage handle(@NotNull WebSocketSession session, @NotNull ClientRequest request) {
+        var info = new SessionInfo(System.currentTimeMillis(), toAddressInfo(session.getLocalAddress()),
+                toAddressInfo(session.getRemoteAddress()));
+        return new ServerMessage(REQUEST_ID, info);
+    }
+
+    private void resolve(InetSocketAddress address) {
+        if (address != null && address.getAddress() != null) {
+            dnsCache.resolve(address.getAddress());
+        }
+    }
+
+    private SessionInfo.AddressInfo toAddressInfo(InetSocketAddress address) {
+        if (address == null) {
+            return null;
+        }
+        if (address.getAddress() == null) {
+            // Never had an IP address, nothing to look up
+            return new SessionInfo.AddressInfo(address.getHostString(), address.getHostString(), false, false,
+                    address.getPort());
+        }
+        var ip = address.getAddress().getHostAddress();
+        var host = dnsCache.getHostName(address.getAddress());
+        return new SessionInfo.AddressInfo(ip, host != null ? host : ip, !address.isUnresolved(), host != null,
+                address.getPort());
+    }
+}
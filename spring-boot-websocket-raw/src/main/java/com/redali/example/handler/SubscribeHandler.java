@@ -0,0 +1,37 @@
+package com.redali.example.handler;
+
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.ServerMessage;
+import com.redali.example.message.Subscription;
+import com.redali.example.service.TopicRegistry;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * Subscribes the client to messages published on a named topic (type 3).
+ *
+ * <pre><code>{ "request": 3, "topic": "news" }</code></pre>
+ */
+@Component
+public class SubscribeHandler implements RequestHandler {
+    public static final int REQUEST_ID = 3;
+
+    private final TopicRegistry topics;
+
+    public SubscribeHandler(@NotNull TopicRegistry topics) {
+        this.topics = topics;
+    }
+
+    @Override
+    public int getRequestId() {
+        return REQUEST_ID;
+    }
+
+    @Override
+    public ServerMessage handle(@NotNull WebSocketSession session, @NotNull ClientRequest request) throws JSONException {
+        topics.subscribe(session, request.getTopic());
+        return new ServerMessage(REQUEST_ID, new Subscription(request.getTopic(), true));
+    }
+}
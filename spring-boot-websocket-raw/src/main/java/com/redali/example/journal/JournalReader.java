@@ -0,0 +1,104 @@
+package com.redali.example.journal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reads the frames written by a {@link RequestJournal} back, oldest first.
+ *
+ * <p>The segments are memory mapped too. A journal that is still being written to can be read, the reader stops at
+ * the last record written when it got there.</p>
+ */
+public class JournalReader {
+    private final List<Path> segments;
+    private int nextSegment;
+    private MappedByteBuffer segment;
+
+    /**
+     * Construct reader.
+     *
+     * @param directory Directory the journal was written to.
+     * @throws IOException If the directory could not be listed.
+     */
+    public JournalReader(@NotNull Path directory) throws IOException {
+        this.segments = segments(directory);
+    }
+
+    /**
+     * List the segment files of a journal.
+     *
+     * @param directory Directory the journal was written to.
+     * @return Segment files in the order they were written.
+     * @throws IOException If the directory could not be listed.
+     */
+    public static List<Path> segments(@NotNull Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            // Zero padded indexes, so sorting by name puts them in order
+            return files.filter(file -> {
+                var name = file.getFileName().toString();
+                return name.startsWith(RequestJournal.SEGMENT_PREFIX) && name.endsWith(RequestJournal.SEGMENT_SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    /**
+     * Read the next frame.
+     *
+     * @return Frame read, null once there are no more.
+     * @throws IOException If a segment could not be read or is not a journal segment.
+     */
+    public JournalRecord next() throws IOException {
+        while (true) {
+            if (segment == null) {
+                if (nextSegment == segments.size()) {
+                    return null;
+                }
+                segment = open(segments.get(nextSegment++));
+            }
+            int length = segment.remaining() < RequestJournal.RECORD_HEADER ? 0 : segment.getInt(segment.position());
+            if (length == 0) {
+                // Rest of the segment was never written to
+                segment = null;
+                continue;
+            }
+            if (length < RequestJournal.RECORD_HEADER || length > segment.remaining()) {
+                throw new IOException(String.format("Bad record length %d at %d of journal segment %s", length,
+                        segment.position(), segments.get(nextSegment - 1)));
+            }
+            segment.getInt();
+            long timestamp = segment.getLong();
+            int requestType = segment.getInt();
+            boolean binary = (segment.get() & RequestJournal.BINARY) != 0;
+            var sessionId = new byte[segment.getShort() & 0xFFFF];
+            segment.get(sessionId);
+            int payloadLength = length - RequestJournal.RECORD_HEADER - sessionId.length;
+            if (payloadLength < 0) {
+                throw new IOException("Bad session ID length in journal segment " + segments.get(nextSegment - 1));
+            }
+            var payload = new byte[payloadLength];
+            segment.get(payload);
+            return new JournalRecord(new String(sessionId, StandardCharsets.UTF_8), timestamp, requestType, binary,
+                    payload);
+        }
+    }
+
+    private static MappedByteBuffer open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < Integer.BYTES || buffer.getInt() != RequestJournal.MAGIC) {
+            throw new IOException("Not a request journal segment: " + path);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,17 @@
+package com.redali.example.journal;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A frame received from a client, as read back from a journal.
+ *
+ * @param sessionId       ID of the session the frame was received on.
+ * @param timestampMicros When the frame was received (microseconds since the epoch).
+ * @param requestType     Type of the request in the frame, {@link RequestJournal#BATCH} for a batch of requests or
+ *                        {@link RequestJournal#UNDECODED} if the frame could not be decoded.
+ * @param binary          True for a binary (CBOR) frame, false for a text (JSON) frame.
+ * @param payload         Payload of the frame exactly as received (UTF-8 for a text frame).
+ */
+public record JournalRecord(@NotNull String sessionId, long timestampMicros, int requestType, boolean binary,
+                            @NotNull byte[] payload) {
+}
@@ -0,0 +1,37 @@
+package com.redali.example.journal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+
+/**
+ * Whether (and where) the frames received from clients are journaled.
+ *
+ * @param enabled     Whether frames are journaled at all.
+ * @param directory   Directory the segment files are written to (created if needed).
+ * @param segmentSize Size (bytes) of each segment file, a frame larger than a segment is not journaled.
+ * @param queueSize   Maximum number of frames waiting to be written, frames arriving while it is full are not
+ *                    journaled (the clients are never held up by the journal).
+ */
+public record JournalSettings(boolean enabled, @NotNull Path directory, int segmentSize, int queueSize) {
+
+    /**
+     * Smallest segment size allowed.
+     */
+    public static final int MIN_SEGMENT_SIZE = 4096;
+
+    /**
+     * Settings used when nothing is configured (journal disabled).
+     */
+    public static final JournalSettings DEFAULTS = new JournalSettings(false, Path.of("journal"), 64 * 1024 * 1024,
+            65536);
+
+    public JournalSettings {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Journal segment size must be at least " + MIN_SEGMENT_SIZE + " bytes");
+        }
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Journal queue size must be positive");
+        }
+    }
+}
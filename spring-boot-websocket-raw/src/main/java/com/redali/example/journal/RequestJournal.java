@@ -0,0 +1,256 @@
+package com.redali.example.journal;
+
+import com.redali.example.metrics.WebSocketMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append only journal of the frames received from clients, for looking into incidents and replaying real traffic
+ * (see {@link JournalReader}).
+ *
+ * <p>Frames are written to segment files of a fixed size, memory mapped so a write is just a copy into the page cache.
+ * Receiving a frame only puts it on a bounded queue (a frame arriving while the queue is full is counted and left out
+ * rather than holding up the client). A single writer thread takes whatever has queued up in one go, encodes it and
+ * copies it into the current segment, starting a new segment when it is full.</p>
+ *
+ * <p>Each segment starts with {@link #MAGIC} followed by the records, the rest of the file is zeros. A record is:</p>
+ *
+ * <pre>
+ * int    length of the whole record (bytes, written last so a reader never sees half a record)
+ * long   timestamp (microseconds since the epoch)
+ * int    request type ({@link #BATCH} or {@link #UNDECODED} if not a single request)
+ * byte   flags ({@link #BINARY} for a binary frame)
+ * short  length of the session ID
+ * byte[] session ID (UTF-8)
+ * byte[] payload of the frame
+ * </pre>
+ */
+@Slf4j
+public class RequestJournal implements AutoCloseable {
+    /**
+     * Request type recorded for a frame holding a batch of requests.
+     */
+    public static final int BATCH = -1;
+
+    /**
+     * Request type recorded for a frame that could not be decoded.
+     */
+    public static final int UNDECODED = -2;
+
+    static final int MAGIC = 0x57534A31; // "WSJ1"
+    static final byte BINARY = 1;
+    // Length, timestamp, request type, flags and session ID length
+    static final int RECORD_HEADER = 4 + 8 + 4 + 1 + 2;
+    static final String SEGMENT_PREFIX = "requests-";
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    // Most frames written between looks at the queue
+    private static final int MAX_BATCH = 1024;
+    private static final Entry STOP = new Entry("", 0, 0, null);
+
+    // Payload is the String of a text frame (encoded by the writer) or a copy of a binary frame's bytes
+    private record Entry(String sessionId, long nanos, int requestType, Object payload) {
+    }
+
+    private final JournalSettings settings;
+    private final WebSocketMetrics metrics;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+    // Frames are timestamped with System.nanoTime() (cheap), turned into wall clock time by the writer
+    private final long baseMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    private final long baseNanos = System.nanoTime();
+
+    // Writer thread only
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+
+    /**
+     * Construct journal (starts the writer thread if enabled).
+     *
+     * @param settings Whether and where to journal.
+     * @param metrics  Where to count frames journaled and left out.
+     * @throws UncheckedIOException If the journal directory could not be created or read.
+     */
+    public RequestJournal(@NotNull JournalSettings settings, @NotNull WebSocketMetrics metrics) {
+        this.settings = settings;
+        this.metrics = metrics;
+        if (!settings.enabled()) {
+            this.queue = null;
+            this.writer = null;
+            return;
+        }
+        try {
+            Files.createDirectories(settings.directory());
+            // Carry on after the segments of earlier runs
+            this.segmentIndex = JournalReader.segments(settings.directory()).stream()
+                    .mapToInt(RequestJournal::segmentIndex).max().orElse(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open request journal in " + settings.directory(), e);
+        }
+        this.queue = new ArrayBlockingQueue<>(settings.queueSize());
+        this.writer = new Thread(this::writeLoop, "ws-journal");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Journaling requests to {}", settings.directory().toAbsolutePath());
+    }
+
+    /**
+     * Create a journal that journals nothing.
+     *
+     * @return Disabled journal.
+     */
+    public static RequestJournal disabled() {
+        return new RequestJournal(JournalSettings.DEFAULTS, WebSocketMetrics.disabled());
+    }
+
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * Journal a frame received from a client (never blocks).
+     *
+     * @param session     Session the frame was received on.
+     * @param requestType Type of the request in the frame, {@link #BATCH} or {@link #UNDECODED}.
+     * @param message     Frame received.
+     */
+    public void append(@NotNull WebSocketSession session, int requestType, @NotNull WebSocketMessage<?> message) {
+        if (writer == null) {
+            return;
+        }
+        Object payload;
+        if (message instanceof TextMessage text) {
+            payload = text.getPayload();
+        } else if (message instanceof BinaryMessage binary) {
+            // The container may reuse the buffer once the frame has been handled
+            var buffer = binary.getPayload().duplicate();
+            var bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            payload = bytes;
+        } else {
+            return;
+        }
+        if (!queue.offer(new Entry(session.getId(), System.nanoTime(), requestType, payload))) {
+            metrics.journalDropped();
+        }
+    }
+
+    /**
+     * Write out everything queued and stop the writer thread.
+     */
+    @Override
+    public void close() {
+        if (writer == null || !writer.isAlive()) {
+            return;
+        }
+        try {
+            queue.put(STOP);
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        var batch = new ArrayList<Entry>(MAX_BATCH);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            stopping = write(batch);
+            batch.clear();
+        }
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    // Returns true once the STOP entry is seen
+    private boolean write(List<Entry> batch) {
+        for (var entry : batch) {
+            if (entry == STOP) {
+                return true;
+            }
+            try {
+                write(entry);
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to write request journal segment in {}: {}", settings.directory(), e.toString());
+                segment = null;
+                metrics.journalDropped();
+            }
+        }
+        return false;
+    }
+
+    private void write(Entry entry) throws IOException {
+        var sessionId = entry.sessionId().getBytes(StandardCharsets.UTF_8);
+        var payload = entry.payload() instanceof String text ? text.getBytes(StandardCharsets.UTF_8)
+                : (byte[]) entry.payload();
+        int length = RECORD_HEADER + sessionId.length + payload.length;
+        if (length > settings.segmentSize() - Integer.BYTES || sessionId.length > 0xFFFF) {
+            log.debug("Frame of {} bytes from session {} does not fit a journal segment", payload.length,
+                    entry.sessionId());
+            metrics.journalDropped();
+            return;
+        }
+        if (segment == null || segment.remaining() < length) {
+            nextSegment();
+        }
+        int start = segment.position();
+        segment.position(start + Integer.BYTES);
+        segment.putLong(baseMicros + (entry.nanos() - baseNanos) / 1000);
+        segment.putInt(entry.requestType());
+        segment.put(entry.payload() instanceof String ? 0 : BINARY);
+        segment.putShort((short) sessionId.length);
+        segment.put(sessionId);
+        segment.put(payload);
+        segment.putInt(start, length);
+        metrics.journalWritten();
+    }
+
+    private void nextSegment() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+        var path = settings.directory().resolve(String.format("%s%08d%s", SEGMENT_PREFIX, ++segmentIndex,
+                SEGMENT_SUFFIX));
+        // The mapping stays valid after the channel is closed
+        try (var channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, settings.segmentSize());
+        }
+        segment.putInt(MAGIC);
+    }
+
+    private static int segmentIndex(Path segment) {
+        var name = segment.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.redali.example.message;
+
+/**
+ * A request decoded from a client message.
+ *
+ * <p>Holds the "request" type ID and any of the optional typed attributes a request may carry. Decoders fill in the
+ * attributes they find, anything not present in the message is left as null.</p>
+ *
+ * <pre><code>{ "request": 1, "dice": 5, "sides": 6 }</code></pre>
+ */
+public class ClientRequest {
+    public static final String REQUEST_KEY = "request";
+    public static final String DICE_KEY = "dice";
+    public static final String SIDES_KEY = "sides";
+    public static final String SEED_KEY = "seed";
+    public static final String TOPIC_KEY = "topic";
+    public static final String CID_KEY = ServerMessage.CID_KEY;
+    public static final String TOKEN_KEY = "token";
+    public static final String SEQ_KEY = ServerMessage.SEQ_KEY;
+
+    private final int request;
+    private Integer dice;
+    private Integer sides;
+    private Long seed;
+    private String topic;
+    private Long cid;
+    private String token;
+    private Long seq;
+
+    /**
+     * Construct request.
+     *
+     * @param request The request type ID.
+     */
+    public ClientRequest(int request) {
+        this.request = request;
+    }
+
+    public int getRequest() {
+        return request;
+    }
+
+    /**
+     * Get number of dice to roll.
+     *
+     * @param defaultValue Value to return if the request did not specify the number of dice.
+     * @return Number of dice from request or default value.
+     */
+    public int getDice(int defaultValue) {
+        return dice != null ? dice : defaultValue;
+    }
+
+    public void setDice(Integer dice) {
+        this.dice = dice;
+    }
+
+    /**
+     * Get number of sides each die has.
+     *
+     * @param defaultValue Value to return if the request did not specify the number of sides.
+     * @return Number of sides from request or default value.
+     */
+    public int getSides(int defaultValue) {
+        return sides != null ? sides : defaultValue;
+    }
+
+    public void setSides(Integer sides) {
+        this.sides = sides;
+    }
+
+    /**
+     * Get seed for random number generation.
+     *
+     * @return Seed from request or null if the request did not specify one (results should then be random).
+     */
+    public Long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Get the name of the topic to subscribe to or unsubscribe from.
+     *
+     * @return Topic from request or null if the request did not specify one.
+     */
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    /**
+     * Get the client supplied correlation ID, echoed back in the response so clients can match them up.
+     *
+     * @return Correlation ID from request or null if the request did not specify one.
+     */
+    public Long getCid() {
+        return cid;
+    }
+
+    public void setCid(Long cid) {
+        this.cid = cid;
+    }
+
+    /**
+     * Get the token of the session to resume.
+     *
+     * @return Resume token from request or null if the request did not specify one.
+     */
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Get the sequence number of the last frame the client received (when resuming a session).
+     *
+     * @return Sequence number from request or null if the request did not specify one.
+     */
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+}
@@ -0,0 +1,35 @@
+package com.redali.example.message;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Content of a dice roll response (type 1).
+ *
+ * <pre><code>{ "dice": 3, "sides": 6, "rolls": [ 4, 1, 6 ] }</code></pre>
+ *
+ * @param dice  Number of dice rolled.
+ * @param sides Number of sides on each die.
+ * @param rolls Value of each die rolled.
+ */
+public record DiceRoll(int dice, int sides, int[] rolls) implements MessageContent {
+    private static final String ROLLS_KEY = "rolls";
+
+    @Override
+    public void write(MessageWriter writer) {
+        writer.startObject()
+                .field(ClientRequest.DICE_KEY, dice)
+                .field(ClientRequest.SIDES_KEY, sides)
+                .name(ROLLS_KEY).value(rolls)
+                .endObject();
+    }
+
+    @Override
+    public JSONObject toJson() {
+        var results = new JSONObject();
+        results.put(ClientRequest.DICE_KEY, dice);
+        results.put(ClientRequest.SIDES_KEY, sides);
+        results.put(ROLLS_KEY, new JSONArray(rolls));
+        return results;
+    }
+}
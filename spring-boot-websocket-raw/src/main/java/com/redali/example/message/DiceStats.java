@@ -0,0 +1,60 @@
+package com.redali.example.message;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Content of a dice statistics response (type 2).
+ *
+ * <pre><code>{ "dice": 1000000, "sides": 6, "seed": 42, "histogram": [ 166402, ... ], "sum": 3499051,
+ *   "mean": 3.499051, "variance": 2.918 }</code></pre>
+ *
+ * @param dice      Number of dice rolled.
+ * @param sides     Number of sides on each die.
+ * @param seed      Seed the rolls were generated from (null if the request did not provide one).
+ * @param histogram Number of times each face came up (index 0 is the count of 1s).
+ * @param sum       Total of all the dice rolled.
+ * @param mean      Average value rolled.
+ * @param variance  Population variance of the values rolled.
+ */
+public record DiceStats(long dice, int sides, Long seed, long[] histogram, long sum, double mean, double variance)
+        implements MessageContent {
+    private static final String HISTOGRAM_KEY = "histogram";
+    private static final String SUM_KEY = "sum";
+    private static final String MEAN_KEY = "mean";
+    private static final String VARIANCE_KEY = "variance";
+
+    @Override
+    public void write(MessageWriter writer) {
+        writer.startObject()
+                .field(ClientRequest.DICE_KEY, dice)
+                .field(ClientRequest.SIDES_KEY, sides);
+        if (seed != null) {
+            writer.field(ClientRequest.SEED_KEY, seed.longValue());
+        }
+        writer.name(HISTOGRAM_KEY).value(histogram)
+                .field(SUM_KEY, sum)
+                .field(MEAN_KEY, mean)
+                .field(VARIANCE_KEY, variance)
+                .endObject();
+    }
+
+    @Override
+    public JSONObject toJson() {
+        var results = new JSONObject();
+        results.put(ClientRequest.DICE_KEY, dice);
+        results.put(ClientRequest.SIDES_KEY, sides);
+        if (seed != null) {
+            results.put(ClientRequest.SEED_KEY, seed.longValue());
+        }
+        var counts = new JSONArray();
+        for (long count : histogram) {
+            counts.put(count);
+        }
+        results.put(HISTOGRAM_KEY, counts);
+        results.put(SUM_KEY, sum);
+        results.put(MEAN_KEY, mean);
+        results.put(VARIANCE_KEY, variance);
+        return results;
+    }
+}
@@ -0,0 +1,36 @@
+package com.redali.example.message;
+
+import org.json.JSONObject;
+
+/**
+ * Content of the last message sent to a client before the server shuts down and closes its connection.
+ *
+ * <pre><code>{ "id": 503, "content": { "reconnectAfter": 2500 } }</code></pre>
+ *
+ * <p>Clients are closed in waves and each is told a different time to wait, so they don't all reconnect (to whichever
+ * nodes are left) at the same moment.</p>
+ *
+ * @param reconnectAfter How long (milliseconds) the client should wait before reconnecting.
+ */
+public record GoAway(long reconnectAfter) implements MessageContent {
+    /**
+     * ID of the message (like HTTP's "503 Service Unavailable").
+     */
+    public static final int MESSAGE_ID = 503;
+
+    private static final String RECONNECT_AFTER_KEY = "reconnectAfter";
+
+    @Override
+    public void write(MessageWriter writer) {
+        writer.startObject()
+                .field(RECONNECT_AFTER_KEY, reconnectAfter)
+                .endObject();
+    }
+
+    @Override
+    public JSONObject toJson() {
+        var json = new JSONObject();
+        json.put(RECONNECT_AFTER_KEY, reconnectAfter);
+        return json;
+    }
+}
@@ -0,0 +1,62 @@
+package com.redali.example.message;
+
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Iterator;
+
+/**
+ * Adapts an existing org.json object (like the ones built by server side tasks) to message content.
+ *
+ * @param json JSON object to send as the content.
+ */
+public record JsonContent(@NotNull JSONObject json) implements MessageContent {
+
+    @Override
+    public void write(MessageWriter writer) {
+        writeValue(writer, json);
+    }
+
+    @Override
+    public JSONObject toJson() {
+        return json;
+    }
+
+    private static void writeValue(MessageWriter writer, Object value) {
+        if (value instanceof JSONObject object) {
+            writer.startObject();
+            // keys() rather than keySet(), the android-json copy of JSONObject on the test classpath has no keySet()
+            for (Iterator<String> keys = object.keys(); keys.hasNext(); ) {
+                String key = keys.next();
+                writer.name(key);
+                writeValue(writer, object.opt(key));
+            }
+            writer.endObject();
+        } else if (value instanceof JSONArray array) {
+            writer.startArray();
+            for (int i = 0; i < array.length(); i++) {
+                writeValue(writer, array.opt(i));
+            }
+            writer.endArray();
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writer.value(((Number) value).intValue());
+        } else if (value instanceof Long number) {
+            writer.value(number.longValue());
+        } else if (value instanceof BigInteger number) {
+            writer.value(new BigDecimal(number));
+        } else if (value instanceof BigDecimal number) {
+            writer.value(number);
+        } else if (value instanceof Number number) {
+            writer.value(number.doubleValue());
+        } else if (value instanceof Boolean bool) {
+            writer.value(bool.booleanValue());
+        } else if (value == null || JSONObject.NULL.equals(value)) {
+            writer.nullValue();
+        } else {
+            writer.value(value.toString());
+        }
+    }
+}
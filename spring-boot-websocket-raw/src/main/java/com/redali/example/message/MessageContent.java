@@ -0,0 +1,26 @@
+package com.redali.example.message;
+
+import org.json.JSONObject;
+
+/**
+ * The "content" portion of a message sent to a client.
+ *
+ * <p>Content knows how to write itself both as an org.json tree and directly to a {@link MessageWriter}, so the
+ * configured codec can pick whichever it needs without an intermediate copy.</p>
+ */
+public interface MessageContent {
+
+    /**
+     * Write content as an object (field name has already been written by the caller).
+     *
+     * @param writer Writer to write the object to.
+     */
+    void write(MessageWriter writer);
+
+    /**
+     * Build content as an org.json tree.
+     *
+     * @return New JSON object holding the content.
+     */
+    JSONObject toJson();
+}
@@ -0,0 +1,125 @@
+package com.redali.example.message;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+
+/**
+ * Writes a message to a client, value by value, straight into the encoding of the codec being used.
+ *
+ * <p>Implementations write into a buffer that is reused from one message to the next, so writing a message allocates
+ * nothing but the frame it ends up in. Objects hold field names each followed by a value, arrays just values. The
+ * calls must nest properly, implementations don't check.</p>
+ */
+public interface MessageWriter {
+
+    /**
+     * Start an object (as a value, or after its field name).
+     *
+     * @return This writer.
+     */
+    MessageWriter startObject();
+
+    /**
+     * End the object started last.
+     *
+     * @return This writer.
+     */
+    MessageWriter endObject();
+
+    /**
+     * Start an array (as a value, or after its field name).
+     *
+     * @return This writer.
+     */
+    MessageWriter startArray();
+
+    /**
+     * End the array started last.
+     *
+     * @return This writer.
+     */
+    MessageWriter endArray();
+
+    /**
+     * Write the name of the next field of the current object.
+     *
+     * @param name Field name.
+     * @return This writer.
+     */
+    MessageWriter name(@NotNull String name);
+
+    MessageWriter value(int value);
+
+    MessageWriter value(long value);
+
+    MessageWriter value(double value);
+
+    MessageWriter value(boolean value);
+
+    /**
+     * Write a string.
+     *
+     * @param value String to write (null writes a null).
+     * @return This writer.
+     */
+    MessageWriter value(String value);
+
+    /**
+     * Write a number that doesn't fit a long or double.
+     *
+     * @param value Number to write (as a decimal fraction in CBOR).
+     * @return This writer.
+     */
+    MessageWriter value(@NotNull BigDecimal value);
+
+    MessageWriter nullValue();
+
+    /**
+     * Write an array of numbers.
+     *
+     * @param values Numbers to write.
+     * @return This writer.
+     */
+    default MessageWriter value(@NotNull int[] values) {
+        startArray();
+        for (int value : values) {
+            value(value);
+        }
+        return endArray();
+    }
+
+    /**
+     * Write an array of numbers.
+     *
+     * @param values Numbers to write.
+     * @return This writer.
+     */
+    default MessageWriter value(@NotNull long[] values) {
+        startArray();
+        for (long value : values) {
+            value(value);
+        }
+        return endArray();
+    }
+
+    default MessageWriter field(@NotNull String name, int value) {
+        return name(name).value(value);
+    }
+
+    default MessageWriter field(@NotNull String name, long value) {
+        return name(name).value(value);
+    }
+
+    default MessageWriter field(@NotNull String name, double value) {
+        return name(name).value(value);
+    }
+
+    default MessageWriter field(@NotNull String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    default MessageWriter field(@NotNull String name, String value) {
+        return name(name).value(value);
+    }
+}
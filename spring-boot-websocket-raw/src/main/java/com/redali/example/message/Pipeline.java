@@ -0,0 +1,32 @@
+package com.redali.example.message;
+
+import org.json.JSONObject;
+
+/**
+ * Content of the response to a request to pipeline the client's requests.
+ *
+ * <pre><code>{ "id": 6, "content": { "pipelined": true, "maxInFlight": 16 } }</code></pre>
+ *
+ * @param pipelined   Whether requests with a "cid" are now processed side by side.
+ * @param maxInFlight Most requests processed at the same time, any more wait for one of them to finish.
+ */
+public record Pipeline(boolean pipelined, int maxInFlight) implements MessageContent {
+    private static final String PIPELINED_KEY = "pipelined";
+    private static final String MAX_IN_FLIGHT_KEY = "maxInFlight";
+
+    @Override
+    public void write(MessageWriter writer) {
+        writer.startObject()
+                .field(PIPELINED_KEY, pipelined)
+                .field(MAX_IN_FLIGHT_KEY, maxInFlight)
+                .endObject();
+    }
+
+    @Override
+    public JSONObject toJson() {
+        var json = new JSONObject();
+        json.put(PIPELINED_KEY, pipelined);
+        json.put(MAX_IN_FLIGHT_KEY, maxInFlight);
+        return json;
+    }
+}
@@ -0,0 +1,36 @@
+package com.redali.example.message;
+
+import org.json.JSONObject;
+
+/**
+ * Content of the message sent in place of the response to a request that was over the client's rate limit.
+ *
+ * <pre><code>{ "id": 429, "cid": 17, "content": { "request": 1, "retryAfter": 20 } }</code></pre>
+ *
+ * @param request    Type of the request that was not processed.
+ * @param retryAfter How long (milliseconds) until a request of that type would be within the limit.
+ */
+public record RateLimited(int request, long retryAfter) implements MessageContent {
+    /**
+     * ID of the message (like HTTP's "429 Too Many Requests").
+     */
+    public static final int MESSAGE_ID = 429;
+
+    private static final String RETRY_AFTER_KEY = "retryAfter";
+
+    @Override
+    public void write(MessageWriter writer) {
+        writer.startObject()
+                .field(ClientRequest.REQUEST_KEY, request)
+                .field(RETRY_AFTER_KEY, retryAfter)
+                .endObject();
+    }
+
+    @Override
+    public JSONObject toJson() {
+        var json = new JSONObject();
+        json.put(ClientRequest.REQUEST_KEY, request);
+        json.put(RETRY_AFTER_KEY, retryAfter);
+        return json;
+    }
+}
@@ -0,0 +1,17 @@
+package com.redali.example.message;
+
+import java.util.List;
+
+/**
+ * The requests decoded from a single frame sent by a client.
+ *
+ * <p>A frame holds either one request object or a batch: an array of request objects whose responses are all sent
+ * back (in the same order) in a single frame.</p>
+ *
+ * <pre><code>[ { "request": 0, "cid": 1 }, { "request": 1, "dice": 5, "cid": 2 } ]</code></pre>
+ *
+ * @param requests Requests in the order they appeared in the frame.
+ * @param batch    Whether the frame was a batch (an array, even if it only held one request).
+ */
+public record RequestFrame(List<ClientRequest> requests, boolean batch) {
+}
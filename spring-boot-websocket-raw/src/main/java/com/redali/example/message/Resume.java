@@ -0,0 +1,36 @@
+package com.redali.example.message;
+
+import org.json.JSONObject;
+
+/**
+ * Content of a resume (type 5) response.
+ *
+ * <pre><code>{ "token": "q3Lk...", "resumed": true, "replayed": 3 }</code></pre>
+ *
+ * @param token    Token to resume the session with after reconnecting.
+ * @param resumed  Whether the session the client asked for was resumed (false if it only just became resumable or the
+ *                 session could not be resumed, in which case the client has to resync itself).
+ * @param replayed Number of frames the client missed that were sent again ahead of this response.
+ */
+public record Resume(String token, boolean resumed, int replayed) implements MessageContent {
+    private static final String RESUMED_KEY = "resumed";
+    private static final String REPLAYED_KEY = "replayed";
+
+    @Override
+    public void write(MessageWriter writer) {
+        writer.startObject()
+                .field(ClientRequest.TOKEN_KEY, token)
+                .field(RESUMED_KEY, resumed)
+                .field(REPLAYED_KEY, replayed)
+                .endObject();
+    }
+
+    @Override
+    public JSONObject toJson() {
+        var json = new JSONObject();
+        json.put(ClientRequest.TOKEN_KEY, token);
+        json.put(RESUMED_KEY, resumed);
+        json.put(REPLAYED_KEY, replayed);
+        return json;
+    }
+}
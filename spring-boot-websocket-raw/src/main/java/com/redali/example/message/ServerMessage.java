@@ -0,0 +1,69 @@
+package com.redali.example.message;
+
+import java.util.Objects;
+
+/**
+ * A message to send to a client in the form:
+ *
+ * <pre><code>{ "id": 0, "content": { } }</code></pre>
+ *
+ * <p>Responses to requests that carried a client supplied correlation ID ("cid") echo it back:</p>
+ *
+ * <pre><code>{ "id": 0, "cid": 17, "content": { } }</code></pre>
+ *
+ * <p>Messages to clients that can resume their session carry the sequence number of the frame they were sent in:</p>
+ *
+ * <pre><code>{ "id": 0, "seq": 42, "content": { } }</code></pre>
+ *
+ * @param id      ID to indicate the type of message.
+ * @param cid     Correlation ID from the request this message responds to (null if none).
+ * @param seq     Sequence number of the frame the message is sent in (null if the session can't be resumed).
+ * @param content Any content associated with the message ID (null if just the ID is sent).
+ */
+public record ServerMessage(int id, Long cid, Long seq, MessageContent content) {
+    public static final String ID_KEY = "id";
+    public static final String CID_KEY = "cid";
+    public static final String SEQ_KEY = "seq";
+    public static final String CONTENT_KEY = "content";
+
+    /**
+     * Construct message that is not stamped with a sequence number.
+     *
+     * @param id      ID to indicate the type of message.
+     * @param cid     Correlation ID from the request this message responds to (null if none).
+     * @param content Any content associated with the message ID (null if just the ID is sent).
+     */
+    public ServerMessage(int id, Long cid, MessageContent content) {
+        this(id, cid, null, content);
+    }
+
+    /**
+     * Construct message that is not correlated with a request.
+     *
+     * @param id      ID to indicate the type of message.
+     * @param content Any content associated with the message ID (null if just the ID is sent).
+     */
+    public ServerMessage(int id, MessageContent content) {
+        this(id, null, null, content);
+    }
+
+    /**
+     * Get a copy of this message correlated with a request.
+     *
+     * @param cid Correlation ID from the request (null if none).
+     * @return Message with the correlation ID set (this message if it already has the same ID).
+     */
+    public ServerMessage withCid(Long cid) {
+        return Objects.equals(this.cid, cid) ? this : new ServerMessage(id, cid, seq, content);
+    }
+
+    /**
+     * Get a copy of this message stamped with the sequence number of the frame it is sent in.
+     *
+     * @param seq Sequence number of the frame.
+     * @return Message with the sequence number set.
+     */
+    public ServerMessage withSeq(long seq) {
+        return new ServerMessage(id, cid, seq, content);
+    }
+}
@@ -0,0 +1,78 @@
+package com.redali.example.message;
+
+import org.json.JSONObject;
+
+/**
+ * Content of a session information response (type 0).
+ *
+ * @param epochMillis Server time when the response was created.
+ * @param server      Server side address of the connection (null if not known).
+ * @param client      Client side address of the connection (null if not known).
+ */
+public record SessionInfo(long epochMillis, AddressInfo server, AddressInfo client) implements MessageContent {
+    private static final String EPOCH_MILLIS_KEY = "epochMillis";
+    private static final String SERVER_KEY = "server";
+    private static final String CLIENT_KEY = "client";
+
+    /**
+     * Details about one end of the connection.
+     *
+     * @param address        IP address.
+     * @param host           Host name (or IP address if the name could not be resolved or is still being looked
+     *                       up).
+     * @param resolved       Whether the address was resolved.
+     * @param lookupComplete Whether the host name lookup has completed (false while it is still running).
+     * @param port           Port number.
+     */
+    public record AddressInfo(String address, String host, boolean resolved, boolean lookupComplete, int port) {
+
+        void write(MessageWriter writer) {
+            writer.startObject()
+                    .field("address", address)
+                    .field("host", host)
+                    .field("resolved", resolved)
+                    .field("lookupComplete", lookupComplete)
+                    .field("port", port)
+                    .endObject();
+        }
+
+        JSONObject toJson() {
+            var json = new JSONObject();
+            json.put("address", address);
+            json.put("host", host);
+            json.put("resolved", resolved);
+            json.put("lookupComplete", lookupComplete);
+            json.put("port", port);
+            return json;
+        }
+    }
+
+    @Override
+    public void write(MessageWriter writer) {
+        writer.startObject();
+        // WARNING: JSON has a practical limit of 53 bits on integer numbers
+        writer.field(EPOCH_MILLIS_KEY, epochMillis);
+        if (server != null) {
+            writer.name(SERVER_KEY);
+            server.write(writer);
+        }
+        if (client != null) {
+            writer.name(CLIENT_KEY);
+            client.write(writer);
+        }
+        writer.endObject();
+    }
+
+    @Override
+    public JSONObject toJson() {
+        var json = new JSONObject();
+        json.put(EPOCH_MILLIS_KEY, epochMillis);
+        if (server != null) {
+            json.put(SERVER_KEY, server.toJson());
+        }
+        if (client != null) {
+            json.put(CLIENT_KEY, client.toJson());
+        }
+        return json;
+    }
+}
@@ -0,0 +1,31 @@
+package com.redali.example.message;
+
+import org.json.JSONObject;
+
+/**
+ * Content of a subscribe (type 3) or unsubscribe (type 4) response.
+ *
+ * <pre><code>{ "topic": "news", "subscribed": true }</code></pre>
+ *
+ * @param topic      Name of the topic.
+ * @param subscribed Whether the client is now subscribed to the topic.
+ */
+public record Subscription(String topic, boolean subscribed) implements MessageContent {
+    private static final String SUBSCRIBED_KEY = "subscribed";
+
+    @Override
+    public void write(MessageWriter writer) {
+        writer.startObject()
+                .field(ClientRequest.TOPIC_KEY, topic)
+                .field(SUBSCRIBED_KEY, subscribed)
+                .endObject();
+    }
+
+    @Override
+    public JSONObject toJson() {
+        var json = new JSONObject();
+        json.put(ClientRequest.TOPIC_KEY, topic);
+        json.put(SUBSCRIBED_KEY, subscribed);
+        return json;
+    }
+}
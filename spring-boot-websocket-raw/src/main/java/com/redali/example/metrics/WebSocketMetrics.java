@@ -0,0 +1,191 @@
+package com.redali.example.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics about WebSocket traffic (published through the actuator "metrics" and "prometheus" endpoints).
+ *
+ * <p>Counters are updated from every request and every send so they are kept in {@link LongAdder}s (striped, threads
+ * updating at the same time rarely touch the same memory) and the registry only reads the sums when it is scraped.</p>
+ */
+public class WebSocketMetrics {
+    private static final String PREFIX = "websocket.";
+
+    private final MeterRegistry registry;
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder messagesDropped = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+    private final LongAdder requestsRejected = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private final LongAdder requestsLimited = new LongAdder();
+    private final LongAdder requestsDelayed = new LongAdder();
+    private final LongAdder pingsSent = new LongAdder();
+    private final LongAdder sessionsReaped = new LongAdder();
+    private final LongAdder journalWritten = new LongAdder();
+    private final LongAdder journalDropped = new LongAdder();
+    private final Timer pingRoundTrip;
+    private final Map<Integer, Timer> requestTimers = new ConcurrentHashMap<>();
+    private final Map<Integer, Timer> broadcastTimers = new ConcurrentHashMap<>();
+
+    /**
+     * Construct metrics and register them.
+     *
+     * @param registry Registry to publish the metrics to.
+     */
+    public WebSocketMetrics(@NotNull MeterRegistry registry) {
+        this.registry = registry;
+        counter("messages.received", "Messages received from clients", messagesReceived);
+        counter("bytes.received", "Payload bytes received from clients", bytesReceived);
+        counter("messages.sent", "Messages sent to clients", messagesSent);
+        counter("bytes.sent", "Payload bytes sent to clients", bytesSent);
+        counter("messages.dropped", "Messages to clients discarded because their outbound queue was full",
+                messagesDropped);
+        counter("parse.failures", "Messages from clients that could not be decoded or exceeded limits", parseFailures);
+        counter("requests.rejected", "Requests from clients with an unknown request type", requestsRejected);
+        counter("send.failures", "Sends to clients that failed or stalled", sendFailures);
+        counter("requests.limited", "Requests from clients over their rate limit (rejected or disconnected)",
+                requestsLimited);
+        counter("requests.delayed", "Frames from clients held back to keep them within their rate limit",
+                requestsDelayed);
+        counter("pings.sent", "Pings sent to clients that had been quiet", pingsSent);
+        counter("sessions.reaped", "Sessions disconnected because the client stopped responding", sessionsReaped);
+        counter("journal.written", "Frames from clients written to the request journal", journalWritten);
+        counter("journal.dropped", "Frames from clients left out of the request journal (queue full or too large)",
+                journalDropped);
+        pingRoundTrip = Timer.builder(PREFIX + "ping.rtt")
+                .description("Time from sending a ping to a client until its pong arrived")
+                .register(registry);
+    }
+
+    /**
+     * Create metrics that are not published anywhere (for tests, benchmarks and tools).
+     *
+     * @return Metrics backed by an empty registry (recording is close to free).
+     */
+    public static WebSocketMetrics disabled() {
+        return new WebSocketMetrics(new CompositeMeterRegistry());
+    }
+
+    /**
+     * Publish the number of active sessions.
+     *
+     * @param sessions Map of active sessions (only its size is read, when the registry is scraped).
+     */
+    public void bindSessions(@NotNull Map<?, ?> sessions) {
+        Gauge.builder(PREFIX + "sessions.active", sessions, Map::size)
+                .description("WebSocket sessions currently registered")
+                .register(registry);
+    }
+
+    public void messageReceived(int bytes) {
+        messagesReceived.increment();
+        bytesReceived.add(bytes);
+    }
+
+    public void messageSent(int bytes) {
+        messagesSent.increment();
+        bytesSent.add(bytes);
+    }
+
+    public void messageDropped() {
+        messagesDropped.increment();
+    }
+
+    public void parseFailed() {
+        parseFailures.increment();
+    }
+
+    public void requestRejected() {
+        requestsRejected.increment();
+    }
+
+    public void sendFailed() {
+        sendFailures.increment();
+    }
+
+    public void requestLimited() {
+        requestsLimited.increment();
+    }
+
+    public void requestDelayed() {
+        requestsDelayed.increment();
+    }
+
+    public void pingSent() {
+        pingsSent.increment();
+    }
+
+    public void sessionReaped() {
+        sessionsReaped.increment();
+    }
+
+    public void journalWritten() {
+        journalWritten.increment();
+    }
+
+    public void journalDropped() {
+        journalDropped.increment();
+    }
+
+    /**
+     * Record the round trip time of a ping.
+     *
+     * @param nanos Time from sending the ping until the pong arrived (nanoseconds).
+     */
+    public void recordPingRoundTrip(long nanos) {
+        pingRoundTrip.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record how long processing a request took.
+     *
+     * @param requestType Request type ID.
+     * @param nanos       Processing time (nanoseconds).
+     */
+    public void recordRequest(int requestType, long nanos) {
+        var timer = requestTimers.get(requestType);
+        if (timer == null) {
+            timer = requestTimers.computeIfAbsent(requestType, type -> Timer.builder(PREFIX + "requests")
+                    .description("Time to process requests from clients")
+                    .tag("type", Integer.toString(type))
+                    .register(registry));
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record how long a broadcast to all sessions took.
+     *
+     * @param messageId ID of the message broadcast.
+     * @param nanos     Time to queue the message for every session (nanoseconds).
+     */
+    public void recordBroadcast(int messageId, long nanos) {
+        var timer = broadcastTimers.get(messageId);
+        if (timer == null) {
+            timer = broadcastTimers.computeIfAbsent(messageId, id -> Timer.builder(PREFIX + "broadcast")
+                    .description("Time to queue a broadcast message for every session")
+                    .tag("id", Integer.toString(id))
+                    .register(registry));
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void counter(String name, String description, LongAdder adder) {
+        FunctionCounter.builder(PREFIX + name, adder, LongAdder::sum)
+                .description(description)
+                .register(registry);
+    }
+}
@@ -0,0 +1,28 @@
+package com.redali.example.ratelimit;
+
+/**
+ * Steady rate and burst allowed for one bucket of requests.
+ *
+ * @param rate  Requests per second allowed over time (0 for no limit).
+ * @param burst Requests allowed in a burst, after a quiet spell (at least 1 when limited).
+ */
+public record RateLimit(int rate, int burst) {
+
+    /**
+     * No limit at all.
+     */
+    public static final RateLimit UNLIMITED = new RateLimit(0, 0);
+
+    public RateLimit {
+        if (rate < 0) {
+            throw new IllegalArgumentException("Rate limit must not be negative");
+        }
+        if (rate > 0 && burst < 1) {
+            throw new IllegalArgumentException("Rate limit burst must be at least 1");
+        }
+    }
+
+    public boolean isLimited() {
+        return rate > 0;
+    }
+}
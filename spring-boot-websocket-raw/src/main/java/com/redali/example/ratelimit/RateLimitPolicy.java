@@ -0,0 +1,16 @@
+package com.redali.example.ratelimit;
+
+/**
+ * What to do with a request from a client that is over its rate limit.
+ */
+public enum RateLimitPolicy {
+    /** Answer the request with a "rate limited" message instead of processing it. */
+    REJECT,
+    /**
+     * Hold off reading from the client until the request is within the limit (up to a maximum delay, requests that
+     * would have to wait longer are rejected).
+     */
+    DELAY,
+    /** Close the connection to the client. */
+    DISCONNECT
+}
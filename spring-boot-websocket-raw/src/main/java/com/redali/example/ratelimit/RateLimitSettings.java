@@ -0,0 +1,90 @@
+package com.redali.example.ratelimit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Limits on how fast clients may send requests.
+ *
+ * <p>Every request type has its own bucket, so a client flooding one type of request is not held back on the
+ * others.</p>
+ *
+ * @param session        Limit for each request type from a single session.
+ * @param address        Limit for each request type from all the sessions of a single remote address.
+ * @param requests       Session limits for particular request types (by request type ID) that replace the session
+ *                       limit.
+ * @param policy         What to do with requests over the limit.
+ * @param maxDelayMillis Longest (milliseconds) a request is held back with the DELAY policy.
+ */
+public record RateLimitSettings(RateLimit session, RateLimit address, Map<Integer, RateLimit> requests,
+                                RateLimitPolicy policy, int maxDelayMillis) {
+
+    /**
+     * Settings used when nothing is configured (the same limits as application.yml).
+     */
+    public static final RateLimitSettings DEFAULTS = new RateLimitSettings(new RateLimit(50, 100),
+            new RateLimit(1000, 2000), Map.of(2, new RateLimit(10, 20)), RateLimitPolicy.REJECT, 1000);
+
+    /**
+     * Settings with no limits at all.
+     */
+    public static final RateLimitSettings UNLIMITED = new RateLimitSettings(RateLimit.UNLIMITED, RateLimit.UNLIMITED,
+            Map.of(), RateLimitPolicy.REJECT, 1000);
+
+    public RateLimitSettings {
+        if (session == null || address == null || requests == null || policy == null) {
+            throw new IllegalArgumentException("Rate limits and policy are required");
+        }
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Rate limit maximum delay must not be negative");
+        }
+        requests = Map.copyOf(requests);
+    }
+
+    /**
+     * Parse request type limits from a string like "2:5:10,1:100:200" (request type, rate and burst of each).
+     *
+     * @param requests Request type limits (may be empty).
+     * @return Limits by request type ID.
+     * @throws IllegalArgumentException If the string is not in the expected form.
+     */
+    public static Map<Integer, RateLimit> parseRequests(String requests) {
+        var limits = new HashMap<Integer, RateLimit>();
+        for (var entry : requests.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            var parts = entry.trim().split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Expected type:rate:burst for request rate limit but got: " + entry);
+            }
+            try {
+                limits.put(Integer.parseInt(parts[0].trim()),
+                        new RateLimit(Integer.parseInt(parts[1].trim()), Integer.parseInt(parts[2].trim())));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad request rate limit: " + entry, e);
+            }
+        }
+        return limits;
+    }
+
+    /**
+     * Get the limit for a request type from a single session.
+     *
+     * @param requestType Request type ID.
+     * @return Limit to apply.
+     */
+    public RateLimit sessionLimit(int requestType) {
+        return requests.getOrDefault(requestType, session);
+    }
+
+    /**
+     * Whether anything is limited at all.
+     *
+     * @return True if any requests are limited.
+     */
+    public boolean isEnabled() {
+        return session.isLimited() || address.isLimited()
+                || requests.values().stream().anyMatch(RateLimit::isLimited);
+    }
+}
@@ -0,0 +1,167 @@
+package com.redali.example.ratelimit;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Keeps each session, and all the sessions from each remote address, within their request rate limits.
+ *
+ * <p>Every session has a {@link TokenBucket} for each request type it sends, and so does every remote address (shared
+ * by all of its sessions). A request needs a token from both. Buckets are created the first time a request type is
+ * seen and dropped when the session (or the last session from the address) goes away. Taking a token never locks,
+ * only opening and closing sessions do (briefly, to count the sessions sharing an address).</p>
+ */
+public class RateLimiter {
+    private final RateLimitSettings settings;
+    private final boolean enabled;
+    private final long maxWaitNanos;
+    private final ConcurrentHashMap<String, SessionBuckets> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<InetAddress, Buckets> addresses = new ConcurrentHashMap<>();
+
+    /**
+     * Construct limiter.
+     *
+     * @param settings Limits and what to do with requests over them.
+     */
+    public RateLimiter(@NotNull RateLimitSettings settings) {
+        this.settings = settings;
+        this.enabled = settings.isEnabled();
+        this.maxWaitNanos = settings.policy() == RateLimitPolicy.DELAY
+                ? TimeUnit.MILLISECONDS.toNanos(settings.maxDelayMillis()) : 0;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public RateLimitPolicy getPolicy() {
+        return settings.policy();
+    }
+
+    /**
+     * Get the longest a request may be held back (only the DELAY policy holds requests back).
+     *
+     * @return Maximum delay in nanoseconds, 0 if requests are never delayed.
+     */
+    public long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    /**
+     * Start limiting a session.
+     *
+     * @param session Session that was just registered.
+     */
+    public void sessionOpened(@NotNull WebSocketSession session) {
+        if (!enabled) {
+            return;
+        }
+        Buckets shared = null;
+        var address = getAddress(session);
+        if (address != null && settings.address().isLimited()) {
+            shared = addresses.compute(address, (key, buckets) -> {
+                var result = buckets != null ? buckets : new Buckets(type -> settings.address());
+                result.sessions++;
+                return result;
+            });
+        }
+        sessions.put(session.getId(), new SessionBuckets(new Buckets(settings::sessionLimit), shared));
+    }
+
+    /**
+     * Stop limiting a session.
+     *
+     * @param session Session that was just unregistered.
+     */
+    public void sessionClosed(@NotNull WebSocketSession session) {
+        var removed = sessions.remove(session.getId());
+        var address = getAddress(session);
+        if (removed != null && removed.address() != null && address != null) {
+            addresses.computeIfPresent(address, (key, buckets) -> --buckets.sessions > 0 ? buckets : null);
+        }
+    }
+
+    /**
+     * Take what a request needs from the buckets of its session and remote address.
+     *
+     * @param session     Session the request came from.
+     * @param requestType Request type ID.
+     * @return 0 if the request may be processed now, otherwise how long until it would be within the limits. When
+     * that is no more than {@link #getMaxWaitNanos()} the request may be processed after waiting that long, otherwise
+     * it is over the limit (and nothing was taken).
+     */
+    public long acquire(@NotNull WebSocketSession session, int requestType) {
+        if (!enabled) {
+            return 0;
+        }
+        var buckets = sessions.get(session.getId());
+        if (buckets == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        var own = buckets.session().get(requestType, now);
+        long wait = own != null ? own.acquire(now, maxWaitNanos) : 0;
+        if (wait > maxWaitNanos) {
+            return wait;
+        }
+        var shared = buckets.address() != null ? buckets.address().get(requestType, now) : null;
+        if (shared != null) {
+            long sharedWait = shared.acquire(now, maxWaitNanos);
+            if (sharedWait > maxWaitNanos) {
+                if (own != null) {
+                    own.release();
+                }
+                return sharedWait;
+            }
+            wait = Math.max(wait, sharedWait);
+        }
+        return wait;
+    }
+
+    /**
+     * Get the number of remote addresses being limited.
+     *
+     * @return Number of addresses with at least one session.
+     */
+    public int getAddressCount() {
+        return addresses.size();
+    }
+
+    private static InetAddress getAddress(WebSocketSession session) {
+        var remote = session.getRemoteAddress();
+        return remote != null ? remote.getAddress() : null;
+    }
+
+    private record SessionBuckets(Buckets session, Buckets address) {
+    }
+
+    // A bucket for each request type, created on first use
+    private static class Buckets {
+        private final ConcurrentHashMap<Integer, TokenBucket> byType = new ConcurrentHashMap<>();
+        private final IntFunction<RateLimit> limits;
+        // Sessions sharing an address, only changed inside compute on the address map
+        private int sessions;
+
+        Buckets(IntFunction<RateLimit> limits) {
+            this.limits = limits;
+        }
+
+        // Null if the request type is not limited
+        TokenBucket get(int requestType, long now) {
+            var bucket = byType.get(requestType);
+            if (bucket == null) {
+                var limit = limits.apply(requestType);
+                if (!limit.isLimited()) {
+                    return null;
+                }
+                bucket = byType.computeIfAbsent(requestType, type -> new TokenBucket(limit, now));
+            }
+            return bucket;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.redali.example.ratelimit;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that never locks.
+ *
+ * <p>Instead of a token count and a refill time (two values that would have to change together), the whole state is
+ * the time at which the bucket would be full again if nothing else were taken (the "theoretical arrival time" of the
+ * generic cell rate algorithm). Taking a token moves that time on by one token's worth, and a token is available as
+ * long as the time stays within one burst of now. A single compare and set on an {@link AtomicLong} updates it, so
+ * threads taking tokens at the same time never wait for each other.</p>
+ */
+public class TokenBucket {
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * Construct a full bucket.
+     *
+     * @param limit Steady rate and burst allowed (must be limited).
+     */
+    public TokenBucket(@NotNull RateLimit limit) {
+        this(limit, System.nanoTime());
+    }
+
+    /**
+     * Construct a full bucket.
+     *
+     * @param limit Steady rate and burst allowed (must be limited).
+     * @param now   Current {@link System#nanoTime()}.
+     */
+    public TokenBucket(@NotNull RateLimit limit, long now) {
+        if (!limit.isLimited()) {
+            throw new IllegalArgumentException("Token bucket needs a rate");
+        }
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / limit.rate();
+        this.burstNanos = intervalNanos * limit.burst();
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Take a token if one is available, or reserve one that will be soon enough.
+     *
+     * @param now          Current {@link System#nanoTime()}.
+     * @param maxWaitNanos Longest the caller is willing to wait for a token (0 to only take one available now).
+     * @return 0 if a token was taken, otherwise how long until the next token is available. The token was reserved (the
+     * caller must wait that long before using it) if that is no more than the maximum wait, otherwise nothing was
+     * taken.
+     */
+    public long acquire(long now, long maxWaitNanos) {
+        while (true) {
+            long current = fullAt.get();
+            // A bucket that has been full for a while doesn't bank any more than a burst
+            long next = Math.max(current, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > maxWaitNanos) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return Math.max(0, wait);
+            }
+        }
+    }
+
+    /**
+     * Give back a token that was taken but not used.
+     */
+    public void release() {
+        fullAt.addAndGet(-intervalNanos);
+    }
+}
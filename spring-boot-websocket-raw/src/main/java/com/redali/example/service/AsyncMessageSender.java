@@ -0,0 +1,25 @@
+package com.redali.example.service;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.function.Consumer;
+
+/**
+ * Implemented by client sessions that can send a message without blocking the calling thread until it has been
+ * written.
+ *
+ * <p>The outbound queue of a session sends one message at a time, so there is never more than one send outstanding
+ * on a session.</p>
+ */
+public interface AsyncMessageSender {
+
+    /**
+     * Start sending a message.
+     *
+     * @param message Message to send.
+     * @param done    Invoked once the message has been sent (with null) or the send failed (with the error). May be
+     *                invoked before this method returns, or later from another thread.
+     */
+    void sendMessageAsync(@NotNull WebSocketMessage<?> message, @NotNull Consumer<Throwable> done);
+}
@@ -0,0 +1,21 @@
+package com.redali.example.service;
+
+/**
+ * Limits applied to batches of requests sent by a client in a single frame.
+ *
+ * @param maxRequests Maximum number of requests in one batch.
+ * @param maxBytes    Maximum size (payload length) of a frame holding a batch.
+ */
+public record BatchSettings(int maxRequests, int maxBytes) {
+
+    /**
+     * Settings used when nothing is configured.
+     */
+    public static final BatchSettings DEFAULTS = new BatchSettings(64, 64 * 1024);
+
+    public BatchSettings {
+        if (maxRequests < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Batch limits must all be positive");
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.redali.example.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of broadcasting one message to all registered sessions (or publishing it to the subscribers of a topic).
+ *
+ * @param sessions     Number of sessions the message was offered to.
+ * @param delivered    Number of sessions that accepted the message onto their outbound queue (includes messages that
+ *                     replaced an older unsent message with the same ID).
+ * @param dropped      Number of sessions that discarded the message because their outbound queue was full.
+ * @param failed       Number of sessions that were closed (or disconnected because they fell too far behind).
+ * @param elapsedNanos How long it took to encode the message and hand it to every session.
+ */
+public record BroadcastStats(int sessions, int delivered, int dropped, int failed, long elapsedNanos) {
+
+    /**
+     * Get elapsed time in a unit that is easier to read in log messages.
+     *
+     * @return Elapsed time in microseconds.
+     */
+    public long elapsedMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+    }
+}
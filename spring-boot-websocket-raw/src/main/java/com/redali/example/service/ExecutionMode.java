@@ -0,0 +1,22 @@
+package com.redali.example.service;
+
+/**
+ * Where requests from clients are processed.
+ */
+public enum ExecutionMode {
+    /**
+     * On the servlet container thread that received the message (a slow request holds up that thread).
+     */
+    INLINE,
+
+    /**
+     * Handed off to a bounded pool of platform threads (CPU bound requests go to a pool sized to the CPUs).
+     */
+    POOL,
+
+    /**
+     * Handed off to a new virtual thread per request (CPU bound requests go to a pool sized to the CPUs). Needs
+     * Java 21 or later, falls back to POOL on older runtimes.
+     */
+    VIRTUAL
+}
@@ -0,0 +1,40 @@
+package com.redali.example.service;
+
+/**
+ * How requests from clients are processed.
+ *
+ * @param mode        Where requests are processed.
+ * @param poolSize    Number of threads in the request pool (POOL mode, or VIRTUAL when falling back to POOL), or in
+ *                    the pool pipelined requests are processed on in INLINE mode.
+ * @param maxPending  Maximum number of frames from a single client waiting to be processed before the client is
+ *                    disconnected (only pipelined frames in INLINE mode).
+ * @param maxInFlight Maximum number of requests from a single pipelined client processed at the same time, the rest
+ *                    wait their turn.
+ */
+public record ExecutionSettings(ExecutionMode mode, int poolSize, int maxPending, int maxInFlight) {
+
+    /**
+     * Settings used when nothing is configured (the same as application.yml).
+     */
+    public static final ExecutionSettings DEFAULTS = new ExecutionSettings(ExecutionMode.POOL, 64, 256, 16);
+
+    public ExecutionSettings {
+        if (mode == null) {
+            throw new IllegalArgumentException("Execution mode is required");
+        }
+        if (poolSize < 1 || maxPending < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Execution pool size, pending and in flight limits must be positive");
+        }
+    }
+
+    /**
+     * Settings with the default in flight limit for pipelined clients.
+     *
+     * @param mode       Where requests are processed.
+     * @param poolSize   Number of threads in the request pool.
+     * @param maxPending Maximum number of frames from a single client waiting to be processed.
+     */
+    public ExecutionSettings(ExecutionMode mode, int poolSize, int maxPending) {
+        this(mode, poolSize, maxPending, DEFAULTS.maxInFlight());
+    }
+}
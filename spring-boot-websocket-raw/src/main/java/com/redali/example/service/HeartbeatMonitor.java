@@ -0,0 +1,157 @@
+package com.redali.example.service;
+
+import com.redali.example.metrics.WebSocketMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Pings quiet clients and disconnects the ones that stop answering.
+ *
+ * <p>A client whose TCP connection silently died would otherwise stay registered (taking up memory and a share of
+ * every broadcast) until a send to it happened to fail. Every session has one timer on a shared {@link TimingWheel}
+ * driven by a single thread. When the timer fires the session is sent a ping if nothing has been heard from it for the
+ * ping interval, or disconnected if nothing (not even a pong) has been heard for the idle timeout. Clients that keep
+ * sending requests are never pinged.</p>
+ *
+ * <p>Pings carry the time they were sent so the pong that comes back gives the round trip time to the client.</p>
+ */
+@Slf4j
+class HeartbeatMonitor implements AutoCloseable {
+    private final TimingWheel wheel;
+    private final ScheduledExecutorService ticker;
+    private final WebSocketMetrics metrics;
+    private final Consumer<WebSocketSession> onIdle;
+    private final long pingIntervalNanos;
+    private final long idleTimeoutNanos;
+
+    /**
+     * Construct monitor and start the timing wheel.
+     *
+     * @param settings Ping interval, idle timeout and timing wheel sizes.
+     * @param metrics  Where to record pings, round trip times and sessions disconnected.
+     * @param onIdle   Invoked (on the timing wheel thread, so it must not block) with each session that went idle.
+     */
+    HeartbeatMonitor(@NotNull HeartbeatSettings settings, @NotNull WebSocketMetrics metrics,
+                     @NotNull Consumer<WebSocketSession> onIdle) {
+        this.metrics = metrics;
+        this.onIdle = onIdle;
+        this.pingIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.pingIntervalMillis());
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(settings.idleTimeoutMillis());
+        this.wheel = new TimingWheel(settings.wheelSize(), TimeUnit.MILLISECONDS.toNanos(settings.tickMillis()));
+        var threadFactory = new CustomizableThreadFactory("ws-heartbeat-");
+        threadFactory.setDaemon(true);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        ticker.scheduleAtFixedRate(wheel::advance, settings.tickMillis(), settings.tickMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start watching a session.
+     *
+     * @param outbound Queue of the session (pings are sent through it so they never overlap another send).
+     * @return Heartbeat of the session, to be told about activity and stopped when the session goes away.
+     */
+    Heartbeat start(@NotNull OutboundQueue outbound) {
+        var heartbeat = new Heartbeat(outbound);
+        heartbeat.schedule(pingIntervalNanos);
+        return heartbeat;
+    }
+
+    /**
+     * Stops the timing wheel, sessions are no longer pinged or disconnected.
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Liveness of a single session.
+     */
+    final class Heartbeat {
+        private final OutboundQueue outbound;
+        private volatile long lastSeenNanos = System.nanoTime();
+        private volatile TimingWheel.Timeout timeout;
+        private volatile boolean stopped;
+
+        private Heartbeat(OutboundQueue outbound) {
+            this.outbound = outbound;
+        }
+
+        /**
+         * Note that something was received from the client.
+         */
+        void touch() {
+            lastSeenNanos = System.nanoTime();
+        }
+
+        /**
+         * Note that a pong was received from the client and record the round trip time if it answers one of our
+         * pings.
+         *
+         * @param payload Payload of the pong.
+         */
+        void pongReceived(@NotNull ByteBuffer payload) {
+            long now = System.nanoTime();
+            lastSeenNanos = now;
+            if (payload.remaining() == Long.BYTES) {
+                long rtt = now - payload.getLong(payload.position());
+                // Anything else is an unsolicited pong or one with a payload of its own
+                if (rtt >= 0 && rtt <= idleTimeoutNanos) {
+                    metrics.recordPingRoundTrip(rtt);
+                }
+            }
+        }
+
+        /**
+         * Stop watching the session (it was unregistered).
+         */
+        void stop() {
+            stopped = true;
+            var current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        private void schedule(long delayNanos) {
+            timeout = wheel.schedule(this::check, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        // Runs on the timing wheel thread
+        private void check() {
+            if (stopped) {
+                return;
+            }
+            long now = System.nanoTime();
+            long idle = now - lastSeenNanos;
+            if (idle >= idleTimeoutNanos) {
+                stopped = true;
+                metrics.sessionReaped();
+                log.info("No response from client {} for {} ms, disconnecting", outbound.getSession().getRemoteAddress(),
+                        TimeUnit.NANOSECONDS.toMillis(idle));
+                onIdle.accept(outbound.getSession());
+                return;
+            }
+            if (idle < pingIntervalNanos) {
+                // Heard from recently, look again once it has been quiet for a whole interval
+                schedule(pingIntervalNanos - idle);
+                return;
+            }
+            var ping = ByteBuffer.allocate(Long.BYTES).putLong(0, now);
+            if (outbound.offer(OutboundQueue.NO_COALESCE, new PingMessage(ping)) != OutboundQueue.Result.DISCONNECTED) {
+                metrics.pingSent();
+            }
+            schedule(Math.min(pingIntervalNanos, idleTimeoutNanos - idle));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.redali.example.service;
+
+/**
+ * How the server checks that clients are still there.
+ *
+ * @param pingIntervalMillis How long (milliseconds) a client may be quiet before it is sent a ping.
+ * @param idleTimeoutMillis  How long (milliseconds) a client may go without sending anything (pongs included) before
+ *                           it is disconnected.
+ * @param tickMillis         Length (milliseconds) of a tick of the timing wheel, the precision of the timers.
+ * @param wheelSize          Number of ticks in one rotation of the timing wheel (a power of 2, a rotation that
+ *                           covers the ping interval keeps every timer in its first round).
+ */
+public record HeartbeatSettings(int pingIntervalMillis, int idleTimeoutMillis, int tickMillis, int wheelSize) {
+
+    /**
+     * Settings used when nothing is configured.
+     */
+    public static final HeartbeatSettings DEFAULTS = new HeartbeatSettings(30000, 90000, 100, 512);
+
+    public HeartbeatSettings {
+        if (pingIntervalMillis < 1 || tickMillis < 1) {
+            throw new IllegalArgumentException("Heartbeat ping interval and tick must be positive");
+        }
+        if (idleTimeoutMillis < pingIntervalMillis) {
+            throw new IllegalArgumentException("Heartbeat idle timeout must be at least the ping interval");
+        }
+        if (wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Heartbeat wheel size must be a power of 2");
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.redali.example.service;
+
+import com.redali.example.metrics.WebSocketMetrics;
+import jakarta.websocket.SendHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of messages waiting to be sent to a single client session.
+ *
+ * <p>Callers never block on the client. Messages are added to the queue and a task on the shared sender executor
+ * drains the queue (at most one task per session at a time so messages go out in order). If the client can't keep up,
+ * the configured {@link OverflowPolicy} decides what gets thrown away. If a single send takes longer than the
+ * configured time limit the client is considered stalled and is disconnected.</p>
+ *
+ * <p>Where the session can send without blocking ({@link AsyncMessageSender}, or a standard Jakarta WebSocket
+ * session) the sender thread only starts each send, a slow client holds a queue entry rather than a sender thread.
+ * Draining carries on when the send completes. Other sessions are sent to with a blocking send.</p>
+ */
+@Slf4j
+class OutboundQueue {
+    // Maximum number of messages sent in one pass before giving the sender thread back to other sessions
+    private static final int MAX_SENDS_PER_PASS = 32;
+    // Tomcat specific user property used to bound how long a blocking send can take
+    private static final String TOMCAT_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    /**
+     * Message ID to use for a message that must never be replaced by the COALESCE policy (like a batch of responses).
+     */
+    static final int NO_COALESCE = Integer.MIN_VALUE;
+
+    /**
+     * What happened to a message offered to the queue.
+     */
+    enum Result {
+        /** Message was added to the queue. */
+        QUEUED,
+        /** Message replaced an older message with the same ID that had not been sent yet. */
+        COALESCED,
+        /** Message was discarded because the queue was full. */
+        DROPPED,
+        /** The session is closed (or was just disconnected) so the message will never be sent. */
+        DISCONNECTED
+    }
+
+    // Message replaced in place by the COALESCE policy
+    private static final class Entry {
+        final int id;
+        WebSocketMessage<?> message;
+
+        Entry(int id, WebSocketMessage<?> message) {
+            this.id = id;
+            this.message = message;
+        }
+    }
+
+    // How a send started by drain() ended (or that it hasn't yet)
+    private static final int SEND_PENDING = 0;
+    private static final int SEND_DONE = 1;
+    private static final int SEND_FAILED = 2;
+    private static final int SEND_DETACHED = 3;
+
+    private final WebSocketSession session;
+    private final OutboundSettings settings;
+    private final Executor sender;
+    private final Consumer<WebSocketSession> onFailure;
+    private final WebSocketMetrics metrics;
+    private final long sendTimeLimitNanos;
+    private final AsyncMessageSender asyncSender;
+
+    // Guarded by this
+    private final ArrayDeque<Entry> pending = new ArrayDeque<>();
+    private int pendingBytes;
+    private boolean draining;
+    private boolean closed;
+    // Set once the session is to be closed after what is queued has been sent
+    private CloseStatus finishStatus;
+
+    // Time the current send started (0 if not currently sending), checked by other threads to detect a stall
+    private volatile long sendStartNanos;
+
+    /**
+     * Construct queue for a client session.
+     *
+     * @param session   Client session messages will be sent to.
+     * @param settings  Limits to apply to the queue.
+     * @param sender    Executor used to drain the queue.
+     * @param onFailure Invoked (from the sender executor) if the client needs to be removed because a send failed,
+     *                  stalled or the queue overflowed with the DISCONNECT policy.
+     */
+    OutboundQueue(@NotNull WebSocketSession session, @NotNull OutboundSettings settings, @NotNull Executor sender,
+                  @NotNull Consumer<WebSocketSession> onFailure) {
+        this(session, settings, sender, onFailure, WebSocketMetrics.disabled());
+    }
+
+    /**
+     * Construct queue for a client session.
+     *
+     * @param session   Client session messages will be sent to.
+     * @param settings  Limits to apply to the queue.
+     * @param sender    Executor used to drain the queue.
+     * @param onFailure Invoked (from the sender executor) if the client needs to be removed because a send failed,
+     *                  stalled or the queue overflowed with the DISCONNECT policy.
+     * @param metrics   Where to count messages sent, dropped and failed.
+     */
+    OutboundQueue(@NotNull WebSocketSession session, @NotNull OutboundSettings settings, @NotNull Executor sender,
+                  @NotNull Consumer<WebSocketSession> onFailure, @NotNull WebSocketMetrics metrics) {
+        this.metrics = metrics;
+        this.session = session;
+        this.settings = settings;
+        this.sender = sender;
+        this.onFailure = onFailure;
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(settings.sendTimeLimit());
+        this.asyncSender = asyncSenderFor(session, settings.sendTimeLimit());
+    }
+
+    WebSocketSession getSession() {
+        return session;
+    }
+
+    /**
+     * Add a message to the queue (never blocks on the client).
+     *
+     * @param id      ID of the message type (used by the COALESCE policy) or {@link #NO_COALESCE}.
+     * @param message Message to send.
+     * @return What happened to the message.
+     */
+    Result offer(int id, @NotNull WebSocketMessage<?> message) {
+        synchronized (this) {
+            if (closed || finishStatus != null) {
+                return Result.DISCONNECTED;
+            }
+            if (isStalled()) {
+                return stalled();
+            }
+            int size = message.getPayloadLength();
+            if (isFull(size)) {
+                switch (settings.overflowPolicy()) {
+                    case DROP_NEWEST -> {
+                        metrics.messageDropped();
+                        return Result.DROPPED;
+                    }
+                    case DISCONNECT -> {
+                        log.error("Outbound queue for client {} overflowed, disconnecting", session.getRemoteAddress());
+                        return disconnect();
+                    }
+                    case COALESCE -> {
+                        if (replaceLast(id, message)) {
+                            return Result.COALESCED;
+                        }
+                        dropOldest(size);
+                    }
+                    case DROP_OLDEST -> dropOldest(size);
+                }
+            }
+            pending.addLast(new Entry(id, message));
+            pendingBytes += size;
+            if (draining) {
+                return Result.QUEUED;
+            }
+            draining = true;
+        }
+        schedule();
+        return Result.QUEUED;
+    }
+
+    /**
+     * Close the session once everything already queued has been sent, any future offers will be rejected.
+     *
+     * @param status Status to close the session with.
+     */
+    void finish(@NotNull CloseStatus status) {
+        synchronized (this) {
+            if (closed || finishStatus != null) {
+                return;
+            }
+            finishStatus = status;
+            if (draining) {
+                // The sender closes the session when it runs out of messages
+                return;
+            }
+            draining = true;
+        }
+        schedule();
+    }
+
+    /**
+     * Disconnect the client if the message being sent to it has taken longer than the send time limit. Called
+     * periodically, a stalled client that is never offered another message would otherwise not be noticed.
+     *
+     * @return True if the client was disconnected.
+     */
+    boolean checkStalled() {
+        synchronized (this) {
+            if (closed || !isStalled()) {
+                return false;
+            }
+            stalled();
+            return true;
+        }
+    }
+
+    /**
+     * Check whether everything queued has been sent (or thrown away because the queue was closed).
+     *
+     * @return True if nothing is waiting to be sent or being sent.
+     */
+    synchronized boolean isFlushed() {
+        return closed || !draining;
+    }
+
+    /**
+     * Discard anything still waiting to be sent, any future offers will be rejected.
+     */
+    synchronized void close() {
+        closed = true;
+        pending.clear();
+        pendingBytes = 0;
+    }
+
+    private boolean isFull(int size) {
+        return pending.size() >= settings.queueSize() || pendingBytes + size > settings.bufferSizeLimit();
+    }
+
+    private boolean isStalled() {
+        long started = sendStartNanos;
+        return started != 0 && System.nanoTime() - started > sendTimeLimitNanos;
+    }
+
+    private void dropOldest(int size) {
+        // A message that is larger than the buffer limit on its own is still sent (once everything else is gone)
+        while (!pending.isEmpty() && isFull(size)) {
+            pendingBytes -= pending.removeFirst().message.getPayloadLength();
+            metrics.messageDropped();
+        }
+    }
+
+    private boolean replaceLast(int id, WebSocketMessage<?> message) {
+        if (id == NO_COALESCE) {
+            return false;
+        }
+        Iterator<Entry> entries = pending.descendingIterator();
+        while (entries.hasNext()) {
+            var entry = entries.next();
+            if (entry.id == id) {
+                int delta = message.getPayloadLength() - entry.message.getPayloadLength();
+                if (pendingBytes + delta > settings.bufferSizeLimit()) {
+                    return false;
+                }
+                // Newer data takes the old message's place, so it still goes out in the order the ID first did
+                entry.message = message;
+                pendingBytes += delta;
+                metrics.messageDropped();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Must be called while holding the lock
+    private Result stalled() {
+        log.error("Send to client {} exceeded {} ms, disconnecting", session.getRemoteAddress(),
+                settings.sendTimeLimit());
+        metrics.sendFailed();
+        return disconnect();
+    }
+
+    // Must be called while holding the lock
+    private Result disconnect() {
+        close();
+        runOnSender(() -> onFailure.accept(session));
+        return Result.DISCONNECTED;
+    }
+
+    private void schedule() {
+        runOnSender(this::drain);
+    }
+
+    private void runOnSender(Runnable task) {
+        try {
+            sender.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Only happens when shutting down
+            log.debug("Sender not accepting work, dropping output for client {}", session.getRemoteAddress());
+            synchronized (this) {
+                closed = true;
+                draining = false;
+            }
+        }
+    }
+
+    private void drain() {
+        for (int sent = 0; sent < MAX_SENDS_PER_PASS; sent++) {
+            WebSocketMessage<?> next;
+            synchronized (this) {
+                var entry = closed ? null : pending.pollFirst();
+                next = entry != null ? entry.message : null;
+                if (next == null) {
+                    if (finishStatus == null || closed) {
+                        draining = false;
+                        return;
+                    }
+                    closed = true;
+                } else {
+                    pendingBytes -= next.getPayloadLength();
+                }
+            }
+            if (next == null) {
+                // Everything went out, the session was to be closed after it
+                closeSession(finishStatus);
+                return;
+            }
+            if (!send(next)) {
+                // Failed, or still being sent (draining carries on from the completion)
+                return;
+            }
+        }
+        // Still more to send, go to the back of the line so other sessions get a turn
+        schedule();
+    }
+
+    // Start sending a message, returns true if it has already been sent (so the caller can send the next one)
+    private boolean send(WebSocketMessage<?> message) {
+        var state = new AtomicInteger(SEND_PENDING);
+        sendStartNanos = System.nanoTime();
+        asyncSender.sendMessageAsync(message, error -> {
+            sendStartNanos = 0;
+            if (error == null) {
+                metrics.messageSent(message.getPayloadLength());
+                if (state.compareAndExchange(SEND_PENDING, SEND_DONE) == SEND_DETACHED) {
+                    // Completed after drain() returned, pick up where it left off
+                    schedule();
+                }
+            } else {
+                state.set(SEND_FAILED);
+                sendFailed();
+            }
+        });
+        return state.compareAndExchange(SEND_PENDING, SEND_DETACHED) == SEND_DONE;
+    }
+
+    private void sendFailed() {
+        synchronized (this) {
+            if (closed) {
+                // Already disconnected (stalled) or removed
+                return;
+            }
+            close();
+        }
+        log.error("Failed to send message to client {}", session.getRemoteAddress());
+        metrics.sendFailed();
+        runOnSender(() -> onFailure.accept(session));
+    }
+
+    // Nothing is sent once closed, so the close frame goes out after the last message
+    private void closeSession(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (Exception error) {
+            log.debug("Failed to close connection to client {}: {}", session.getRemoteAddress(), error.toString());
+        }
+    }
+
+    // Send without blocking where the session allows it, otherwise fall back to a blocking send
+    private static AsyncMessageSender asyncSenderFor(WebSocketSession session, long sendTimeLimit) {
+        if (session instanceof AsyncMessageSender async) {
+            return async;
+        }
+        var standard = session instanceof NativeWebSocketSession nativeSession
+                ? nativeSession.getNativeSession(jakarta.websocket.Session.class) : null;
+        if (standard != null) {
+            // Make sure a blocked send (pings and pongs) eventually gives up so a stalled client can't hold a sender
+            // thread forever
+            standard.getUserProperties().put(TOMCAT_SEND_TIMEOUT, sendTimeLimit);
+            var remote = standard.getAsyncRemote();
+            remote.setSendTimeout(sendTimeLimit);
+            return (message, done) -> {
+                SendHandler handler = result -> done.accept(result.isOK() ? null : result.getException());
+                try {
+                    if (message instanceof TextMessage text && text.isLast()) {
+                        remote.sendText(text.getPayload(), handler);
+                    } else if (message instanceof BinaryMessage binary && binary.isLast()) {
+                        remote.sendBinary(binary.getPayload().duplicate(), handler);
+                    } else {
+                        blockingSend(session, message, done);
+                    }
+                } catch (RuntimeException error) {
+                    done.accept(error);
+                }
+            };
+        }
+        return (message, done) -> blockingSend(session, message, done);
+    }
+
+    private static void blockingSend(WebSocketSession session, WebSocketMessage<?> message, Consumer<Throwable> done) {
+        try {
+            session.sendMessage(message);
+        } catch (Exception error) {
+            done.accept(error);
+            return;
+        }
+        done.accept(null);
+    }
+}
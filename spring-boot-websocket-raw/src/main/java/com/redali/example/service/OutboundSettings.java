@@ -0,0 +1,30 @@
+package com.redali.example.service;
+
+/**
+ * Limits applied to the outbound queue of each client session.
+ *
+ * @param queueSize       Maximum number of messages waiting to be sent to a single client.
+ * @param sendTimeLimit   Maximum time (milliseconds) a single send to a client may take before the client is
+ *                        considered stalled and disconnected.
+ * @param bufferSizeLimit Maximum number of bytes (payload length) waiting to be sent to a single client.
+ * @param overflowPolicy  What to do when the queue size or buffer size limit would be exceeded.
+ * @param senderThreads   Number of threads shared by all sessions to drain the outbound queues.
+ */
+public record OutboundSettings(int queueSize, int sendTimeLimit, int bufferSizeLimit, OverflowPolicy overflowPolicy,
+                               int senderThreads) {
+
+    /**
+     * Settings used when nothing is configured.
+     */
+    public static final OutboundSettings DEFAULTS =
+            new OutboundSettings(256, 5000, 512 * 1024, OverflowPolicy.DROP_OLDEST, 4);
+
+    public OutboundSettings {
+        if (queueSize < 1 || sendTimeLimit < 1 || bufferSizeLimit < 1 || senderThreads < 1) {
+            throw new IllegalArgumentException("Outbound queue limits must all be positive");
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("Outbound overflow policy is required");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.redali.example.service;
+
+/**
+ * What to do when a client's outbound queue is full (either too many messages or too many bytes are waiting to be
+ * sent to the client).
+ */
+public enum OverflowPolicy {
+    /**
+     * Discard the oldest queued messages until the new message fits.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Discard the new message and leave the queue alone.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Replace the most recently queued message having the same message ID (for example an older health report is
+     * replaced by a newer one). If there is no message with the same ID waiting, falls back to DROP_OLDEST.
+     */
+    COALESCE,
+
+    /**
+     * Give up on the client and close its connection.
+     */
+    DISCONNECT
+}
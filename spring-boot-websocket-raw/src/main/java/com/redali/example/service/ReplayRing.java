@@ -0,0 +1,146 @@
+package com.redali.example.service;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The recent frames of every resumable session, kept outside the heap in one ring.
+ *
+ * <p>Frames are appended one after the other to a direct buffer, wrapping around at the end and overwriting the
+ * oldest ones. Each record points back to the previous record of the same session, so the frames a session missed are
+ * found by following its chain back from its latest record, O(missed frames) no matter how many other sessions write
+ * to the ring. Positions only ever grow (the index in the buffer is the position modulo the capacity), a record has
+ * been overwritten once the ring has moved more than its capacity past it.</p>
+ *
+ * <p>Being off-heap, a large ring adds nothing for the garbage collector to copy or scan. Appends and reads are short
+ * copies done while holding the ring's lock, the buffer is only allocated when the first frame is appended.</p>
+ */
+final class ReplayRing {
+    /**
+     * Smallest capacity allowed (bytes).
+     */
+    static final int MIN_CAPACITY = 1024;
+
+    /**
+     * Position of a record that doesn't exist (or was too big to keep).
+     */
+    static final long NONE = -1;
+
+    // Payload length (int), binary flag (byte), sequence number (long), position of session's previous record (long)
+    private static final int HEADER_BYTES = 21;
+
+    private final int capacity;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    private ByteBuffer buffer;
+    private long writePosition;
+
+    /**
+     * Construct ring.
+     *
+     * @param capacity Size of the ring (bytes).
+     */
+    ReplayRing(int capacity) {
+        if (capacity < MIN_CAPACITY) {
+            throw new IllegalArgumentException("Replay ring capacity must be at least " + MIN_CAPACITY + " bytes");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Append a frame sent to a session.
+     *
+     * @param previous Position of the session's previous record ({@link #NONE} if there isn't one).
+     * @param seq      Sequence number of the frame.
+     * @param frame    Frame sent (text or binary).
+     * @return Position of the new record, {@link #NONE} if the frame was too big to keep (more than half the ring).
+     */
+    synchronized long append(long previous, long seq, @NotNull WebSocketMessage<?> frame) {
+        var payload = frame instanceof TextMessage text ? ByteBuffer.wrap(text.asBytes())
+                : ((ByteBuffer) frame.getPayload()).duplicate();
+        int length = payload.remaining();
+        if (HEADER_BYTES + length > capacity / 2) {
+            return NONE;
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+        long position = writePosition;
+        header.clear();
+        header.putInt(length).put((byte) (frame instanceof BinaryMessage ? 1 : 0)).putLong(seq).putLong(previous);
+        put(position, header.flip());
+        put(position + HEADER_BYTES, payload);
+        writePosition = position + HEADER_BYTES + length;
+        return position;
+    }
+
+    /**
+     * Read back the latest frames of a session.
+     *
+     * @param last    Position of the session's latest record.
+     * @param lastSeq Sequence number of that record.
+     * @param count   Number of frames to read (the latest one and the ones before it).
+     * @return Frames oldest first (copied out of the ring), null if any of them were overwritten or never kept.
+     */
+    synchronized List<WebSocketMessage<?>> read(long last, long lastSeq, int count) {
+        var positions = new long[count];
+        long position = last;
+        for (int i = count - 1; i >= 0; i--) {
+            if (!isValid(position)) {
+                return null;
+            }
+            readHeader(position);
+            if (header.getLong(5) != lastSeq - (count - 1 - i)) {
+                return null;
+            }
+            positions[i] = position;
+            position = header.getLong(13);
+        }
+        var frames = new ArrayList<WebSocketMessage<?>>(count);
+        for (long record : positions) {
+            readHeader(record);
+            var payload = new byte[header.getInt(0)];
+            get(record + HEADER_BYTES, payload);
+            frames.add(header.get(4) != 0 ? new BinaryMessage(payload) : new TextMessage(payload));
+        }
+        return frames;
+    }
+
+    /**
+     * Get how far the ring has been written.
+     *
+     * @return Position the next record will be written at (total bytes ever appended).
+     */
+    synchronized long getWritePosition() {
+        return writePosition;
+    }
+
+    // Records from before the last capacity bytes written have been (at least partly) overwritten
+    private boolean isValid(long position) {
+        return position >= 0 && position < writePosition && position >= writePosition - capacity;
+    }
+
+    private void readHeader(long position) {
+        get(position, header.array());
+    }
+
+    private void put(long position, ByteBuffer source) {
+        int index = (int) (position % capacity);
+        int length = source.remaining();
+        int first = Math.min(length, capacity - index);
+        buffer.put(index, source, source.position(), first);
+        buffer.put(0, source, source.position() + first, length - first);
+    }
+
+    private void get(long position, byte[] destination) {
+        int index = (int) (position % capacity);
+        int first = Math.min(destination.length, capacity - index);
+        buffer.get(index, destination, 0, first);
+        buffer.get(0, destination, first, destination.length - first);
+    }
+}
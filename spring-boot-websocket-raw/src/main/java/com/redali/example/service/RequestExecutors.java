@@ -0,0 +1,108 @@
+package com.redali.example.service;
+
+import com.redali.example.handler.Execution;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The executors requests are handed to, picked by how each handler behaves.
+ */
+@Slf4j
+class RequestExecutors implements AutoCloseable {
+    private final ExecutionMode mode;
+    private final ExecutorService requestPool;
+    private final ExecutorService cpuPool;
+    // Only in INLINE mode, where pipelined requests still have to leave the thread that received them
+    private final ExecutorService pipelinePool;
+
+    RequestExecutors(@NotNull ExecutionSettings settings) {
+        var mode = settings.mode();
+        if (mode == ExecutionMode.INLINE) {
+            this.mode = mode;
+            this.requestPool = null;
+            this.cpuPool = null;
+            // Threads are only started once a client pipelines its requests
+            this.pipelinePool = newPool("ws-pipeline-", settings.poolSize());
+            return;
+        }
+        this.pipelinePool = null;
+        var virtual = mode == ExecutionMode.VIRTUAL ? newVirtualThreadPerTaskExecutor() : null;
+        if (mode == ExecutionMode.VIRTUAL && virtual == null) {
+            log.warn("Virtual threads need Java 21 or later, using a pool of {} threads for requests",
+                    settings.poolSize());
+            mode = ExecutionMode.POOL;
+        }
+        this.mode = mode;
+        this.requestPool = virtual != null ? virtual : newPool("ws-request-", settings.poolSize());
+        this.cpuPool = newPool("ws-cpu-", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Get the mode actually in use (VIRTUAL becomes POOL if the runtime has no virtual threads).
+     *
+     * @return Execution mode.
+     */
+    ExecutionMode getMode() {
+        return mode;
+    }
+
+    boolean isInline() {
+        return mode == ExecutionMode.INLINE;
+    }
+
+    /**
+     * Get the executor to process requests on.
+     *
+     * @param execution How the handlers of the requests behave.
+     * @return Executor to run the requests on or null to run trivial requests on the calling thread.
+     */
+    Executor executorFor(@NotNull Execution execution) {
+        return switch (execution) {
+            case TRIVIAL -> null;
+            case CPU_BOUND -> cpuPool;
+            case BLOCKING -> requestPool;
+        };
+    }
+
+    /**
+     * Get the executor to process pipelined requests on, these are never processed on the thread that received them
+     * (unless trivial) as they must be able to overtake each other.
+     *
+     * @param execution How the handlers of the requests behave.
+     * @return Executor to run the requests on or null to run trivial requests on the calling thread.
+     */
+    Executor pipelineExecutorFor(@NotNull Execution execution) {
+        return isInline() && execution != Execution.TRIVIAL ? pipelinePool : executorFor(execution);
+    }
+
+    @Override
+    public void close() {
+        if (requestPool != null) {
+            requestPool.shutdownNow();
+            cpuPool.shutdownNow();
+        }
+        if (pipelinePool != null) {
+            pipelinePool.shutdownNow();
+        }
+    }
+
+    private static ExecutorService newPool(String prefix, int threads) {
+        var threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+    // Looked up by name so the project still builds and runs on Java 17
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
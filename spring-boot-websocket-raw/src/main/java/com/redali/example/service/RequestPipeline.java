@@ -0,0 +1,118 @@
+package com.redali.example.service;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the work for a single pipelined client session several pieces at a time, each finishing whenever it does.
+ *
+ * <p>The counterpart of the {@link RequestSequencer} for requests the client correlates by their "cid": a slow request
+ * doesn't hold up the ones behind it. At most a fixed number of pieces run at once, the rest wait (in order) for one
+ * to finish.</p>
+ */
+class RequestPipeline {
+    private record Task(Runnable work, Executor executor) {
+    }
+
+    private final int maxInFlight;
+    private final int maxPending;
+
+    // Guarded by this
+    private final ArrayDeque<Task> pending = new ArrayDeque<>();
+    private int inFlight;
+
+    /**
+     * Construct pipeline.
+     *
+     * @param maxInFlight Maximum number of tasks running at once.
+     * @param maxPending  Maximum number of tasks waiting for one of the running ones to finish.
+     */
+    RequestPipeline(int maxInFlight, int maxPending) {
+        this.maxInFlight = maxInFlight;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Run work once fewer than the maximum number of tasks are running.
+     *
+     * @param work     Work to run.
+     * @param executor Executor to run the work on or null to run it on the calling thread (or the thread finishing the
+     *                 task it waited for).
+     * @return false if the work was not accepted because too much work is already waiting.
+     */
+    boolean submit(@NotNull Runnable work, Executor executor) {
+        var task = new Task(work, executor);
+        synchronized (this) {
+            if (inFlight >= maxInFlight) {
+                if (pending.size() >= maxPending) {
+                    return false;
+                }
+                pending.addLast(task);
+                return true;
+            }
+            inFlight++;
+        }
+        run(task);
+        return true;
+    }
+
+    /**
+     * Number of tasks running.
+     *
+     * @return Tasks running.
+     */
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Check whether all the work submitted has finished.
+     *
+     * @return True if nothing is running or waiting.
+     */
+    synchronized boolean isIdle() {
+        return inFlight == 0;
+    }
+
+    // Runs a task, and the tasks that were waiting for it, until one is handed to an executor or there are no more
+    private void run(Task task) {
+        while (task != null) {
+            if (task.executor() != null) {
+                var next = task;
+                try {
+                    next.executor().execute(() -> {
+                        try {
+                            next.work().run();
+                        } finally {
+                            run(finished());
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // Only happens when shutting down
+                    synchronized (this) {
+                        pending.clear();
+                        inFlight = 0;
+                    }
+                }
+                return;
+            }
+            try {
+                task.work().run();
+            } finally {
+                task = finished();
+            }
+        }
+    }
+
+    // A task finished, its slot goes to the next one waiting (if any)
+    private synchronized Task finished() {
+        var next = pending.pollFirst();
+        if (next == null) {
+            inFlight--;
+        }
+        return next;
+    }
+}
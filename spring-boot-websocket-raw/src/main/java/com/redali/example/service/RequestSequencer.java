@@ -0,0 +1,113 @@
+package com.redali.example.service;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the work for a single client session one piece at a time, in the order it was submitted.
+ *
+ * <p>Each piece of work can go to a different executor (or run on the calling thread) but it never starts before
+ * the previous one has finished, so responses go out in the same order the requests came in.</p>
+ */
+class RequestSequencer {
+    private record Task(Runnable work, Executor executor) {
+    }
+
+    private final int maxPending;
+
+    // Guarded by this
+    private final ArrayDeque<Task> pending = new ArrayDeque<>();
+    private boolean running;
+
+    /**
+     * Construct sequencer.
+     *
+     * @param maxPending Maximum number of tasks waiting behind the one running.
+     */
+    RequestSequencer(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Run work after everything submitted before it has finished.
+     *
+     * @param work     Work to run.
+     * @param executor Executor to run the work on or null to run it on whatever thread gets to it first (the calling
+     *                 thread if nothing else is running).
+     * @return false if the work was not accepted because too much work is already waiting.
+     */
+    boolean submit(@NotNull Runnable work, Executor executor) {
+        var task = new Task(work, executor);
+        synchronized (this) {
+            if (running) {
+                if (pending.size() >= maxPending) {
+                    return false;
+                }
+                pending.addLast(task);
+                return true;
+            }
+            running = true;
+        }
+        run(task);
+        return true;
+    }
+
+    /**
+     * Number of tasks waiting behind the one running.
+     *
+     * @return Tasks waiting.
+     */
+    synchronized int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * Check whether all the work submitted has finished.
+     *
+     * @return True if nothing is running or waiting.
+     */
+    synchronized boolean isIdle() {
+        return !running;
+    }
+
+    // Runs tasks until one is handed to an executor or there are no more
+    private void run(Task task) {
+        while (task != null) {
+            if (task.executor() != null) {
+                var next = task;
+                try {
+                    next.executor().execute(() -> {
+                        try {
+                            next.work().run();
+                        } finally {
+                            run(poll());
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // Only happens when shutting down
+                    synchronized (this) {
+                        pending.clear();
+                        running = false;
+                    }
+                }
+                return;
+            }
+            try {
+                task.work().run();
+            } finally {
+                task = poll();
+            }
+        }
+    }
+
+    private synchronized Task poll() {
+        var next = pending.pollFirst();
+        if (next == null) {
+            running = false;
+        }
+        return next;
+    }
+}
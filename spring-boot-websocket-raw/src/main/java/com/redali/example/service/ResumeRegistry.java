@@ -0,0 +1,301 @@
+package com.redali.example.service;
+
+import com.redali.example.codec.MessageCodec;
+import com.redali.example.message.Resume;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Lets clients pick up their session where they left off after reconnecting.
+ *
+ * <p>A client asks for its session to be made resumable and is handed a token. From then on every frame sent to it is
+ * stamped with a sequence number and a copy is kept in a {@link ReplayRing} shared by all sessions. After reconnecting
+ * the client sends the token and the sequence number of the last frame it got, the frames it missed are read back from
+ * the ring and sent again. Only the chain of the session's own records is followed, so resuming costs O(missed
+ * frames). A session can be resumed for a while after its client disconnects, as long as it missed no more than the
+ * maximum number of frames and they haven't been overwritten in the ring.</p>
+ *
+ * <p>While the client is away its stream still gets the broadcasts and whatever is published on the topics the
+ * session was subscribed to (the subscriptions are moved to the new session when it resumes).</p>
+ */
+public class ResumeRegistry {
+    private static final int TOKEN_BYTES = 16;
+
+    private final ResumeSettings settings;
+    private final ReplayRing ring;
+    private final long retentionNanos;
+    private final LongSupplier clock;
+    private final TopicRegistry topics;
+    private final SecureRandom random = new SecureRandom();
+    // Session ID -> stream of frames being sent to it
+    private final ConcurrentHashMap<String, Stream> active = new ConcurrentHashMap<>();
+    // Token -> stream (sent to a session or waiting to be resumed)
+    private final ConcurrentHashMap<String, Stream> byToken = new ConcurrentHashMap<>();
+    // Streams of disconnected clients
+    private final Set<Stream> waiting = ConcurrentHashMap.newKeySet();
+    // When each stream was disconnected, oldest first (guarded by itself)
+    private final ArrayDeque<Detached> detached = new ArrayDeque<>();
+
+    /**
+     * Encodes a message sent while a client was disconnected for its stream.
+     */
+    @FunctionalInterface
+    interface FrameEncoder {
+        WebSocketMessage<?> encode(boolean binary, long seq);
+    }
+
+    /**
+     * Construct registry.
+     *
+     * @param settings How much to keep and for how long.
+     * @param topics   Topic subscriptions (moved from the old session to the new one when a session is resumed).
+     */
+    public ResumeRegistry(@NotNull ResumeSettings settings, @NotNull TopicRegistry topics) {
+        this(settings, topics, System::nanoTime);
+    }
+
+    // Lets tests control the time
+    ResumeRegistry(ResumeSettings settings, TopicRegistry topics, LongSupplier clock) {
+        this.settings = settings;
+        this.topics = topics;
+        this.ring = new ReplayRing(settings.bufferSize());
+        this.retentionNanos = TimeUnit.MILLISECONDS.toNanos(settings.retentionMillis());
+        this.clock = clock;
+    }
+
+    /**
+     * Make a session resumable (does nothing if it already is).
+     *
+     * @param session Session to make resumable.
+     * @return The token to resume the session with.
+     */
+    public Resume start(@NotNull WebSocketSession session) {
+        expire();
+        var stream = active.computeIfAbsent(session.getId(), id -> {
+            var created = new Stream(newToken(), session, isBinary(session));
+            byToken.put(created.token, created);
+            return created;
+        });
+        return new Resume(stream.token, false, 0);
+    }
+
+    /**
+     * Resume a session on a new connection. The frames the client missed are sent ahead of the next frame sent to the
+     * new session (normally the response to the resume request).
+     *
+     * @param session  New session of the client.
+     * @param token    Token the client was given for its old session.
+     * @param afterSeq Sequence number of the last frame the client got.
+     * @return Whether the session was resumed and how many frames are replayed. If it couldn't be resumed the new
+     * session is made resumable instead (with a new token) and the client has to resync.
+     */
+    public Resume resume(@NotNull WebSocketSession session, @NotNull String token, long afterSeq) {
+        expire();
+        var stream = byToken.get(token);
+        if (stream == null) {
+            return start(session);
+        }
+        synchronized (stream) {
+            var frames = stream.replayAfter(afterSeq, isBinary(session));
+            if (frames == null) {
+                return start(session);
+            }
+            // Take the stream over from the old session (which may not have noticed its client is gone yet)
+            if (stream.owner != null) {
+                active.remove(stream.owner.getId(), stream);
+                stream.topics = Set.copyOf(topics.getTopics(stream.owner));
+            }
+            var replaced = active.put(session.getId(), stream);
+            if (replaced != null && replaced != stream) {
+                byToken.remove(replaced.token, replaced);
+            }
+            stream.owner = session;
+            stream.replay = frames;
+            waiting.remove(stream);
+            for (var topic : stream.topics) {
+                topics.subscribe(session, topic);
+            }
+            stream.topics = Set.of();
+            return new Resume(stream.token, true, frames.size());
+        }
+    }
+
+    /**
+     * Stop sending frames to a session, its stream can be resumed until the retention time runs out. Must be called
+     * before the session's subscriptions are dropped.
+     *
+     * @param session Session that was closed.
+     */
+    public void sessionClosed(@NotNull WebSocketSession session) {
+        var stream = active.remove(session.getId());
+        if (stream != null) {
+            synchronized (stream) {
+                if (stream.owner == session) {
+                    stream.owner = null;
+                    stream.replay = null;
+                    stream.topics = Set.copyOf(topics.getTopics(session));
+                    stream.detachedAt = clock.getAsLong();
+                    waiting.add(stream);
+                    synchronized (detached) {
+                        detached.add(new Detached(stream, stream.detachedAt));
+                    }
+                }
+            }
+        }
+        expire();
+    }
+
+    /**
+     * Keep a message for the disconnected clients that would have been sent it.
+     *
+     * @param topic   Topic the message was published on (null for a broadcast).
+     * @param encoder Encodes the message stamped with the sequence number of a stream.
+     * @return Number of streams the message was kept for.
+     */
+    int keepForDisconnected(String topic, @NotNull FrameEncoder encoder) {
+        int kept = 0;
+        for (var stream : waiting) {
+            synchronized (stream) {
+                if (stream.owner == null && (topic == null || stream.topics.contains(topic))) {
+                    long seq = stream.next();
+                    stream.record(seq, encoder.encode(stream.binary, seq));
+                    kept++;
+                }
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Get the stream of a resumable session.
+     *
+     * @param session Session frames are being sent to.
+     * @return Stream of the session, null if the session isn't resumable.
+     */
+    Stream get(@NotNull WebSocketSession session) {
+        return active.get(session.getId());
+    }
+
+    /**
+     * Get the number of streams that can be resumed.
+     *
+     * @return Streams of connected and recently disconnected sessions.
+     */
+    public int size() {
+        return byToken.size();
+    }
+
+    // Forget the streams of sessions that were disconnected for longer than the retention time
+    private void expire() {
+        long now = clock.getAsLong();
+        synchronized (detached) {
+            Detached oldest;
+            while ((oldest = detached.peek()) != null && now - oldest.at() >= retentionNanos) {
+                detached.poll();
+                var stream = oldest.stream();
+                synchronized (stream) {
+                    // Skip streams that were resumed (and maybe disconnected again) since
+                    if (stream.owner == null && stream.detachedAt == oldest.at()) {
+                        byToken.remove(stream.token, stream);
+                        waiting.remove(stream);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isBinary(WebSocketSession session) {
+        return MessageCodec.CBOR_PROTOCOL.equals(session.getAcceptedProtocol());
+    }
+
+    private String newToken() {
+        var bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private record Detached(Stream stream, long at) {
+    }
+
+    /**
+     * The frames sent to one resumable session. Everything is done while holding the stream's lock, which also keeps
+     * the frames in sequence number order on their way into the outbound queue.
+     */
+    final class Stream {
+        private final String token;
+        private final boolean binary;
+        private WebSocketSession owner;
+        private long seq;
+        private long last = ReplayRing.NONE;
+        private long detachedAt;
+        // Topics the session was subscribed to when its client disconnected
+        private Set<String> topics = Set.of();
+        private List<WebSocketMessage<?>> replay;
+
+        private Stream(String token, WebSocketSession owner, boolean binary) {
+            this.token = token;
+            this.owner = owner;
+            this.binary = binary;
+        }
+
+        /**
+         * Check whether frames to a session belong to this stream (it may have been taken over by a new session).
+         *
+         * @param session Session the frame is being sent to.
+         * @return True if the stream is the session's.
+         */
+        boolean isOwnedBy(WebSocketSession session) {
+            return owner == session;
+        }
+
+        /**
+         * Take the frames the client missed (to be sent before anything else).
+         *
+         * @return Frames to send again, null if there are none.
+         */
+        List<WebSocketMessage<?>> takeReplay() {
+            var frames = replay;
+            replay = null;
+            return frames;
+        }
+
+        /**
+         * Get the sequence number of the next frame.
+         *
+         * @return Sequence number (the first frame is 1).
+         */
+        long next() {
+            return ++seq;
+        }
+
+        /**
+         * Keep a copy of a frame stamped with the sequence number from {@link #next()}.
+         *
+         * @param frameSeq Sequence number of the frame.
+         * @param frame    Frame being sent.
+         */
+        void record(long frameSeq, WebSocketMessage<?> frame) {
+            last = ring.append(last, frameSeq, frame);
+        }
+
+        // Frames after the sequence number, null if they can't all be replayed
+        private List<WebSocketMessage<?>> replayAfter(long afterSeq, boolean binarySession) {
+            // Frames were encoded for the sub-protocol of the old session
+            if (binary != binarySession || afterSeq > seq || seq - afterSeq > settings.maxFrames()) {
+                return null;
+            }
+            int missed = (int) (seq - afterSeq);
+            return missed == 0 ? List.of() : ring.read(last, seq, missed);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.redali.example.service;
+
+/**
+ * How much is kept so clients can resume their sessions after reconnecting.
+ *
+ * @param bufferSize      Size (bytes) of the off-heap ring holding the recent frames of every resumable session.
+ * @param maxFrames       Most frames a client may have missed and still resume its session.
+ * @param retentionMillis How long (milliseconds) after a client disconnects its session can still be resumed.
+ */
+public record ResumeSettings(int bufferSize, int maxFrames, int retentionMillis) {
+
+    /**
+     * Settings used when nothing is configured.
+     */
+    public static final ResumeSettings DEFAULTS = new ResumeSettings(8 * 1024 * 1024, 256, 30000);
+
+    public ResumeSettings {
+        if (bufferSize < ReplayRing.MIN_CAPACITY) {
+            throw new IllegalArgumentException("Resume buffer size must be at least " + ReplayRing.MIN_CAPACITY
+                    + " bytes");
+        }
+        if (maxFrames < 1 || retentionMillis < 1) {
+            throw new IllegalArgumentException("Resume max frames and retention must be positive");
+        }
+    }
+}
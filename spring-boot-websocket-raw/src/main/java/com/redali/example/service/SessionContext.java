@@ -0,0 +1,18 @@
+package com.redali.example.service;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * Everything the service keeps track of for a registered session.
+ *
+ * @param session   The client session.
+ * @param outbound  Messages waiting to be sent to the client.
+ * @param requests  Keeps requests from the client in order when they are processed off the container thread.
+ * @param pipeline  Runs the requests the client correlates by their "cid" side by side once it asked for pipelining.
+ * @param heartbeat When the client was last heard from, pings it and disconnects it when it goes quiet.
+ */
+record SessionContext(@NotNull WebSocketSession session, @NotNull OutboundQueue outbound,
+                      @NotNull RequestSequencer requests, @NotNull RequestPipeline pipeline,
+                      @NotNull HeartbeatMonitor.Heartbeat heartbeat) {
+}
@@ -0,0 +1,56 @@
+package com.redali.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Drains the session service when the application shuts down (see {@link SessionService#drain(ShutdownSettings)}).
+ *
+ * <p>Runs in the last lifecycle phase, so it is stopped first: the web server is still up (refusing new WebSocket
+ * connections) and the service still sending while the clients are let go. Closing the container's connections
+ * afterwards only finds the clients that ignored the close.</p>
+ */
+@Slf4j
+public class SessionDrainer implements SmartLifecycle {
+    private final SessionService sessionService;
+    private final ShutdownSettings settings;
+    private volatile boolean running;
+
+    /**
+     * Construct drainer.
+     *
+     * @param sessionService Service to drain.
+     * @param settings       How long to wait for pending messages and how to spread out closing the clients.
+     */
+    public SessionDrainer(@NotNull SessionService sessionService, @NotNull ShutdownSettings settings) {
+        this.sessionService = sessionService;
+        this.settings = settings;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        long start = System.nanoTime();
+        sessionService.drain(settings);
+        log.info("Drained clients in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE;
+    }
+}
@@ -1,11 +1,19 @@
 package com.redali.example.service;
 
+import com.redali.example.codec.MessageCodec;
+import com.redali.example.handler.RequestHandler;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.GoAway;
+import com.redali.example.message.ServerMessage;
 import org.jetbrains.annotations.NotNull;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Defines what we need our JSON message processing service to do.
@@ -13,15 +21,61 @@ import java.util.Collection;
 public interface SessionService {
 
     /**
-     * Looks at the "request" and optional "content" fields of the payload JSON message and responds accordingly.
+     * Looks at the "request" type and optional attributes of a decoded client request and responds accordingly.
      *
-     * @param session      Session that JSON message was received from.
-     * @param jsonReceived JSON request message in form of { "id": REQUEST_TYPE_ID } or { "id": REQUEST_TYPE_ID,
-     *                     "content": { } } where "content" is dependent on the message type being requested.
-     * @return JSONObject to send back to session or null if nothing to send back.
+     * @param session Session that the request was received from.
+     * @param request Request decoded from a JSON message in the form of { "request": REQUEST_TYPE_ID } or
+     *                { "request": REQUEST_TYPE_ID, ... } where the other attributes depend on the request type.
+     * @return Message to send back to session or null if nothing to send back.
      * @throws JSONException If there was a problem with the request.
      */
-    JSONObject processRequest(@NotNull WebSocketSession session, @NotNull JSONObject jsonReceived) throws JSONException;
+    ServerMessage processRequest(@NotNull WebSocketSession session, @NotNull ClientRequest request) throws JSONException;
+
+    /**
+     * Decodes a frame received from a client, processes the request(s) in it and queues the response(s).
+     *
+     * <p>A frame holds a single request or a batch (array) of requests. The responses to a batch are sent back in a
+     * single frame in the same order as the requests, each echoing the "cid" of its request.</p>
+     *
+     * <p>Depending on how the service is configured, the requests may still be waiting to be processed on another
+     * thread when this returns. Frames from the same session are always processed in the order they were received.</p>
+     *
+     * @param session Session that the frame was received from.
+     * @param message Frame received from the client.
+     * @throws JSONException If the frame could not be decoded, exceeds the batch limits or holds a bad request.
+     */
+    void handleMessage(@NotNull WebSocketSession session, @NotNull WebSocketMessage<?> message) throws JSONException;
+
+    /**
+     * Note a pong received from a client (it answers one of the heartbeat pings, or the client sent it unasked).
+     *
+     * @param session Session that the pong was received from.
+     * @param message Pong received from the client.
+     */
+    void handlePong(@NotNull WebSocketSession session, @NotNull PongMessage message);
+
+    /**
+     * Find the handler that processes a client request.
+     *
+     * <p>Callers can use {@link RequestHandler#getExecution()} to decide which thread should process the request.</p>
+     *
+     * @param session Session that the request was received from.
+     * @param request Decoded client request.
+     * @return Handler for the request type (never null).
+     * @throws JSONException If there is no handler for the request type.
+     */
+    RequestHandler getHandler(@NotNull WebSocketSession session, @NotNull ClientRequest request) throws JSONException;
+
+    /**
+     * Get the codec used to decode requests from and encode messages sent to a client.
+     *
+     * <p>Depends on the sub-protocol the client negotiated: CBOR binary messages for "cbor", otherwise the configured
+     * JSON text codec.</p>
+     *
+     * @param session Client session.
+     * @return Codec for the session.
+     */
+    MessageCodec getCodec(@NotNull WebSocketSession session);
 
     /**
      * Used to register a new WebSocket session with the service.
@@ -38,7 +92,11 @@ public interface SessionService {
     void unregisterSession(@NotNull WebSocketSession session);
 
     /**
-     * Get a safe copy of all the WebSocket sessions currently registered with the service.
+     * Get a read only view of all the WebSocket sessions currently registered with the service.
+     *
+     * <p>The view is safe to iterate while sessions are being registered and unregistered by other threads (no lock
+     * is taken and no ConcurrentModificationException is thrown). Iteration is weakly consistent, sessions added or
+     * removed during the iteration may or may not be seen.</p>
      *
      * @return Collection of 0 or more WebSocket sessions.
      */
@@ -47,8 +105,9 @@ public interface SessionService {
     /**
      * Sends a text message to a client.
      *
-     * <p>WARNING: This uses the sendMessage() of the client directly for sending out the message.
-     * If one client could cause this to block, that could cause issues for other clients! If the send fails, the
+     * <p>The message is added to the client's bounded outbound queue and this method returns immediately (a slow
+     * client can not block the caller or other clients). If the queue is full, the configured overflow policy
+     * decides which message is discarded (or if the client is disconnected). If the send fails or stalls, the
      * client connection will be removed and closed out.</p>
      *
      * @param session Session to send message to (must not be null).
@@ -56,4 +115,91 @@ public interface SessionService {
      * @param content Any content associated with the message ID (pass null if just need ID sent).
      */
     void sendToSession(@NotNull WebSocketSession session, int id, JSONObject content);
+
+    /**
+     * Sends the same message to every client registered with this node (see
+     * {@link #broadcastToCluster(int, JSONObject)} to reach the clients of every node).
+     *
+     * <p>The message is encoded once (per sub-protocol in use) and the resulting frame is shared by all sessions. With
+     * many sessions the work of queueing it is split across several threads. Like
+     * {@link #sendToSession(WebSocketSession, int, JSONObject)} this never blocks on a slow client.</p>
+     *
+     * @param id      ID to indicate type of message being sent.
+     * @param content Any content associated with the message ID (pass null if just need ID sent).
+     * @return Counts of how many sessions the message was delivered to, dropped by or failed on and how long it took.
+     */
+    BroadcastStats broadcast(int id, JSONObject content);
+
+    /**
+     * Sends the same message to every client of every node in the cluster.
+     *
+     * <p>The message is relayed to the other nodes (without waiting for them) and broadcast to the clients of this
+     * node. Without a cluster this is the same as {@link #broadcast(int, JSONObject)}.</p>
+     *
+     * @param id      ID to indicate type of message being sent.
+     * @param content Any content associated with the message ID (pass null if just need ID sent).
+     * @return Counts for the clients of this node (see {@link #broadcast(int, JSONObject)}).
+     */
+    BroadcastStats broadcastToCluster(int id, JSONObject content);
+
+    /**
+     * Get the number of clients connected to the whole cluster.
+     *
+     * @return Sessions registered with this node plus those last reported by the other nodes.
+     */
+    int getClusterSessionCount();
+
+    /**
+     * Sends a message to every client subscribed to a topic, on every node in the cluster.
+     *
+     * <p>Clients subscribe with a type 3 request and unsubscribe with a type 4 request (or by disconnecting). Only the
+     * subscribers of the topic are visited and the message is encoded once per sub-protocol in use, so the cost does
+     * not depend on how many other sessions or topics there are. Like {@link #broadcast(int, JSONObject)} this never
+     * blocks on a slow client. The message is also relayed to the other nodes of the cluster (if any).</p>
+     *
+     * @param topic   Name of the topic.
+     * @param id      ID to indicate type of message being sent.
+     * @param content Any content associated with the message ID (pass null if just need ID sent).
+     * @return Counts of how many subscribers (of this node) the message was delivered to, dropped by or failed on and
+     * how long it took.
+     */
+    BroadcastStats publish(@NotNull String topic, int id, JSONObject content);
+
+    /**
+     * Sends a response returned by {@link #processRequest(WebSocketSession, ClientRequest)} to a client.
+     *
+     * <p>Goes through the same outbound queue as {@link #sendToSession(WebSocketSession, int, JSONObject)} so
+     * responses and server pushed messages are never written to the client at the same time.</p>
+     *
+     * @param session  Session to send message to (must not be null).
+     * @param response Message to send.
+     */
+    void sendResponse(@NotNull WebSocketSession session, @NotNull ServerMessage response);
+
+    /**
+     * Sends the responses to a batch of requests to a client as a single frame.
+     *
+     * @param session   Session to send message to (must not be null).
+     * @param responses Messages to send (in order).
+     */
+    void sendResponses(@NotNull WebSocketSession session, @NotNull List<ServerMessage> responses);
+
+    /**
+     * Lets every client go ahead of shutting down, blocks until done.
+     *
+     * <p>Clients connecting from now on are told to go away right after registering (the WebSocket endpoint refuses
+     * them before that, see {@link #isDraining()}). Requests being processed and messages queued for the clients get
+     * until the flush timeout to go out. Then the clients are closed in waves, each sent a {@link GoAway} message
+     * saying when to reconnect before its connection is closed.</p>
+     *
+     * @param settings How long to wait for pending messages and how to spread out closing the clients.
+     */
+    void drain(@NotNull ShutdownSettings settings);
+
+    /**
+     * Check whether the service is letting its clients go (see {@link #drain(ShutdownSettings)}).
+     *
+     * @return True once draining has started.
+     */
+    boolean isDraining();
 }
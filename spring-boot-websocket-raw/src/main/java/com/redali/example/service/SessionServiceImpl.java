@@ -1,20 +1,59 @@
 package com.redali.example.service;
 
+import com.redali.example.cluster.ClusterBroker;
+import com.redali.example.cluster.ClusterListener;
+import com.redali.example.cluster.SingleNodeBroker;
+import com.redali.example.codec.CborCodec;
+import com.redali.example.codec.CodecType;
+import com.redali.example.codec.MessageCodec;
+import com.redali.example.dns.DnsSettings;
+import com.redali.example.dns.ReverseDnsCache;
+import com.redali.example.handler.DiceRollHandler;
+import com.redali.example.handler.DiceStatsHandler;
+import com.redali.example.handler.Execution;
+import com.redali.example.handler.RequestHandler;
+import com.redali.example.handler.RequestHandlerRegistry;
+import com.redali.example.handler.PipelineHandler;
+import com.redali.example.handler.ResumeHandler;
+import com.redali.example.handler.SessionInfoHandler;
+import com.redali.example.handler.SubscribeHandler;
+import com.redali.example.handler.UnsubscribeHandler;
+import com.redali.example.journal.RequestJournal;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.GoAway;
+import com.redali.example.message.JsonContent;
+import com.redali.example.message.RateLimited;
+import com.redali.example.message.RequestFrame;
+import com.redali.example.message.ServerMessage;
+import com.redali.example.metrics.WebSocketMetrics;
+import com.redali.example.ratelimit.RateLimitPolicy;
+import com.redali.example.ratelimit.RateLimitSettings;
+import com.redali.example.ratelimit.RateLimiter;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.springframework.stereotype.Service;
-import org.springframework.web.socket.TextMessage;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
 
 /**
  * Our implementation of a JSON based messaging service.
@@ -31,68 +70,615 @@ import java.util.Random;
  * additional "content" specific to the type of message.</p>
  *
  * <pre><code>{ "id": 0, "content": { } }</code></pre>
+ *
+ * <p>Each request type is processed by a {@link RequestHandler}, see the handler package for the ones available.</p>
+ *
+ * <p>Messages to clients are never sent directly by the caller. Each session has its own bounded outbound queue that
+ * is drained by a small pool of sender threads, so a slow client only ever delays its own messages.</p>
+ *
+ * <p>Depending on the {@link ExecutionSettings}, requests are processed on the container thread that received them
+ * or handed off to a pool (or virtual threads) picked by the {@link Execution} of their handlers. Either way the
+ * requests from a single client are processed one at a time in the order they arrived, unless the client asked for
+ * them to be pipelined (see {@link PipelineHandler}): then the requests it correlates by their "cid" are processed side
+ * by side, up to a limit, and each response is sent as soon as it is ready.</p>
+ *
+ * <p>Clients that go quiet are pinged, and disconnected if they stop answering (see {@link HeartbeatSettings}).
+ * Clients sending requests faster than their rate limits allow have them rejected, delayed or are disconnected (see
+ * {@link RateLimitSettings}).</p>
+ *
+ * <p>Clients that made their session resumable have every frame stamped with a sequence number and kept for a while,
+ * so after reconnecting they are sent what they missed instead of having to resync (see {@link ResumeRegistry}).</p>
+ *
+ * <p>Every frame received can be written to a {@link RequestJournal}, to look into later or replay.</p>
+ *
+ * <p>Before shutting down, the service can {@link #drain(ShutdownSettings) drain}: pending messages get a chance to go
+ * out and the clients are closed in waves, told when to reconnect, instead of all being cut off at once.</p>
  */
-@Service
 @Slf4j
-public class SessionServiceImpl implements SessionService {
-    private static final String DICE_KEY = "dice";
-    private static final String SIDES_KEY = "sides";
+public class SessionServiceImpl implements SessionService, AutoCloseable {
+    // Broadcasts to fewer sessions than this are handed out on the calling thread
+    private static final int MIN_BROADCAST_SHARD = 1024;
+    // How often (milliseconds) to look whether everything has gone out while draining
+    private static final int FLUSH_POLL_MILLIS = 10;
 
     // Used to keep track of active sessions, useful if you want to be able to push
     // server side generated messages out or have messages from one session trigger
-    // messages to other sessions.
-    private final Map<String, WebSocketSession> sessions = new HashMap<>();
-    private final Random diceRoller = new Random();
+    // messages to other sessions. Each session is tracked by its context (outbound queue and such), the map allows
+    // register/unregister from many threads at once without a global lock and can be iterated while it is being changed.
+    private final ConcurrentHashMap<String, SessionContext> sessions = new ConcurrentHashMap<>();
+    private final Collection<WebSocketSession> sessionsView = new SessionsView();
+    private final RequestHandlerRegistry handlers;
+    private final WebSocketMetrics metrics;
+    private final OutboundSettings outboundSettings;
+    private final BatchSettings batchSettings;
+    private final ExecutionSettings executionSettings;
+    private final RequestExecutors executors;
+    private final TopicRegistry topics;
+    private final ClusterBroker broker;
+    private final HeartbeatMonitor heartbeats;
+    private final RateLimiter rateLimiter;
+    private final ResumeRegistry resumes;
+    private final RequestJournal journal;
+    // Only set when the service made its own session info handler, closed with the service
+    private final ReverseDnsCache dnsCache;
+    private final MessageCodec codec;
+    private final MessageCodec binaryCodec = new CborCodec();
+    private final ExecutorService sender;
+    private final ExecutorService broadcaster;
+    private final ScheduledExecutorService watchdog;
+    private final int broadcastShards;
+    // Set once draining starts (new sessions are sent away at once)
+    private volatile ShutdownSettings shutdown;
+
+    /**
+     * Construct service with the default request handlers and streaming codec, processing requests on the thread
+     * that received them with no rate limits so tests see the answers at once (the application builds its service
+     * with {@link #builder()}).
+     */
+    public SessionServiceImpl() {
+        this(builder().executionSettings(new ExecutionSettings(ExecutionMode.INLINE, ExecutionSettings.DEFAULTS.poolSize(),
+                        ExecutionSettings.DEFAULTS.maxPending()))
+                .rateLimitSettings(RateLimitSettings.UNLIMITED));
+    }
+
+    /**
+     * Start building a service, anything not set is left at its default.
+     *
+     * @return Builder for the service.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private SessionServiceImpl(Builder builder) {
+        this.outboundSettings = builder.outboundSettings;
+        this.batchSettings = builder.batchSettings;
+        this.executionSettings = builder.executionSettings;
+        this.codec = builder.codec != null ? builder.codec : CodecType.STREAMING.create();
+        this.metrics = builder.metrics;
+        this.topics = builder.topics != null ? builder.topics : new TopicRegistry();
+        this.broker = builder.broker != null ? builder.broker : new SingleNodeBroker();
+        // Resuming a session moves its subscriptions over, so the resume registry works with the same topic registry
+        this.resumes = builder.resumes != null ? builder.resumes
+                : new ResumeRegistry(ResumeSettings.DEFAULTS, topics);
+        this.journal = builder.journal;
+        this.executors = new RequestExecutors(executionSettings);
+        this.rateLimiter = new RateLimiter(builder.rateLimitSettings);
+        metrics.bindSessions(sessions);
+        // The topic and resume handlers and the service must share the same registries
+        this.dnsCache = builder.handlers != null ? null : new ReverseDnsCache(DnsSettings.DEFAULTS);
+        this.handlers = new RequestHandlerRegistry(builder.handlers != null ? builder.handlers
+                : List.of(new SessionInfoHandler(dnsCache), new DiceRollHandler(), new DiceStatsHandler(),
+                new SubscribeHandler(topics), new UnsubscribeHandler(topics), new ResumeHandler(resumes),
+                new PipelineHandler(executionSettings)));
+        var threadFactory = new CustomizableThreadFactory("ws-sender-");
+        threadFactory.setDaemon(true);
+        this.sender = Executors.newFixedThreadPool(outboundSettings.senderThreads(), threadFactory);
+        var broadcastFactory = new CustomizableThreadFactory("ws-broadcast-");
+        broadcastFactory.setDaemon(true);
+        this.broadcastShards = Runtime.getRuntime().availableProcessors();
+        this.broadcaster = Executors.newFixedThreadPool(broadcastShards, broadcastFactory);
+        // Closing a client may block, so it is done on a sender thread rather than the timing wheel thread
+        this.heartbeats = new HeartbeatMonitor(builder.heartbeatSettings, metrics,
+                session -> sender.execute(() -> removeSession(session)));
+        // A stalled send is otherwise only noticed when the next message is offered, which may never happen
+        var watchdogFactory = new CustomizableThreadFactory("ws-watchdog-");
+        watchdogFactory.setDaemon(true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(watchdogFactory);
+        long checkMillis = Math.max(1, outboundSettings.sendTimeLimit() / 4);
+        watchdog.scheduleWithFixedDelay(this::checkStalled, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+        // Messages from other nodes only go to the sessions on this node
+        broker.start(new ClusterListener() {
+            @Override
+            public void onBroadcast(int id, JSONObject content) {
+                broadcast(id, content);
+            }
+
+            @Override
+            public void onPublish(String topic, int id, JSONObject content) {
+                publishLocal(topic, id, content);
+            }
+        }, sessions::size);
+    }
 
     @Override
     public void registerSession(@NotNull WebSocketSession session) {
         String id = session.getId();
-        synchronized (sessions) {
-            sessions.put(id, session);
+        var queue = new OutboundQueue(session, outboundSettings, sender, this::removeSession, metrics);
+        var context = new SessionContext(session, queue, new RequestSequencer(executionSettings.maxPending()),
+                new RequestPipeline(executionSettings.maxInFlight(), executionSettings.maxPending()),
+                heartbeats.start(queue));
+        var replaced = sessions.put(id, context);
+        if (replaced != null) {
+            replaced.outbound().close();
+            replaced.heartbeat().stop();
+            rateLimiter.sessionClosed(session);
+        }
+        rateLimiter.sessionOpened(session);
+        for (var handler : handlers.getHandlers()) {
+            handler.sessionOpened(session);
+        }
+        var draining = shutdown;
+        if (draining != null) {
+            // Slipped in while draining
+            goAway(context, draining);
         }
     }
 
     @Override
     public void unregisterSession(@NotNull WebSocketSession session) {
-        String id = session.getId();
-        synchronized (sessions) {
-            sessions.remove(id);
+        var context = sessions.remove(session.getId());
+        // The stream of a resumable session takes over its subscriptions until the client comes back
+        resumes.sessionClosed(session);
+        topics.unsubscribeAll(session);
+        if (context != null) {
+            context.outbound().close();
+            context.heartbeat().stop();
+            rateLimiter.sessionClosed(session);
+            for (var handler : handlers.getHandlers()) {
+                handler.sessionClosed(session);
+            }
         }
     }
 
     @Override
     public Collection<WebSocketSession> getSessions() {
-        synchronized (sessions) {
-            return sessions.values();
+        return sessionsView;
+    }
+
+    @Override
+    public ServerMessage processRequest(@NotNull WebSocketSession session, @NotNull ClientRequest request) throws JSONException {
+        var handler = getHandler(session, request);
+        long start = System.nanoTime();
+        try {
+            var response = handler.handle(session, request);
+            return response != null ? response.withCid(request.getCid()) : null;
+        } finally {
+            metrics.recordRequest(request.getRequest(), System.nanoTime() - start);
         }
     }
 
     @Override
-    public JSONObject processRequest(@NotNull WebSocketSession session, @NotNull JSONObject jsonReceived) throws JSONException {
-        int messageType = jsonReceived.getInt("request");
+    public void handleMessage(@NotNull WebSocketSession session, @NotNull WebSocketMessage<?> message) throws JSONException {
+        metrics.messageReceived(message.getPayloadLength());
+        var context = sessions.get(session.getId());
+        if (context != null) {
+            context.heartbeat().touch();
+        }
+        if (message.getPayloadLength() > batchSettings.maxBytes()) {
+            metrics.parseFailed();
+            throw new JSONException(String.format("Frame of %d bytes from client %s exceeds limit of %d bytes",
+                    message.getPayloadLength(), session.getRemoteAddress(), batchSettings.maxBytes()));
+        }
+        RequestFrame frame;
+        try {
+            frame = getCodec(session).decodeFrame(message, batchSettings.maxRequests());
+        } catch (JSONException e) {
+            metrics.parseFailed();
+            journal.append(session, RequestJournal.UNDECODED, message);
+            throw e;
+        }
+        journal.append(session, frame.batch() ? RequestJournal.BATCH : frame.requests().get(0).getRequest(), message);
+        // Bad request types are rejected right away, the rest are run on the thread their handlers are suited to
+        var execution = Execution.TRIVIAL;
+        for (var request : frame.requests()) {
+            var requestExecution = getHandler(session, request).getExecution();
+            if (requestExecution.compareTo(execution) > 0) {
+                execution = requestExecution;
+            }
+        }
+        var limited = limit(session, frame);
+        // Pipelined frames are processed side by side whatever the mode, so they never run on the receiving thread
+        if (context != null && isPipelined(session, frame)) {
+            if (!context.pipeline().submit(() -> processFrameOrClose(session, frame, limited),
+                    executors.pipelineExecutorFor(execution))) {
+                throw new JSONException(String.format("Client %s has more than %d pipelined requests waiting to be "
+                        + "processed", session.getRemoteAddress(), executionSettings.maxPending()));
+            }
+            return;
+        }
+        if (executors.isInline()) {
+            processFrame(session, frame, limited);
+            return;
+        }
+        if (context == null) {
+            log.error("Ignoring request from client {}, session is not registered", session.getRemoteAddress());
+            return;
+        }
+        Runnable work = () -> processFrameOrClose(session, frame, limited);
+        if (!context.requests().submit(work, executors.executorFor(execution))) {
+            throw new JSONException(String.format("Client %s has more than %d frames waiting to be processed",
+                    session.getRemoteAddress(), executionSettings.maxPending()));
+        }
+    }
 
-        return switch (messageType) {
-            case 0 -> wrap(0, createSessionInfo(session));
-            case 1 -> wrap(1, createDiceRoll(jsonReceived));
-            default -> {
-                // We're going to be brutal to our clients and reject them if they give us bogus
-                var err = String.format("Bad request for type %d message from client %s, rejecting client", messageType,
-                        session.getRemoteAddress());
-                throw new JSONException(err);
+    // Frames from a client that asked for pipelining may be processed side by side if the responses can be correlated
+    private boolean isPipelined(WebSocketSession session, RequestFrame frame) {
+        if (!(handlers.lookup(PipelineHandler.REQUEST_ID) instanceof PipelineHandler pipeline)
+                || !pipeline.isPipelined(session)) {
+            return false;
+        }
+        for (var request : frame.requests()) {
+            if (request.getCid() == null) {
+                return false;
             }
-        };
+        }
+        return true;
     }
 
-    public void sendToSession(@NotNull WebSocketSession session, int id, JSONObject content) {
+    @Override
+    public void handlePong(@NotNull WebSocketSession session, @NotNull PongMessage message) {
+        var context = sessions.get(session.getId());
+        if (context != null) {
+            context.heartbeat().pongReceived(message.getPayload());
+        }
+    }
+
+    // Apply the rate limits to the request(s) in a frame, returns the responses to send in place of the requests that
+    // are over the limit (null if none are)
+    private ServerMessage[] limit(WebSocketSession session, RequestFrame frame) throws JSONException {
+        if (!rateLimiter.isEnabled()) {
+            return null;
+        }
+        ServerMessage[] limited = null;
+        long delay = 0;
+        var requests = frame.requests();
+        for (int i = 0; i < requests.size(); i++) {
+            var request = requests.get(i);
+            long wait = rateLimiter.acquire(session, request.getRequest());
+            if (wait == 0) {
+                continue;
+            }
+            if (wait <= rateLimiter.getMaxWaitNanos()) {
+                delay = Math.max(delay, wait);
+                continue;
+            }
+            metrics.requestLimited();
+            if (rateLimiter.getPolicy() == RateLimitPolicy.DISCONNECT) {
+                throw new JSONException(String.format("Client %s is over the rate limit for type %d requests",
+                        session.getRemoteAddress(), request.getRequest()));
+            }
+            if (limited == null) {
+                limited = new ServerMessage[requests.size()];
+            }
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait));
+            limited[i] = new ServerMessage(RateLimited.MESSAGE_ID, request.getCid(),
+                    new RateLimited(request.getRequest(), retryAfter));
+        }
+        if (delay > 0) {
+            // Nothing more is read from the client while its thread waits, that is what slows the client down
+            metrics.requestDelayed();
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return limited;
+    }
+
+    // Process the request(s) in a frame and queue the response(s), limited holds the responses to send in place of
+    // requests over the rate limit (null if none are)
+    private void processFrame(WebSocketSession session, RequestFrame frame, ServerMessage[] limited)
+            throws JSONException {
+        if (!frame.batch()) {
+            var response = limited != null ? limited[0] : processRequest(session, frame.requests().get(0));
+            if (response != null) {
+                sendResponse(session, response);
+            }
+            return;
+        }
+        var responses = new ArrayList<ServerMessage>(frame.requests().size());
+        for (int i = 0; i < frame.requests().size(); i++) {
+            var response = limited != null && limited[i] != null ? limited[i]
+                    : processRequest(session, frame.requests().get(i));
+            if (response != null) {
+                responses.add(response);
+            }
+        }
+        sendResponses(session, responses);
+    }
+
+    // Used when processing off the container thread, where there is no caller left to close out the client
+    private void processFrameOrClose(WebSocketSession session, RequestFrame frame, ServerMessage[] limited) {
         try {
-            var jsonResponse = wrap(id, content);
-            session.sendMessage(new TextMessage(jsonResponse.toString()));
-        } catch (Exception error) {
-            log.error("Failed to send message to client {}", session.getRemoteAddress());
+            processFrame(session, frame, limited);
+        } catch (Exception e) { // Bad request (JSONException) or anything else the handler threw
+            log.error("Failed to process request from client {}, closing connection: {}", session.getRemoteAddress(),
+                    e.getMessage());
             removeSession(session);
         }
     }
 
+    @Override
+    public RequestHandler getHandler(@NotNull WebSocketSession session, @NotNull ClientRequest request) throws JSONException {
+        int messageType = request.getRequest();
+        var handler = handlers.lookup(messageType);
+        if (handler == null) {
+            metrics.requestRejected();
+            // We're going to be brutal to our clients and reject them if they give us bogus
+            var err = String.format("Bad request for type %d message from client %s, rejecting client", messageType,
+                    session.getRemoteAddress());
+            throw new JSONException(err);
+        }
+        return handler;
+    }
+
+    @Override
+    public MessageCodec getCodec(@NotNull WebSocketSession session) {
+        return MessageCodec.CBOR_PROTOCOL.equals(session.getAcceptedProtocol()) ? binaryCodec : codec;
+    }
+
+    @Override
+    public void sendToSession(@NotNull WebSocketSession session, int id, JSONObject content) {
+        sendResponse(session, wrap(id, content));
+    }
+
+    @Override
+    public void sendResponse(@NotNull WebSocketSession session, @NotNull ServerMessage response) {
+        var context = sessions.get(session.getId());
+        if (context == null) {
+            log.error("Failed to send message to client {}, session is not registered", session.getRemoteAddress());
+            return;
+        }
+        var sessionCodec = getCodec(session);
+        var stream = resumes.get(session);
+        var result = stream == null ? context.outbound().offer(response.id(), sessionCodec.encode(response))
+                : offerResumable(stream, context.outbound(), response.id(),
+                seq -> sessionCodec.encode(response.withSeq(seq)));
+        if (result == OutboundQueue.Result.DROPPED) {
+            log.debug("Outbound queue full, dropped type {} message to client {}", response.id(),
+                    session.getRemoteAddress());
+        }
+    }
+
+    @Override
+    public void sendResponses(@NotNull WebSocketSession session, @NotNull List<ServerMessage> responses) {
+        var context = sessions.get(session.getId());
+        if (context == null) {
+            log.error("Failed to send message to client {}, session is not registered", session.getRemoteAddress());
+            return;
+        }
+        var sessionCodec = getCodec(session);
+        var stream = resumes.get(session);
+        var result = stream == null
+                ? context.outbound().offer(OutboundQueue.NO_COALESCE, sessionCodec.encodeBatch(responses))
+                : offerResumable(stream, context.outbound(), OutboundQueue.NO_COALESCE,
+                seq -> sessionCodec.encodeBatch(responses.stream().map(response -> response.withSeq(seq)).toList()));
+        if (result == OutboundQueue.Result.DROPPED) {
+            log.debug("Outbound queue full, dropped batch of {} responses to client {}", responses.size(),
+                    session.getRemoteAddress());
+        }
+    }
+
+    @Override
+    public BroadcastStats broadcast(int id, JSONObject content) {
+        long start = System.nanoTime();
+        var queues = sessions.values().stream().map(SessionContext::outbound).toArray(OutboundQueue[]::new);
+        return deliver(queues, null, wrap(id, content), start);
+    }
+
+    @Override
+    public BroadcastStats broadcastToCluster(int id, JSONObject content) {
+        broker.relayBroadcast(id, content);
+        return broadcast(id, content);
+    }
+
+    @Override
+    public BroadcastStats publish(@NotNull String topic, int id, JSONObject content) {
+        broker.relayPublish(topic, id, content);
+        return publishLocal(topic, id, content);
+    }
+
+    @Override
+    public int getClusterSessionCount() {
+        return sessions.size() + broker.getPeerSessionCount();
+    }
+
+    private BroadcastStats publishLocal(String topic, int id, JSONObject content) {
+        long start = System.nanoTime();
+        // Only the subscribers are looked at, skipping any that were unregistered while subscribing
+        var subscribers = topics.getSubscribers(topic);
+        var queues = new ArrayList<OutboundQueue>(subscribers.size());
+        for (var session : subscribers) {
+            var context = sessions.get(session.getId());
+            if (context != null) {
+                queues.add(context.outbound());
+            }
+        }
+        return deliver(queues.toArray(new OutboundQueue[0]), topic, wrap(id, content), start);
+    }
+
+    // Queue a message for many sessions (published on a topic or broadcast if null), with many sessions the work is
+    // split across the broadcast threads
+    private BroadcastStats deliver(OutboundQueue[] queues, String topic, ServerMessage message, long start) {
+        // Encode once per codec in use, the same immutable frame is queued for every session using that codec
+        var frames = new ConcurrentHashMap<MessageCodec, WebSocketMessage<?>>(4);
+        int shards = Math.max(1, Math.min(broadcastShards, queues.length / MIN_BROADCAST_SHARD));
+        int shardSize = (queues.length + shards - 1) / shards;
+
+        // Hand shards to the broadcast threads, the calling thread takes care of the first one itself
+        var pending = new ArrayList<Future<int[]>>(shards - 1);
+        for (int shard = 1; shard < shards; shard++) {
+            int from = shard * shardSize;
+            int to = Math.min(queues.length, from + shardSize);
+            pending.add(broadcaster.submit(() -> offerAll(queues, from, to, message, frames)));
+        }
+        var counts = offerAll(queues, 0, Math.min(queues.length, shardSize), message, frames);
+        for (var shard : pending) {
+            var shardCounts = waitFor(shard);
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += shardCounts[i];
+            }
+        }
+        resumes.keepForDisconnected(topic, (binary, seq) -> (binary ? binaryCodec : codec).encode(message.withSeq(seq)));
+        long elapsed = System.nanoTime() - start;
+        metrics.recordBroadcast(message.id(), elapsed);
+        return new BroadcastStats(queues.length,
+                counts[OutboundQueue.Result.QUEUED.ordinal()] + counts[OutboundQueue.Result.COALESCED.ordinal()],
+                counts[OutboundQueue.Result.DROPPED.ordinal()], counts[OutboundQueue.Result.DISCONNECTED.ordinal()],
+                elapsed);
+    }
+
+    @Override
+    public void drain(@NotNull ShutdownSettings settings) {
+        shutdown = settings;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.flushTimeoutMillis());
+        if (!awaitFlushed(sessions.values(), deadline, true)) {
+            log.info("Not everything was sent to the clients within {} ms, closing them anyway",
+                    settings.flushTimeoutMillis());
+        }
+        var remaining = new ArrayList<>(sessions.values());
+        int waves = Math.min(settings.waves(), remaining.size());
+        log.info("Closing {} clients in {} waves", remaining.size(), waves);
+        for (int wave = 0; wave < waves; wave++) {
+            if (wave > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(settings.waveIntervalMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            // Spread the clients evenly over the waves
+            int from = (int) ((long) remaining.size() * wave / waves);
+            int to = (int) ((long) remaining.size() * (wave + 1) / waves);
+            for (var context : remaining.subList(from, to)) {
+                goAway(context, settings);
+            }
+        }
+        // The last wave gets as long as the first to see its message and close frame go out
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.flushTimeoutMillis());
+        awaitFlushed(remaining, deadline, false);
+    }
+
+    @Override
+    public boolean isDraining() {
+        return shutdown != null;
+    }
+
+    // Tell a client when to reconnect and close its connection once that (and whatever was queued before it) is sent.
+    // Not stamped for resumable sessions, the client would be sent away again when it resumed.
+    private void goAway(SessionContext context, ShutdownSettings settings) {
+        long reconnectAfter = settings.reconnectAfterMillis()
+                + ThreadLocalRandom.current().nextLong(settings.waveIntervalMillis() + 1L);
+        var session = context.session();
+        context.outbound().offer(OutboundQueue.NO_COALESCE,
+                getCodec(session).encode(new ServerMessage(GoAway.MESSAGE_ID, new GoAway(reconnectAfter))));
+        context.outbound().finish(CloseStatus.SERVICE_RESTARTED);
+    }
+
+    // Wait until nothing is waiting to be sent to the sessions (nor requests to be processed if asked to), returns
+    // false if the deadline passed first
+    private static boolean awaitFlushed(Collection<SessionContext> contexts, long deadline, boolean requests) {
+        while (!contexts.stream().allMatch(context -> context.outbound().isFlushed()
+                && (!requests || context.requests().isIdle() && context.pipeline().isIdle()))) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(FLUSH_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the cluster broker, the heartbeats, the stalled send watchdog and the request, sender and broadcast
+     * threads, anything still queued for or from clients is discarded.
+     */
+    @Override
+    public void close() {
+        broker.close();
+        heartbeats.close();
+        watchdog.shutdownNow();
+        executors.close();
+        broadcaster.shutdownNow();
+        sender.shutdownNow();
+        if (dnsCache != null) {
+            dnsCache.close();
+        }
+    }
+
+    // Disconnect clients whose current send has taken longer than the send time limit
+    private void checkStalled() {
+        for (var context : sessions.values()) {
+            context.outbound().checkStalled();
+        }
+    }
+
+    // Offer message to a range of queues, returns count of each OutboundQueue.Result (indexed by ordinal)
+    private int[] offerAll(OutboundQueue[] queues, int from, int to, ServerMessage message,
+                           ConcurrentHashMap<MessageCodec, WebSocketMessage<?>> frames) {
+        var counts = new int[OutboundQueue.Result.values().length];
+        for (int i = from; i < to; i++) {
+            var queue = queues[i];
+            var sessionCodec = getCodec(queue.getSession());
+            var stream = resumes.get(queue.getSession());
+            var result = stream == null
+                    ? queue.offer(message.id(), frames.computeIfAbsent(sessionCodec, c -> c.encode(message)))
+                    : offerResumable(stream, queue, message.id(), seq -> sessionCodec.encode(message.withSeq(seq)));
+            counts[result.ordinal()]++;
+        }
+        return counts;
+    }
+
+    // Queue a frame for a resumable session, the frame is encoded for the session alone as it is stamped with the
+    // session's next sequence number (and kept for replay). Frames the client missed before resuming go out first.
+    private static OutboundQueue.Result offerResumable(ResumeRegistry.Stream stream, OutboundQueue queue, int id,
+                                                       LongFunction<WebSocketMessage<?>> encoder) {
+        synchronized (stream) {
+            if (!stream.isOwnedBy(queue.getSession())) {
+                // Taken over by the client's new session while this one was being sent to
+                return OutboundQueue.Result.DISCONNECTED;
+            }
+            var replay = stream.takeReplay();
+            if (replay != null) {
+                for (var frame : replay) {
+                    queue.offer(OutboundQueue.NO_COALESCE, frame);
+                }
+            }
+            long seq = stream.next();
+            var frame = encoder.apply(seq);
+            stream.record(seq, frame);
+            return queue.offer(id, frame);
+        }
+    }
+
+    private static int[] waitFor(Future<int[]> shard) {
+        try {
+            return shard.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for broadcast to complete", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Broadcast to clients failed", e.getCause());
+        }
+    }
+
     private void removeSession(@NotNull WebSocketSession session) {
         unregisterSession(session);
         if (session.isOpen()) {
@@ -104,50 +690,173 @@ public class SessionServiceImpl implements SessionService {
         }
     }
 
-    // Example of processing a JSON request that requires additional attributes.
-    // Request in a form like: { "request": 1, "dice": 5, "sides": 6 }
-    private JSONObject createDiceRoll(JSONObject jsonReceived) {
-        int dice = Math.min(100, jsonReceived.has(DICE_KEY) ? jsonReceived.getInt(DICE_KEY) : 2);
-        int sides = Math.max(2, jsonReceived.has(SIDES_KEY) ? jsonReceived.getInt(SIDES_KEY) : 6);
-        int[] roll = new int[dice];
-        for (int i = 0; i < dice; i++) {
-            roll[i] = diceRoller.nextInt(sides) + 1;
-        }
-        var results = new JSONObject();
-        results.put(DICE_KEY, dice);
-        results.put(SIDES_KEY, sides);
-        results.put("rolls", new JSONArray(roll));
-        return results;
+    private ServerMessage wrap(int type, JSONObject content) {
+        return new ServerMessage(type, content != null ? new JsonContent(content) : null);
     }
 
-    private JSONObject createSessionInfo(WebSocketSession session) {
-        JSONObject json = new JSONObject();
-        // WARNING: JSON has a practical limit of 53 bits on integer numbers
-        json.put("epochMillis", System.currentTimeMillis());
-        addAddressInfo(json, "server", session.getLocalAddress());
-        addAddressInfo(json, "client", session.getRemoteAddress());
-        return json;
-    }
+    // Read only view of the registered sessions. Iteration is weakly consistent: it never throws a
+    // ConcurrentModificationException and sees each session that stays registered during the iteration exactly once.
+    private class SessionsView extends AbstractCollection<WebSocketSession> {
+        @Override
+        public Iterator<WebSocketSession> iterator() {
+            var contexts = sessions.values().iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return contexts.hasNext();
+                }
 
-    private void addAddressInfo(JSONObject message, String key, InetSocketAddress address) {
-        if (address == null) {
-            return;
+                @Override
+                public WebSocketSession next() {
+                    return contexts.next().session();
+                }
+            };
         }
-        var json = new JSONObject();
-        json.put("address", address.getAddress().getHostAddress());
-        json.put("host", address.getHostName());
-        json.put("resolved", !address.isUnresolved());
-        json.put("port", address.getPort());
-        message.put(key, json);
-    }
 
-    private JSONObject wrap(int type, JSONObject content) {
-        var json = new JSONObject();
-        json.put("id", type);
-        if (content != null) {
-            json.put("content", content);
+        @Override
+        public int size() {
+            return sessions.size();
         }
-        return json;
     }
 
+    /**
+     * Builds a {@link SessionServiceImpl}, anything not set is left at its default.
+     */
+    public static final class Builder {
+        private OutboundSettings outboundSettings = OutboundSettings.DEFAULTS;
+        private BatchSettings batchSettings = BatchSettings.DEFAULTS;
+        private ExecutionSettings executionSettings = ExecutionSettings.DEFAULTS;
+        private HeartbeatSettings heartbeatSettings = HeartbeatSettings.DEFAULTS;
+        private RateLimitSettings rateLimitSettings = RateLimitSettings.DEFAULTS;
+        private WebSocketMetrics metrics = WebSocketMetrics.disabled();
+        private RequestJournal journal = RequestJournal.disabled();
+        // Defaults depend on each other, so they are filled in when the service is built
+        private MessageCodec codec;
+        private Collection<? extends RequestHandler> handlers;
+        private TopicRegistry topics;
+        private ClusterBroker broker;
+        private ResumeRegistry resumes;
+
+        private Builder() {
+        }
+
+        /**
+         * @param outboundSettings Limits to apply to the outbound queue of each session.
+         * @return This builder.
+         */
+        public Builder outboundSettings(@NotNull OutboundSettings outboundSettings) {
+            this.outboundSettings = outboundSettings;
+            return this;
+        }
+
+        /**
+         * @param batchSettings Limits to apply to batches of requests from clients.
+         * @return This builder.
+         */
+        public Builder batchSettings(@NotNull BatchSettings batchSettings) {
+            this.batchSettings = batchSettings;
+            return this;
+        }
+
+        /**
+         * @param executionSettings Where to process requests from clients.
+         * @return This builder.
+         */
+        public Builder executionSettings(@NotNull ExecutionSettings executionSettings) {
+            this.executionSettings = executionSettings;
+            return this;
+        }
+
+        /**
+         * @param heartbeatSettings When to ping quiet clients and disconnect unresponsive ones.
+         * @return This builder.
+         */
+        public Builder heartbeatSettings(@NotNull HeartbeatSettings heartbeatSettings) {
+            this.heartbeatSettings = heartbeatSettings;
+            return this;
+        }
+
+        /**
+         * @param rateLimitSettings How fast clients may send requests and what to do with requests over the limits.
+         * @return This builder.
+         */
+        public Builder rateLimitSettings(@NotNull RateLimitSettings rateLimitSettings) {
+            this.rateLimitSettings = rateLimitSettings;
+            return this;
+        }
+
+        /**
+         * @param codec Codec used to decode requests and encode messages sent to JSON clients (defaults to the
+         *              streaming codec).
+         * @return This builder.
+         */
+        public Builder codec(@NotNull MessageCodec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * @param handlers Handlers for the request types clients may send (defaults to all of the built in ones).
+         * @return This builder.
+         */
+        public Builder handlers(@NotNull Collection<? extends RequestHandler> handlers) {
+            this.handlers = handlers;
+            return this;
+        }
+
+        /**
+         * @param metrics Where to record metrics about the WebSocket traffic.
+         * @return This builder.
+         */
+        public Builder metrics(@NotNull WebSocketMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param topics Topic subscriptions (shared with the handlers that subscribe and unsubscribe).
+         * @return This builder.
+         */
+        public Builder topics(@NotNull TopicRegistry topics) {
+            this.topics = topics;
+            return this;
+        }
+
+        /**
+         * @param broker Relays broadcasts and publishes to the other nodes of a cluster (started by the service,
+         *               closed when the service is closed, defaults to a single node).
+         * @return This builder.
+         */
+        public Builder broker(@NotNull ClusterBroker broker) {
+            this.broker = broker;
+            return this;
+        }
+
+        /**
+         * @param resumes Resumable sessions and the frames kept for them (shared with the resume handler).
+         * @return This builder.
+         */
+        public Builder resumes(@NotNull ResumeRegistry resumes) {
+            this.resumes = resumes;
+            return this;
+        }
+
+        /**
+         * @param journal Where the frames received from clients are journaled (not closed by the service).
+         * @return This builder.
+         */
+        public Builder journal(@NotNull RequestJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * Build the service, its threads are started right away.
+         *
+         * @return New service (close it when done).
+         */
+        public SessionServiceImpl build() {
+            return new SessionServiceImpl(this);
+        }
+    }
 }
@@ -0,0 +1,29 @@
+package com.redali.example.service;
+
+/**
+ * How clients are let go when the server shuts down.
+ *
+ * @param flushTimeoutMillis   Longest (milliseconds) to wait for requests being processed and messages queued for
+ *                             clients to go out before the clients are closed.
+ * @param waves                Number of waves the clients are closed in.
+ * @param waveIntervalMillis   Time (milliseconds) between two waves.
+ * @param reconnectAfterMillis Shortest time (milliseconds) clients are told to wait before reconnecting, each gets a
+ *                             random extra of up to one wave interval.
+ */
+public record ShutdownSettings(int flushTimeoutMillis, int waves, int waveIntervalMillis, int reconnectAfterMillis) {
+
+    /**
+     * Settings used when nothing is configured.
+     */
+    public static final ShutdownSettings DEFAULTS = new ShutdownSettings(5000, 5, 1000, 1000);
+
+    public ShutdownSettings {
+        if (flushTimeoutMillis < 0 || waveIntervalMillis < 0 || reconnectAfterMillis < 0) {
+            throw new IllegalArgumentException(
+                    "Shutdown flush timeout, wave interval and reconnect delay must not be negative");
+        }
+        if (waves < 1) {
+            throw new IllegalArgumentException("Shutdown must close clients in at least one wave");
+        }
+    }
+}
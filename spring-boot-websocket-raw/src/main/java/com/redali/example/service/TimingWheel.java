@@ -0,0 +1,172 @@
+package com.redali.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel, lots of timers driven by a single periodic tick.
+ *
+ * <p>Time is cut into ticks and the wheel has a slot for each tick of one rotation. A timer is linked into the slot of
+ * the tick it is due on (timers further out than one rotation just sit there until their round comes up). Each tick
+ * only walks the one slot it lands on, so the cost of a tick depends on the timers that are due and not on how many
+ * timers there are in total. Scheduling and cancelling are O(1) and never wait for the tick.</p>
+ *
+ * <p>Any thread may schedule or cancel timers. New timers are handed over through a lock free queue and only the
+ * thread calling {@link #advance()} ever touches the slots, so the wheel itself needs no locking. Cancelled timers are
+ * unlinked the next time the tick passes their slot.</p>
+ */
+@Slf4j
+class TimingWheel {
+    private final Timeout[] slots;
+    private final int mask;
+    private final long tickNanos;
+    private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+
+    // Only touched by the thread advancing the wheel
+    private long tick;
+    private int size;
+
+    /**
+     * A scheduled task, which can be cancelled until it runs.
+     */
+    static final class Timeout {
+        private final Runnable task;
+        private final long delayTicks;
+        private long deadline;
+        private Timeout prev;
+        private Timeout next;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long delayTicks) {
+            this.task = task;
+            this.delayTicks = delayTicks;
+        }
+
+        /**
+         * Make sure the task never runs (does nothing if it already has).
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Construct wheel.
+     *
+     * @param wheelSize Number of ticks in one rotation (a power of 2).
+     * @param tickNanos Length of a tick (nanoseconds), the precision of the timers.
+     */
+    TimingWheel(int wheelSize, long tickNanos) {
+        if (wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Timing wheel size must be a power of 2 but was " + wheelSize);
+        }
+        if (tickNanos < 1) {
+            throw new IllegalArgumentException("Timing wheel tick must be positive but was " + tickNanos);
+        }
+        this.slots = new Timeout[wheelSize];
+        this.mask = wheelSize - 1;
+        this.tickNanos = tickNanos;
+    }
+
+    /**
+     * Schedule a task (safe to call from any thread, including from a task run by the wheel).
+     *
+     * @param task  What to run, on the thread advancing the wheel (it should be quick and not block).
+     * @param delay How long from now to run it (rounded up to whole ticks, at least one).
+     * @param unit  Unit of the delay.
+     * @return Handle to cancel the task with.
+     */
+    Timeout schedule(@NotNull Runnable task, long delay, @NotNull TimeUnit unit) {
+        long ticks = Math.max(1, (unit.toNanos(delay) + tickNanos - 1) / tickNanos);
+        var timeout = new Timeout(task, ticks);
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Move the wheel on by one tick, running every task that is now due (must only be called by one thread at a
+     * time, normally once per tick).
+     *
+     * @return Number of tasks run.
+     */
+    int advance() {
+        // Newly scheduled tasks are due at the earliest on the next tick
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            if (!timeout.cancelled) {
+                timeout.deadline = tick + timeout.delayTicks;
+                link(timeout);
+            }
+        }
+        tick++;
+        int slot = (int) (tick & mask);
+        int ran = 0;
+        var current = slots[slot];
+        while (current != null) {
+            var next = current.next;
+            if (current.cancelled) {
+                unlink(slot, current);
+            } else if (current.deadline <= tick) {
+                unlink(slot, current);
+                ran++;
+                try {
+                    current.task.run();
+                } catch (RuntimeException e) {
+                    log.error("Timing wheel task failed", e);
+                }
+            }
+            current = next;
+        }
+        return ran;
+    }
+
+    /**
+     * Get the number of tasks waiting on the wheel (cancelled ones count until the tick passes their slot).
+     *
+     * @return Number of tasks, only accurate on the thread advancing the wheel.
+     */
+    int size() {
+        return size + incoming.size();
+    }
+
+    /**
+     * Get the length of a tick.
+     *
+     * @return Tick length in nanoseconds.
+     */
+    long getTickNanos() {
+        return tickNanos;
+    }
+
+    private void link(Timeout timeout) {
+        int slot = (int) (timeout.deadline & mask);
+        var head = slots[slot];
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        slots[slot] = timeout;
+        size++;
+    }
+
+    private void unlink(int slot, Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        size--;
+    }
+}
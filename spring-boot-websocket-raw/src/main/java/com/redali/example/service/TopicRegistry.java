@@ -0,0 +1,147 @@
+package com.redali.example.service;
+
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of which sessions are subscribed to which named topics.
+ *
+ * <p>Two indexes are kept: the subscribers of each topic (so publishing to a topic only touches the sessions that
+ * asked for it, no matter how many other sessions and topics there are) and the topics of each session (so
+ * everything a session subscribed to can be dropped in one go when it goes away). Topics exist only while they have
+ * subscribers.</p>
+ */
+public class TopicRegistry {
+    /**
+     * Longest topic name accepted.
+     */
+    public static final int MAX_TOPIC_LENGTH = 128;
+
+    /**
+     * Most topics a single session may be subscribed to at once.
+     */
+    public static final int MAX_TOPICS_PER_SESSION = 64;
+
+    // Topic name -> session ID -> session
+    private final ConcurrentHashMap<String, Map<String, WebSocketSession>> subscribers = new ConcurrentHashMap<>();
+    // Session ID -> topic names
+    private final ConcurrentHashMap<String, Set<String>> sessionTopics = new ConcurrentHashMap<>();
+
+    /**
+     * Subscribe a session to a topic.
+     *
+     * @param session Session to subscribe.
+     * @param topic   Name of the topic.
+     * @return true if subscribed, false if the session was already subscribed or has been closed.
+     * @throws JSONException If the topic name is missing or too long or the session has too many subscriptions.
+     */
+    public boolean subscribe(@NotNull WebSocketSession session, String topic) throws JSONException {
+        validate(session, topic);
+        var id = session.getId();
+        var topics = sessionTopics.computeIfAbsent(id, key -> ConcurrentHashMap.newKeySet());
+        if (topics.size() >= MAX_TOPICS_PER_SESSION && !topics.contains(topic)) {
+            throw new JSONException(String.format("Client %s is subscribed to more than %d topics",
+                    session.getRemoteAddress(), MAX_TOPICS_PER_SESSION));
+        }
+        if (!topics.add(topic)) {
+            return false;
+        }
+        subscribers.compute(topic, (key, sessions) -> {
+            var updated = sessions != null ? sessions : new ConcurrentHashMap<String, WebSocketSession>();
+            updated.put(id, session);
+            return updated;
+        });
+        // A request processed after the session was unregistered must not leave it behind in the indexes
+        if (!session.isOpen()) {
+            unsubscribeAll(session);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Unsubscribe a session from a topic.
+     *
+     * @param session Session to unsubscribe.
+     * @param topic   Name of the topic.
+     * @return true if unsubscribed, false if the session was not subscribed.
+     * @throws JSONException If the topic name is missing or too long.
+     */
+    public boolean unsubscribe(@NotNull WebSocketSession session, String topic) throws JSONException {
+        validate(session, topic);
+        var topics = sessionTopics.get(session.getId());
+        if (topics == null || !topics.remove(topic)) {
+            return false;
+        }
+        removeSubscriber(topic, session.getId());
+        return true;
+    }
+
+    /**
+     * Unsubscribe a session from every topic (called when the session is unregistered).
+     *
+     * @param session Session to unsubscribe.
+     */
+    public void unsubscribeAll(@NotNull WebSocketSession session) {
+        var topics = sessionTopics.remove(session.getId());
+        if (topics != null) {
+            for (var topic : topics) {
+                removeSubscriber(topic, session.getId());
+            }
+        }
+    }
+
+    /**
+     * Get the sessions subscribed to a topic.
+     *
+     * @param topic Name of the topic.
+     * @return Read only, weakly consistent view of the subscribers (empty if there are none).
+     */
+    public Collection<WebSocketSession> getSubscribers(@NotNull String topic) {
+        var sessions = subscribers.get(topic);
+        return sessions != null ? Collections.unmodifiableCollection(sessions.values()) : List.of();
+    }
+
+    /**
+     * Get the topics a session is subscribed to.
+     *
+     * @param session Client session.
+     * @return Read only, weakly consistent view of the topic names (empty if there are none).
+     */
+    public Set<String> getTopics(@NotNull WebSocketSession session) {
+        var topics = sessionTopics.get(session.getId());
+        return topics != null ? Collections.unmodifiableSet(topics) : Set.of();
+    }
+
+    /**
+     * Get the number of topics that have at least one subscriber.
+     *
+     * @return Number of topics.
+     */
+    public int getTopicCount() {
+        return subscribers.size();
+    }
+
+    // The topic goes away with its last subscriber (atomically, so a concurrent subscribe is never lost)
+    private void removeSubscriber(String topic, String id) {
+        subscribers.computeIfPresent(topic, (key, sessions) -> {
+            sessions.remove(id);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
+    private static void validate(WebSocketSession session, String topic) throws JSONException {
+        if (topic == null || topic.isEmpty() || topic.length() > MAX_TOPIC_LENGTH) {
+            throw new JSONException(String.format("Client %s sent a missing, empty or too long (over %d) topic",
+                    session.getRemoteAddress(), MAX_TOPIC_LENGTH));
+        }
+    }
+}
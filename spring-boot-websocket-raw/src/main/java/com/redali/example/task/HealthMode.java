@@ -0,0 +1,19 @@
+package com.redali.example.task;
+
+/**
+ * What the periodic health report sends to clients.
+ */
+public enum HealthMode {
+    /**
+     * The whole report every time, whether or not anything changed.
+     */
+    FULL,
+    /**
+     * The whole report, but only when something changed (and as a keyframe).
+     */
+    CHANGES,
+    /**
+     * Only the fields that changed since the last report (and the whole report as a keyframe).
+     */
+    DELTA
+}
@@ -0,0 +1,28 @@
+package com.redali.example.task;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * How the periodic health report is pushed to clients.
+ *
+ * @param mode                   Whole report every time, only when it changed, or only the changed fields.
+ * @param keyframeIntervalMillis How long (milliseconds) clients may go without the whole report when it is only sent
+ *                               on changes (or as deltas). It lets clients that missed a change, or just connected,
+ *                               catch up.
+ */
+public record HealthSettings(@NotNull HealthMode mode, int keyframeIntervalMillis) {
+
+    /**
+     * Settings used when nothing is configured (the same as application.yml).
+     */
+    public static final HealthSettings DEFAULTS = new HealthSettings(HealthMode.FULL, 60000);
+
+    public HealthSettings {
+        if (mode == null) {
+            throw new IllegalArgumentException("Health mode is required");
+        }
+        if (keyframeIntervalMillis < 1) {
+            throw new IllegalArgumentException("Health keyframe interval must be positive");
+        }
+    }
+}
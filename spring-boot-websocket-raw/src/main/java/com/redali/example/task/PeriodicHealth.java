@@ -2,34 +2,142 @@ package com.redali.example.task;
 
 import com.redali.example.service.SessionService;
 import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
 import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
 /**
  * Example of a server initiated message to WebSocket client sessions (they don't request this, we just push it onto
  * them).
+ *
+ * <p>The health report is a versioned state: the version goes up every time a field changes. Depending on the
+ * {@link HealthMode} it is pushed every time, only when it changed, or as a delta with just the changed fields:</p>
+ *
+ * <pre><code>{ "id": 200, "content": { "version": 7, "sessionCount": 3, "nodeSessionCount": 3, "status": "UP" } }
+ * { "id": 201, "content": { "version": 8, "base": 7, "sessionCount": 4 } }</code></pre>
+ *
+ * <p>A delta only applies to the report whose version is its base, a client that doesn't have that one waits for the
+ * next whole report (a keyframe, sent at least every keyframe interval whatever changed).</p>
  */
 @Component
 @Slf4j
 public class PeriodicHealth {
+    /**
+     * Message ID of the whole health report.
+     */
+    public static final int HEALTH_ID = 200;
+    /**
+     * Message ID of the changes to the health report.
+     */
+    public static final int HEALTH_DELTA_ID = 201;
+
+    static final String VERSION_KEY = "version";
+    static final String BASE_KEY = "base";
 
     private final SessionService sessionService;
+    private final HealthSettings settings;
+    private final long keyframeIntervalNanos;
+    private final LongSupplier clock;
+    private JSONObject state;
+    private long version;
+    private long lastKeyframe;
 
     public PeriodicHealth(SessionService sessionService) {
+        this(sessionService, HealthSettings.DEFAULTS);
+    }
+
+    @Autowired
+    public PeriodicHealth(SessionService sessionService, HealthSettings settings) {
+        this(sessionService, settings, System::nanoTime);
+    }
+
+    PeriodicHealth(SessionService sessionService, HealthSettings settings, LongSupplier clock) {
         this.sessionService = sessionService;
+        this.settings = settings;
+        this.keyframeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.keyframeIntervalMillis());
+        this.clock = clock;
     }
 
     /**
-     * Example of a server side generated message pushed out to ALL active clients.
+     * Example of a server side generated message pushed out to ALL active clients (each node of a cluster sends its own
+     * to its clients).
      */
-    @Scheduled(fixedRate = 9000, initialDelay = 9000)
-    public void periodicHealth() {
-        var activeSessions = sessionService.getSessions();
+    @Scheduled(fixedRateString = "${app.health.interval:9000}", initialDelayString = "${app.health.interval:9000}")
+    public synchronized void periodicHealth() {
         var health = new JSONObject();
-        health.put("sessionCount", activeSessions.size());
+        // Clients on every node of the cluster, and those on this node
+        health.put("sessionCount", sessionService.getClusterSessionCount());
+        health.put("nodeSessionCount", sessionService.getSessions().size());
         health.put("status", "UP");
-        activeSessions.forEach(session -> sessionService.sendToSession(session, 200, health));
+
+        var changes = state != null ? diff(state, health) : health;
+        boolean changed = changes.length() > 0;
+        if (changed) {
+            version++;
+        }
+        long now = clock.getAsLong();
+        boolean keyframe = state == null || settings.mode() == HealthMode.FULL
+                || now - lastKeyframe >= keyframeIntervalNanos;
+        JSONObject content;
+        int id;
+        if (keyframe || (settings.mode() == HealthMode.CHANGES && changed)) {
+            // Any whole report is a keyframe
+            content = copy(health);
+            id = HEALTH_ID;
+            lastKeyframe = now;
+        } else if (settings.mode() == HealthMode.DELTA && changed) {
+            content = changes;
+            content.put(BASE_KEY, version - 1);
+            id = HEALTH_DELTA_ID;
+        } else {
+            log.debug("Health unchanged at version {}, nothing sent", version);
+            return;
+        }
+        state = health;
+        content.put(VERSION_KEY, version);
+        var stats = sessionService.broadcast(id, content);
+        log.debug("Health {} version {} sent to {} sessions in {} us (delivered: {}, dropped: {}, failed: {})",
+                id == HEALTH_ID ? "report" : "delta", version, stats.sessions(), stats.elapsedMicros(),
+                stats.delivered(), stats.dropped(), stats.failed());
+    }
+
+    /**
+     * Get the fields that differ between two reports.
+     *
+     * @param previous Report sent before.
+     * @param current  Report now.
+     * @return Fields of the current report that are new or changed (the report is flat, values are compared with
+     * equals), with a null value for those that were removed.
+     */
+    static JSONObject diff(@NotNull JSONObject previous, @NotNull JSONObject current) {
+        var changes = new JSONObject();
+        for (var keys = current.keys(); keys.hasNext(); ) {
+            var key = keys.next();
+            var after = current.opt(key);
+            if (!after.equals(previous.opt(key))) {
+                changes.put(key, after);
+            }
+        }
+        for (var keys = previous.keys(); keys.hasNext(); ) {
+            var key = keys.next();
+            if (current.opt(key) == null) {
+                changes.put(key, JSONObject.NULL);
+            }
+        }
+        return changes;
     }
 
+    private static JSONObject copy(JSONObject report) {
+        var copy = new JSONObject();
+        for (var keys = report.keys(); keys.hasNext(); ) {
+            var key = keys.next();
+            copy.put(key, report.opt(key));
+        }
+        return copy;
+    }
 }
@@ -0,0 +1,164 @@
+package com.redali.example.cluster;
+
+import com.redali.example.handler.SubscribeHandler;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.service.SessionServiceImpl;
+import com.redali.example.service.TopicRegistry;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.redali.example.support.WebSocketTestSupport.awaitCondition;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs a cluster of nodes in one JVM, talking to each other over loopback TCP.
+ */
+class TcpClusterBrokerTest {
+    private final List<AutoCloseable> nodes = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() throws Exception {
+        for (var node : nodes) {
+            node.close();
+        }
+    }
+
+    @Test
+    void testRelayAndSessionCounts() throws Exception {
+        var one = createBroker("one");
+        var two = createBroker("two");
+        var three = createBroker("three");
+        var received = new LinkedBlockingQueue<String>();
+        one.start(new RecordingListener(received, "one"), () -> 3);
+        two.start(new RecordingListener(received, "two"), () -> 5);
+        three.start(new RecordingListener(received, "three"), () -> 7);
+        connect(one, two, three);
+
+        one.relayBroadcast(200, new JSONObject().put("status", "UP"));
+        two.relayPublish("news", 300, null);
+        var events = new ArrayList<String>();
+        for (int i = 0; i < 4; i++) {
+            events.add(received.poll(5, TimeUnit.SECONDS));
+        }
+        // Relayed to every other node, never back to the sender
+        assertThat(events).containsExactlyInAnyOrder("two:broadcast:200:UP", "three:broadcast:200:UP",
+                "one:publish:news:300", "three:publish:news:300");
+
+        awaitPeerSessionCounts(List.of(one, two, three), List.of(12, 10, 8));
+
+        // A node that goes away stops counting once its last report is stale
+        three.close();
+        awaitPeerSessionCounts(List.of(one, two), List.of(5, 3));
+    }
+
+    @Test
+    void testServicesShareBroadcastsPublishesAndCounts() throws Exception {
+        var brokerOne = createBroker("one");
+        var brokerTwo = createBroker("two");
+        var serviceOne = createService(brokerOne);
+        var serviceTwo = createService(brokerTwo);
+        connect(brokerOne, brokerTwo);
+
+        var sessionOne = new RecordingSession("a");
+        var sessionTwo = new RecordingSession("b");
+        serviceOne.registerSession(sessionOne.session);
+        serviceTwo.registerSession(sessionTwo.session);
+        var subscribe = new ClientRequest(SubscribeHandler.REQUEST_ID);
+        subscribe.setTopic("news");
+        serviceTwo.sendResponse(sessionTwo.session, serviceTwo.processRequest(sessionTwo.session, subscribe));
+        assertThat(sessionTwo.next().getInt("id")).isEqualTo(SubscribeHandler.REQUEST_ID);
+
+        serviceOne.broadcastToCluster(200, new JSONObject().put("status", "UP"));
+        assertThat(sessionOne.next().getInt("id")).isEqualTo(200);
+        assertThat(sessionTwo.next().getJSONObject("content").getString("status")).isEqualTo("UP");
+
+        // Only the subscriber (on the other node) gets the publish
+        serviceOne.publish("news", 300, new JSONObject().put("headline", "Nodes agree"));
+        assertThat(sessionTwo.next().getInt("id")).isEqualTo(300);
+        assertThat(sessionOne.messages.poll(200, TimeUnit.MILLISECONDS)).isNull();
+
+        awaitCondition(() -> serviceOne.getClusterSessionCount() == 2);
+        assertThat(serviceOne.getClusterSessionCount()).isEqualTo(2);
+        assertThat(serviceOne.getSessions()).hasSize(1);
+    }
+
+    // Waits for every node to agree, counts are reported on a timer so a loaded machine may take a few rounds
+    private static void awaitPeerSessionCounts(List<TcpClusterBroker> brokers, List<Integer> expected)
+            throws InterruptedException {
+        awaitCondition(() -> brokers.stream().map(TcpClusterBroker::getPeerSessionCount).toList().equals(expected));
+        assertThat(brokers).map(TcpClusterBroker::getPeerSessionCount).isEqualTo(expected);
+    }
+
+    // Reports every 200 ms, so a node is only stale after 600 ms without one (even a busy machine sends in time)
+    private TcpClusterBroker createBroker(String nodeId) {
+        var broker = new TcpClusterBroker(new ClusterSettings(ClusterTransport.TCP, nodeId, "localhost", 0, List.of(),
+                200, 100));
+        nodes.add(broker);
+        return broker;
+    }
+
+    private SessionServiceImpl createService(ClusterBroker broker) {
+        var topics = new TopicRegistry();
+        var service = SessionServiceImpl.builder()
+                .handlers(List.of(new SubscribeHandler(topics)))
+                .topics(topics)
+                .broker(broker)
+                .build();
+        nodes.add(service);
+        return service;
+    }
+
+    private static void connect(TcpClusterBroker... brokers) {
+        for (var from : brokers) {
+            for (var to : brokers) {
+                if (from != to) {
+                    from.addPeer(new InetSocketAddress("localhost", to.getPort()));
+                }
+            }
+        }
+    }
+
+    private record RecordingListener(BlockingQueue<String> received, String node) implements ClusterListener {
+        @Override
+        public void onBroadcast(int id, JSONObject content) {
+            received.add(node + ":broadcast:" + id + ":" + content.optString("status"));
+        }
+
+        @Override
+        public void onPublish(String topic, int id, JSONObject content) {
+            received.add(node + ":publish:" + topic + ":" + id + (content != null ? ":" + content : ""));
+        }
+    }
+
+    private static class RecordingSession {
+        private final BlockingQueue<JSONObject> messages = new LinkedBlockingQueue<>();
+        private final WebSocketSession session = mock(WebSocketSession.class);
+
+        RecordingSession(String id) throws Exception {
+            when(session.getId()).thenReturn(id);
+            when(session.isOpen()).thenReturn(true);
+            doAnswer(invocation -> messages.add(new JSONObject(((TextMessage) invocation.getArgument(0)).getPayload())))
+                    .when(session).sendMessage(any());
+        }
+
+        JSONObject next() throws InterruptedException {
+            var message = messages.poll(5, TimeUnit.SECONDS);
+            assertThat(message).isNotNull();
+            return message;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.redali.example.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.redali.example.message.DiceRoll;
+import com.redali.example.message.DiceStats;
+import com.redali.example.message.JsonContent;
+import com.redali.example.message.MessageWriter;
+import com.redali.example.message.ServerMessage;
+import com.redali.example.message.SessionInfo;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Every codec must decode and encode messages the same way.
+ */
+class MessageCodecTest {
+    // Compare JSON documents with Jackson trees (ignores field order)
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @ParameterizedTest
+    @EnumSource(CodecType.class)
+    void testDecodeRequest(CodecType type) throws Exception {
+        var codec = type.create();
+        var request = codec.decode(
+                new TextMessage("{ \"dice\": 5, \"extra\": { \"nested\": [1, 2] }, \"request\": 1, \"sides\": \"8\" }"));
+        assertThat(request.getRequest()).isEqualTo(1);
+        assertThat(request.getDice(2)).isEqualTo(5);
+        assertThat(request.getSides(6)).isEqualTo(8);
+
+        request = codec.decode(new TextMessage("{ \"request\": 0 }"));
+        assertThat(request.getRequest()).isZero();
+        assertThat(request.getDice(2)).isEqualTo(2);
+        assertThat(request.getSides(6)).isEqualTo(6);
+        assertThat(request.getSeed()).isNull();
+
+        request = codec.decode(new TextMessage("{ \"request\": 2, \"seed\": 9007199254740993 }"));
+        assertThat(request.getSeed()).isEqualTo(9007199254740993L);
+        assertThat(request.getTopic()).isNull();
+
+        request = codec.decode(new TextMessage("{ \"request\": 3, \"topic\": \"news\" }"));
+        assertThat(request.getTopic()).isEqualTo("news");
+    }
+
+    @ParameterizedTest
+    @EnumSource(CodecType.class)
+    void testDecodeGarbage(CodecType type) {
+        var codec = type.create();
+        for (var garbage : new String[]{"[ { ] ] }", "{ }", "[ 1 ]", "{ \"request\": \"one\" }", "", "{ \"request\": 1 "}) {
+            assertThatThrownBy(() -> codec.decode(new TextMessage(garbage))).as(garbage)
+                    .isInstanceOf(JSONException.class);
+        }
+        // JSON codecs only accept text frames
+        assertThatThrownBy(() -> codec.decode(new BinaryMessage(new byte[]{1}))).isInstanceOf(JSONException.class);
+    }
+
+    @Test
+    void testDecodeCborRequest() throws Exception {
+        var codec = new CborCodec();
+        var client = ClientCodec.cbor();
+        var request = codec.decode(new BinaryMessage(client.encodeRequest(
+                Map.of("request", 1, "dice", 5, "sides", "8", "extra", Map.of("nested", List.of(1, 2))))));
+        assertThat(request.getRequest()).isEqualTo(1);
+        assertThat(request.getDice(2)).isEqualTo(5);
+        assertThat(request.getSides(6)).isEqualTo(8);
+
+        assertThatThrownBy(() -> codec.decode(new BinaryMessage(client.encodeRequest(Map.of("dice", 5)))))
+                .isInstanceOf(JSONException.class);
+        assertThatThrownBy(() -> codec.decode(new BinaryMessage(new byte[]{(byte) 0xff, 0x01})))
+                .isInstanceOf(JSONException.class);
+        assertThatThrownBy(() -> codec.decode(new TextMessage("{ \"request\": 0 }")))
+                .isInstanceOf(JSONException.class);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 200})
+    void testEncodersAgree(int id) throws Exception {
+        var content = switch (id) {
+            case 0 -> new SessionInfo(1693847859462L,
+                    new SessionInfo.AddressInfo("127.0.0.1", "localhost", true, true, 8080),
+                    new SessionInfo.AddressInfo("10.0.0.1", "client \"one\"", true, false, 52032));
+            case 1 -> new DiceRoll(3, 6, new int[]{4, 1, 6});
+            case 2 -> new DiceStats(4, 2, 42L, new long[]{1, 3}, 7, 1.75, 0.1875);
+            default -> new JsonContent(new JSONObject().put("status", "UP").put("sessionCount", 3)
+                    .put("ratio", 0.5).put("list", new JSONArray().put("a").put(JSONObject.NULL)));
+        };
+        var message = new ServerMessage(id, content);
+        var streaming = MAPPER.readTree(encodeText(CodecType.STREAMING, message));
+        var tree = MAPPER.readTree(encodeText(CodecType.TREE, message));
+        var cbor = ClientCodec.cbor().decodeMessage(new CborCodec().encode(message).getPayload().array());
+        assertThat(streaming).isEqualTo(tree);
+        assertThat(cbor).isEqualTo(tree);
+        assertThat(streaming.get(ServerMessage.ID_KEY).intValue()).isEqualTo(id);
+        assertThat(streaming.get(ServerMessage.CONTENT_KEY)).isEqualTo(MAPPER.readTree(content.toJson().toString()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CodecType.class)
+    void testEncodeWithoutContent(CodecType type) throws Exception {
+        var json = new JSONObject(type.create().encode(new ServerMessage(-1, null)).getPayload().toString());
+        assertThat(json.getInt(ServerMessage.ID_KEY)).isEqualTo(-1);
+        assertThat(json.has(ServerMessage.CONTENT_KEY)).isFalse();
+    }
+
+    @ParameterizedTest
+    @EnumSource(CodecType.class)
+    void testDecodeFrame(CodecType type) throws Exception {
+        var codec = type.create();
+        var single = codec.decodeFrame(new TextMessage("{ \"request\": 1, \"cid\": 7 }"), 2);
+        assertThat(single.batch()).isFalse();
+        assertThat(single.requests()).hasSize(1);
+        assertThat(single.requests().get(0).getCid()).isEqualTo(7L);
+
+        var batch = codec.decodeFrame(new TextMessage(" [ { \"request\": 1, \"cid\": 2 }, { \"request\": 0 } ] "), 2);
+        assertThat(batch.batch()).isTrue();
+        assertThat(batch.requests()).extracting(r -> r.getRequest()).containsExactly(1, 0);
+        assertThat(batch.requests().get(0).getCid()).isEqualTo(2L);
+        assertThat(batch.requests().get(1).getCid()).isNull();
+        assertThat(codec.decodeFrame(new TextMessage("[]"), 2).requests()).isEmpty();
+
+        for (var garbage : new String[]{"[ { \"request\": 0 }, { \"request\": 0 }, { \"request\": 0 } ]",
+                "[ { \"request\": 0 }, 1 ]", "[ { } ]", "[ { \"request\": 0 } ] [ ]", "[ { \"request\": 0 }", "7"}) {
+            assertThatThrownBy(() -> codec.decodeFrame(new TextMessage(garbage), 2)).as(garbage)
+                    .isInstanceOf(JSONException.class);
+        }
+    }
+
+    @Test
+    void testDecodeCborFrame() throws Exception {
+        var client = ClientCodec.cbor();
+        var frame = new CborCodec().decodeFrame(new BinaryMessage(client.encodeBatch(
+                List.of(Map.of("request", 1, "cid", 3), Map.of("request", 0, "cid", 4)))), 2);
+        assertThat(frame.batch()).isTrue();
+        assertThat(frame.requests()).extracting(r -> r.getCid()).containsExactly(3L, 4L);
+    }
+
+    @ParameterizedTest
+    @EnumSource(CodecType.class)
+    void testEncodersAgreeOnBatch(CodecType type) throws Exception {
+        var messages = List.of(new ServerMessage(1, 9L, new DiceRoll(1, 6, new int[]{3})), new ServerMessage(0, null));
+        var json = MAPPER.readTree(((TextMessage) type.create().encodeBatch(messages)).getPayload());
+        var cbor = ClientCodec.cbor().decodeMessage(new CborCodec().encodeBatch(messages).getPayload().array());
+        assertThat(cbor).isEqualTo(json);
+        assertThat(json.size()).isEqualTo(2);
+        assertThat(json.get(0).get(ServerMessage.CID_KEY).longValue()).isEqualTo(9L);
+        assertThat(json.get(1).has(ServerMessage.CID_KEY)).isFalse();
+    }
+
+    @Test
+    void testWritersMatchJackson() throws Exception {
+        var text = "quote \" backslash \\ tab \t bell \u0007 \u00e9 \ud83d\ude00 lone \ud83d </script>";
+        var json = new JsonMessageWriter();
+        // Reused writers start from scratch
+        json.startArray().value(1);
+        json.reset();
+        writeSample(json, text);
+
+        var expected = new StringWriter();
+        try (var generator = new JsonFactory().createGenerator(expected)) {
+            generator.writeStartObject();
+            generator.writeStringField("text", text);
+            generator.writeNumberField("negative", -1_000_000_000_000L);
+            generator.writeNumberField("small", -24);
+            generator.writeNumberField("double", 1.0e-7);
+            generator.writeFieldName("array");
+            generator.writeStartArray();
+            for (long value : new long[]{0, 23, 24, 255, 256, 65536, Long.MAX_VALUE, Long.MIN_VALUE}) {
+                generator.writeNumber(value);
+            }
+            generator.writeNull();
+            generator.writeBoolean(true);
+            generator.writeEndArray();
+            generator.writeFieldName("empty");
+            generator.writeStartObject();
+            generator.writeEndObject();
+            generator.writeStringField("last", "");
+            generator.writeEndObject();
+        }
+        assertThat(json.toText()).isEqualTo(expected.toString());
+
+        var cbor = new CborMessageWriter();
+        writeSample(cbor, text);
+        var decoded = new CBORMapper().readTree(cbor.toBytes());
+        // Jackson replaces the unpaired surrogate when encoding the JSON too
+        assertThat(decoded).isEqualTo(MAPPER.readTree(json.toText().getBytes(StandardCharsets.UTF_8)));
+
+        cbor.reset();
+        cbor.startArray().value(new BigDecimal("-12.5")).value(new BigDecimal("123456789012345678901234567890.5"))
+                .endArray();
+        var numbers = new CBORMapper().readTree(cbor.toBytes());
+        assertThat(numbers.get(0).decimalValue()).isEqualByComparingTo("-12.5");
+        assertThat(numbers.get(1).decimalValue()).isEqualByComparingTo("123456789012345678901234567890.5");
+    }
+
+    private static void writeSample(MessageWriter writer, String text) {
+        writer.startObject()
+                .field("text", text)
+                .field("negative", -1_000_000_000_000L)
+                .field("small", -24)
+                .field("double", 1.0e-7)
+                .name("array").startArray();
+        for (long value : new long[]{0, 23, 24, 255, 256, 65536, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            writer.value(value);
+        }
+        writer.nullValue().value(true).endArray()
+                .name("empty").startObject().endObject()
+                .field("last", "")
+                .endObject();
+    }
+
+    private static String encodeText(CodecType type, ServerMessage message) {
+        return ((TextMessage) type.create().encode(message)).getPayload();
+    }
+}
@@ -0,0 +1,49 @@
+package com.redali.example.compression;
+
+import jakarta.websocket.Extension;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompressionUpgradeStrategyTest {
+    @Test
+    void testDeflateKeptAsOffered() {
+        var deflate = deflate("client_max_window_bits");
+        var adjusted = new CompressionUpgradeStrategy(CompressionSettings.DEFAULTS).adjust(List.of(deflate));
+        assertThat(adjusted).containsExactly(deflate);
+    }
+
+    @Test
+    void testDeflateDroppedWhenDisabled() {
+        var other = new TestExtension("x-other", List.of());
+        var adjusted = new CompressionUpgradeStrategy(new CompressionSettings(false, 64, true))
+                .adjust(List.of(deflate(), other));
+        assertThat(adjusted).containsExactly(other);
+    }
+
+    @Test
+    void testContextTakeoverTurnedOff() {
+        var adjusted = new CompressionUpgradeStrategy(new CompressionSettings(true, 64, false))
+                .adjust(List.of(deflate(CompressionUpgradeStrategy.CLIENT_NO_CONTEXT_TAKEOVER)));
+        assertThat(adjusted).hasSize(1);
+        assertThat(adjusted.get(0).getName()).isEqualTo(CompressionUpgradeStrategy.PER_MESSAGE_DEFLATE);
+        // Added once, even when the client already asked for it
+        assertThat(adjusted.get(0).getParameters()).extracting(Extension.Parameter::getName).containsExactly(
+                CompressionUpgradeStrategy.CLIENT_NO_CONTEXT_TAKEOVER,
+                CompressionUpgradeStrategy.SERVER_NO_CONTEXT_TAKEOVER);
+    }
+
+    private static Extension deflate(String... parameters) {
+        return new TestExtension(CompressionUpgradeStrategy.PER_MESSAGE_DEFLATE, Arrays.stream(parameters)
+                .<Extension.Parameter>map(name -> new TestParameter(name, null)).toList());
+    }
+
+    private record TestExtension(String getName, List<Extension.Parameter> getParameters) implements Extension {
+    }
+
+    private record TestParameter(String getName, String getValue) implements Extension.Parameter {
+    }
+}
@@ -0,0 +1,96 @@
+package com.redali.example.compression;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.redali.example.codec.ClientCodec;
+import com.redali.example.service.SessionService;
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.Extension;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.redali.example.support.WebSocketTestSupport.awaitRegistered;
+import static com.redali.example.support.WebSocketTestSupport.clientUri;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifies clients offering permessage-deflate get it, and that small and large messages both make it through.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CompressionWebSocketTest {
+    private static final String TEST_ENDPOINT = "/websocket/json/messages";
+
+    @LocalServerPort
+    private int serverPort;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Test
+    void testCompressedSession() throws Exception {
+        var client = new TestClient();
+        assertThat(client.session.getNegotiatedExtensions()).extracting(Extension::getName)
+                .containsExactly(CompressionUpgradeStrategy.PER_MESSAGE_DEFLATE);
+        assertThat(sessionService.getSessions()).anyMatch(CompressionThreshold::isInstalled);
+
+        // Below the threshold (sent as is) and well above it (deflated), more than once to reuse the context
+        for (int i = 0; i < 3; i++) {
+            var small = client.request(Map.of("request", 1, "dice", 1, "sides", 6)).get("content");
+            assertThat(small.get("rolls")).hasSize(1);
+            var large = client.request(Map.of("request", 1, "dice", 100, "sides", 1000000)).get("content");
+            assertThat(large.get("rolls")).hasSize(100);
+        }
+        client.session.close();
+    }
+
+    private class TestClient extends Endpoint {
+        private final BlockingQueue<JsonNode> received = new LinkedBlockingQueue<>();
+        private final ClientCodec codec = ClientCodec.json();
+        private final Session session;
+
+        TestClient() throws Exception {
+            var config = ClientEndpointConfig.Builder.create()
+                    .preferredSubprotocols(List.of(codec.getSubProtocol()))
+                    .extensions(List.of(new OfferedExtension(CompressionUpgradeStrategy.PER_MESSAGE_DEFLATE)))
+                    .build();
+            var uri = clientUri(serverPort, TEST_ENDPOINT);
+            session = ContainerProvider.getWebSocketContainer().connectToServer(this, config, uri);
+            // The client may see the connection before the server has registered it
+            awaitRegistered(sessionService, uri);
+        }
+
+        @Override
+        public void onOpen(Session session, EndpointConfig endpointConfig) {
+            session.addMessageHandler(String.class,
+                    (MessageHandler.Whole<String>) text -> received.add(codec.decodeMessage(text)));
+        }
+
+        JsonNode request(Map<String, ?> request) throws Exception {
+            session.getBasicRemote().sendText(new String(codec.encodeRequest(request), StandardCharsets.UTF_8));
+            var response = received.poll(1, TimeUnit.SECONDS);
+            assertThat(response).isNotNull();
+            assertThat(response.get("id").intValue()).isEqualTo(request.get("request"));
+            return response;
+        }
+    }
+
+    private record OfferedExtension(String getName) implements Extension {
+        @Override
+        public List<Parameter> getParameters() {
+            return List.of();
+        }
+    }
+}
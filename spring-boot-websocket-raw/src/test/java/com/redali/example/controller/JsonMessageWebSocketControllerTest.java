@@ -1,5 +1,6 @@
 package com.redali.example.controller;
 
+import com.redali.example.service.BatchSettings;
 import com.redali.example.service.SessionService;
 import com.redali.example.service.SessionServiceImpl;
 import com.redali.example.task.PeriodicHealth;
@@ -12,6 +13,7 @@ import jakarta.websocket.EndpointConfig;
 import jakarta.websocket.MessageHandler;
 import jakarta.websocket.Session;
 import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,11 +24,12 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
 
 import java.io.IOException;
-import java.net.URI;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import static com.redali.example.support.WebSocketTestSupport.awaitRegistered;
+import static com.redali.example.support.WebSocketTestSupport.clientUri;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -62,6 +65,7 @@ class JsonMessageWebSocketControllerTest {
         assertThat(server.getString("address")).isNotEmpty();
         assertThat(server.getString("host")).isNotEmpty();
         server.getBoolean("resolved"); // hard to know if host name will be resolved, just check existence
+        server.getBoolean("lookupComplete");
 
         var clt = got.getJSONObject(CONTENT_KEY).getJSONObject("client");
         assertThat(clt).isNotNull();
@@ -97,6 +101,39 @@ class JsonMessageWebSocketControllerTest {
         assertThat(session.isOpen()).isTrue();
     }
 
+    @Test
+    void testBatchWebSocketInteraction() throws Exception {
+        var endPoint = new TestEndpoint();
+        var session = createSession(endPoint);
+        var messageHandler = new TestMessageHandler();
+        session.addMessageHandler(messageHandler);
+
+        // Responses come back in one frame, in request order, each tagged with the cid of its request
+        session.getBasicRemote().sendText("[ { \"request\": 1, \"dice\": 2, \"cid\": 30 }, { \"request\": 0, \"cid\": 10 },"
+                + " { \"request\": 1, \"cid\": 20 } ]");
+        var got = new JSONArray(messageHandler.waitForMessage());
+        assertThat(got.length()).isEqualTo(3);
+        assertThat(got.getJSONObject(0).getInt("id")).isEqualTo(1);
+        assertThat(got.getJSONObject(0).getLong("cid")).isEqualTo(30);
+        assertThat(got.getJSONObject(0).getJSONObject(CONTENT_KEY).getJSONArray("rolls").length()).isEqualTo(2);
+        assertThat(got.getJSONObject(1).getInt("id")).isZero();
+        assertThat(got.getJSONObject(1).getLong("cid")).isEqualTo(10);
+        assertThat(got.getJSONObject(2).getLong("cid")).isEqualTo(20);
+
+        // Single requests still get a single response (with the cid echoed if given)
+        session.getBasicRemote().sendText("{ \"request\": 1, \"cid\": 5 }");
+        var single = new JSONObject(messageHandler.waitForMessage());
+        assertThat(single.getLong("cid")).isEqualTo(5);
+
+        // Going over the batch limit gets the client disconnected
+        var tooMany = new StringBuilder("[");
+        for (int i = 0; i <= BatchSettings.DEFAULTS.maxRequests(); i++) {
+            tooMany.append(i == 0 ? "" : ",").append("{ \"request\": 1 }");
+        }
+        session.getBasicRemote().sendText(tooMany.append(']').toString());
+        assertThat(endPoint.waitForClose()).isTrue();
+    }
+
     @Test
     void testBadMessageId() throws Exception {
         var endPoint = new TestEndpoint();
@@ -142,13 +179,16 @@ class JsonMessageWebSocketControllerTest {
     }
 
     // Test helper method to get a client connection to the WebSocket server and return the session
-    private Session createSession(Endpoint endPoint) throws DeploymentException, IOException {
+    private Session createSession(Endpoint endPoint) throws DeploymentException, IOException, InterruptedException {
         var client = ContainerProvider.getWebSocketContainer();
-        var uri = URI.create("ws://localhost:" + serverPort + TEST_ENDPOINT);
+        var uri = clientUri(serverPort, TEST_ENDPOINT);
 
         var configurator = new ClientEndpointConfig.Configurator();
         var clientConfigEndPoint = ClientEndpointConfig.Builder.create().configurator(configurator).build();
-        return client.connectToServer(endPoint, clientConfigEndPoint, uri);
+        var session = client.connectToServer(endPoint, clientConfigEndPoint, uri);
+        // The client may see the connection before the server has registered it
+        awaitRegistered(sessionService, uri);
+        return session;
     }
 
     private static class TestEndpoint extends Endpoint {
@@ -0,0 +1,153 @@
+package com.redali.example.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.redali.example.codec.ClientCodec;
+import com.redali.example.service.SessionService;
+import com.redali.example.task.PeriodicHealth;
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.redali.example.support.WebSocketTestSupport.awaitCondition;
+import static com.redali.example.support.WebSocketTestSupport.awaitRegistered;
+import static com.redali.example.support.WebSocketTestSupport.clientUri;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifies JSON and CBOR clients on the same endpoint get the same answers (and that the traffic shows up in the
+ * published metrics).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability(tracing = false) // Tests don't publish metrics unless asked to
+class SubProtocolWebSocketTest {
+    private static final String TEST_ENDPOINT = "/websocket/json/messages";
+
+    @LocalServerPort
+    private int serverPort;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Test
+    void testProtocolsGiveSameResults() throws Exception {
+        var json = new TestClient(ClientCodec.json());
+        var cbor = new TestClient(ClientCodec.cbor());
+        assertThat(json.session.getNegotiatedSubprotocol()).isEqualTo("json");
+        assertThat(cbor.session.getNegotiatedSubprotocol()).isEqualTo("cbor");
+
+        var jsonInfo = json.request(Map.of("request", 0)).get("content");
+        var cborInfo = cbor.request(Map.of("request", 0)).get("content");
+        assertThat(fieldNames(cborInfo)).isEqualTo(fieldNames(jsonInfo));
+        // Host name may still be looked up for one client and not the other, the address is always there
+        assertThat(cborInfo.get("server").get("address")).isEqualTo(jsonInfo.get("server").get("address"));
+        assertThat(cborInfo.get("server").get("port").intValue()).isEqualTo(serverPort);
+
+        var jsonRoll = json.request(Map.of("request", 1, "dice", 4, "sides", 20)).get("content");
+        var cborRoll = cbor.request(Map.of("request", 1, "dice", 4, "sides", 20)).get("content");
+        assertThat(fieldNames(cborRoll)).isEqualTo(fieldNames(jsonRoll));
+        assertThat(cborRoll.get("dice")).isEqualTo(jsonRoll.get("dice"));
+        assertThat(cborRoll.get("sides")).isEqualTo(jsonRoll.get("sides"));
+        assertThat(cborRoll.get("rolls")).hasSize(4);
+        assertThat(jsonRoll.get("rolls")).hasSize(4);
+
+        // Server pushes go out encoded for each client
+        new PeriodicHealth(sessionService).periodicHealth();
+        var jsonHealth = json.waitForMessage();
+        var cborHealth = cbor.waitForMessage();
+        assertThat(cborHealth).isEqualTo(jsonHealth);
+        assertThat(cborHealth.get("id").intValue()).isEqualTo(200);
+
+        // Text sent to a binary session is rejected and the session closed
+        cbor.session.getBasicRemote().sendText("{ \"request\": 0 }");
+        assertThat(awaitCondition(() -> !cbor.session.isOpen())).isTrue();
+        json.session.close();
+    }
+
+    @Test
+    void testTrafficMetricsArePublished() throws Exception {
+        var json = new TestClient(ClientCodec.json());
+        json.request(Map.of("request", 1));
+        json.session.close();
+
+        var prometheus = new TestRestTemplate().getForObject(
+                "http://localhost:" + managementPort + "/actuator/prometheus", String.class);
+        assertThat(prometheus).contains("websocket_requests_seconds_count{type=\"1\"}", "websocket_messages_received_total",
+                "websocket_bytes_sent_total", "websocket_sessions_active", "websocket_parse_failures_total");
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        var names = new ArrayList<String>();
+        node.fieldNames().forEachRemaining(names::add);
+        names.sort(String::compareTo);
+        return names;
+    }
+
+    private class TestClient extends Endpoint {
+        private final BlockingQueue<JsonNode> received = new LinkedBlockingQueue<>();
+        private final ClientCodec codec;
+        private final Session session;
+
+        TestClient(ClientCodec codec) throws Exception {
+            this.codec = codec;
+            var config = ClientEndpointConfig.Builder.create()
+                    .preferredSubprotocols(List.of(codec.getSubProtocol())).build();
+            var uri = clientUri(serverPort, TEST_ENDPOINT);
+            session = ContainerProvider.getWebSocketContainer().connectToServer(this, config, uri);
+            // The client may see the connection before the server has registered it
+            awaitRegistered(sessionService, uri);
+        }
+
+        @Override
+        public void onOpen(Session session, EndpointConfig endpointConfig) {
+            if (codec.isBinary()) {
+                session.addMessageHandler(ByteBuffer.class, (MessageHandler.Whole<ByteBuffer>) buffer -> {
+                    var bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    received.add(codec.decodeMessage(bytes));
+                });
+            } else {
+                session.addMessageHandler(String.class,
+                        (MessageHandler.Whole<String>) text -> received.add(codec.decodeMessage(text)));
+            }
+        }
+
+        JsonNode request(Map<String, ?> request) throws Exception {
+            var bytes = codec.encodeRequest(request);
+            if (codec.isBinary()) {
+                session.getBasicRemote().sendBinary(ByteBuffer.wrap(bytes));
+            } else {
+                session.getBasicRemote().sendText(new String(bytes, StandardCharsets.UTF_8));
+            }
+            var response = waitForMessage();
+            assertThat(response).isNotNull();
+            assertThat(response.get("id").intValue()).isEqualTo(request.get("request"));
+            return response;
+        }
+
+        JsonNode waitForMessage() throws InterruptedException {
+            return received.poll(1, TimeUnit.SECONDS);
+        }
+    }
+}
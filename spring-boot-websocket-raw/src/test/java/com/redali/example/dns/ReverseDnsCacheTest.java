@@ -0,0 +1,84 @@
+package com.redali.example.dns;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReverseDnsCacheTest {
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ReverseDnsCache cache;
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        cache.close();
+    }
+
+    @Test
+    void testLookupSharedAndNeverWaitedFor() throws Exception {
+        cache = new ReverseDnsCache(new DnsSettings(300, 100, 2), this::slowLookup);
+        var address = InetAddress.getByName("10.1.2.3");
+
+        // Pending lookups give no name, but don't block and don't start another lookup
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            assertThat(cache.getHostName(InetAddress.getByName("10.1.2.3"))).isNull();
+        }
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(1));
+
+        release.countDown();
+        assertThat(cache.resolve(address).get(5, TimeUnit.SECONDS)).isEqualTo("host-10.1.2.3");
+        assertThat(cache.getHostName(address)).isEqualTo("host-10.1.2.3");
+        assertThat(lookups.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testExpiredEntriesLookedUpAgain() throws Exception {
+        release.countDown();
+        cache = new ReverseDnsCache(new DnsSettings(0, 100, 1), this::slowLookup);
+        var address = InetAddress.getByName("10.1.2.3");
+        assertThat(cache.resolve(address).get(5, TimeUnit.SECONDS)).isEqualTo("host-10.1.2.3");
+        Thread.sleep(1);
+        assertThat(cache.resolve(address).get(5, TimeUnit.SECONDS)).isEqualTo("host-10.1.2.3");
+        assertThat(lookups.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testFailedLookupGivesAddressAndCacheStaysBounded() throws Exception {
+        cache = new ReverseDnsCache(new DnsSettings(300, 10, 1), address -> {
+            throw new IllegalStateException("DNS server unreachable");
+        });
+        assertThat(cache.resolve(InetAddress.getByName("10.9.9.9")).get(5, TimeUnit.SECONDS)).isEqualTo("10.9.9.9");
+        for (int i = 0; i < 100; i++) {
+            cache.resolve(InetAddress.getByName("10.0.0." + i));
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    void testClosedCacheGivesAddress() throws Exception {
+        cache = new ReverseDnsCache(new DnsSettings(300, 10, 1), this::slowLookup);
+        cache.close();
+        var address = InetAddress.getByName("10.1.2.3");
+        assertThat(cache.resolve(address).get(5, TimeUnit.SECONDS)).isEqualTo("10.1.2.3");
+        assertThat(cache.getHostName(address)).isEqualTo("10.1.2.3");
+        assertThat(lookups.get()).isZero();
+    }
+
+    private String slowLookup(InetAddress address) {
+        lookups.incrementAndGet();
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "host-" + address.getHostAddress();
+    }
+}
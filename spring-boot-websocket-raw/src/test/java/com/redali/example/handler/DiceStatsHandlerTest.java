@@ -0,0 +1,52 @@
+package com.redali.example.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class DiceStatsHandlerTest {
+
+    @Test
+    void testSeededRollsAreReproducible() throws Exception {
+        var first = DiceStatsHandler.roll(1_000_003, 6, 42L);
+        // Same seed on a pool with a single thread must split the work the same way
+        var pool = new ForkJoinPool(1);
+        try {
+            var second = pool.submit(() -> DiceStatsHandler.roll(1_000_003, 6, 42L)).get();
+            assertThat(second.histogram()).isEqualTo(first.histogram());
+            assertThat(second.sum()).isEqualTo(first.sum());
+        } finally {
+            pool.shutdown();
+        }
+        assertThat(DiceStatsHandler.roll(1_000_003, 6, 43L).histogram()).isNotEqualTo(first.histogram());
+    }
+
+    @Test
+    void testStatistics() {
+        var stats = DiceStatsHandler.roll(2_000_000, 6, 7L);
+        assertThat(stats.dice()).isEqualTo(2_000_000);
+        assertThat(stats.seed()).isEqualTo(7L);
+        assertThat(stats.histogram()).hasSize(6);
+        assertThat(Arrays.stream(stats.histogram()).sum()).isEqualTo(2_000_000);
+        for (long count : stats.histogram()) {
+            assertThat((double) count).isCloseTo(2_000_000 / 6.0, within(5000.0));
+        }
+        // Fair six sided die: mean 3.5, variance 35/12
+        assertThat(stats.mean()).isCloseTo(3.5, within(0.01));
+        assertThat(stats.variance()).isCloseTo(35.0 / 12.0, within(0.02));
+        assertThat(stats.mean()).isEqualTo((double) stats.sum() / stats.dice());
+    }
+
+    @Test
+    void testLimits() {
+        var stats = DiceStatsHandler.roll(0, 1, null);
+        assertThat(stats.dice()).isEqualTo(1);
+        assertThat(stats.sides()).isEqualTo(2);
+        assertThat(stats.seed()).isNull();
+        assertThat(DiceStatsHandler.roll(10, 5000, 1L).histogram()).hasSize(DiceStatsHandler.MAX_SIDES);
+    }
+}
@@ -0,0 +1,58 @@
+package com.redali.example.handler;
+
+import com.redali.example.dns.ReverseDnsCache;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.ServerMessage;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class RequestHandlerRegistryTest {
+
+    @Test
+    void testLookup() {
+        var info = new SessionInfoHandler(mock(ReverseDnsCache.class));
+        var dice = new DiceRollHandler();
+        var sparse = new FixedHandler(7);
+        var registry = new RequestHandlerRegistry(List.of(dice, sparse, info));
+        assertThat(registry.lookup(0)).isSameAs(info);
+        assertThat(registry.lookup(1)).isSameAs(dice);
+        assertThat(registry.lookup(7)).isSameAs(sparse);
+        for (int id : new int[]{-1, 2, 6, 8, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+            assertThat(registry.lookup(id)).as("id %d", id).isNull();
+        }
+        // Host names are looked up in the background, so session info never blocks
+        assertThat(info.getExecution()).isEqualTo(Execution.TRIVIAL);
+        assertThat(dice.getExecution()).isEqualTo(Execution.TRIVIAL);
+        assertThat(registry.getHandlers()).containsExactly(dice, sparse, info);
+        assertThat(new RequestHandlerRegistry(List.of()).lookup(0)).isNull();
+    }
+
+    @Test
+    void testBadIds() {
+        assertThatThrownBy(() -> new RequestHandlerRegistry(List.of(new FixedHandler(3), new FixedHandler(3))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RequestHandlerRegistry(List.of(new FixedHandler(-1))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RequestHandlerRegistry(List.of(new FixedHandler(Integer.MAX_VALUE))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private record FixedHandler(int id) implements RequestHandler {
+        @Override
+        public int getRequestId() {
+            return id;
+        }
+
+        @Override
+        public ServerMessage handle(@NotNull WebSocketSession session, @NotNull ClientRequest request) {
+            return new ServerMessage(id, null);
+        }
+    }
+}
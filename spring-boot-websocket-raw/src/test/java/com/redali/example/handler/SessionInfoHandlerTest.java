@@ -0,0 +1,51 @@
+package com.redali.example.handler;
+
+import com.redali.example.dns.DnsSettings;
+import com.redali.example.dns.ReverseDnsCache;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.SessionInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SessionInfoHandlerTest {
+
+    @Test
+    void testNeverWaitsForHostNames() throws Exception {
+        var release = new CountDownLatch(1);
+        try (var cache = new ReverseDnsCache(new DnsSettings(300, 100, 2), address -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "host-" + address.getHostAddress();
+        })) {
+            var handler = new SessionInfoHandler(cache);
+            var session = mock(WebSocketSession.class);
+            when(session.getLocalAddress()).thenReturn(new InetSocketAddress(InetAddress.getByName("10.0.0.1"), 8080));
+            when(session.getRemoteAddress()).thenReturn(new InetSocketAddress(InetAddress.getByName("10.0.0.2"), 5000));
+            handler.sessionOpened(session);
+
+            // Lookups still running, the IP address stands in for the host name
+            var info = (SessionInfo) handler.handle(session, new ClientRequest(0)).content();
+            assertThat(info.server()).isEqualTo(new SessionInfo.AddressInfo("10.0.0.1", "10.0.0.1", true, false, 8080));
+            assertThat(info.client()).isEqualTo(new SessionInfo.AddressInfo("10.0.0.2", "10.0.0.2", true, false, 5000));
+
+            release.countDown();
+            cache.resolve(InetAddress.getByName("10.0.0.2")).get(5, TimeUnit.SECONDS);
+            cache.resolve(InetAddress.getByName("10.0.0.1")).get(5, TimeUnit.SECONDS);
+            info = (SessionInfo) handler.handle(session, new ClientRequest(0)).content();
+            assertThat(info.server()).isEqualTo(new SessionInfo.AddressInfo("10.0.0.1", "host-10.0.0.1", true, true, 8080));
+            assertThat(info.client()).isEqualTo(new SessionInfo.AddressInfo("10.0.0.2", "host-10.0.0.2", true, true, 5000));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.redali.example.journal;
+
+import com.redali.example.metrics.WebSocketMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RequestJournalTest {
+
+    @Test
+    void testFramesAreReadBackAsReceived(@TempDir Path dir) throws Exception {
+        var registry = new SimpleMeterRegistry();
+        long before = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        try (var journal = new RequestJournal(new JournalSettings(true, dir, 65536, 16),
+                new WebSocketMetrics(registry))) {
+            assertThat(journal.isEnabled()).isTrue();
+            journal.append(createSession("first"), 1, new TextMessage("{ \"request\": 1, \"dice\": 5 }"));
+            journal.append(createSession("second"), RequestJournal.BATCH, new BinaryMessage(new byte[]{(byte) 0x9F,
+                    (byte) 0xBF, (byte) 0xFF, (byte) 0xFF}));
+            journal.append(createSession("first"), RequestJournal.UNDECODED, new TextMessage("garbage é"));
+        }
+        long after = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+
+        var records = readAll(dir);
+        assertThat(records).extracting(JournalRecord::sessionId).containsExactly("first", "second", "first");
+        assertThat(records).extracting(JournalRecord::requestType)
+                .containsExactly(1, RequestJournal.BATCH, RequestJournal.UNDECODED);
+        assertThat(records).extracting(JournalRecord::binary).containsExactly(false, true, false);
+        assertThat(new String(records.get(0).payload(), StandardCharsets.UTF_8))
+                .isEqualTo("{ \"request\": 1, \"dice\": 5 }");
+        assertThat(records.get(1).payload()).containsExactly(0x9F, 0xBF, 0xFF, 0xFF);
+        assertThat(new String(records.get(2).payload(), StandardCharsets.UTF_8)).isEqualTo("garbage é");
+        for (var record : records) {
+            // Allow for the clock granularity
+            assertThat(record.timestampMicros()).isBetween(before - 1000, after + 1000);
+        }
+        assertThat(registry.get("websocket.journal.written").functionCounter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void testSegmentsRollOverAndLaterRunsCarryOn(@TempDir Path dir) throws Exception {
+        var settings = new JournalSettings(true, dir, JournalSettings.MIN_SEGMENT_SIZE, 1000);
+        var session = createSession("session");
+        var payload = "x".repeat(200);
+        for (int run = 0; run < 2; run++) {
+            try (var journal = new RequestJournal(settings, WebSocketMetrics.disabled())) {
+                for (int i = 0; i < 50; i++) {
+                    journal.append(session, run * 50 + i, new TextMessage(payload));
+                }
+            }
+        }
+        assertThat(JournalReader.segments(dir)).hasSizeGreaterThan(4);
+        var records = readAll(dir);
+        assertThat(records).hasSize(100);
+        for (int i = 0; i < records.size(); i++) {
+            assertThat(records.get(i).requestType()).isEqualTo(i);
+        }
+        // A journal that is disabled writes nothing
+        try (var journal = RequestJournal.disabled()) {
+            assertThat(journal.isEnabled()).isFalse();
+            journal.append(session, 0, new TextMessage(payload));
+        }
+    }
+
+    private static List<JournalRecord> readAll(Path dir) throws Exception {
+        var reader = new JournalReader(dir);
+        var records = new ArrayList<JournalRecord>();
+        for (var record = reader.next(); record != null; record = reader.next()) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static WebSocketSession createSession(String id) {
+        var session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        return session;
+    }
+}
@@ -0,0 +1,65 @@
+package com.redali.example.metrics;
+
+import com.redali.example.handler.DiceRollHandler;
+import com.redali.example.service.SessionServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+
+import static com.redali.example.support.WebSocketTestSupport.awaitCondition;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebSocketMetricsTest {
+
+    @Test
+    void testTrafficIsCounted() throws Exception {
+        var registry = new SimpleMeterRegistry();
+        try (var service = SessionServiceImpl.builder()
+                .handlers(List.of(new DiceRollHandler()))
+                .metrics(new WebSocketMetrics(registry))
+                .build()) {
+            var session = mock(WebSocketSession.class);
+            when(session.getId()).thenReturn("1");
+            when(session.isOpen()).thenReturn(true);
+            service.registerSession(session);
+            assertThat(registry.get("websocket.sessions.active").gauge().value()).isEqualTo(1.0);
+
+            var request = new TextMessage("{ \"request\": 1 }");
+            service.handleMessage(session, request);
+            service.handleMessage(session, new TextMessage("[ { \"request\": 1 }, { \"request\": 1 } ]"));
+            verify(session, timeout(1000).times(2)).sendMessage(any());
+            assertThatThrownBy(() -> service.handleMessage(session, new TextMessage("{ \"request\": 5 }")))
+                    .isInstanceOf(JSONException.class);
+            assertThatThrownBy(() -> service.handleMessage(session, new TextMessage("garbage")))
+                    .isInstanceOf(JSONException.class);
+            service.broadcast(200, null);
+
+            assertThat(registry.get("websocket.messages.received").functionCounter().count()).isEqualTo(4);
+            assertThat(registry.get("websocket.bytes.received").functionCounter().count())
+                    .isGreaterThan(request.getPayloadLength());
+            assertThat(registry.get("websocket.requests").tag("type", "1").timer().count()).isEqualTo(3);
+            assertThat(registry.get("websocket.requests.rejected").functionCounter().count()).isEqualTo(1);
+            assertThat(registry.get("websocket.parse.failures").functionCounter().count()).isEqualTo(1);
+            assertThat(registry.get("websocket.broadcast").tag("id", "200").timer().count()).isEqualTo(1);
+            verify(session, timeout(1000).times(3)).sendMessage(any());
+            // Counted by the sender thread just after the send returns
+            var sent = registry.get("websocket.messages.sent").functionCounter();
+            awaitCondition(() -> sent.count() >= 3);
+            assertThat(sent.count()).isEqualTo(3);
+            assertThat(registry.get("websocket.send.failures").functionCounter().count()).isZero();
+
+            service.unregisterSession(session);
+            assertThat(registry.get("websocket.sessions.active").gauge().value()).isZero();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.redali.example.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void testBucketAllowsBurstThenRate() {
+        long now = 0;
+        var bucket = new TokenBucket(new RateLimit(10, 5), now);
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.acquire(now, 0)).isZero();
+        }
+        // Empty, the next token comes a tenth of a second later
+        assertThat(bucket.acquire(now, 0)).isEqualTo(SECOND / 10);
+        assertThat(bucket.acquire(now + SECOND / 10, 0)).isZero();
+        assertThat(bucket.acquire(now + SECOND / 10, 0)).isPositive();
+
+        // A long quiet spell only refills one burst
+        now += 100 * SECOND;
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.acquire(now, 0)).isZero();
+        }
+        assertThat(bucket.acquire(now, 0)).isPositive();
+    }
+
+    @Test
+    void testBucketReservesWithinMaximumWait() {
+        var bucket = new TokenBucket(new RateLimit(10, 1), 0);
+        assertThat(bucket.acquire(0, SECOND)).isZero();
+        // Reserved: each caller waits one more interval than the one before
+        assertThat(bucket.acquire(0, SECOND)).isEqualTo(SECOND / 10);
+        assertThat(bucket.acquire(0, SECOND)).isEqualTo(2 * SECOND / 10);
+        // Too long to wait, nothing taken
+        assertThat(bucket.acquire(0, SECOND / 10)).isEqualTo(3 * SECOND / 10);
+        bucket.release();
+        assertThat(bucket.acquire(0, SECOND)).isEqualTo(2 * SECOND / 10);
+    }
+
+    @Test
+    void testBucketNeverHandsOutExtraTokensUnderContention() throws Exception {
+        var bucket = new TokenBucket(new RateLimit(1, 10_000), System.nanoTime());
+        var taken = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            var thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 5_000; i++) {
+                    if (bucket.acquire(System.nanoTime(), 0) == 0) {
+                        taken.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (var thread : threads) {
+            thread.join();
+        }
+        // The burst plus whatever trickled in while running (1 per second)
+        assertThat(taken.get()).isBetween(10_000, 10_100);
+    }
+
+    @Test
+    void testSessionAndAddressLimits() {
+        var limiter = new RateLimiter(new RateLimitSettings(new RateLimit(1, 2), new RateLimit(1, 3),
+                Map.of(2, new RateLimit(1, 1)), RateLimitPolicy.REJECT, 1000));
+        var first = createSession("1", "10.0.0.1");
+        var second = createSession("2", "10.0.0.1");
+        var other = createSession("3", "10.0.0.2");
+        limiter.sessionOpened(first);
+        limiter.sessionOpened(second);
+        limiter.sessionOpened(other);
+        assertThat(limiter.getAddressCount()).isEqualTo(2);
+
+        // Own burst of 2 for type 1, separate bucket (burst of 1) for type 2
+        assertThat(limiter.acquire(first, 1)).isZero();
+        assertThat(limiter.acquire(first, 1)).isZero();
+        assertThat(limiter.acquire(first, 1)).isPositive();
+        assertThat(limiter.acquire(first, 2)).isZero();
+        assertThat(limiter.acquire(first, 2)).isPositive();
+        // The address only has one type 1 token left for the second session
+        assertThat(limiter.acquire(second, 1)).isZero();
+        assertThat(limiter.acquire(second, 1)).isPositive();
+        assertThat(limiter.acquire(other, 1)).isZero();
+
+        limiter.sessionClosed(first);
+        assertThat(limiter.getAddressCount()).isEqualTo(2);
+        limiter.sessionClosed(second);
+        limiter.sessionClosed(other);
+        assertThat(limiter.getAddressCount()).isZero();
+    }
+
+    @Test
+    void testUnlimited() {
+        var limiter = new RateLimiter(RateLimitSettings.UNLIMITED);
+        var session = createSession("1", "10.0.0.1");
+        limiter.sessionOpened(session);
+        assertThat(limiter.isEnabled()).isFalse();
+        for (int i = 0; i < 1000; i++) {
+            assertThat(limiter.acquire(session, 1)).isZero();
+        }
+        assertThat(limiter.getAddressCount()).isZero();
+    }
+
+    @Test
+    void testParseRequestLimits() {
+        assertThat(RateLimitSettings.parseRequests("2:5:10, 1:100:200")).containsOnly(
+                Map.entry(2, new RateLimit(5, 10)), Map.entry(1, new RateLimit(100, 200)));
+        assertThat(RateLimitSettings.parseRequests("")).isEmpty();
+        assertThatThrownBy(() -> RateLimitSettings.parseRequests("2:5"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RateLimit(5, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static WebSocketSession createSession(String id, String address) {
+        var session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.getRemoteAddress()).thenReturn(new InetSocketAddress(address, 4000));
+        return session;
+    }
+}
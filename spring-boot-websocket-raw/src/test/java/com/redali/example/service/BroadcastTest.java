@@ -0,0 +1,144 @@
+package com.redali.example.service;
+
+import com.redali.example.handler.SubscribeHandler;
+import com.redali.example.message.ClientRequest;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.redali.example.support.WebSocketTestSupport.awaitCondition;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BroadcastTest {
+    private static final int SESSIONS = 5_000;
+
+    private SessionServiceImpl service;
+
+    @AfterEach
+    void shutdown() {
+        service.close();
+    }
+
+    @Test
+    void testMessageEncodedOnceAndSentToAll() throws Exception {
+        service = new SessionServiceImpl();
+        var sent = new AtomicInteger();
+        var frames = ConcurrentHashMap.<TextMessage>newKeySet();
+        var done = new CountDownLatch(SESSIONS);
+        for (var session : createSessions(SESSIONS)) {
+            doAnswer(invocation -> {
+                frames.add(invocation.getArgument(0));
+                sent.incrementAndGet();
+                done.countDown();
+                return null;
+            }).when(session).sendMessage(any());
+            service.registerSession(session);
+        }
+
+        var stats = service.broadcast(200, new JSONObject().put("status", "UP"));
+        assertThat(stats.sessions()).isEqualTo(SESSIONS);
+        assertThat(stats.delivered()).isEqualTo(SESSIONS);
+        assertThat(stats.dropped()).isZero();
+        assertThat(stats.failed()).isZero();
+        assertThat(stats.elapsedNanos()).isPositive();
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(sent.get()).isEqualTo(SESSIONS);
+        // Every session was sent the very same frame
+        assertThat(frames).hasSize(1);
+        assertThat(new JSONObject(frames.iterator().next().getPayload()).getInt("id")).isEqualTo(200);
+    }
+
+    @Test
+    void testSlowSessionDropsWithoutDelayingOthers() throws Exception {
+        service = SessionServiceImpl.builder()
+                .outboundSettings(new OutboundSettings(1, 5000, 1024, OverflowPolicy.DROP_NEWEST, 2))
+                .build();
+        var release = new CountDownLatch(1);
+        var slow = createSessions(1).get(0);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(slow).sendMessage(any());
+        var fast = createSessions(1).get(0);
+        when(fast.getId()).thenReturn("fast");
+        var fastSent = new AtomicInteger();
+        doAnswer(invocation -> fastSent.incrementAndGet()).when(fast).sendMessage(any());
+        service.registerSession(slow);
+        service.registerSession(fast);
+
+        Set<Integer> dropped = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 5; i++) {
+            var stats = service.broadcast(200, null);
+            assertThat(stats.delivered() + stats.dropped()).isEqualTo(2);
+            dropped.add(stats.dropped());
+            // Give the fast client a chance to drain its single slot
+            int sentBefore = i;
+            awaitCondition(() -> fastSent.get() > sentBefore);
+        }
+        release.countDown();
+        assertThat(fastSent.get()).isEqualTo(5);
+        assertThat(dropped).contains(1);
+    }
+
+    @Test
+    void testPublishOnlyToSubscribers() throws Exception {
+        service = new SessionServiceImpl();
+        var sessions = createSessions(100);
+        var sent = new AtomicInteger();
+        for (int i = 0; i < sessions.size(); i++) {
+            var session = sessions.get(i);
+            when(session.isOpen()).thenReturn(true);
+            service.registerSession(session);
+            if (i % 10 == 0) {
+                var subscribe = new ClientRequest(SubscribeHandler.REQUEST_ID);
+                subscribe.setTopic("news");
+                service.processRequest(session, subscribe);
+            }
+            // Only count what is published, not the subscribe responses
+            doAnswer(invocation -> {
+                if (new JSONObject(((TextMessage) invocation.getArgument(0)).getPayload()).getInt("id") == 300) {
+                    sent.incrementAndGet();
+                }
+                return null;
+            }).when(session).sendMessage(any());
+        }
+
+        var stats = service.publish("news", 300, new JSONObject().put("headline", "Dice are random"));
+        assertThat(stats.sessions()).isEqualTo(10);
+        assertThat(stats.delivered()).isEqualTo(10);
+        assertThat(service.publish("weather", 300, null).sessions()).isZero();
+        awaitCondition(() -> sent.get() >= 10);
+        assertThat(sent.get()).isEqualTo(10);
+
+        // Subscriptions go away with the session
+        service.unregisterSession(sessions.get(0));
+        assertThat(service.publish("news", 300, null).sessions()).isEqualTo(9);
+        awaitCondition(() -> sent.get() >= 19);
+        assertThat(sent.get()).isEqualTo(19);
+    }
+
+    private static List<WebSocketSession> createSessions(int count) {
+        var sessions = new ArrayList<WebSocketSession>(count);
+        for (int i = 0; i < count; i++) {
+            var session = mock(WebSocketSession.class);
+            when(session.getId()).thenReturn("session-" + i);
+            sessions.add(session);
+        }
+        return sessions;
+    }
+}
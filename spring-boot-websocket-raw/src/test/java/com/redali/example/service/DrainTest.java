@@ -0,0 +1,97 @@
+package com.redali.example.service;
+
+import com.redali.example.controller.DrainingHandshakeInterceptor;
+import com.redali.example.message.GoAway;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.redali.example.support.WebSocketTestSupport.capturingSession;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Draining lets queued messages go out, then closes the clients in waves after telling them when to reconnect.
+ */
+class DrainTest {
+    private final SessionServiceImpl service = new SessionServiceImpl();
+    private final List<Long> closeTimes = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        service.close();
+    }
+
+    @Test
+    void testClientsAreFlushedAndClosedInWaves() throws Exception {
+        var frames = new ArrayList<List<JSONObject>>();
+        var sessions = new ArrayList<WebSocketSession>();
+        for (int i = 0; i < 4; i++) {
+            var received = new CopyOnWriteArrayList<JSONObject>();
+            var session = createSession("client-" + i, received);
+            service.registerSession(session);
+            service.sendToSession(session, 100, new JSONObject().put("n", i));
+            frames.add(received);
+            sessions.add(session);
+        }
+        assertThat(service.isDraining()).isFalse();
+
+        service.drain(new ShutdownSettings(2000, 2, 200, 500));
+        assertThat(service.isDraining()).isTrue();
+        assertThat(service.getSessions()).isEmpty();
+        for (int i = 0; i < 4; i++) {
+            verify(sessions.get(i)).close(CloseStatus.SERVICE_RESTARTED);
+            var received = frames.get(i);
+            assertThat(received).extracting(frame -> frame.getInt("id")).containsExactly(100, GoAway.MESSAGE_ID);
+            assertThat(received.get(1).getJSONObject("content").getLong("reconnectAfter")).isBetween(500L, 700L);
+        }
+        // Two clients closed right away, the other two a wave interval later
+        assertThat(closeTimes).hasSize(4);
+        var sorted = closeTimes.stream().sorted().toList();
+        assertThat(sorted.get(2) - sorted.get(1)).isGreaterThanOrEqualTo(150_000_000L);
+    }
+
+    @Test
+    void testNewClientsAreTurnedAway() throws Exception {
+        service.drain(ShutdownSettings.DEFAULTS);
+
+        var response = mock(ServerHttpResponse.class);
+        var interceptor = new DrainingHandshakeInterceptor(service);
+        assertThat(interceptor.beforeHandshake(mock(ServerHttpRequest.class), response, mock(WebSocketHandler.class),
+                new HashMap<>())).isFalse();
+        verify(response).setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+
+        // Got in anyway (another container, or it was already past the handshake)
+        var received = new CopyOnWriteArrayList<JSONObject>();
+        var session = createSession("late", received);
+        service.registerSession(session);
+        verify(session, timeout(5000)).close(CloseStatus.SERVICE_RESTARTED);
+        assertThat(received).extracting(frame -> frame.getInt("id")).containsExactly(GoAway.MESSAGE_ID);
+    }
+
+    // Closing a session unregisters it, like the container does
+    private WebSocketSession createSession(String id, List<JSONObject> frames) throws Exception {
+        var session = capturingSession(id, frames);
+        doAnswer(invocation -> {
+            closeTimes.add(System.nanoTime());
+            service.unregisterSession(session);
+            return null;
+        }).when(session).close(any());
+        return session;
+    }
+}
@@ -0,0 +1,102 @@
+package com.redali.example.service;
+
+import com.redali.example.handler.DiceRollHandler;
+import com.redali.example.metrics.WebSocketMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+
+import static com.redali.example.support.WebSocketTestSupport.awaitCondition;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Quiet clients are pinged, clients that stop answering are disconnected.
+ */
+class HeartbeatTest {
+    private static final HeartbeatSettings FAST = new HeartbeatSettings(50, 200, 10, 64);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private SessionServiceImpl service;
+
+    @AfterEach
+    void shutdown() {
+        service.close();
+    }
+
+    @Test
+    void testUnresponsiveClientIsReaped() throws Exception {
+        service = createService();
+        var session = createSession("dead");
+        service.registerSession(session);
+
+        verify(session, timeout(5000).atLeastOnce()).sendMessage(any(PingMessage.class));
+        verify(session, timeout(5000)).close();
+        assertThat(service.getSessions()).isEmpty();
+        assertThat(registry.get("websocket.sessions.reaped").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("websocket.pings.sent").functionCounter().count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void testClientAnsweringPingsStays() throws Exception {
+        service = createService();
+        var session = createSession("alive");
+        doAnswer(invocation -> {
+            if (invocation.getArgument(0) instanceof PingMessage ping) {
+                service.handlePong(session, new PongMessage(ping.getPayload()));
+            }
+            return null;
+        }).when(session).sendMessage(any());
+        service.registerSession(session);
+
+        var rtt = registry.get("websocket.ping.rtt").timer();
+        awaitCondition(() -> rtt.count() >= 5);
+        // Long past the idle timeout, still there
+        assertThat(rtt.count()).isGreaterThanOrEqualTo(5);
+        verify(session, never()).close();
+        assertThat(service.getSessions()).containsExactly(session);
+        assertThat(registry.get("websocket.sessions.reaped").functionCounter().count()).isZero();
+    }
+
+    @Test
+    void testUnregisteredSessionIsNoLongerPinged() throws Exception {
+        service = createService();
+        var session = createSession("gone");
+        service.registerSession(session);
+        service.unregisterSession(session);
+
+        Thread.sleep(300);
+        verify(session, never()).sendMessage(any());
+        verify(session, never()).close();
+        assertThat(registry.get("websocket.sessions.reaped").functionCounter().count()).isZero();
+    }
+
+    private SessionServiceImpl createService() {
+        var topics = new TopicRegistry();
+        return SessionServiceImpl.builder()
+                .heartbeatSettings(FAST)
+                .handlers(List.of(new DiceRollHandler()))
+                .metrics(new WebSocketMetrics(registry))
+                .topics(topics)
+                .build();
+    }
+
+    private static WebSocketSession createSession(String id) {
+        var session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+}
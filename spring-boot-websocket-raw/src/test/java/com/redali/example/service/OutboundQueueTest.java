@@ -0,0 +1,191 @@
+package com.redali.example.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+class OutboundQueueTest {
+
+    @Test
+    void testMessagesSentInOrder() throws Exception {
+        var fixture = new Fixture(OverflowPolicy.DROP_OLDEST);
+        fixture.offer(1, "a");
+        fixture.offer(2, "b");
+        fixture.runSender();
+        assertThat(fixture.sent).containsExactly("a", "b");
+    }
+
+    @Test
+    void testDropNewest() throws Exception {
+        var fixture = new Fixture(OverflowPolicy.DROP_NEWEST);
+        assertThat(fixture.offer(1, "a")).isEqualTo(OutboundQueue.Result.QUEUED);
+        assertThat(fixture.offer(2, "b")).isEqualTo(OutboundQueue.Result.QUEUED);
+        assertThat(fixture.offer(3, "c")).isEqualTo(OutboundQueue.Result.DROPPED);
+        fixture.runSender();
+        assertThat(fixture.sent).containsExactly("a", "b");
+    }
+
+    @Test
+    void testDropOldest() throws Exception {
+        var fixture = new Fixture(OverflowPolicy.DROP_OLDEST);
+        fixture.offer(1, "a");
+        fixture.offer(2, "b");
+        assertThat(fixture.offer(3, "c")).isEqualTo(OutboundQueue.Result.QUEUED);
+        fixture.runSender();
+        assertThat(fixture.sent).containsExactly("b", "c");
+    }
+
+    @Test
+    void testCoalesce() throws Exception {
+        var fixture = new Fixture(OverflowPolicy.COALESCE);
+        fixture.offer(200, "old");
+        fixture.offer(1, "a");
+        assertThat(fixture.offer(200, "new")).isEqualTo(OutboundQueue.Result.COALESCED);
+        fixture.runSender();
+        // The newer data goes out in the older message's place
+        assertThat(fixture.sent).containsExactly("new", "a");
+
+        fixture.offer(200, "old");
+        fixture.offer(1, "a");
+        // Nothing to coalesce with, falls back to dropping oldest
+        assertThat(fixture.offer(2, "b")).isEqualTo(OutboundQueue.Result.QUEUED);
+        fixture.runSender();
+        assertThat(fixture.sent).containsExactly("new", "a", "a", "b");
+    }
+
+    @Test
+    void testDisconnect() throws Exception {
+        var fixture = new Fixture(OverflowPolicy.DISCONNECT);
+        fixture.offer(1, "a");
+        fixture.offer(2, "b");
+        assertThat(fixture.offer(3, "c")).isEqualTo(OutboundQueue.Result.DISCONNECTED);
+        assertThat(fixture.offer(4, "d")).isEqualTo(OutboundQueue.Result.DISCONNECTED);
+        fixture.runSender();
+        assertThat(fixture.sent).isEmpty();
+        assertThat(fixture.failed).hasSize(1);
+    }
+
+    @Test
+    void testBufferSizeLimit() throws Exception {
+        var fixture = new Fixture(new OutboundSettings(100, 1000, 8, OverflowPolicy.DROP_NEWEST, 1));
+        assertThat(fixture.offer(1, "12345")).isEqualTo(OutboundQueue.Result.QUEUED);
+        assertThat(fixture.offer(2, "6789")).isEqualTo(OutboundQueue.Result.DROPPED);
+        assertThat(fixture.offer(3, "678")).isEqualTo(OutboundQueue.Result.QUEUED);
+    }
+
+    @Test
+    void testSendFailureRemovesClient() throws Exception {
+        var fixture = new Fixture(OverflowPolicy.DROP_OLDEST);
+        fixture.failSends = true;
+        fixture.offer(1, "a");
+        fixture.runSender();
+        assertThat(fixture.failed).hasSize(1);
+        assertThat(fixture.offer(2, "b")).isEqualTo(OutboundQueue.Result.DISCONNECTED);
+    }
+
+    @Test
+    void testAsyncSendsReleaseSender() throws Exception {
+        var fixture = new Fixture(new OutboundSettings(2, 1000, 1024, OverflowPolicy.DROP_OLDEST, 1), true);
+        fixture.offer(1, "a");
+        fixture.offer(2, "b");
+        fixture.runSender();
+        // The sender only started the first send, the second waits for it to complete
+        assertThat(fixture.sent).containsExactly("a");
+        assertThat(fixture.queue.isFlushed()).isFalse();
+
+        fixture.completeSends(null);
+        fixture.runSender();
+        assertThat(fixture.sent).containsExactly("a", "b");
+        fixture.completeSends(null);
+        fixture.runSender();
+        assertThat(fixture.queue.isFlushed()).isTrue();
+        assertThat(fixture.failed).isEmpty();
+    }
+
+    @Test
+    void testStalledSendDisconnects() throws Exception {
+        var fixture = new Fixture(new OutboundSettings(2, 1, 1024, OverflowPolicy.DROP_OLDEST, 1), true);
+        fixture.offer(1, "a");
+        fixture.runSender();
+        Thread.sleep(10);
+        // Nothing else is offered, the periodic check still notices
+        assertThat(fixture.queue.checkStalled()).isTrue();
+        fixture.runSender();
+        assertThat(fixture.failed).hasSize(1);
+
+        // The send giving up afterwards doesn't remove the client again
+        fixture.completeSends(new java.io.IOException("Simulated timeout"));
+        fixture.runSender();
+        assertThat(fixture.failed).hasSize(1);
+        assertThat(fixture.queue.checkStalled()).isFalse();
+    }
+
+    // Queue with room for 2 messages, sender tasks are held until runSender() is invoked
+    private static class Fixture {
+        private final List<Runnable> tasks = new ArrayList<>();
+        private final List<String> sent = new ArrayList<>();
+        private final List<WebSocketSession> failed = new ArrayList<>();
+        private final List<Consumer<Throwable>> completions = new ArrayList<>();
+        private final OutboundQueue queue;
+        private boolean failSends;
+
+        Fixture(OverflowPolicy policy) throws Exception {
+            this(new OutboundSettings(2, 1000, 1024, policy, 1));
+        }
+
+        Fixture(OutboundSettings settings) throws Exception {
+            this(settings, false);
+        }
+
+        // Async sends are held until completeSends() is invoked
+        Fixture(OutboundSettings settings, boolean async) throws Exception {
+            WebSocketSession session;
+            if (async) {
+                session = mock(WebSocketSession.class, withSettings().extraInterfaces(AsyncMessageSender.class));
+                doAnswer(invocation -> {
+                    sent.add(invocation.<TextMessage>getArgument(0).getPayload());
+                    completions.add(invocation.getArgument(1));
+                    return null;
+                }).when((AsyncMessageSender) session).sendMessageAsync(any(), any());
+            } else {
+                session = mock(WebSocketSession.class);
+                doAnswer(invocation -> {
+                    if (failSends) {
+                        throw new java.io.IOException("Simulated failure");
+                    }
+                    sent.add(invocation.<TextMessage>getArgument(0).getPayload());
+                    return null;
+                }).when(session).sendMessage(any());
+            }
+            Executor executor = tasks::add;
+            queue = new OutboundQueue(session, settings, executor, failed::add);
+        }
+
+        void completeSends(Throwable error) {
+            var pending = new ArrayList<>(completions);
+            completions.clear();
+            pending.forEach(done -> done.accept(error));
+        }
+
+        OutboundQueue.Result offer(int id, String text) {
+            return queue.offer(id, new TextMessage(text));
+        }
+
+        void runSender() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+}
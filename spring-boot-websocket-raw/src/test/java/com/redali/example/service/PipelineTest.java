@@ -0,0 +1,149 @@
+package com.redali.example.service;
+
+import com.redali.example.handler.DiceRollHandler;
+import com.redali.example.handler.Execution;
+import com.redali.example.handler.PipelineHandler;
+import com.redali.example.handler.RequestHandler;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.JsonContent;
+import com.redali.example.message.ServerMessage;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.redali.example.support.WebSocketTestSupport.awaitCondition;
+import static com.redali.example.support.WebSocketTestSupport.awaitSize;
+import static com.redali.example.support.WebSocketTestSupport.capturingSession;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Requests from a client that asked for pipelining are processed side by side, responses go out as they are ready.
+ */
+class PipelineTest {
+    private static final int SLOW_REQUEST = 7;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(8);
+    private SessionServiceImpl service;
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    @Test
+    void testPipelineLimitsInFlight() throws Exception {
+        var pipeline = new RequestPipeline(3, 2);
+        var release = new CountDownLatch(1);
+        var running = new AtomicInteger();
+        var mostRunning = new AtomicInteger();
+        var started = new CountDownLatch(3);
+        var done = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            assertThat(pipeline.submit(() -> {
+                mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                started.countDown();
+                await(release);
+                running.decrementAndGet();
+                done.countDown();
+            }, pool)).isTrue();
+        }
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(pipeline.submit(done::countDown, null)).isFalse();
+        assertThat(pipeline.getInFlight()).isEqualTo(3);
+        assertThat(pipeline.isIdle()).isFalse();
+
+        release.countDown();
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(mostRunning.get()).isEqualTo(3);
+        assertThat(awaitCondition(pipeline::isIdle)).isTrue();
+        // Work run on the calling thread is done by the time it returns
+        var ran = new AtomicInteger();
+        assertThat(pipeline.submit(ran::incrementAndGet, null)).isTrue();
+        assertThat(ran.get()).isEqualTo(1);
+    }
+
+    // INLINE hands pipelined requests to a pool too, they couldn't overtake each other on the receiving thread
+    @ParameterizedTest
+    @EnumSource(value = ExecutionMode.class, names = {"INLINE", "POOL"})
+    void testPipelinedResponsesOvertakeSlowRequests(ExecutionMode mode) throws Exception {
+        var slow = new SlowHandler();
+        var settings = new ExecutionSettings(mode, 4, 100, 4);
+        service = SessionServiceImpl.builder()
+                .executionSettings(settings)
+                .handlers(List.of(new DiceRollHandler(), slow, new PipelineHandler(settings)))
+                .build();
+        var responses = new CopyOnWriteArrayList<JSONObject>();
+        var session = capturingSession("session", responses);
+        service.registerSession(session);
+
+        service.handleMessage(session, new TextMessage("{ \"request\": " + PipelineHandler.REQUEST_ID + " }"));
+        awaitSize(responses, 1);
+        var content = responses.get(0).getJSONObject(ServerMessage.CONTENT_KEY);
+        assertThat(content.getBoolean("pipelined")).isTrue();
+        assertThat(content.getInt("maxInFlight")).isEqualTo(4);
+
+        // The slow request is sent first, the dice rolls behind it don't wait for it
+        service.handleMessage(session, new TextMessage("{ \"request\": " + SLOW_REQUEST + ", \"cid\": 1 }"));
+        for (int cid = 2; cid <= 4; cid++) {
+            service.handleMessage(session, new TextMessage("{ \"request\": " + DiceRollHandler.REQUEST_ID
+                    + ", \"cid\": " + cid + " }"));
+        }
+        awaitSize(responses, 4);
+        slow.release.countDown();
+        awaitSize(responses, 5);
+        assertThat(responses.subList(1, 5)).extracting(response -> response.getLong(ServerMessage.CID_KEY))
+                .containsExactly(2L, 3L, 4L, 1L);
+
+        // Without a cid the request waits its turn as before
+        service.handleMessage(session, new TextMessage("{ \"request\": " + DiceRollHandler.REQUEST_ID + " }"));
+        awaitSize(responses, 6);
+        assertThat(responses.get(5).has(ServerMessage.CID_KEY)).isFalse();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Blocks until released
+    private static class SlowHandler implements RequestHandler {
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public int getRequestId() {
+            return SLOW_REQUEST;
+        }
+
+        @Override
+        public Execution getExecution() {
+            return Execution.BLOCKING;
+        }
+
+        @Override
+        public ServerMessage handle(@NotNull WebSocketSession session, @NotNull ClientRequest request)
+                throws JSONException {
+            await(release);
+            return new ServerMessage(SLOW_REQUEST, new JsonContent(new JSONObject().put("slow", true)));
+        }
+    }
+}
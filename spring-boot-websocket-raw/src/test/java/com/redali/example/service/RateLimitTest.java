@@ -0,0 +1,114 @@
+package com.redali.example.service;
+
+import com.redali.example.handler.DiceRollHandler;
+import com.redali.example.message.RateLimited;
+import com.redali.example.message.ServerMessage;
+import com.redali.example.metrics.WebSocketMetrics;
+import com.redali.example.ratelimit.RateLimit;
+import com.redali.example.ratelimit.RateLimitPolicy;
+import com.redali.example.ratelimit.RateLimitSettings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Requests over the rate limit are rejected, delayed or get the client disconnected.
+ */
+class RateLimitTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ArrayBlockingQueue<String> sent = new ArrayBlockingQueue<>(100);
+    private SessionServiceImpl service;
+
+    @AfterEach
+    void shutdown() {
+        service.close();
+    }
+
+    @Test
+    void testRequestsOverLimitAreRejected() throws Exception {
+        service = createService(RateLimitPolicy.REJECT);
+        var session = createSession();
+        service.registerSession(session);
+
+        service.handleMessage(session, new TextMessage(
+                "[ { \"request\": 1, \"cid\": 1 }, { \"request\": 1, \"cid\": 2 }, { \"request\": 1, \"cid\": 3 } ]"));
+        var responses = new JSONArray(sent.poll(5, TimeUnit.SECONDS));
+        assertThat(responses.length()).isEqualTo(3);
+        assertThat(responses.getJSONObject(0).getInt(ServerMessage.ID_KEY)).isEqualTo(DiceRollHandler.REQUEST_ID);
+        assertThat(responses.getJSONObject(1).getInt(ServerMessage.ID_KEY)).isEqualTo(DiceRollHandler.REQUEST_ID);
+        var limited = responses.getJSONObject(2);
+        assertThat(limited.getInt(ServerMessage.ID_KEY)).isEqualTo(RateLimited.MESSAGE_ID);
+        assertThat(limited.getLong(ServerMessage.CID_KEY)).isEqualTo(3);
+        assertThat(limited.getJSONObject(ServerMessage.CONTENT_KEY).getInt("request"))
+                .isEqualTo(DiceRollHandler.REQUEST_ID);
+        assertThat(limited.getJSONObject(ServerMessage.CONTENT_KEY).getLong("retryAfter")).isPositive();
+        assertThat(registry.get("websocket.requests.limited").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testClientOverLimitIsDisconnected() throws Exception {
+        service = createService(RateLimitPolicy.DISCONNECT);
+        var session = createSession();
+        service.registerSession(session);
+
+        service.handleMessage(session, new TextMessage("{ \"request\": 1 }"));
+        service.handleMessage(session, new TextMessage("{ \"request\": 1 }"));
+        assertThatThrownBy(() -> service.handleMessage(session, new TextMessage("{ \"request\": 1 }")))
+                .isInstanceOf(JSONException.class);
+    }
+
+    @Test
+    void testRequestsOverLimitAreDelayed() throws Exception {
+        service = createService(RateLimitPolicy.DELAY);
+        var session = createSession();
+        service.registerSession(session);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            service.handleMessage(session, new TextMessage("{ \"request\": 1 }"));
+        }
+        // Burst of 2, then 10 per second
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(190));
+        for (int i = 0; i < 4; i++) {
+            assertThat(sent.poll(5, TimeUnit.SECONDS)).contains("\"id\":1");
+        }
+        assertThat(registry.get("websocket.requests.delayed").functionCounter().count()).isEqualTo(2);
+        assertThat(registry.get("websocket.requests.limited").functionCounter().count()).isZero();
+    }
+
+    private SessionServiceImpl createService(RateLimitPolicy policy) {
+        var limits = new RateLimitSettings(new RateLimit(10, 2), RateLimit.UNLIMITED, Map.of(), policy, 1000);
+        return SessionServiceImpl.builder()
+                .rateLimitSettings(limits)
+                .handlers(List.of(new DiceRollHandler()))
+                .metrics(new WebSocketMetrics(registry))
+                .build();
+    }
+
+    private WebSocketSession createSession() throws Exception {
+        var session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("session");
+        when(session.isOpen()).thenReturn(true);
+        when(session.getRemoteAddress()).thenReturn(new InetSocketAddress("127.0.0.1", 4000));
+        doAnswer(invocation -> sent.add(((TextMessage) invocation.getArgument(0)).getPayload()))
+                .when(session).sendMessage(any());
+        return session;
+    }
+}
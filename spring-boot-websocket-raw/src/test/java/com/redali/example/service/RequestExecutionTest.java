@@ -0,0 +1,213 @@
+package com.redali.example.service;
+
+import com.redali.example.handler.DiceRollHandler;
+import com.redali.example.handler.Execution;
+import com.redali.example.handler.RequestHandler;
+import com.redali.example.message.ClientRequest;
+import com.redali.example.message.JsonContent;
+import com.redali.example.message.ServerMessage;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.redali.example.support.WebSocketTestSupport.awaitCondition;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Requests handed off the container thread must still be processed one at a time in order for each client.
+ */
+class RequestExecutionTest {
+    private static final int SLOW_REQUEST = 5;
+    private static final int FAILING_REQUEST = 6;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+    private SessionServiceImpl service;
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    @Test
+    void testSequencerKeepsOrder() throws Exception {
+        var sequencer = new RequestSequencer(10_000);
+        var order = Collections.synchronizedList(new ArrayList<Integer>());
+        var running = new AtomicInteger();
+        var overlapped = new AtomicInteger();
+        var done = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            int task = i;
+            // Mix tasks run on the pool with tasks run by whichever thread gets to them
+            assertThat(sequencer.submit(() -> {
+                if (running.incrementAndGet() > 1) {
+                    overlapped.incrementAndGet();
+                }
+                order.add(task);
+                running.decrementAndGet();
+                done.countDown();
+            }, i % 3 == 0 ? null : pool)).isTrue();
+        }
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(overlapped.get()).isZero();
+        for (int i = 0; i < order.size(); i++) {
+            assertThat(order.get(i)).isEqualTo(i);
+        }
+        assertThat(sequencer.getPending()).isZero();
+    }
+
+    @Test
+    void testSequencerRejectsWhenTooMuchPending() throws Exception {
+        var sequencer = new RequestSequencer(2);
+        var release = new CountDownLatch(1);
+        var ran = new AtomicInteger();
+        assertThat(sequencer.submit(() -> await(release), pool)).isTrue();
+        assertThat(sequencer.submit(ran::incrementAndGet, null)).isTrue();
+        assertThat(sequencer.submit(ran::incrementAndGet, pool)).isTrue();
+        assertThat(sequencer.submit(ran::incrementAndGet, null)).isFalse();
+        assertThat(sequencer.getPending()).isEqualTo(2);
+
+        release.countDown();
+        awaitCondition(() -> ran.get() >= 2);
+        assertThat(ran.get()).isEqualTo(2);
+        assertThat(sequencer.submit(ran::incrementAndGet, null)).isTrue();
+        assertThat(ran.get()).isEqualTo(3);
+    }
+
+    @Test
+    void testRequestsOffloadedInOrder() throws Exception {
+        var slow = new SlowHandler();
+        service = createService(new ExecutionSettings(ExecutionMode.POOL, 4, 100), slow);
+        var session = createSession();
+        var responses = Collections.synchronizedList(new ArrayList<JSONObject>());
+        var received = new CountDownLatch(20);
+        doAnswer(invocation -> {
+            responses.add(new JSONObject(((TextMessage) invocation.getArgument(0)).getPayload()));
+            received.countDown();
+            return null;
+        }).when(session).sendMessage(any());
+        service.registerSession(session);
+
+        // Returns before the slow requests are processed, trivial requests queue up behind them
+        for (int cid = 0; cid < 20; cid++) {
+            int type = cid % 2 == 0 ? SLOW_REQUEST : DiceRollHandler.REQUEST_ID;
+            service.handleMessage(session, new TextMessage("{ \"request\": " + type + ", \"cid\": " + cid + " }"));
+        }
+        assertThat(received.getCount()).isEqualTo(20);
+        slow.release.countDown();
+
+        assertThat(received.await(10, TimeUnit.SECONDS)).isTrue();
+        for (int cid = 0; cid < 20; cid++) {
+            assertThat(responses.get(cid).getLong(ServerMessage.CID_KEY)).isEqualTo(cid);
+        }
+        assertThat(slow.threads).allMatch(name -> name.startsWith("ws-request-"));
+    }
+
+    @Test
+    void testFailedRequestClosesSession() throws Exception {
+        service = createService(new ExecutionSettings(ExecutionMode.POOL, 2, 10), new SlowHandler());
+        var session = createSession();
+        service.registerSession(session);
+
+        service.handleMessage(session, new TextMessage("{ \"request\": " + FAILING_REQUEST + " }"));
+        verify(session, timeout(5000)).close();
+        assertThat(service.getSessions()).isEmpty();
+    }
+
+    @Test
+    void testVirtualFallsBackToPoolOnOlderRuntimes() {
+        try (var executors = new RequestExecutors(new ExecutionSettings(ExecutionMode.VIRTUAL, 2, 10))) {
+            boolean hasVirtualThreads = Runtime.version().feature() >= 21;
+            assertThat(executors.getMode()).isEqualTo(hasVirtualThreads ? ExecutionMode.VIRTUAL : ExecutionMode.POOL);
+            assertThat(executors.executorFor(Execution.TRIVIAL)).isNull();
+            assertThat(executors.executorFor(Execution.BLOCKING)).isNotNull();
+            assertThat(executors.executorFor(Execution.CPU_BOUND)).isNotNull();
+        }
+        try (var executors = new RequestExecutors(new ExecutionSettings(ExecutionMode.INLINE, 2, 10))) {
+            assertThat(executors.isInline()).isTrue();
+        }
+    }
+
+    private static SessionServiceImpl createService(ExecutionSettings settings, SlowHandler slow) {
+        var failing = new RequestHandler() {
+            @Override
+            public int getRequestId() {
+                return FAILING_REQUEST;
+            }
+
+            @Override
+            public Execution getExecution() {
+                return Execution.BLOCKING;
+            }
+
+            @Override
+            public ServerMessage handle(@NotNull WebSocketSession session, @NotNull ClientRequest request) {
+                throw new IllegalStateException("Handler failed");
+            }
+        };
+        return SessionServiceImpl.builder()
+                .executionSettings(settings)
+                .handlers(List.of(new DiceRollHandler(), slow, failing))
+                .build();
+    }
+
+    private static WebSocketSession createSession() {
+        var session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("session");
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Blocks until released, records which threads it ran on
+    private static class SlowHandler implements RequestHandler {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public int getRequestId() {
+            return SLOW_REQUEST;
+        }
+
+        @Override
+        public Execution getExecution() {
+            return Execution.BLOCKING;
+        }
+
+        @Override
+        public ServerMessage handle(@NotNull WebSocketSession session, @NotNull ClientRequest request)
+                throws JSONException {
+            await(release);
+            threads.add(Thread.currentThread().getName());
+            return new ServerMessage(SLOW_REQUEST, new JsonContent(new JSONObject().put("slow", true)));
+        }
+    }
+}
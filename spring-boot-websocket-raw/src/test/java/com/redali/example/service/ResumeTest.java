@@ -0,0 +1,133 @@
+package com.redali.example.service;
+
+import com.redali.example.handler.ResumeHandler;
+import com.redali.example.message.Resume;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.redali.example.support.WebSocketTestSupport.awaitSize;
+import static com.redali.example.support.WebSocketTestSupport.capturingSession;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResumeTest {
+    private SessionServiceImpl service;
+
+    @AfterEach
+    void shutdown() {
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    @Test
+    void testRingFollowsSessionChainUntilOverwritten() {
+        var ring = new ReplayRing(1024);
+        long first = ReplayRing.NONE;
+        long second = ReplayRing.NONE;
+        // Two sessions writing to the ring in turn
+        for (int seq = 1; seq <= 3; seq++) {
+            first = ring.append(first, seq, new TextMessage("first-" + seq));
+            second = ring.append(second, seq, new TextMessage("second-" + seq));
+        }
+        assertThat(ring.read(first, 3, 2)).extracting(frame -> ((TextMessage) frame).getPayload())
+                .containsExactly("first-2", "first-3");
+        assertThat(ring.read(second, 3, 3)).extracting(frame -> ((TextMessage) frame).getPayload())
+                .containsExactly("second-1", "second-2", "second-3");
+        // Only three frames were ever kept for the session
+        assertThat(ring.read(first, 3, 4)).isNull();
+
+        // Wrap around the ring a few times, the first session's frames are gone
+        for (int seq = 4; seq < 100; seq++) {
+            second = ring.append(second, seq, new TextMessage("second-" + seq));
+        }
+        assertThat(ring.getWritePosition()).isGreaterThan(2048);
+        assertThat(ring.read(first, 3, 1)).isNull();
+        assertThat(ring.read(second, 99, 10)).extracting(frame -> ((TextMessage) frame).getPayload())
+                .startsWith("second-90").endsWith("second-99");
+        // Too big to keep at all
+        assertThat(ring.append(second, 100, new TextMessage("x".repeat(600)))).isEqualTo(ReplayRing.NONE);
+    }
+
+    @Test
+    void testResumeReplaysMissedFramesAndSubscriptions() throws Exception {
+        service = new SessionServiceImpl();
+        var firstFrames = new CopyOnWriteArrayList<JSONObject>();
+        var first = capturingSession("first", firstFrames);
+        service.registerSession(first);
+        service.handleMessage(first, new TextMessage("{ \"request\": 3, \"topic\": \"news\" }"));
+        service.handleMessage(first, new TextMessage("{ \"request\": 5 }"));
+        service.broadcast(200, new JSONObject().put("n", 1));
+        awaitSize(firstFrames, 3);
+        assertThat(firstFrames.get(0).has("seq")).isFalse();
+        var started = firstFrames.get(1);
+        assertThat(started.getInt("id")).isEqualTo(ResumeHandler.REQUEST_ID);
+        assertThat(started.getLong("seq")).isEqualTo(1);
+        assertThat(started.getJSONObject("content").getBoolean("resumed")).isFalse();
+        String token = started.getJSONObject("content").getString("token");
+        assertThat(firstFrames.get(2).getLong("seq")).isEqualTo(2);
+
+        // Client goes away without getting the next broadcast, more is pushed while it is away
+        service.broadcast(200, new JSONObject().put("n", 2));
+        awaitSize(firstFrames, 4);
+        service.unregisterSession(first);
+        service.broadcast(200, new JSONObject().put("n", 3));
+        service.publish("news", 300, new JSONObject().put("headline", "Dice are random"));
+        service.publish("weather", 300, null);
+
+        var secondFrames = new CopyOnWriteArrayList<JSONObject>();
+        var second = capturingSession("second", secondFrames);
+        service.registerSession(second);
+        service.handleMessage(second, new TextMessage(
+                new JSONObject().put("request", 5).put("token", token).put("seq", 2).toString()));
+        awaitSize(secondFrames, 4);
+        assertThat(secondFrames).extracting(frame -> frame.getLong("seq")).containsExactly(3L, 4L, 5L, 6L);
+        assertThat(secondFrames.get(0).getJSONObject("content").getInt("n")).isEqualTo(2);
+        assertThat(secondFrames.get(1).getJSONObject("content").getInt("n")).isEqualTo(3);
+        assertThat(secondFrames.get(2).getInt("id")).isEqualTo(300);
+        var resumed = secondFrames.get(3).getJSONObject("content");
+        assertThat(resumed.getBoolean("resumed")).isTrue();
+        assertThat(resumed.getInt("replayed")).isEqualTo(3);
+
+        // Subscription moved to the new session
+        assertThat(service.publish("news", 300, null).delivered()).isEqualTo(1);
+        awaitSize(secondFrames, 5);
+        assertThat(secondFrames.get(4).getLong("seq")).isEqualTo(7);
+    }
+
+    @Test
+    void testResumeFailsWhenTooMuchWasMissedOrTooLongAgo() throws Exception {
+        var now = new AtomicLong();
+        var resumes = new ResumeRegistry(new ResumeSettings(4096, 2, 1000), new TopicRegistry(), now::get);
+        var first = capturingSession("first", new CopyOnWriteArrayList<>());
+        String token = resumes.start(first).token();
+        var stream = resumes.get(first);
+        for (int i = 0; i < 3; i++) {
+            long seq = stream.next();
+            stream.record(seq, new TextMessage("{\"seq\":" + seq + "}"));
+        }
+        resumes.sessionClosed(first);
+        assertThat(resumes.size()).isEqualTo(1);
+
+        // Missed three frames, only two are kept
+        var second = capturingSession("second", new CopyOnWriteArrayList<>());
+        var failed = resumes.resume(second, token, 0);
+        assertThat(failed.resumed()).isFalse();
+        assertThat(failed.token()).isNotEqualTo(token);
+        assertThat(resumes.resume(second, token, 1)).isEqualTo(new Resume(token, true, 2));
+        assertThat(resumes.get(second)).isSameAs(stream);
+        assertThat(stream.takeReplay()).hasSize(2);
+
+        // Gone once the retention time has passed
+        resumes.sessionClosed(second);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        var third = capturingSession("third", new CopyOnWriteArrayList<>());
+        assertThat(resumes.resume(third, token, 3).resumed()).isFalse();
+        assertThat(resumes.size()).isEqualTo(1);
+    }
+}
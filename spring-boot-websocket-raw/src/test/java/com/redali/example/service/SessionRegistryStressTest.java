@@ -0,0 +1,158 @@
+package com.redali.example.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Hammers the session registry of {@link SessionServiceImpl} from many threads at once.
+ */
+@Slf4j
+class SessionRegistryStressTest {
+    private static final int WRITERS = 8;
+    private static final int SESSIONS_PER_WRITER = 2_000;
+    private static final int STABLE_SESSIONS = 10_000;
+    private static final int CHURN_ROUNDS = 5;
+
+    private final SessionServiceImpl service = new SessionServiceImpl();
+    private final ExecutorService threads = Executors.newFixedThreadPool(WRITERS + 2);
+
+    @AfterEach
+    void shutdown() {
+        threads.shutdownNow();
+        service.close();
+    }
+
+    @Test
+    void testChurnWhileIterating() throws Exception {
+        var stable = createSessions("stable", STABLE_SESSIONS);
+        stable.forEach(service::registerSession);
+        var churn = new ArrayList<List<WebSocketSession>>();
+        for (int i = 0; i < WRITERS; i++) {
+            churn.add(createSessions("churn-" + i, SESSIONS_PER_WRITER));
+        }
+
+        var running = new AtomicBoolean(true);
+        var start = new CountDownLatch(1);
+        var readers = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < 2; i++) {
+            readers.add(threads.submit(() -> {
+                start.await();
+                int iterations = 0;
+                while (running.get()) {
+                    // Every session that stays registered must be seen exactly once on every pass
+                    var seen = new HashSet<String>();
+                    for (var session : service.getSessions()) {
+                        assertThat(seen.add(session.getId())).isTrue();
+                    }
+                    for (var session : stable) {
+                        assertThat(seen).contains(session.getId());
+                    }
+                    iterations++;
+                }
+                return iterations;
+            }));
+        }
+
+        var writers = new ArrayList<Future<Long>>();
+        for (var sessions : churn) {
+            writers.add(threads.submit(churn(sessions, start)));
+        }
+        start.countDown();
+        long operations = 0;
+        for (var writer : writers) {
+            operations += writer.get(60, TimeUnit.SECONDS);
+        }
+        running.set(false);
+        for (var reader : readers) {
+            assertThat(reader.get(60, TimeUnit.SECONDS)).isPositive();
+        }
+
+        // Writers leave their sessions registered after the last round
+        int expected = STABLE_SESSIONS + WRITERS * SESSIONS_PER_WRITER;
+        assertThat(service.getSessions()).hasSize(expected);
+        var ids = new HashSet<String>();
+        service.getSessions().forEach(session -> ids.add(session.getId()));
+        assertThat(ids).hasSize(expected);
+        log.info("Registry churn completed {} register/unregister operations", operations);
+    }
+
+    @Test
+    void testRegistryThroughput() throws Exception {
+        var batches = new ArrayList<List<WebSocketSession>>();
+        for (int i = 0; i < WRITERS; i++) {
+            batches.add(createSessions("load-" + i, SESSIONS_PER_WRITER));
+        }
+        var start = new CountDownLatch(1);
+        var writers = new ArrayList<Future<Long>>();
+        for (var sessions : batches) {
+            writers.add(threads.submit(churn(sessions, start)));
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        long operations = 0;
+        for (var writer : writers) {
+            operations += writer.get(60, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - began;
+
+        // Time a full iteration over every registered session
+        long iterateStart = System.nanoTime();
+        int count = 0;
+        for (var ignored : service.getSessions()) {
+            count++;
+        }
+        long iterateElapsed = System.nanoTime() - iterateStart;
+
+        assertThat(count).isEqualTo(WRITERS * SESSIONS_PER_WRITER);
+        log.info("Registry: {} threads, {} sessions, {} ops/sec register/unregister, {} us to iterate all sessions",
+                WRITERS, count, operations * TimeUnit.SECONDS.toNanos(1) / elapsed,
+                TimeUnit.NANOSECONDS.toMicros(iterateElapsed));
+    }
+
+    // Repeatedly register and unregister all sessions, leaves them all registered, returns operation count
+    private Callable<Long> churn(List<WebSocketSession> sessions, CountDownLatch start) {
+        return () -> {
+            start.await();
+            long operations = 0;
+            for (int round = 0; round < CHURN_ROUNDS; round++) {
+                for (var session : sessions) {
+                    service.registerSession(session);
+                }
+                for (var session : sessions) {
+                    service.unregisterSession(session);
+                }
+                operations += 2L * sessions.size();
+            }
+            sessions.forEach(service::registerSession);
+            return operations + sessions.size();
+        };
+    }
+
+    private static List<WebSocketSession> createSessions(String prefix, int count) {
+        var sessions = new ArrayList<WebSocketSession>(count);
+        for (int i = 0; i < count; i++) {
+            var session = mock(WebSocketSession.class, withSettings().stubOnly());
+            when(session.getId()).thenReturn(prefix + "-" + i);
+            sessions.add(session);
+        }
+        return sessions;
+    }
+}
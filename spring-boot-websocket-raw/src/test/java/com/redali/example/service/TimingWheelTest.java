@@ -0,0 +1,95 @@
+package com.redali.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimingWheelTest {
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void testTasksRunOnTheirTick() {
+        var wheel = new TimingWheel(8, TICK);
+        var ran = new ArrayList<String>();
+        wheel.schedule(() -> ran.add("one"), 10, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> ran.add("three"), 25, TimeUnit.MILLISECONDS);
+        // Further out than one rotation, passes its slot twice before it is due
+        wheel.schedule(() -> ran.add("twenty"), 200, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> ran.add("now"), 0, TimeUnit.MILLISECONDS);
+        assertThat(wheel.size()).isEqualTo(4);
+
+        var runs = advance(wheel, 20);
+        assertThat(ran.subList(0, 2)).containsExactlyInAnyOrder("one", "now");
+        assertThat(ran.subList(2, 4)).containsExactly("three", "twenty");
+        assertThat(runs.get(0)).isEqualTo(2);
+        assertThat(runs.get(2)).isEqualTo(1);
+        assertThat(runs.get(19)).isEqualTo(1);
+        assertThat(runs.stream().mapToInt(Integer::intValue).sum()).isEqualTo(4);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void testCancelledTasksNeverRun() {
+        var wheel = new TimingWheel(8, TICK);
+        var ran = new AtomicInteger();
+        wheel.schedule(ran::incrementAndGet, 0, TimeUnit.MILLISECONDS).cancel();
+        var timeout = wheel.schedule(ran::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        wheel.advance();
+        assertThat(wheel.size()).isEqualTo(1);
+        timeout.cancel();
+        assertThat(timeout.isCancelled()).isTrue();
+
+        advance(wheel, 16);
+        assertThat(ran.get()).isZero();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void testTasksCanRescheduleThemselves() {
+        var wheel = new TimingWheel(4, TICK);
+        var ran = new AtomicInteger();
+        var failing = new AtomicInteger();
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (ran.incrementAndGet() < 5) {
+                    wheel.schedule(this, 30, TimeUnit.MILLISECONDS);
+                }
+            }
+        }, 30, TimeUnit.MILLISECONDS);
+        // A failing task must not stop the others on the same tick
+        wheel.schedule(() -> {
+            failing.incrementAndGet();
+            throw new IllegalStateException("Task failed");
+        }, 30, TimeUnit.MILLISECONDS);
+
+        advance(wheel, 15);
+        assertThat(ran.get()).isEqualTo(5);
+        assertThat(failing.get()).isEqualTo(1);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void testWheelSizeMustBePowerOfTwo() {
+        assertThatThrownBy(() -> new TimingWheel(100, TICK)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HeartbeatSettings(1000, 3000, 10, 100))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HeartbeatSettings(1000, 500, 10, 128))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Number of tasks run on each tick
+    private static List<Integer> advance(TimingWheel wheel, int ticks) {
+        var runs = new ArrayList<Integer>();
+        for (int i = 0; i < ticks; i++) {
+            runs.add(wheel.advance());
+        }
+        return runs;
+    }
+}
@@ -0,0 +1,68 @@
+package com.redali.example.service;
+
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TopicRegistryTest {
+    private final TopicRegistry topics = new TopicRegistry();
+
+    @Test
+    void testSubscribeAndUnsubscribe() throws Exception {
+        var one = createSession("one");
+        var two = createSession("two");
+        assertThat(topics.subscribe(one, "news")).isTrue();
+        assertThat(topics.subscribe(one, "news")).isFalse();
+        assertThat(topics.subscribe(one, "sports")).isTrue();
+        assertThat(topics.subscribe(two, "news")).isTrue();
+        assertThat(topics.getSubscribers("news")).containsExactlyInAnyOrder(one, two);
+        assertThat(topics.getSubscribers("sports")).containsExactly(one);
+        assertThat(topics.getSubscribers("weather")).isEmpty();
+        assertThat(topics.getTopics(one)).containsExactlyInAnyOrder("news", "sports");
+        assertThat(topics.getTopicCount()).isEqualTo(2);
+
+        assertThat(topics.unsubscribe(two, "news")).isTrue();
+        assertThat(topics.unsubscribe(two, "news")).isFalse();
+        assertThat(topics.getSubscribers("news")).containsExactly(one);
+
+        // Both indexes are emptied when a session goes away, topics go with their last subscriber
+        topics.unsubscribeAll(one);
+        assertThat(topics.getTopics(one)).isEmpty();
+        assertThat(topics.getSubscribers("news")).isEmpty();
+        assertThat(topics.getTopicCount()).isZero();
+    }
+
+    @Test
+    void testLimits() throws Exception {
+        var session = createSession("one");
+        for (var bad : new String[]{null, "", "x".repeat(TopicRegistry.MAX_TOPIC_LENGTH + 1)}) {
+            assertThatThrownBy(() -> topics.subscribe(session, bad)).isInstanceOf(JSONException.class);
+        }
+        for (int i = 0; i < TopicRegistry.MAX_TOPICS_PER_SESSION; i++) {
+            topics.subscribe(session, "topic-" + i);
+        }
+        assertThat(topics.subscribe(session, "topic-0")).isFalse();
+        assertThatThrownBy(() -> topics.subscribe(session, "one-too-many")).isInstanceOf(JSONException.class);
+    }
+
+    @Test
+    void testClosedSessionNotLeftBehind() throws Exception {
+        var session = createSession("one");
+        when(session.isOpen()).thenReturn(false);
+        assertThat(topics.subscribe(session, "news")).isFalse();
+        assertThat(topics.getSubscribers("news")).isEmpty();
+        assertThat(topics.getTopicCount()).isZero();
+    }
+
+    private static WebSocketSession createSession(String id) {
+        var session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+}
@@ -0,0 +1,105 @@
+package com.redali.example.support;
+
+import com.redali.example.service.SessionService;
+import org.json.JSONObject;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Fixtures and waits shared by the tests of things that send to clients from other threads.
+ */
+public final class WebSocketTestSupport {
+    // Longest a test waits for something done on another thread (far longer than it should ever take)
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private WebSocketTestSupport() {
+    }
+
+    /**
+     * Create an open session that decodes every text message sent to it.
+     *
+     * @param id     Session ID.
+     * @param frames Where the messages sent are added (must be safe to add to from other threads).
+     * @return Mocked session.
+     * @throws IOException Never (declared by the mocked send).
+     */
+    public static WebSocketSession capturingSession(String id, List<JSONObject> frames) throws IOException {
+        var session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            frames.add(new JSONObject(((TextMessage) invocation.getArgument(0)).getPayload()));
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+
+    /**
+     * Wait for something done on another thread to happen.
+     *
+     * @param condition Checked every 10 milliseconds.
+     * @return True once the condition holds, false if it still didn't after 10 seconds.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public static boolean awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Build the address a test client connects to, unique to that client so its session can be told apart on the
+     * server.
+     *
+     * @param port Server port.
+     * @param path Endpoint path.
+     * @return WebSocket URI with a random "client" query parameter.
+     */
+    public static URI clientUri(int port, String path) {
+        return URI.create("ws://localhost:" + port + path + "?client=" + UUID.randomUUID());
+    }
+
+    /**
+     * Wait for the server to register the session of a client (it may see the connection before the server has).
+     *
+     * @param sessionService Service the server registers sessions with.
+     * @param uri            Address the client connected to (from {@link #clientUri(int, String)}).
+     * @return True once registered, false if it still wasn't after 10 seconds.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public static boolean awaitRegistered(SessionService sessionService, URI uri) throws InterruptedException {
+        return awaitCondition(() -> sessionService.getSessions().stream()
+                .anyMatch(session -> session.getUri() != null && uri.getQuery().equals(session.getUri().getQuery())));
+    }
+
+    /**
+     * Wait for items added on another thread, failing the test unless exactly that many arrive.
+     *
+     * @param items Items being added to.
+     * @param size  Number of items expected.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public static void awaitSize(Collection<?> items, int size) throws InterruptedException {
+        awaitCondition(() -> items.size() >= size);
+        assertThat(items).hasSize(size);
+    }
+}
@@ -0,0 +1,119 @@
+package com.redali.example.task;
+
+import com.redali.example.service.BroadcastStats;
+import com.redali.example.service.SessionService;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The health report is only pushed (whole or as a delta) when it changes, with a keyframe every so often.
+ */
+class PeriodicHealthTest {
+    private static final long KEYFRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(60000);
+
+    private final SessionService sessionService = mock(SessionService.class);
+    private final List<Pushed> pushed = new ArrayList<>();
+    private final AtomicLong clock = new AtomicLong();
+
+    @BeforeEach
+    void setup() {
+        setSessionCount(1);
+        when(sessionService.broadcast(anyInt(), any())).thenAnswer(invocation -> {
+            pushed.add(new Pushed(invocation.getArgument(0), invocation.getArgument(1)));
+            return new BroadcastStats(1, 1, 0, 0, 0);
+        });
+    }
+
+    @Test
+    void testFullSendsEveryTime() throws Exception {
+        var health = createHealth(HealthMode.FULL);
+        health.periodicHealth();
+        health.periodicHealth();
+        assertThat(pushed).extracting(Pushed::id).containsExactly(200, 200);
+        assertThat(pushed.get(1).content().getLong("version")).isEqualTo(1);
+        assertThat(pushed.get(1).content().getInt("sessionCount")).isEqualTo(1);
+    }
+
+    @Test
+    void testChangesOnlySentWhenChanged() throws Exception {
+        var health = createHealth(HealthMode.CHANGES);
+        health.periodicHealth();
+        health.periodicHealth();
+        assertThat(pushed).hasSize(1);
+
+        setSessionCount(2);
+        health.periodicHealth();
+        assertThat(pushed).extracting(Pushed::id).containsExactly(200, 200);
+        assertThat(pushed.get(1).content().getLong("version")).isEqualTo(2);
+        assertThat(pushed.get(1).content().getInt("sessionCount")).isEqualTo(2);
+        assertThat(pushed.get(1).content().getString("status")).isEqualTo("UP");
+
+        // Nothing changed, but it's time for a keyframe
+        clock.addAndGet(KEYFRAME_NANOS);
+        health.periodicHealth();
+        assertThat(pushed).hasSize(3);
+        assertThat(pushed.get(2).content().getLong("version")).isEqualTo(2);
+    }
+
+    @Test
+    void testDeltaHasChangedFieldsOnly() throws Exception {
+        var health = createHealth(HealthMode.DELTA);
+        health.periodicHealth();
+        health.periodicHealth();
+        setSessionCount(3);
+        health.periodicHealth();
+
+        assertThat(pushed).extracting(Pushed::id).containsExactly(200, 201);
+        var delta = pushed.get(1).content();
+        assertThat(delta.getLong("version")).isEqualTo(2);
+        assertThat(delta.getLong("base")).isEqualTo(1);
+        assertThat(delta.getInt("sessionCount")).isEqualTo(3);
+        assertThat(delta.getInt("nodeSessionCount")).isEqualTo(3);
+        assertThat(delta.has("status")).isFalse();
+
+        clock.addAndGet(KEYFRAME_NANOS);
+        health.periodicHealth();
+        assertThat(pushed).extracting(Pushed::id).containsExactly(200, 201, 200);
+        assertThat(pushed.get(2).content().has("base")).isFalse();
+    }
+
+    @Test
+    void testDiffMarksRemovedFields() throws Exception {
+        var previous = new JSONObject().put("a", 1).put("b", "x").put("c", true);
+        var current = new JSONObject().put("a", 1).put("b", "y").put("d", 4);
+        var changes = PeriodicHealth.diff(previous, current);
+        assertThat(changes.length()).isEqualTo(3);
+        assertThat(changes.getString("b")).isEqualTo("y");
+        assertThat(changes.getInt("d")).isEqualTo(4);
+        assertThat(changes.isNull("c")).isTrue();
+    }
+
+    private PeriodicHealth createHealth(HealthMode mode) {
+        return new PeriodicHealth(sessionService, new HealthSettings(mode, 60000), clock::get);
+    }
+
+    private void setSessionCount(int count) {
+        var sessions = new ArrayList<WebSocketSession>();
+        for (int i = 0; i < count; i++) {
+            sessions.add(mock(WebSocketSession.class));
+        }
+        when(sessionService.getClusterSessionCount()).thenReturn(count);
+        when(sessionService.getSessions()).thenAnswer(invocation -> sessions);
+    }
+
+    private record Pushed(int id, JSONObject content) {
+    }
+}
@@ -0,0 +1,34 @@
+package com.redali.example;
+
+import com.redali.example.config.JsonMessageWebSocketConfig;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationExcludeFilter;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Entry point into the reactive application.
+ *
+ * <p>Same application as spring-boot-websocket-raw, served by Reactor Netty through WebFlux instead of a servlet
+ * container. We will just hand control over to spring-boot.</p>
+ *
+ * <p>The same as {@code @SpringBootApplication}, except the servlet entry point and endpoint that come with the
+ * spring-boot-websocket-raw jar are left out of the component scan.</p>
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@ComponentScan(excludeFilters = {
+        @ComponentScan.Filter(type = FilterType.CUSTOM, classes = TypeExcludeFilter.class),
+        @ComponentScan.Filter(type = FilterType.CUSTOM, classes = AutoConfigurationExcludeFilter.class),
+        @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE,
+                classes = {Main.class, JsonMessageWebSocketConfig.class})})
+@EnableScheduling
+public class ReactiveMain {
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveMain.class, args);
+    }
+}
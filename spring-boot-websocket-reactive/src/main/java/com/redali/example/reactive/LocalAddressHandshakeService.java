@@ -0,0 +1,44 @@
+package com.redali.example.reactive;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.reactive.socket.server.RequestUpgradeStrategy;
+import org.springframework.web.reactive.socket.server.support.HandshakeWebSocketService;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * Handshake that passes the server side address of the connection on to the {@link ReactiveWebSocketBridge} (session
+ * info responses report it, the reactive handshake info only has the client's address).
+ */
+class LocalAddressHandshakeService extends HandshakeWebSocketService {
+
+    LocalAddressHandshakeService(@NotNull RequestUpgradeStrategy upgradeStrategy) {
+        super(upgradeStrategy);
+    }
+
+    @Override
+    public @NotNull Mono<Void> handleRequest(@NotNull ServerWebExchange exchange, @NotNull WebSocketHandler handler) {
+        if (handler instanceof ReactiveWebSocketBridge bridge) {
+            handler = new LocalAddressHandler(bridge, exchange.getRequest().getLocalAddress());
+        }
+        return super.handleRequest(exchange, handler);
+    }
+
+    private record LocalAddressHandler(ReactiveWebSocketBridge bridge, InetSocketAddress localAddress)
+            implements WebSocketHandler {
+        @Override
+        public @NotNull List<String> getSubProtocols() {
+            return bridge.getSubProtocols();
+        }
+
+        @Override
+        public @NotNull Mono<Void> handle(@NotNull WebSocketSession session) {
+            return bridge.handle(session, localAddress);
+        }
+    }
+}
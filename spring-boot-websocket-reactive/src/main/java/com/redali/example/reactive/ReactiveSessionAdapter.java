@@ -0,0 +1,272 @@
+package com.redali.example.reactive;
+
+import com.redali.example.service.AsyncMessageSender;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Makes a reactive WebSocket session look like a spring-websocket one, so the session service and its controllers
+ * can use it unchanged.
+ *
+ * <p>Sending never blocks: messages go into a sink that Reactor Netty drains as the connection can take them, and a
+ * send is done once Reactor Netty has taken its message. A client that reads slowly leaves the send outstanding, its
+ * messages wait on its outbound queue and the queue's overflow policy and send time limit apply, the same as on a
+ * servlet container.</p>
+ */
+class ReactiveSessionAdapter implements WebSocketSession, AsyncMessageSender {
+    private static final Consumer<Throwable> IGNORE = error -> {
+    };
+
+    private final org.springframework.web.reactive.socket.WebSocketSession session;
+    private final InetSocketAddress localAddress;
+    private final Consumer<ReactiveSessionAdapter> onClosed;
+    private final Sinks.Many<Outgoing> sink = Sinks.many().unicast().onBackpressureBuffer(Queues.<Outgoing>small().get());
+    private final AtomicBoolean closedNotified = new AtomicBoolean();
+    private volatile CloseStatus closeStatus;
+    private volatile boolean closed;
+    private int textMessageSizeLimit = Integer.MAX_VALUE;
+    private int binaryMessageSizeLimit = Integer.MAX_VALUE;
+
+    /**
+     * Construct adapter.
+     *
+     * @param session      Reactive session.
+     * @param localAddress Server side address of the connection (null if not known).
+     * @param onClosed     Invoked once when the session is closed, by either side.
+     */
+    ReactiveSessionAdapter(@NotNull org.springframework.web.reactive.socket.WebSocketSession session,
+                           InetSocketAddress localAddress, @NotNull Consumer<ReactiveSessionAdapter> onClosed) {
+        this.session = session;
+        this.localAddress = localAddress;
+        this.onClosed = onClosed;
+    }
+
+    /**
+     * Get the messages sent, for the reactive session to write out.
+     *
+     * @return Messages as they are sent (only subscribe once).
+     */
+    Flux<org.springframework.web.reactive.socket.WebSocketMessage> outbound() {
+        return sink.asFlux()
+                .doOnNext(outgoing -> outgoing.done().accept(null))
+                .map(Outgoing::message)
+                .doOnDiscard(Outgoing.class, outgoing -> outgoing.done().accept(new IOException("Session is closed")));
+    }
+
+    /**
+     * No more messages will be sent (the connection is going away).
+     */
+    void complete() {
+        synchronized (sink) {
+            closed = true;
+            sink.tryEmitComplete();
+        }
+    }
+
+    /**
+     * Tell whoever is interested that the session is closed, only the first call does anything.
+     */
+    void notifyClosed() {
+        if (closedNotified.compareAndSet(false, true)) {
+            onClosed.accept(this);
+        }
+    }
+
+    /**
+     * Get the status the connection was closed with.
+     *
+     * @return Status passed to {@link #close(CloseStatus)}, normal closure if the server didn't close it.
+     */
+    CloseStatus getCloseStatus() {
+        var status = closeStatus;
+        return status != null ? status : CloseStatus.NORMAL;
+    }
+
+    /**
+     * Turn a message received from the client into the spring-websocket kind.
+     *
+     * <p>The payload is copied out, the reactive message's buffer is released once this returns.</p>
+     *
+     * @param message Message from the client.
+     * @return Same message, or null for a ping (the server answers those itself).
+     */
+    static WebSocketMessage<?> toSpringMessage(
+            @NotNull org.springframework.web.reactive.socket.WebSocketMessage message) {
+        return switch (message.getType()) {
+            case TEXT -> new TextMessage(message.getPayloadAsText());
+            case BINARY -> new BinaryMessage(copy(message.getPayload()));
+            case PONG -> new PongMessage(ByteBuffer.wrap(copy(message.getPayload())));
+            case PING -> null;
+        };
+    }
+
+    @Override
+    public void sendMessageAsync(@NotNull WebSocketMessage<?> message, @NotNull Consumer<Throwable> done) {
+        var failure = emit(message, done);
+        if (failure != null) {
+            done.accept(failure);
+        }
+    }
+
+    // Queued without waiting for the connection to take it, only fails when it can't be queued at all
+    @Override
+    public void sendMessage(@NotNull WebSocketMessage<?> message) throws IOException {
+        var failure = emit(message, IGNORE);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void close() {
+        close(CloseStatus.NORMAL);
+    }
+
+    @Override
+    public void close(@NotNull CloseStatus status) {
+        closeStatus = status;
+        complete();
+        // Gone from the session service before this returns, not once Reactor Netty gets round to it
+        notifyClosed();
+        session.close(new org.springframework.web.reactive.socket.CloseStatus(status.getCode(), status.getReason()))
+                .subscribe();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed && session.isOpen();
+    }
+
+    @Override
+    public @NotNull String getId() {
+        return session.getId();
+    }
+
+    @Override
+    public URI getUri() {
+        return session.getHandshakeInfo().getUri();
+    }
+
+    @Override
+    public @NotNull HttpHeaders getHandshakeHeaders() {
+        return session.getHandshakeInfo().getHeaders();
+    }
+
+    @Override
+    public @NotNull Map<String, Object> getAttributes() {
+        return session.getAttributes();
+    }
+
+    // The principal is only available reactively, nothing here needs it
+    @Override
+    public Principal getPrincipal() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return session.getHandshakeInfo().getRemoteAddress();
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return session.getHandshakeInfo().getSubProtocol();
+    }
+
+    // Frame sizes are limited by the server spec, these are only kept for callers that look at them
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+        textMessageSizeLimit = messageSizeLimit;
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return textMessageSizeLimit;
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        binaryMessageSizeLimit = messageSizeLimit;
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return binaryMessageSizeLimit;
+    }
+
+    @Override
+    public @NotNull List<WebSocketExtension> getExtensions() {
+        return List.of();
+    }
+
+    @Override
+    public String toString() {
+        return "ReactiveSessionAdapter[id=" + getId() + ", remote=" + getRemoteAddress() + "]";
+    }
+
+    private IOException emit(WebSocketMessage<?> message, Consumer<Throwable> done) {
+        // Sinks want one emitter at a time
+        synchronized (sink) {
+            if (closed) {
+                return new IOException("Session is closed");
+            }
+            var result = sink.tryEmitNext(new Outgoing(toReactiveMessage(message), done));
+            return result.isSuccess() ? null : new IOException("Failed to queue message: " + result);
+        }
+    }
+
+    private org.springframework.web.reactive.socket.WebSocketMessage toReactiveMessage(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            return session.textMessage(text.getPayload());
+        }
+        var payload = (ByteBuffer) message.getPayload();
+        Function<DataBufferFactory, DataBuffer> wrap = factory -> factory.wrap(payload);
+        if (message instanceof BinaryMessage) {
+            return session.binaryMessage(wrap);
+        } else if (message instanceof PingMessage) {
+            return session.pingMessage(wrap);
+        } else if (message instanceof PongMessage) {
+            return session.pongMessage(wrap);
+        }
+        throw new IllegalArgumentException("Unsupported message type: " + message.getClass().getSimpleName());
+    }
+
+    private static byte[] copy(DataBuffer buffer) {
+        var bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        return bytes;
+    }
+
+    private record Outgoing(org.springframework.web.reactive.socket.WebSocketMessage message,
+                            Consumer<Throwable> done) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.redali.example.reactive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * Reactive WebSocket handler that hands each connection to a spring-websocket handler (the same controllers the
+ * servlet version uses).
+ *
+ * <p>Frames from the client are read no faster than they are handed over: only a few are requested ahead, so when
+ * handing them over falls behind Reactor Netty stops reading from the connection and TCP pushes back on the client.
+ * They are handed over on a scheduler rather than the event loop, the session service may hold a frame back (rate
+ * limiting) or process it right away (inline execution).</p>
+ */
+@Slf4j
+public class ReactiveWebSocketBridge implements WebSocketHandler {
+
+    private final org.springframework.web.socket.WebSocketHandler handler;
+    private final Scheduler scheduler;
+    private final int prefetch;
+
+    /**
+     * Construct bridge.
+     *
+     * @param handler   Handler that gets the connections (sub-protocols it supports are negotiated).
+     * @param scheduler Where frames from clients are handed to the handler.
+     * @param prefetch  Number of frames read from a client ahead of the one being handed over.
+     */
+    public ReactiveWebSocketBridge(@NotNull org.springframework.web.socket.WebSocketHandler handler,
+                                   @NotNull Scheduler scheduler, int prefetch) {
+        this.handler = handler;
+        this.scheduler = scheduler;
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public @NotNull List<String> getSubProtocols() {
+        return handler instanceof SubProtocolCapable capable ? capable.getSubProtocols() : List.of();
+    }
+
+    @Override
+    public @NotNull Mono<Void> handle(@NotNull WebSocketSession session) {
+        return handle(session, null);
+    }
+
+    /**
+     * Handle a connection.
+     *
+     * <p>Reactor Netty calls this once the handshake response is written, before any frame from the client is read,
+     * so the session is registered before its first request. It is deregistered as soon as either side closes it:
+     * right away when the server closes it, once the connection is gone otherwise.</p>
+     *
+     * @param session      Reactive session.
+     * @param localAddress Server side address of the connection (null if not known).
+     * @return Completes when the connection is closed.
+     */
+    public Mono<Void> handle(@NotNull WebSocketSession session, InetSocketAddress localAddress) {
+        var adapter = new ReactiveSessionAdapter(session, localAddress, this::closed);
+        try {
+            handler.afterConnectionEstablished(adapter);
+        } catch (Exception e) {
+            log.error("Failed to set up client {}, closing connection", adapter.getRemoteAddress(), e);
+            return session.close(org.springframework.web.reactive.socket.CloseStatus.SERVER_ERROR);
+        }
+        var inbound = session.receive()
+                .mapNotNull(ReactiveSessionAdapter::toSpringMessage)
+                .publishOn(scheduler, prefetch)
+                .doOnNext(message -> dispatch(adapter, message))
+                .doFinally(signal -> adapter.complete())
+                .then();
+        var outbound = session.send(adapter.outbound());
+        return Mono.when(inbound, outbound)
+                .doFinally(signal -> {
+                    adapter.complete();
+                    adapter.notifyClosed();
+                });
+    }
+
+    private void dispatch(ReactiveSessionAdapter adapter, org.springframework.web.socket.WebSocketMessage<?> message) {
+        if (!adapter.isOpen()) {
+            return;
+        }
+        try {
+            handler.handleMessage(adapter, message);
+        } catch (Exception e) {
+            // What the servlet version's exception decorator does
+            log.error("Failed to handle message from client {}, closing connection", adapter.getRemoteAddress(), e);
+            adapter.close(CloseStatus.SERVER_ERROR);
+        }
+    }
+
+    private void closed(ReactiveSessionAdapter adapter) {
+        try {
+            handler.afterConnectionClosed(adapter, adapter.getCloseStatus());
+        } catch (Exception e) {
+            log.warn("Failed to clean up after client {}", adapter.getRemoteAddress(), e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.redali.example.reactive;
+
+import com.redali.example.codec.MessageCodec;
+import com.redali.example.compression.CompressionSettings;
+import com.redali.example.controller.BinaryMessageWebSocketController;
+import com.redali.example.controller.JsonMessageWebSocketController;
+import com.redali.example.controller.SubProtocolSelectingHandler;
+import com.redali.example.service.BatchSettings;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.reactive.socket.server.WebSocketService;
+import org.springframework.web.reactive.socket.server.upgrade.ReactorNettyRequestUpgradeStrategy;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.server.WebsocketServerSpec;
+
+import java.util.Map;
+
+/**
+ * Configures the WebSocket end point on WebFlux, the reactive counterpart of the servlet version's
+ * JsonMessageWebSocketConfig.
+ *
+ * <p>Connections are handed to the same controllers (picked by the "json" or "cbor" sub-protocol), so clients see
+ * exactly the same protocol. Reactor Netty negotiates permessage-deflate when {@link CompressionSettings} enable it,
+ * but has no settings for a minimum size or context takeover (those only apply to the servlet version).</p>
+ */
+@Configuration
+@Slf4j
+public class ReactiveWebSocketConfig implements WebFluxConfigurer {
+
+    private final CompressionSettings compressionSettings;
+    private final BatchSettings batchSettings;
+
+    public ReactiveWebSocketConfig(CompressionSettings compressionSettings, BatchSettings batchSettings) {
+        this.compressionSettings = compressionSettings;
+        this.batchSettings = batchSettings;
+    }
+
+    // The upgrade strategy only works on Reactor Netty, so don't let another server on the class path (the tests'
+    // WebSocket client brings Tomcat's) be picked instead
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    // Leave the end point configurable in application.yaml (spring will inject it for us)
+    @Bean
+    public HandlerMapping webSocketMapping(JsonMessageWebSocketController sessionController,
+                                           BinaryMessageWebSocketController binarySessionController,
+                                           @Value("${app.endpoint.json.messages}") String endPoint,
+                                           @Value("${app.reactive.inbound-prefetch:16}") int prefetch) {
+        var handler = new SubProtocolSelectingHandler(sessionController)
+                .addHandler(MessageCodec.JSON_PROTOCOL, sessionController)
+                .addHandler(MessageCodec.CBOR_PROTOCOL, binarySessionController);
+        var bridge = new ReactiveWebSocketBridge(handler, Schedulers.boundedElastic(), prefetch);
+        log.info("Registered reactive JSON message handler WebSocket endpoint at: {} (compression: {})", endPoint,
+                compressionSettings.enabled());
+        // Ahead of the annotated controllers and static resources
+        return new SimpleUrlHandlerMapping(Map.of(endPoint, bridge), -1);
+    }
+
+    // Frames of a message are put back together up to the size of a full batch (like the servlet container's
+    // message buffers)
+    @Override
+    public WebSocketService getWebSocketService() {
+        return new LocalAddressHandshakeService(new ReactorNettyRequestUpgradeStrategy(() -> WebsocketServerSpec.builder()
+                .compress(compressionSettings.enabled())
+                .maxFramePayloadLength(batchSettings.maxBytes())));
+    }
+}
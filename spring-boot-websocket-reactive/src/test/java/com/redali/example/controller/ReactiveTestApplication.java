@@ -0,0 +1,14 @@
+package com.redali.example.controller;
+
+import com.redali.example.ReactiveMain;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * The application the end to end tests shared with spring-boot-websocket-raw (in this package) start. Found before
+ * looking any further up, where both the servlet and reactive entry points are.
+ */
+@SpringBootConfiguration
+@Import(ReactiveMain.class)
+class ReactiveTestApplication {
+}
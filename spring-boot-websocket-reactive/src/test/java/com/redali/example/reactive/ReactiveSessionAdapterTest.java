@@ -0,0 +1,135 @@
+package com.redali.example.reactive;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.TextMessage;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sends are queued without blocking and done once the connection takes them.
+ */
+class ReactiveSessionAdapterTest {
+    private static final DefaultDataBufferFactory BUFFERS = DefaultDataBufferFactory.sharedInstance;
+
+    private final WebSocketSession session = createSession();
+
+    @Test
+    void testSendDoneOnceTaken() throws Exception {
+        var adapter = new ReactiveSessionAdapter(session, null, closed -> {
+        });
+        var connection = new Connection();
+        adapter.outbound().subscribe(connection);
+        var done = new CopyOnWriteArrayList<String>();
+
+        // Queued right away, only done once the connection asks for it
+        adapter.sendMessageAsync(new TextMessage("first"), error -> done.add("first"));
+        adapter.sendMessage(new TextMessage("second"));
+        assertThat(connection.texts()).isEmpty();
+        assertThat(done).isEmpty();
+
+        connection.request(1);
+        assertThat(connection.texts()).containsExactly("first");
+        assertThat(done).containsExactly("first");
+
+        connection.request(1);
+        assertThat(connection.texts()).containsExactly("first", "second");
+    }
+
+    @Test
+    void testSendFailsOnceClosed() {
+        var notified = new AtomicInteger();
+        var adapter = new ReactiveSessionAdapter(session, null, closed -> notified.incrementAndGet());
+        when(session.close(any())).thenReturn(Mono.empty());
+        var connection = new Connection();
+        adapter.outbound().subscribe(connection);
+
+        adapter.close(CloseStatus.GOING_AWAY);
+        adapter.notifyClosed();
+        assertThat(notified).hasValue(1);
+        assertThat(connection.completed).isTrue();
+        assertThat(adapter.isOpen()).isFalse();
+        assertThat(adapter.getCloseStatus()).isEqualTo(CloseStatus.GOING_AWAY);
+        assertThatThrownBy(() -> adapter.sendMessage(new TextMessage("late"))).isInstanceOf(IOException.class);
+
+        var failure = new AtomicReference<Throwable>();
+        adapter.sendMessageAsync(new TextMessage("late"), failure::set);
+        assertThat(failure.get()).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void testReceivedMessagesAreCopied() {
+        var text = new WebSocketMessage(WebSocketMessage.Type.TEXT, BUFFERS.wrap(bytes("{ \"request\": 0 }")));
+        assertThat(ReactiveSessionAdapter.toSpringMessage(text)).isEqualTo(new TextMessage("{ \"request\": 0 }"));
+
+        var binary = ReactiveSessionAdapter.toSpringMessage(
+                new WebSocketMessage(WebSocketMessage.Type.BINARY, BUFFERS.wrap(new byte[]{1, 2, 3})));
+        assertThat(binary).isInstanceOf(BinaryMessage.class);
+        assertThat(((ByteBuffer) binary.getPayload()).array()).containsExactly(1, 2, 3);
+
+        var pong = ReactiveSessionAdapter.toSpringMessage(
+                new WebSocketMessage(WebSocketMessage.Type.PONG, BUFFERS.wrap(new byte[8])));
+        assertThat(pong).isInstanceOf(PongMessage.class);
+        assertThat(pong.getPayloadLength()).isEqualTo(8);
+
+        assertThat(ReactiveSessionAdapter.toSpringMessage(
+                new WebSocketMessage(WebSocketMessage.Type.PING, BUFFERS.wrap(new byte[0])))).isNull();
+    }
+
+    private static WebSocketSession createSession() {
+        var session = mock(WebSocketSession.class);
+        when(session.textMessage(anyString())).thenAnswer(invocation ->
+                new WebSocketMessage(WebSocketMessage.Type.TEXT, BUFFERS.wrap(bytes(invocation.getArgument(0)))));
+        return session;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Stands in for Reactor Netty writing messages out, asks for more only when told to
+    private static class Connection extends BaseSubscriber<WebSocketMessage> {
+        private final List<WebSocketMessage> written = new CopyOnWriteArrayList<>();
+        private volatile boolean completed;
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            // Nothing until asked
+        }
+
+        @Override
+        protected void hookOnNext(WebSocketMessage message) {
+            written.add(message);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            completed = true;
+        }
+
+        List<String> texts() {
+            return written.stream().map(WebSocketMessage::getPayloadAsText).toList();
+        }
+    }
+}